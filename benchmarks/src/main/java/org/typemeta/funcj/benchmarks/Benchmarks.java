@@ -0,0 +1,30 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Runs the parser benchmarks with the GC profiler,
+ * which reports the allocation rate alongside the throughput of each benchmark.
+ * <p>
+ * The optional arguments are regular expressions which select the benchmarks to run,
+ * e.g. {@code JsonBenchmark} or {@code Expr.*compiled}.
+ * By default all the benchmarks are run.
+ */
+public class Benchmarks {
+    public static void main(String[] args) throws RunnerException {
+        final ChainedOptionsBuilder opts = new OptionsBuilder()
+                .addProfiler(GCProfiler.class);
+
+        if (args.length == 0) {
+            opts.include(Benchmarks.class.getPackage().getName() + ".*Benchmark");
+        } else {
+            for (String arg : args) {
+                opts.include(arg);
+            }
+        }
+
+        new Runner(opts.build()).run();
+    }
+}
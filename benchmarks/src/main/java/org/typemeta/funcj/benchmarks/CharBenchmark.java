@@ -0,0 +1,74 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.*;
+import org.typemeta.funcj.parser.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.typemeta.funcj.parser.Text.*;
+
+/**
+ * Parses long runs of characters with the single-character parsers,
+ * both repeated directly (which scans the input),
+ * and via a choice (which applies the parser to each character in turn).
+ * The allocation rate reported by the GC profiler shows the cost per character of each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CharBenchmark {
+
+    private static final int LENGTH = 100000;
+
+    private char[] letters;
+    private char[] spaces;
+
+    private Parser<Chr, String> manyChars;
+    private Parser<Chr, Chr> skipMany;
+    private Parser<Chr, IList<Chr>> many;
+    private Parser<Chr, String> perChar;
+
+    @Setup
+    public void setup() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < LENGTH; ++i) {
+            sb.append((char)('a' + i % 2));
+        }
+        letters = sb.toString().toCharArray();
+
+        sb.setLength(0);
+        for (int i = 0; i < LENGTH; ++i) {
+            sb.append(' ');
+        }
+        spaces = sb.append('x').toString().toCharArray();
+
+        manyChars = Text.manyChars(alpha);
+        skipMany = ws.skipMany().andR(chr('x'));
+        many = alpha.many();
+        perChar = Text.manyChars(chr('a').or(chr('b')));
+    }
+
+    @Benchmark
+    public String manyChars() {
+        return manyChars.parse(Input.of(letters)).getOrThrow();
+    }
+
+    @Benchmark
+    public Chr skipMany() {
+        return skipMany.parse(Input.of(spaces)).getOrThrow();
+    }
+
+    @Benchmark
+    public IList<Chr> many() {
+        return many.parse(Input.of(letters)).getOrThrow();
+    }
+
+    @Benchmark
+    public String perChar() {
+        return perChar.parse(Input.of(letters)).getOrThrow();
+    }
+}
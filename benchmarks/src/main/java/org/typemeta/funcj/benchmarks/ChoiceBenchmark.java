@@ -0,0 +1,73 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.typemeta.funcj.parser.Text.*;
+
+/**
+ * Parses a sequence of symbols with a wide choice,
+ * constructed both with {@link Parser#choice(Parser[])} and as a chain of {@link Parser#or(Parser)}s.
+ * The alternatives start with distinct characters, which span both ASCII and non-ASCII characters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChoiceBenchmark {
+
+    private static final int LENGTH = 10000;
+
+    /**
+     * The number of alternatives.
+     */
+    @Param({"4", "32", "256"})
+    public int width;
+
+    private char[] symbols;
+
+    private Parser<Chr, Integer> choice;
+    private Parser<Chr, Integer> orChain;
+
+    private static char symbol(int i) {
+        return (char)('0' + i);
+    }
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        final Random rand = new Random(width);
+        symbols = new char[LENGTH];
+        for (int i = 0; i < LENGTH; ++i) {
+            symbols[i] = symbol(rand.nextInt(width));
+        }
+
+        final Parser<Chr, Integer>[] alts = new Parser[width];
+        Parser<Chr, Integer> ors = null;
+        for (int i = 0; i < width; ++i) {
+            final int value = i;
+            alts[i] = chr(symbol(i)).map(c -> value);
+            ors = ors == null ? alts[i] : ors.or(alts[i]);
+        }
+
+        choice = Parser.choice(alts).many(Collectors.summingInt(i -> i)).compile();
+        orChain = ors.many(Collectors.summingInt(i -> i)).compile();
+    }
+
+    @Benchmark
+    public int choice() {
+        return choice.parse(Input.of(symbols)).getOrThrow();
+    }
+
+    @Benchmark
+    public int orChain() {
+        return orChain.parse(Input.of(symbols)).getOrThrow();
+    }
+}
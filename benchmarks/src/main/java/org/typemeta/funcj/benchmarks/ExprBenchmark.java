@@ -0,0 +1,88 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
+import org.typemeta.funcj.parser.expr.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses long arithmetic expressions with the expression grammar from the parser tests,
+ * in its interpreted, compiled and generated forms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExprBenchmark {
+
+    /**
+     * The number of terms in the expression.
+     */
+    @Param({"10", "100", "1000"})
+    public int terms;
+
+    private char[] expr;
+
+    private Parser<Chr, Model.Expr> interpreted;
+    private Parser<Chr, Model.Expr> compiled;
+    private Parser<Chr, Model.Expr> generated;
+
+    /**
+     * Generate an expression of numbers, variables, signed and bracketed terms.
+     * @param terms     the number of terms
+     * @param rand      the random number generator
+     * @return          the expression
+     */
+    static String expression(int terms, Random rand) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < terms; ++i) {
+            if (i > 0) {
+                sb.append("+-*/".charAt(rand.nextInt(4)));
+            }
+            switch (rand.nextInt(4)) {
+                case 0:
+                    sb.append(rand.nextInt(1000)).append('.').append(rand.nextInt(1000));
+                    break;
+                case 1:
+                    sb.append((char)('a' + rand.nextInt(26)));
+                    break;
+                case 2:
+                    sb.append('-').append(1 + rand.nextInt(99));
+                    break;
+                default:
+                    sb.append('(').append(rand.nextInt(100)).append('+')
+                            .append((char)('a' + rand.nextInt(26))).append(')');
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    @Setup
+    public void setup() {
+        expr = expression(terms, new Random(terms)).toCharArray();
+        interpreted = Grammar.parser;
+        compiled = Grammar.parser.compile();
+        generated = CodeGen.generate(Grammar.parser);
+    }
+
+    @Benchmark
+    public Model.Expr interpreted() {
+        return interpreted.parse(Input.of(expr)).getOrThrow();
+    }
+
+    @Benchmark
+    public Model.Expr compiled() {
+        return compiled.parse(Input.of(expr)).getOrThrow();
+    }
+
+    @Benchmark
+    public Model.Expr generated() {
+        return generated.parse(Input.of(expr)).getOrThrow();
+    }
+}
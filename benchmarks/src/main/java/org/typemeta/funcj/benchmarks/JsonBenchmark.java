@@ -0,0 +1,132 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.json.comb.JsonCombParser;
+import org.typemeta.funcj.json.model.JsValue;
+import org.typemeta.funcj.parser.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses generated JSON documents of various sizes with {@link JsonCombParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonBenchmark {
+
+    /**
+     * The approximate size of the document, in characters.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private char[] json;
+
+    private Parser<Chr, JsValue> interpreted;
+    private Parser<Chr, JsValue> compiled;
+
+    /**
+     * Generate a JSON document.
+     * @param size      the approximate size of the document, in characters
+     * @param rand      the random number generator
+     * @return          the document
+     */
+    static String document(int size, Random rand) {
+        final StringBuilder sb = new StringBuilder(size + 1000);
+        sb.append("[\n");
+        for (int i = 0; sb.length() < size; ++i) {
+            if (i > 0) {
+                sb.append(",\n");
+            }
+            value(sb, rand, 0);
+        }
+        return sb.append("\n]").toString();
+    }
+
+    private static void value(StringBuilder sb, Random rand, int depth) {
+        switch (depth < 4 ? rand.nextInt(8) : rand.nextInt(6)) {
+            case 0:
+                sb.append("null");
+                break;
+            case 1:
+                sb.append(rand.nextBoolean());
+                break;
+            case 2:
+                sb.append(rand.nextInt());
+                break;
+            case 3:
+                sb.append(rand.nextDouble() * 1e6);
+                break;
+            case 4:
+            case 5:
+                string(sb, rand);
+                break;
+            case 6: {
+                final int n = rand.nextInt(8);
+                sb.append('[');
+                for (int i = 0; i < n; ++i) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    value(sb, rand, depth + 1);
+                }
+                sb.append(']');
+                break;
+            }
+            default: {
+                final int n = rand.nextInt(8);
+                sb.append('{');
+                for (int i = 0; i < n; ++i) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append("\"field").append(i).append("\": ");
+                    value(sb, rand, depth + 1);
+                }
+                sb.append('}');
+                break;
+            }
+        }
+    }
+
+    private static void string(StringBuilder sb, Random rand) {
+        final int n = rand.nextInt(24);
+        sb.append('"');
+        for (int i = 0; i < n; ++i) {
+            final int r = rand.nextInt(32);
+            if (r == 0) {
+                sb.append("\\n");
+            } else if (r == 1) {
+                sb.append("\\u00e9");
+            } else if (r < 6) {
+                sb.append(' ');
+            } else {
+                sb.append((char)('a' + rand.nextInt(26)));
+            }
+        }
+        sb.append('"');
+    }
+
+    @Setup
+    public void setup() {
+        json = document(size, new Random(size)).toCharArray();
+        interpreted = JsonCombParser.parser;
+        compiled = JsonCombParser.parser.compile();
+    }
+
+    @Benchmark
+    public JsValue interpreted() {
+        return interpreted.parse(Input.of(json)).getOrThrow();
+    }
+
+    @Benchmark
+    public JsValue compiled() {
+        return compiled.parse(Input.of(json)).getOrThrow();
+    }
+}
@@ -0,0 +1,73 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.typemeta.funcj.parser.Text.*;
+
+/**
+ * Parses comma-separated lists of integers and floating-point numbers
+ * with the {@link Text#intr} and {@link Text#dble} parsers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NumericBenchmark {
+
+    private static final int COUNT = 10000;
+
+    private char[] ints;
+    private char[] doubles;
+
+    private Parser<Chr, Long> intSum;
+    private Parser<Chr, Double> dbleSum;
+
+    @Setup
+    public void setup() {
+        final Random rand = new Random(COUNT);
+        final StringBuilder sbi = new StringBuilder();
+        final StringBuilder sbd = new StringBuilder();
+        for (int i = 0; i < COUNT; ++i) {
+            if (i > 0) {
+                sbi.append(',');
+                sbd.append(',');
+            }
+            sbi.append(rand.nextInt());
+            switch (rand.nextInt(3)) {
+                case 0:
+                    sbd.append(rand.nextInt(100000));
+                    break;
+                case 1:
+                    sbd.append(rand.nextDouble() * 1000);
+                    break;
+                default:
+                    sbd.append(rand.nextInt(2000000) - 1000000).append('.').append(rand.nextInt(1000))
+                            .append('e').append(rand.nextInt(40) - 20);
+                    break;
+            }
+        }
+        ints = sbi.toString().toCharArray();
+        doubles = sbd.toString().toCharArray();
+
+        intSum = intr.sepBy(chr(','), Collectors.summingLong(i -> i)).compile();
+        dbleSum = dble.sepBy(chr(','), Collectors.summingDouble(d -> d)).compile();
+    }
+
+    @Benchmark
+    public long intr() {
+        return intSum.parse(Input.of(ints)).getOrThrow();
+    }
+
+    @Benchmark
+    public double dble() {
+        return dbleSum.parse(Input.of(doubles)).getOrThrow();
+    }
+}
@@ -0,0 +1,63 @@
+package org.typemeta.funcj.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.typemeta.funcj.parser.Text.*;
+
+/**
+ * Parses deeply nested brackets with a grammar which recurses through a {@link Ref}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecursionBenchmark {
+
+    /**
+     * The nesting depth of the input.
+     */
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private char[] nested;
+
+    private Parser<Chr, Integer> interpreted;
+    private Parser<Chr, Integer> compiled;
+
+    @Setup
+    public void setup() {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; ++i) {
+            sb.append('(');
+        }
+        sb.append('x');
+        for (int i = 0; i < depth; ++i) {
+            sb.append(')');
+        }
+        nested = sb.toString().toCharArray();
+
+        // nested = '(' nested ')' | 'x'
+        final Ref<Chr, Integer> ref = Parser.ref();
+        interpreted = ref.set(
+                chr('(').andR(ref).andL(chr(')')).map(n -> n + 1)
+                        .or(chr('x').map(c -> 0))
+        );
+        compiled = interpreted.compile();
+    }
+
+    @Benchmark
+    public int interpreted() {
+        return interpreted.parse(Input.of(nested)).getOrThrow();
+    }
+
+    @Benchmark
+    public int compiled() {
+        return compiled.parse(Input.of(nested)).getOrThrow();
+    }
+}
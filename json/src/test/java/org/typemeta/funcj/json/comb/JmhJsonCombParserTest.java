@@ -0,0 +1,62 @@
+package org.typemeta.funcj.json.comb;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.json.model.JsValue;
+import org.typemeta.funcj.parser.*;
+
+/**
+ * Compares the interpreted, compiled and generated forms of the JSON grammar.
+ */
+@State(Scope.Benchmark)
+public class JmhJsonCombParserTest {
+
+    private char[] json;
+
+    private Parser<Chr, JsValue> interpreted;
+    private Parser<Chr, JsValue> compiled;
+    private Parser<Chr, JsValue> generated;
+
+    @Setup
+    public void setup() {
+        json = FileUtils.openResource("/example.json")
+                .map(FileUtils::read)
+                .orElseThrow()
+                .toCharArray();
+        interpreted = JsonCombParser.parser;
+        compiled = JsonCombParser.parser.compile();
+        generated = CodeGen.generate(JsonCombParser.parser);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public JsValue interpreted() {
+        return interpreted.parse(Input.of(json)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public JsValue compiled() {
+        return compiled.parse(Input.of(json)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public JsValue generated() {
+        return generated.parse(Input.of(json)).getOrThrow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        final Options opt = new OptionsBuilder()
+                .include(JmhJsonCombParserTest.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -76,6 +76,13 @@ public void testSuccessParse() {
         assertEquals("Round-tripped JSON", json, json2);
     }
 
+    @Test
+    public void testGeneratedParse() {
+        final Parser<Chr, JsValue> generated = CodeGen.generate(JsonCombParser.parser);
+        final JsValue node = generated.parse(Input.of(json)).getOrThrow();
+        assertEquals("Round-tripped JSON", json, node.formatter().format());
+    }
+
     @Test
     public void testJsonSuite() {
         FileUtils.openDir("json")
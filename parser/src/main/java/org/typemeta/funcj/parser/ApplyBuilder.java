@@ -14,8 +14,18 @@
  * <p>
  * ApplyBuilder is a more readable way of using {@link Parser#ap Parser.ap}.
  * For example, {@code pa.and(pb).and(pc).map(f)} is equivalent to {@code ap(ap(ap(pa.map(f), pb), pc), pd)}.
+ * However, rather than a chain of {@code ap} parsers, {@code map} constructs a single parser
+ * which applies the parsers in turn, collecting their results,
+ * and then applies the handler to all of the results at once.
  */
 public class ApplyBuilder {
+
+    @SafeVarargs
+    @SuppressWarnings("varargs")
+    private static <I, R> Parser<I, R> seq(F<Object[], R> f, Parser<I, ?>... ps) {
+        return new SeqParser<I, R>(ps, f);
+    }
+
     public static class _2<I, A, B> {
         private final Parser<I, A> pa;
         private final Parser<I, B> pb;
@@ -26,11 +36,12 @@ public class ApplyBuilder {
         }
 
         public <R> Parser<I, R> map(Functions.F<A, F<B, R>> f) {
-            return Parser.ap(pa.map(f), pb);
+            return map((Functions.F2<A, B, R>)(a0, a1) -> f.apply(a0).apply(a1));
         }
 
+        @SuppressWarnings("unchecked")
         public <R> Parser<I, R> map(Functions.F2<A, B, R> f) {
-            return map(f.curry());
+            return seq(rs -> f.apply((A)rs[0], (B)rs[1]), pa, pb);
         }
 
         public <C> _2<I, A, B> andL(Parser<I, C> pc) {
@@ -49,11 +60,12 @@ private _3(Parser<I, C> pc) {
             }
 
             public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, R>>> f) {
-                return Parser.ap(_2.this.map(f), pc);
+                return map((Functions.F3<A, B, C, R>)(a0, a1, a2) -> f.apply(a0).apply(a1).apply(a2));
             }
 
+            @SuppressWarnings("unchecked")
             public <R> Parser<I, R> map(Functions.F3<A, B, C, R> f) {
-                return map(f.curry());
+                return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2]), pa, pb, pc);
             }
 
             public <D> _3<C> andL(Parser<I, D> pd) {
@@ -72,11 +84,12 @@ private _4(Parser<I, D> pd) {
                 }
 
                 public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, F<D, R>>>> f) {
-                    return Parser.ap(_3.this.map(f), pd);
+                    return map((Functions.F4<A, B, C, D, R>)(a0, a1, a2, a3) -> f.apply(a0).apply(a1).apply(a2).apply(a3));
                 }
 
+                @SuppressWarnings("unchecked")
                 public <R> Parser<I, R> map(Functions.F4<A, B, C, D, R> f) {
-                    return map(f.curry());
+                    return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2], (D)rs[3]), pa, pb, pc, pd);
                 }
 
                 public <E> _4<D> andL(Parser<I, E> pe) {
@@ -95,11 +108,12 @@ private _5(Parser<I, E> pe) {
                     }
 
                     public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, F<D, F<E, R>>>>> f) {
-                        return Parser.ap(_4.this.map(f), pe);
+                        return map((Functions.F5<A, B, C, D, E, R>)(a0, a1, a2, a3, a4) -> f.apply(a0).apply(a1).apply(a2).apply(a3).apply(a4));
                     }
 
+                    @SuppressWarnings("unchecked")
                     public <R> Parser<I, R> map(Functions.F5<A, B, C, D, E, R> f) {
-                        return map(f.curry());
+                        return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2], (D)rs[3], (E)rs[4]), pa, pb, pc, pd, pe);
                     }
 
                     public <G> _5<E> andL(Parser<I, G> pg) {
@@ -118,11 +132,12 @@ private _6(Parser<I, G> pg) {
                         }
 
                         public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, F<D, F<E, F<G, R>>>>>> f) {
-                            return Parser.ap(_5.this.map(f), pg);
+                            return map((Functions.F6<A, B, C, D, E, G, R>)(a0, a1, a2, a3, a4, a5) -> f.apply(a0).apply(a1).apply(a2).apply(a3).apply(a4).apply(a5));
                         }
 
+                        @SuppressWarnings("unchecked")
                         public <R> Parser<I, R> map(Functions.F6<A, B, C, D, E, G, R> f) {
-                            return map(f.curry());
+                            return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2], (D)rs[3], (E)rs[4], (G)rs[5]), pa, pb, pc, pd, pe, pg);
                         }
 
                         public <H> _6<G> andL(Parser<I, H> ph) {
@@ -141,11 +156,12 @@ private _7(Parser<I, H> ph) {
                             }
 
                             public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, F<D, F<E, F<G, F<H, R>>>>>>> f) {
-                                return Parser.ap(_6.this.map(f), ph);
+                                return map((Functions.F7<A, B, C, D, E, G, H, R>)(a0, a1, a2, a3, a4, a5, a6) -> f.apply(a0).apply(a1).apply(a2).apply(a3).apply(a4).apply(a5).apply(a6));
                             }
 
+                            @SuppressWarnings("unchecked")
                             public <R> Parser<I, R> map(Functions.F7<A, B, C, D, E, G, H, R> f) {
-                                return map(f.curry());
+                                return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2], (D)rs[3], (E)rs[4], (G)rs[5], (H)rs[6]), pa, pb, pc, pd, pe, pg, ph);
                             }
 
                             public <J> _7<H> andL(Parser<I, J> pj) {
@@ -164,11 +180,12 @@ private _8(Parser<I, J> pj) {
                                 }
 
                                 public <R> Parser<I, R> map(Functions.F<A, F<B, F<C, F<D, F<E, F<G, F<H, F<J, R>>>>>>>> f) {
-                                    return Parser.ap(_7.this.map(f), pj);
+                                    return map((Functions.F8<A, B, C, D, E, G, H, J, R>)(a0, a1, a2, a3, a4, a5, a6, a7) -> f.apply(a0).apply(a1).apply(a2).apply(a3).apply(a4).apply(a5).apply(a6).apply(a7));
                                 }
 
+                                @SuppressWarnings("unchecked")
                                 public <R> Parser<I, R> map(Functions.F8<A, B, C, D, E, G, H, J, R> f) {
-                                    return map(f.curry());
+                                    return seq(rs -> f.apply((A)rs[0], (B)rs[1], (C)rs[2], (D)rs[3], (E)rs[4], (G)rs[5], (H)rs[6], (J)rs[7]), pa, pb, pc, pd, pe, pg, ph, pj);
                                 }
 
                                 public <K> _8<J> andL(Parser<I, K> pk) {
@@ -0,0 +1,326 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.util.Exceptions;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.*;
+
+/**
+ * Specialisation of {@link Input} for streams of {@code byte} symbols,
+ * for use with parsers for binary formats.
+ * <p>
+ * {@code ByteInput} allows the next symbol to be read as a primitive {@code byte}.
+ * Note that {@link ByteInput#get()} returns one of the cached {@link Byte} instances,
+ * so reading a symbol via the generic {@code Input} interface does not allocate either.
+ */
+public interface ByteInput extends Input<Byte> {
+    /**
+     * Construct a {@code ByteInput} from a {@code byte} array.
+     * @param data      the input data
+     * @return          the input stream
+     */
+    static ByteInput of(byte[] data) {
+        return new ByteArrayInput(data, 0);
+    }
+
+    /**
+     * Construct a {@code ByteInput} from the remaining bytes in a {@link ByteBuffer}
+     * (i.e. those between its position and its limit).
+     * Both heap and direct buffers are supported.
+     * The buffer's position and limit are not modified,
+     * and the input positions are indices into the buffer.
+     * @param buffer    the input data
+     * @return          the input stream
+     */
+    static ByteInput of(ByteBuffer buffer) {
+        return new ByteBufferInput(buffer.duplicate(), buffer.position());
+    }
+
+    /**
+     * Construct a {@code ByteInput} from a {@link ReadableByteChannel}.
+     * The channel, which must be in blocking mode, is read in blocks into a sliding window,
+     * which only retains data back to the oldest live {@link Input.Mark}.
+     * @param channel   the input data
+     * @return          the input stream
+     */
+    static ByteInput of(ReadableByteChannel channel) {
+        return new ChannelInput(channel, ChannelInput.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Construct a {@code ByteInput} from a {@link ReadableByteChannel},
+     * which reads the data in blocks of the given size.
+     * @param channel   the input data
+     * @param bufferSize the initial size of the read buffer
+     * @return          the input stream
+     */
+    static ByteInput of(ReadableByteChannel channel, int bufferSize) {
+        return new ChannelInput(channel, bufferSize);
+    }
+
+    /**
+     * Returns the symbol from the stream indicated by this input, as a primitive {@code byte}.
+     * Will throw if {@code isEof} is true.
+     * @return          the next symbol
+     */
+    byte getByte();
+
+    /**
+     * Returns the symbol from the stream indicated by this input.
+     * Will throw if {@code isEof} is true.
+     * @return          the next symbol
+     */
+    @Override
+    default Byte get() {
+        return getByte();
+    }
+
+    @Override
+    ByteInput next();
+}
+
+class ByteArrayInput implements ByteInput {
+
+    private final byte[] data;
+    private final int position;
+
+    ByteArrayInput(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    @Override
+    public String toString() {
+        final String dataStr = isEof() ? "EOF" : String.valueOf(data[position]);
+        return "ByteArrayInput{" + position + ",data=" + dataStr + "}";
+    }
+
+    @Override
+    public boolean isEof() {
+        return position >= data.length;
+    }
+
+    @Override
+    public byte getByte() {
+        return data[position];
+    }
+
+    @Override
+    public ByteInput next() {
+        return new ByteArrayInput(data, position + 1);
+    }
+
+    @Override
+    public Object position() {
+        return position;
+    }
+
+    @Override
+    public long index() {
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ByteArrayInput that = (ByteArrayInput) o;
+        return position == that.position &&
+                data == that.data;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(data, position);
+    }
+}
+
+class ByteBufferInput implements ByteInput {
+
+    private final ByteBuffer buffer;
+    private final int position;
+
+    ByteBufferInput(ByteBuffer buffer, int position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    @Override
+    public String toString() {
+        final String dataStr = isEof() ? "EOF" : String.valueOf(buffer.get(position));
+        return "ByteBufferInput{" + position + ",data=" + dataStr + "}";
+    }
+
+    @Override
+    public boolean isEof() {
+        return position >= buffer.limit();
+    }
+
+    @Override
+    public byte getByte() {
+        return buffer.get(position);
+    }
+
+    @Override
+    public ByteInput next() {
+        return new ByteBufferInput(buffer, position + 1);
+    }
+
+    @Override
+    public Object position() {
+        return position;
+    }
+
+    @Override
+    public long index() {
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ByteBufferInput that = (ByteBufferInput) o;
+        return position == that.position &&
+                buffer == that.buffer;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(buffer, position);
+    }
+}
+
+/**
+ * A {@link ByteInput} which reads from a {@link ReadableByteChannel}.
+ * <p>
+ * This is the binary counterpart of {@link ReaderInput}.
+ * The channel is read in blocks into a {@link ChannelInput.Buffer},
+ * which is shared by all of the {@code ChannelInput} cursors for the channel.
+ * The buffer is a sliding {@link Window} which only retains data back to the oldest live {@link Input.Mark}
+ * (or, in the absence of any marks, the position of the most recent read).
+ * <p>
+ * As the underlying channel is stateful, {@code ChannelInput} is not thread-safe.
+ */
+class ChannelInput implements ByteInput {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The window of bytes read from the channel.
+     */
+    static final class Buffer extends Window<byte[]> {
+        private final ReadableByteChannel channel;
+
+        Buffer(ReadableByteChannel channel, int size) {
+            super(size);
+            this.channel = Objects.requireNonNull(channel);
+        }
+
+        @Override
+        byte[] allocate(int size) {
+            return new byte[size];
+        }
+
+        @Override
+        int read(byte[] buf, int off, int len) {
+            final ByteBuffer bb = ByteBuffer.wrap(buf, off, len);
+            final int n = Exceptions.wrap(() -> channel.read(bb));
+            if (n == 0) {
+                throw new IllegalStateException("Channel returned no data - non-blocking channels are not supported");
+            }
+            return n;
+        }
+
+        byte byteAt(long position) {
+            // Determine the offset first, as reading may refill (and reallocate) the window.
+            final int offset = offset(position);
+            return data[offset];
+        }
+    }
+
+    private final Buffer buffer;
+    private final long position;
+
+    ChannelInput(ReadableByteChannel channel, int bufferSize) {
+        this(new Buffer(channel, bufferSize), 0);
+    }
+
+    ChannelInput(Buffer buffer, long position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    @Override
+    public String toString() {
+        final String currStr =
+                position < buffer.start ? "?" :
+                        isEof() ? "EOF" : String.valueOf(getByte());
+        return "ChannelInput{" + position + ",current=" + currStr + "}";
+    }
+
+    @Override
+    public boolean isEof() {
+        return buffer.isEof(position);
+    }
+
+    @Override
+    public byte getByte() {
+        return buffer.byteAt(position);
+    }
+
+    @Override
+    public ByteInput next() {
+        return new ChannelInput(buffer, position + 1);
+    }
+
+    @Override
+    public Object position() {
+        return position;
+    }
+
+    @Override
+    public long index() {
+        return position;
+    }
+
+    @Override
+    public Mark<Byte> mark() {
+        buffer.addMark(position);
+        return new Mark<Byte>() {
+            private boolean closed = false;
+
+            @Override
+            public Input<Byte> reset() {
+                if (closed) {
+                    throw new IllegalStateException("Mark has been closed");
+                } else {
+                    return ChannelInput.this;
+                }
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    buffer.removeMark(position);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final ChannelInput that = (ChannelInput) o;
+        return position == that.position &&
+                buffer == that.buffer;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, buffer);
+    }
+}
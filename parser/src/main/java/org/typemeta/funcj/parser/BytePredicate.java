@@ -0,0 +1,65 @@
+package org.typemeta.funcj.parser;
+
+import java.util.Objects;
+
+/**
+ * A predicate on primitive {@code byte} values.
+ * <p>
+ * Specialisation of {@link org.typemeta.funcj.functions.Functions.Predicate} for {@code byte},
+ * which allows {@link ByteInput} symbols to be tested without boxing them.
+ */
+@FunctionalInterface
+public interface BytePredicate {
+    /**
+     * Static constructor
+     * @param pr        the predicate function
+     * @return          the predicate function
+     */
+    static BytePredicate of(BytePredicate pr) {
+        return pr;
+    }
+
+    /**
+     * Return a {@code BytePredicate} that checks if a value is equal to the given byte.
+     * @param b         the byte to compare against
+     * @return          a {@code BytePredicate} that checks if a value is equal to the given byte
+     */
+    static BytePredicate isEqual(byte b) {
+        return x -> x == b;
+    }
+
+    /**
+     * Apply this predicate.
+     * @param b         the byte value
+     * @return          the result of applying this predicate to the value
+     */
+    boolean test(byte b);
+
+    /**
+     * Invert this {@code BytePredicate}
+     * @return          a {@code BytePredicate} that logically inverts this {@code BytePredicate}
+     */
+    default BytePredicate negate() {
+        return b -> !test(b);
+    }
+
+    /**
+     * Compose this {@code BytePredicate} with another by logically and'ing them.
+     * @param rhs       other {@code BytePredicate}
+     * @return          a {@code BytePredicate} that returns true iff both {@code BytePredicate}s return true
+     */
+    default BytePredicate and(BytePredicate rhs) {
+        Objects.requireNonNull(rhs);
+        return b -> test(b) && rhs.test(b);
+    }
+
+    /**
+     * Compose this {@code BytePredicate} with another by logically or'ing them.
+     * @param rhs       other {@code BytePredicate}
+     * @return          a {@code BytePredicate} that returns true if either {@code BytePredicate}s return true
+     */
+    default BytePredicate or(BytePredicate rhs) {
+        Objects.requireNonNull(rhs);
+        return b -> test(b) || rhs.test(b);
+    }
+}
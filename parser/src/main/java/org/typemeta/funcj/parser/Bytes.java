@@ -0,0 +1,203 @@
+package org.typemeta.funcj.parser;
+
+import java.util.function.LongFunction;
+
+import static org.typemeta.funcj.parser.Utils.*;
+
+/**
+ * Parser combinators for working with {@code Byte} streams,
+ * such as those provided by {@link ByteInput}.
+ * <p>
+ * The multi-byte parsers read the bytes directly from a {@code ByteInput},
+ * so parsing a binary value allocates nothing beyond the boxed result.
+ */
+public abstract class Bytes {
+
+    /**
+     * A parser that succeeds if the next input symbol equals the given byte {@code b},
+     * and returns the value.
+     * @param b         the value expected by the parser
+     * @return          a parser that succeeds if the next input symbol equals the given byte
+     */
+    public static Parser<Byte, Byte> byt(int b) {
+        return Combinators.value((byte)b);
+    }
+
+    /**
+     * Specialisation of {@link Combinators#satisfy(String, org.typemeta.funcj.functions.Functions.Predicate)}
+     * for {@code Byte}.
+     * A parser that succeeds if the next input symbol satisfies the given {@code byte} predicate.
+     * @param name      a name for the parser (used for error messages)
+     * @param pred      the predicate to be applied to the next input
+     * @return          a parser that succeeds if the next input symbol satisfies the given predicate.
+     */
+    public static Parser<Byte, Byte> satisfyByte(String name, BytePredicate pred) {
+        final SymSet<Byte> firstSet = SymSet.pred(name, b -> pred.test(b));
+        return new ParserImpl<Byte, Byte>(LFALSE, () -> firstSet) {
+            @Override
+            public Result<Byte, Byte> apply(Input<Byte> in, SymSet<Byte> follow) {
+                return Result.success(in.get(), in.next());
+            }
+        };
+    }
+
+    /**
+     * A parser that succeeds if it can extract the given byte sequence from the input.
+     * Each successful parse returns a new copy of the bytes.
+     * @param bs        the expected bytes
+     * @return          a parser for the given byte sequence
+     */
+    public static Parser<Byte, byte[]> literal(byte... bs) {
+        if (bs.length == 0) {
+            return Combinators.fail();
+        }
+        final byte[] expected = bs.clone();
+        final SymSet<Byte> firstSet = SymSet.value(expected[0]);
+        return new ParserImpl<Byte, byte[]>(LFALSE, () -> firstSet) {
+            @Override
+            public Result<Byte, byte[]> apply(Input<Byte> in, SymSet<Byte> follow) {
+                for (byte b : expected) {
+                    if (in.isEof()) {
+                        return failureEof(this, in);
+                    } else if (getByte(in) != b) {
+                        return failure(this, in);
+                    } else {
+                        in = in.next();
+                    }
+                }
+                return Result.success(expected.clone(), in);
+            }
+        };
+    }
+
+    /**
+     * A parser which reads the next {@code n} bytes into an array.
+     * @param n         the number of bytes to read
+     * @return          a parser which reads the next {@code n} bytes
+     */
+    public static Parser<Byte, byte[]> bytes(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Byte count must be non-negative - " + n);
+        }
+        return new ParserImpl<Byte, byte[]>(n == 0 ? LTRUE : LFALSE, SymSet::all) {
+            @Override
+            public Result<Byte, byte[]> apply(Input<Byte> in, SymSet<Byte> follow) {
+                final byte[] bs = new byte[n];
+                for (int i = 0; i < n; ++i) {
+                    if (in.isEof()) {
+                        return failureEof(this, in);
+                    }
+                    bs[i] = getByte(in);
+                    in = in.next();
+                }
+                return Result.success(bs, in);
+            }
+        };
+    }
+
+    /**
+     * A parser for an unsigned 8-bit integer.
+     */
+    public static final Parser<Byte, Integer> uint8 =
+            fixedWidth(1, true, l -> (int)l);
+
+    /**
+     * A parser for a signed 16-bit big-endian integer.
+     */
+    public static final Parser<Byte, Short> int16BE =
+            fixedWidth(2, true, l -> (short)l);
+
+    /**
+     * A parser for a signed 16-bit little-endian integer.
+     */
+    public static final Parser<Byte, Short> int16LE =
+            fixedWidth(2, false, l -> (short)l);
+
+    /**
+     * A parser for a signed 32-bit big-endian integer.
+     */
+    public static final Parser<Byte, Integer> int32BE =
+            fixedWidth(4, true, l -> (int)l);
+
+    /**
+     * A parser for a signed 32-bit little-endian integer.
+     */
+    public static final Parser<Byte, Integer> int32LE =
+            fixedWidth(4, false, l -> (int)l);
+
+    /**
+     * A parser for a signed 64-bit big-endian integer.
+     */
+    public static final Parser<Byte, Long> int64BE =
+            fixedWidth(8, true, l -> l);
+
+    /**
+     * A parser for a signed 64-bit little-endian integer.
+     */
+    public static final Parser<Byte, Long> int64LE =
+            fixedWidth(8, false, l -> l);
+
+    /**
+     * A parser for an unsigned LEB128 variable-length integer of at most 32 bits,
+     * as used by Protocol Buffers.
+     * Each byte contributes seven bits, least significant group first,
+     * and the high bit of each byte indicates whether further bytes follow.
+     */
+    public static final Parser<Byte, Integer> varint =
+            varLength(32, l -> (int)l);
+
+    /**
+     * A parser for an unsigned LEB128 variable-length integer of at most 64 bits.
+     */
+    public static final Parser<Byte, Long> varlong =
+            varLength(64, l -> l);
+
+    private static byte getByte(Input<Byte> in) {
+        return in instanceof ByteInput ? ((ByteInput)in).getByte() : in.get();
+    }
+
+    private static <A> Parser<Byte, A> fixedWidth(int n, boolean bigEndian, LongFunction<A> f) {
+        return new ParserImpl<Byte, A>(LFALSE, SymSet::all) {
+            @Override
+            public Result<Byte, A> apply(Input<Byte> in, SymSet<Byte> follow) {
+                long acc = 0;
+                for (int i = 0; i < n; ++i) {
+                    if (in.isEof()) {
+                        return failureEof(this, in);
+                    }
+                    final long b = getByte(in) & 0xFF;
+                    acc = bigEndian ? (acc << 8) | b : acc | (b << (8 * i));
+                    in = in.next();
+                }
+                return Result.success(f.apply(acc), in);
+            }
+        };
+    }
+
+    private static <A> Parser<Byte, A> varLength(int bits, LongFunction<A> f) {
+        final int maxBytes = (bits + 6) / 7;
+        return new ParserImpl<Byte, A>(LFALSE, SymSet::all) {
+            @Override
+            public Result<Byte, A> apply(Input<Byte> in, SymSet<Byte> follow) {
+                long acc = 0;
+                for (int i = 0; i < maxBytes; ++i) {
+                    if (in.isEof()) {
+                        return failureEof(this, in);
+                    }
+                    final byte b = getByte(in);
+                    final int shift = 7 * i;
+                    final long group = b & 0x7F;
+                    if (shift + 7 > bits && (group >>> (bits - shift)) != 0) {
+                        return failure("Variable-length integer exceeds " + bits + " bits", in);
+                    }
+                    acc |= group << shift;
+                    in = in.next();
+                    if (b >= 0) {
+                        return Result.success(f.apply(acc), in);
+                    }
+                }
+                return failure("Variable-length integer exceeds " + maxBytes + " bytes", in);
+            }
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+/**
+ * Specialisation of {@link Input} for streams of {@code char} symbols.
+ * <p>
+ * {@code CharInput} allows the next symbol to be read as a primitive {@code char},
+ * without boxing it as a {@link Chr}.
+ * Parsers and symbol sets which operate on {@code Chr} streams use this to avoid
+ * allocating a {@code Chr} for each symbol that is read.
+ */
+public interface CharInput extends Input<Chr> {
+    /**
+     * Returns the symbol from the stream indicated by this input, as a primitive {@code char}.
+     * Will throw if {@code isEof} is true.
+     * @return          the next symbol
+     */
+    char getChar();
+
+    /**
+     * Returns the symbol from the stream indicated by this input.
+     * Will throw if {@code isEof} is true.
+     * @return          the next symbol
+     */
+    @Override
+    default Chr get() {
+        return Chr.valueOf(getChar());
+    }
+
+    @Override
+    CharInput next();
+
+    @Override
+    default boolean matches(SymSet<Chr> symSet) {
+        return symSet.matchesChar(getChar());
+    }
+}
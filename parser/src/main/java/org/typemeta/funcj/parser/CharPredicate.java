@@ -0,0 +1,68 @@
+package org.typemeta.funcj.parser;
+
+import java.util.Objects;
+
+/**
+ * A predicate on primitive {@code char} values.
+ * <p>
+ * Specialisation of {@link org.typemeta.funcj.functions.Functions.Predicate} for {@code char},
+ * which allows {@link CharInput} symbols to be tested without boxing them.
+ * <p>
+ * A {@code CharPredicate} is expected to be a pure function of its argument,
+ * as the symbol sets built from it may be compiled into lookup tables (see {@link SymSet#compile()}).
+ */
+@FunctionalInterface
+public interface CharPredicate {
+    /**
+     * Static constructor
+     * @param pr        the predicate function
+     * @return          the predicate function
+     */
+    static CharPredicate of(CharPredicate pr) {
+        return pr;
+    }
+
+    /**
+     * Return a {@code CharPredicate} that checks if a value is equal to the given char.
+     * @param c         the char to compare against
+     * @return          a {@code CharPredicate} that checks if a value is equal to the given char
+     */
+    static CharPredicate isEqual(char c) {
+        return x -> x == c;
+    }
+
+    /**
+     * Apply this predicate.
+     * @param c         the char value
+     * @return          the result of applying this predicate to the value
+     */
+    boolean test(char c);
+
+    /**
+     * Invert this {@code CharPredicate}
+     * @return          a {@code CharPredicate} that logically inverts this {@code CharPredicate}
+     */
+    default CharPredicate negate() {
+        return c -> !test(c);
+    }
+
+    /**
+     * Compose this {@code CharPredicate} with another by logically and'ing them.
+     * @param rhs       other {@code CharPredicate}
+     * @return          a {@code CharPredicate} that returns true iff both {@code CharPredicate}s return true
+     */
+    default CharPredicate and(CharPredicate rhs) {
+        Objects.requireNonNull(rhs);
+        return c -> test(c) && rhs.test(c);
+    }
+
+    /**
+     * Compose this {@code CharPredicate} with another by logically or'ing them.
+     * @param rhs       other {@code CharPredicate}
+     * @return          a {@code CharPredicate} that returns true if either {@code CharPredicate}s return true
+     */
+    default CharPredicate or(CharPredicate rhs) {
+        Objects.requireNonNull(rhs);
+        return c -> test(c) || rhs.test(c);
+    }
+}
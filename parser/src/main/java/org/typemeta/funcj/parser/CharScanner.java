@@ -0,0 +1,261 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+/**
+ * A mutable cursor over a {@code Chr} input stream,
+ * for use by parsers which scan a run of symbols in a single loop.
+ * <p>
+ * When the input is backed by an array the scanner indexes the array directly,
+ * so advancing it does not allocate.
+ * For other inputs it advances the {@link Input} itself.
+ * A scanner which is constructed to record its input
+ * (i.e. for parsers which return the consumed text, via {@link #text()} or {@link #consumed()})
+ * also appends the symbols it advances over to a scratch buffer,
+ * so that the consumed text doesn't have to be re-read from a streaming input which may have discarded it.
+ * Scanners which don't record, such as those which skip input, use no memory beyond the scanner itself,
+ * regardless of the number of symbols they advance over.
+ * Either way, the {@code Input} for the current position is only constructed when {@link #input()} is called.
+ * <p>
+ * Saving a position holds an {@link Input.Mark} on it,
+ * so a scanner which saves its position must be closed once it is no longer required.
+ */
+final class CharScanner implements AutoCloseable {
+
+    /**
+     * Construct a scanner positioned at the start of the given input,
+     * which doesn't record the symbols it advances over.
+     * @param in        the input
+     * @return          the scanner
+     */
+    static CharScanner of(Input<Chr> in) {
+        return new CharScanner(in, false);
+    }
+
+    /**
+     * Construct a scanner positioned at the start of the given input.
+     * @param in        the input
+     * @param record    true if the consumed text is required (see {@link #text()} and {@link #consumed()})
+     * @return          the scanner
+     */
+    static CharScanner of(Input<Chr> in, boolean record) {
+        return new CharScanner(in, record);
+    }
+
+    private final char[] data;
+    private final int end;
+    private int pos;
+
+    private Input<Chr> in;
+    private CharInput cin;
+    private final StringBuilder scratch;
+
+    private int count;
+
+    private int savedPos;
+    private Input.Mark<Chr> savedMark;
+    private int savedCount = -1;
+
+    private CharScanner(Input<Chr> start, boolean record) {
+        if (start instanceof StringInput) {
+            final StringInput si = (StringInput)start;
+            this.data = si.data();
+            this.pos = si.offset();
+            this.end = si.end();
+            this.scratch = null;
+        } else {
+            this.data = null;
+            this.end = 0;
+            this.scratch = record ? new StringBuilder() : null;
+            setInput(start);
+        }
+    }
+
+    private void setInput(Input<Chr> in) {
+        this.in = in;
+        this.cin = in instanceof CharInput ? (CharInput)in : null;
+    }
+
+    /**
+     * Returns true if and only if the scanner is at the end of the input stream.
+     * @return          true if the scanner is at the end of the input stream
+     */
+    boolean isEof() {
+        return data != null ? pos >= end : in.isEof();
+    }
+
+    /**
+     * Returns the symbol at the current position.
+     * Will throw if {@code isEof} is true.
+     * @return          the current symbol
+     */
+    char peek() {
+        if (data != null) {
+            return data[pos];
+        } else {
+            return cin != null ? cin.getChar() : in.get().charValue();
+        }
+    }
+
+    /**
+     * Advance the scanner to the next position.
+     * Will throw if {@code isEof} is true.
+     */
+    void advance() {
+        if (data != null) {
+            ++pos;
+        } else {
+            if (scratch != null) {
+                scratch.append(peek());
+            }
+            setInput(in.next());
+        }
+        ++count;
+    }
+
+    /**
+     * Advance the scanner while the current symbol satisfies the given predicate.
+     * @param pred      the predicate
+     */
+    void skip(CharPredicate pred) {
+        if (data != null) {
+            final int from = pos;
+            while (pos < end && pred.test(data[pos])) {
+                ++pos;
+            }
+            count += pos - from;
+        } else {
+            while (!in.isEof() && pred.test(peek())) {
+                advance();
+            }
+        }
+    }
+
+    /**
+     * Save the current position of the scanner, replacing any previously saved position,
+     * so that the scanner can subsequently be returned to it via {@link #restore()}.
+     */
+    void save() {
+        savedPos = pos;
+        if (data == null) {
+            close();
+            savedMark = in.mark();
+        }
+        savedCount = count;
+    }
+
+    /**
+     * Return true if a position has been saved.
+     * @return          true if a position has been saved
+     */
+    boolean isSaved() {
+        return savedCount != -1;
+    }
+
+    /**
+     * Return the scanner to the saved position.
+     */
+    void restore() {
+        pos = savedPos;
+        if (data == null) {
+            setInput(savedMark.reset());
+            if (scratch != null) {
+                scratch.setLength(savedCount);
+            }
+        }
+        count = savedCount;
+    }
+
+    /**
+     * Return the number of symbols the scanner has advanced over.
+     * @return          the number of symbols consumed
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * Return the input for the current position of the scanner.
+     * @return          the current input
+     */
+    Input<Chr> input() {
+        return data != null ? new StringInput(data, pos, end) : in;
+    }
+
+    /**
+     * Copy the symbols which the scanner has advanced over into an array.
+     * @return          the consumed symbols
+     * @throws IllegalStateException if the scanner isn't recording, and the input isn't array-backed
+     */
+    char[] consumed() {
+        final char[] cs = new char[count];
+        if (data != null) {
+            System.arraycopy(data, pos - count, cs, 0, count);
+        } else {
+            recorded().getChars(0, count, cs, 0);
+        }
+        return cs;
+    }
+
+    /**
+     * Return the symbols which the scanner has advanced over, as a {@link CharSlice}.
+     * For array-backed inputs this is a view of the array, and no characters are copied.
+     * @return          the consumed symbols
+     * @throws IllegalStateException if the scanner isn't recording, and the input isn't array-backed
+     */
+    CharSequence text() {
+        return data != null ? new CharSlice(data, pos - count, count) : new CharSlice(consumed(), 0, count);
+    }
+
+    private StringBuilder recorded() {
+        if (scratch == null) {
+            throw new IllegalStateException("CharScanner was constructed without recording the consumed text");
+        }
+        return scratch;
+    }
+
+    /**
+     * Release the mark held on the saved position, if any.
+     */
+    @Override
+    public void close() {
+        if (savedMark != null) {
+            savedMark.close();
+            savedMark = null;
+        }
+    }
+
+    /**
+     * Return the symbols between two inputs over the same stream, as a {@link CharSlice}.
+     * For array-backed inputs this is a view of the array, and no characters are copied.
+     * Otherwise the symbols are re-read from the start input,
+     * so for a streaming input the caller must hold a mark on it (see {@link SpanParser}).
+     * @param start     the start input
+     * @param end       the end input, which must be reachable from {@code start}
+     * @return          the symbols between {@code start} (inclusive) and {@code end} (exclusive)
+     */
+    static CharSequence text(Input<Chr> start, Input<Chr> end) {
+        if (start instanceof StringInput && end instanceof StringInput) {
+            final StringInput s = (StringInput)start;
+            final StringInput e = (StringInput)end;
+            if (s.data() == e.data()) {
+                return new CharSlice(s.data(), s.offset(), e.offset() - s.offset());
+            }
+        }
+
+        final long endIndex = end.index();
+        final StringBuilder sb = new StringBuilder();
+        for (Input<Chr> in = start;
+             endIndex != -1 ? in.index() != endIndex : !in.equals(end);
+             in = in.next()) {
+            if (in.isEof()) {
+                throw new IllegalArgumentException("End input is not reachable from the start input");
+            }
+            sb.append(in instanceof CharInput ? ((CharInput)in).getChar() : in.get().charValue());
+        }
+
+        final char[] cs = new char[sb.length()];
+        sb.getChars(0, cs.length, cs, 0);
+        return new CharSlice(cs, 0, cs.length);
+    }
+}
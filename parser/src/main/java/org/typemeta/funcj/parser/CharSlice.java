@@ -0,0 +1,77 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A read-only {@link CharSequence} view of a slice of a {@code char} array.
+ * <p>
+ * The characters are only copied when the slice is converted to a string.
+ * Two slices are equal if they contain the same characters.
+ * As with {@link StringBuilder}, a slice is never equal to a {@link String},
+ * so it should be compared with a string via {@link String#contentEquals(CharSequence)},
+ * or by converting it to a string.
+ * <p>
+ * The text parsers (e.g. {@link Text#takeWhile(CharPredicate)}) return a {@code CharSlice} for every type of input,
+ * so that the equality of their results doesn't depend on the type of the input.
+ */
+final class CharSlice implements CharSequence {
+
+    private final char[] data;
+    private final int offset;
+    private final int length;
+
+    CharSlice(char[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+        }
+        return data[offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        return new CharSlice(data, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(data, offset, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final CharSlice that = (CharSlice) o;
+        if (length != that.length) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (data[offset + i] != that.data[that.offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 0;
+        for (int i = 0; i < length; ++i) {
+            h = 31 * h + data[offset + i];
+        }
+        return h;
+    }
+}
@@ -0,0 +1,100 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.*;
+
+import java.util.*;
+
+import static org.typemeta.funcj.parser.Utils.*;
+
+/**
+ * A parser that selects one of a list of alternatives,
+ * based on the First Sets of the alternatives.
+ * <p>
+ * The next input symbol is resolved to an alternative via a {@link Dispatch} table,
+ * which is constructed the first time the parser is applied.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+class ChoiceParser<I, A> extends ParserImpl<I, A> {
+
+    /**
+     * Construct a choice between two parsers.
+     * If either parser is itself a choice then its alternatives are merged into the new choice,
+     * so that chains of {@link Parser#or(Parser)} calls are resolved with a single lookup.
+     * @param lhs       the first parser
+     * @param rhs       the second parser
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          a parser that attempts the two parsers in turn
+     */
+    static <I, A> ChoiceParser<I, A> of(Parser<I, A> lhs, Parser<I, A> rhs) {
+        final List<Parser<I, A>> ps = new ArrayList<Parser<I, A>>();
+        addAlternatives(ps, lhs);
+        addAlternatives(ps, rhs);
+        return new ChoiceParser<I, A>(ps);
+    }
+
+    private static <I, A> void addAlternatives(List<Parser<I, A>> ps, Parser<I, A> p) {
+        if (p instanceof ChoiceParser) {
+            for (Parser<I, A> alt : ((ChoiceParser<I, A>)p).ps) {
+                ps.add(alt);
+            }
+        } else {
+            ps.add(p);
+        }
+    }
+
+    private final Parser<I, A>[] ps;
+
+    private final Lazy<Dispatch<I>> dispatch;
+
+    private final Lazy<Integer> emptyAlt;
+
+    @SuppressWarnings("unchecked")
+    ChoiceParser(List<Parser<I, A>> ps) {
+        super(
+                ps.stream().map(Parser::acceptsEmpty).reduce(Utils::or).get(),
+                ps.stream().map(Parser::firstSet).reduce(Utils::union).get()
+        );
+        this.ps = (Parser<I, A>[])ps.toArray(new Parser<?, ?>[0]);
+        this.dispatch = lazy(() -> {
+            final List<SymSet<I>> firstSets = new ArrayList<SymSet<I>>(this.ps.length);
+            for (Parser<I, A> p : this.ps) {
+                firstSets.add(p.firstSet().apply());
+            }
+            return Dispatch.of(firstSets);
+        });
+        this.emptyAlt = lazy(() -> {
+            for (int i = 0; i < this.ps.length; ++i) {
+                if (this.ps[i].acceptsEmpty().apply()) {
+                    return i;
+                }
+            }
+            return -1;
+        });
+    }
+
+    @Override
+    Parser<I, A> compile(Compiler c) {
+        return c.choice(this, ps);
+    }
+
+    @Override
+    public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+        if (in.isEof()) {
+            final int alt = emptyAlt.apply();
+            return alt == -1 ? failureEof(this, in) : ps[alt].apply(in, follow);
+        } else {
+            final int alt = dispatch.apply().select(in);
+            if (alt != -1) {
+                return ps[alt].apply(in, follow);
+            } else if (in.matches(follow)) {
+                final int altE = emptyAlt.apply();
+                if (altE != -1) {
+                    return ps[altE].apply(in, follow);
+                }
+            }
+            return failure(this, in);
+        }
+    }
+}
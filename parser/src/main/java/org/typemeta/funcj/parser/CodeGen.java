@@ -0,0 +1,377 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.IList;
+
+import javax.tools.*;
+import java.io.*;
+import java.net.*;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A code-generating backend, which translates a parser into a specialised JVM class.
+ * <p>
+ * The parser is first compiled (see {@link Parser#compile()}),
+ * and then each combinator in the compiled graph is translated into a method of the generated class,
+ * in which the choice dispatch, sequencing and loops are expressed directly,
+ * and the calls to other combinators are direct method calls.
+ * Consequently the JIT compiler sees monomorphic call sites which it can inline,
+ * rather than the megamorphic {@link Parser#apply(Input, SymSet)} calls of the interpreted graph.
+ * Leaf parsers, and the functions passed to {@code map}, are passed to the generated class as constants.
+ * <p>
+ * The generated source is compiled via the {@link javax.tools} API,
+ * which requires a JDK rather than a JRE.
+ * If no system Java compiler is available then the compiled, interpreted, parser is used instead.
+ */
+public final class CodeGen {
+
+    private static final String PACKAGE = "org.typemeta.funcj.parser.generated";
+
+    private static final AtomicInteger classCounter = new AtomicInteger();
+
+    /**
+     * Indicate if code generation is available,
+     * i.e. if the system Java compiler is available.
+     * @return          true if code generation is available
+     */
+    public static boolean isAvailable() {
+        return ToolProvider.getSystemJavaCompiler() != null;
+    }
+
+    /**
+     * Generate a specialised class for a parser, and return an instance of it.
+     * All {@link Ref}s in the parser must have been initialised.
+     * @param p         the parser
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the generated parser,
+     *                  or the compiled parser if code generation is not available
+     */
+    @SuppressWarnings("unchecked")
+    public static <I, A> Parser<I, A> generate(Parser<I, A> p) {
+        final Parser<I, A> compiled = p.compile();
+        final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null || !(compiled instanceof Compiler.Root)) {
+            return compiled;
+        }
+
+        final CodeGen gen = new CodeGen((Compiler.Root<I, A>)compiled);
+        final String source = gen.source();
+        final Class<?> clazz = compile(javac, gen.className, source);
+        try {
+            return (Parser<I, A>)clazz
+                    .getConstructor(Object[].class)
+                    .newInstance((Object)gen.constants.toArray());
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("Failed to instantiate generated parser " + gen.className, ex);
+        }
+    }
+
+    private final Compiler.Root<?, ?> root;
+
+    private final String className;
+
+    private final Map<Object, Integer> constantIds = new IdentityHashMap<Object, Integer>();
+
+    private final List<Object> constants = new ArrayList<Object>();
+
+    private final List<String> constantTypes = new ArrayList<String>();
+
+    private final Map<Parser<?, ?>, Integer> nodeIds = new IdentityHashMap<Parser<?, ?>, Integer>();
+
+    private final List<Parser<?, ?>> nodes = new ArrayList<Parser<?, ?>>();
+
+    private CodeGen(Compiler.Root<?, ?> root) {
+        this.root = root;
+        this.className = "Parser" + classCounter.incrementAndGet();
+    }
+
+    private String constant(Object value, String type) {
+        Integer id = constantIds.get(value);
+        if (id == null) {
+            id = constants.size();
+            constantIds.put(value, id);
+            constants.add(value);
+            constantTypes.add(type);
+        }
+        return "c" + id;
+    }
+
+    private String call(Parser<?, ?> p, String in, String follow) {
+        if (p instanceof Compiler.Node) {
+            Integer id = nodeIds.get(p);
+            if (id == null) {
+                id = nodes.size();
+                nodeIds.put(p, id);
+                nodes.add(p);
+            }
+            return "p" + id + "(" + in + ", " + follow + ")";
+        } else {
+            return constant(p, "Parser") + ".apply(" + in + ", " + follow + ")";
+        }
+    }
+
+    private String source() {
+        // The root First Set is always constant 0, as it's passed to the super constructor.
+        constant(root.firstSet, "SymSet");
+
+        final StringBuilder methods = new StringBuilder();
+
+        methods.append("    @Override\n")
+                .append("    public Result apply(Input in, SymSet follow) {\n")
+                .append("        return ").append(call(root.p, "in", "follow")).append(";\n")
+                .append("    }\n\n");
+
+        methods.append("    @Override\n")
+                .append("    protected Result parseInput(Input in) {\n")
+                .append("        if (acceptsEmpty || (!in.isEof() && in.matches(firstSet))) {\n")
+                .append("            return ").append(call(root.pAndEof, "in", "SymSet.empty()")).append(";\n")
+                .append("        } else if (in.isEof()) {\n")
+                .append("            return Result.failureEof(in, firstSet);\n")
+                .append("        } else {\n")
+                .append("            return Result.failure(in, firstSet);\n")
+                .append("        }\n")
+                .append("    }\n");
+
+        // Generating a method may add further nodes to the list.
+        for (int i = 0; i < nodes.size(); ++i) {
+            methods.append('\n');
+            method(methods, i, nodes.get(i));
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE).append(";\n\n")
+                .append("import org.typemeta.funcj.data.IList;\n")
+                .append("import org.typemeta.funcj.functions.Functions.F;\n")
+                .append("import org.typemeta.funcj.parser.*;\n\n")
+                .append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("public final class ").append(className).append(" extends GeneratedParser {\n\n");
+
+        for (int i = 0; i < constants.size(); ++i) {
+            sb.append("    private final ").append(constantTypes.get(i)).append(" c").append(i).append(";\n");
+        }
+
+        sb.append("\n    public ").append(className).append("(Object[] c) {\n")
+                .append("        super(").append(root.acceptsEmpty).append(", (SymSet)c[0]);\n");
+        for (int i = 0; i < constants.size(); ++i) {
+            sb.append("        this.c").append(i).append(" = (").append(constantTypes.get(i)).append(")c[").append(i).append("];\n");
+        }
+        sb.append("    }\n\n");
+
+        sb.append(methods).append("}\n");
+        return sb.toString();
+    }
+
+    private void method(StringBuilder sb, int id, Parser<?, ?> node) {
+        sb.append("    private Result p").append(id).append("(Input in, SymSet follow) {\n");
+        if (node instanceof Compiler.ApNode) {
+            ap(sb, (Compiler.ApNode<?, ?, ?>)node);
+        } else if (node instanceof Compiler.SeqNode) {
+            seq(sb, (Compiler.SeqNode<?, ?>)node);
+        } else if (node instanceof Compiler.MapNode) {
+            final Compiler.MapNode<?, ?, ?> map = (Compiler.MapNode<?, ?, ?>)node;
+            sb.append("        return ").append(call(map.pa, "in", "follow"))
+                    .append(".map(").append(constant(map.f, "F")).append(");\n");
+        } else if (node instanceof Compiler.ManyNode) {
+            many(sb, (Compiler.ManyNode<?, ?>)node);
+        } else if (node instanceof Compiler.ManyTillNode) {
+            manyTill(sb, (Compiler.ManyTillNode<?, ?, ?>)node);
+        } else if (node instanceof Compiler.ChoiceNode) {
+            choice(sb, (Compiler.ChoiceNode<?, ?>)node);
+        } else {
+            sb.append("        return ").append(constant(node, "Parser")).append(".apply(in, follow);\n");
+        }
+        sb.append("    }\n");
+    }
+
+    private void ap(StringBuilder sb, Compiler.ApNode<?, ?, ?> node) {
+        final String paFirst = constant(node.paFirst, "SymSet");
+        final String followF = node.paEmpty ? "followUnion(" + paFirst + ", follow)" : paFirst;
+        sb.append("        final Result r = ").append(call(node.pf, "in", followF)).append(";\n")
+                .append("        if (!r.isSuccess()) {\n")
+                .append("            return ((Result.Failure)r).cast();\n")
+                .append("        }\n")
+                .append("        final Result.Success s = (Result.Success)r;\n")
+                .append("        final Input next = s.next();\n");
+        if (!node.paEmpty) {
+            sb.append("        if (next.isEof()) {\n")
+                    .append("            return Result.failureEof(next, ").append(paFirst).append(");\n")
+                    .append("        } else if (!next.matches(").append(paFirst).append(")) {\n")
+                    .append("            return Result.failure(next, ").append(paFirst).append(");\n")
+                    .append("        }\n");
+        }
+        sb.append("        return ").append(call(node.pa, "next", "follow")).append(".map((F)s.value());\n");
+    }
+
+    private void seq(StringBuilder sb, Compiler.SeqNode<?, ?> node) {
+        sb.append("        final Object[] rs = new Object[").append(node.ps.length).append("];\n")
+                .append("        Result r;\n");
+        for (int i = 0; i < node.ps.length; ++i) {
+            if (i > 0 && !node.spec.empty[i]) {
+                final String first = constant(node.spec.firsts[i], "SymSet");
+                sb.append("        if (in.isEof()) {\n")
+                        .append("            return Result.failureEof(in, ").append(first).append(");\n")
+                        .append("        } else if (!in.matches(").append(first).append(")) {\n")
+                        .append("            return Result.failure(in, ").append(first).append(");\n")
+                        .append("        }\n");
+            }
+            final String follows = constant(node.spec.follows[i], "SymSet");
+            final String followI = node.spec.followsEmpty[i] ? "followUnion(" + follows + ", follow)" : follows;
+            sb.append("        r = ").append(call(node.ps[i], "in", followI)).append(";\n")
+                    .append("        if (!r.isSuccess()) {\n")
+                    .append("            return ((Result.Failure)r).cast();\n")
+                    .append("        }\n")
+                    .append("        rs[").append(i).append("] = ((Result.Success)r).value();\n")
+                    .append("        in = ((Result.Success)r).next();\n");
+        }
+        sb.append("        return Result.success(").append(constant(node.f, "F")).append(".apply(rs), in);\n");
+    }
+
+    private void many(StringBuilder sb, Compiler.ManyNode<?, ?> node) {
+        final String paFirst = constant(node.paFirst, "SymSet");
+        if (node.pa instanceof SymbolParser) {
+            sb.append("        if (in instanceof CharInput) {\n")
+                    .append("            return scanMany(").append(constant(node.pa, "Parser")).append(", ")
+                    .append(paFirst).append(", in);\n")
+                    .append("        }\n");
+        }
+        sb.append("        IList acc = IList.of();\n")
+                .append("        final SymSet follow2 = followUnion(follow, ").append(paFirst).append(");\n")
+                .append("        while (!in.isEof() && in.matches(").append(paFirst).append(")) {\n")
+                .append("            final Result r = ").append(call(node.pa, "in", "follow2")).append(";\n")
+                .append("            if (!r.isSuccess()) {\n")
+                .append("                return ((Result.Failure)r).cast();\n")
+                .append("            }\n")
+                .append("            final Result.Success s = (Result.Success)r;\n")
+                .append("            acc = acc.add(s.value());\n")
+                .append("            in = s.next();\n")
+                .append("        }\n")
+                .append("        return Result.success(acc.reverse(), in);\n");
+    }
+
+    private void manyTill(StringBuilder sb, Compiler.ManyTillNode<?, ?, ?> node) {
+        final String paFirst = constant(node.paFirst, "SymSet");
+        final String endFirst = constant(node.endFirst, "SymSet");
+        final String follow2 = node.endEmpty ? "followUnion(" + endFirst + ", follow)" : endFirst;
+        sb.append("        IList acc = IList.of();\n")
+                .append("        final SymSet follow2 = ").append(follow2).append(";\n")
+                .append("        while (!in.isEof()) {\n")
+                .append("            if (in.matches(").append(endFirst).append(")) {\n")
+                .append("                final Result r = ").append(call(node.end, "in", "follow")).append(";\n")
+                .append("                if (!r.isSuccess()) {\n")
+                .append("                    return ((Result.Failure)r).cast();\n")
+                .append("                }\n")
+                .append("                in = ((Result.Success)r).next();\n")
+                .append("                break;\n")
+                .append("            } else if (in.matches(").append(paFirst).append(")) {\n")
+                .append("                final Result r = ").append(call(node.pa, "in", "follow2")).append(";\n")
+                .append("                if (!r.isSuccess()) {\n")
+                .append("                    return ((Result.Failure)r).cast();\n")
+                .append("                }\n")
+                .append("                final Result.Success s = (Result.Success)r;\n")
+                .append("                acc = acc.add(s.value());\n")
+                .append("                in = s.next();\n")
+                .append("            } else {\n")
+                .append("                break;\n")
+                .append("            }\n")
+                .append("        }\n")
+                .append("        return Result.success(acc.reverse(), in);\n");
+    }
+
+    private void choice(StringBuilder sb, Compiler.ChoiceNode<?, ?> node) {
+        final String firstSet = constant(node.firstSet, "SymSet");
+        final String dispatch = constant(node.dispatch, "Object");
+        sb.append("        if (in.isEof()) {\n");
+        if (node.emptyAlt == -1) {
+            sb.append("            return Result.failureEof(in, ").append(firstSet).append(");\n");
+        } else {
+            sb.append("            return ").append(call(node.ps[node.emptyAlt], "in", "follow")).append(";\n");
+        }
+        sb.append("        }\n")
+                .append("        switch (select(").append(dispatch).append(", in)) {\n");
+        for (int i = 0; i < node.ps.length; ++i) {
+            sb.append("            case ").append(i).append(":\n")
+                    .append("                return ").append(call(node.ps[i], "in", "follow")).append(";\n");
+        }
+        sb.append("            default:\n");
+        if (node.emptyAlt != -1) {
+            sb.append("                if (in.matches(follow)) {\n")
+                    .append("                    return ").append(call(node.ps[node.emptyAlt], "in", "follow")).append(";\n")
+                    .append("                }\n");
+        }
+        sb.append("                return Result.failure(in, ").append(firstSet).append(");\n")
+                .append("        }\n");
+    }
+
+    private static Class<?> compile(JavaCompiler javac, String className, String source) {
+        final String qualName = PACKAGE + '.' + className;
+        final Map<String, ByteArrayOutputStream> classes = new HashMap<String, ByteArrayOutputStream>();
+        final DiagnosticCollector<JavaFileObject> diags = new DiagnosticCollector<JavaFileObject>();
+
+        final JavaFileObject srcFile =
+                new SimpleJavaFileObject(URI.create("string:///" + qualName.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return source;
+                    }
+                };
+
+        final JavaFileManager fileMgr =
+                new ForwardingJavaFileManager<JavaFileManager>(javac.getStandardFileManager(diags, null, null)) {
+                    @Override
+                    public JavaFileObject getJavaFileForOutput(
+                            Location location,
+                            String name,
+                            JavaFileObject.Kind kind,
+                            FileObject sibling) {
+                        return new SimpleJavaFileObject(URI.create("bytes:///" + name.replace('.', '/') + ".class"), kind) {
+                            @Override
+                            public OutputStream openOutputStream() {
+                                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                                classes.put(name, os);
+                                return os;
+                            }
+                        };
+                    }
+                };
+
+        final List<String> options = Arrays.asList("-classpath", classPath(), "-nowarn", "-g:none");
+        final boolean ok = javac.getTask(null, fileMgr, diags, options, null, Collections.singletonList(srcFile)).call();
+        if (!ok) {
+            throw new RuntimeException("Failed to compile generated parser " + qualName + " - " + diags.getDiagnostics());
+        }
+
+        final ClassLoader loader = new ClassLoader(GeneratedParser.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                final ByteArrayOutputStream os = classes.get(name);
+                if (os == null) {
+                    return super.findClass(name);
+                } else {
+                    final byte[] bytes = os.toByteArray();
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+            }
+        };
+
+        try {
+            return loader.loadClass(qualName);
+        } catch (ClassNotFoundException ex) {
+            throw new RuntimeException("Failed to load generated parser " + qualName, ex);
+        }
+    }
+
+    private static String classPath() {
+        final Set<String> paths = new LinkedHashSet<String>();
+        for (Class<?> clazz : Arrays.asList(Parser.class, IList.class)) {
+            try {
+                paths.add(Paths.get(clazz.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (URISyntaxException | RuntimeException ex) {
+                // Fall back to the application class path.
+            }
+        }
+        paths.add(System.getProperty("java.class.path"));
+        return String.join(File.pathSeparator, paths);
+    }
+}
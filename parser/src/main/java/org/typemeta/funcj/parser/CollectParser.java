@@ -0,0 +1,315 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.*;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.Collector;
+
+import static org.typemeta.funcj.parser.Utils.*;
+
+/**
+ * A parser which repeatedly applies a parser, optionally alternating with a separator parser,
+ * and accumulates the results with a {@link Collector}
+ * (see {@link Parser#many(Collector)} and {@link Parser#sepBy(Parser, Collector)}).
+ * <p>
+ * The results are accumulated directly into the mutable container of the collector,
+ * so, unlike {@link Parser#many()}, no intermediate list is constructed.
+ * Furthermore, a repetition of a single-symbol parser (see {@link SymbolParser}) over a {@code Chr} input,
+ * such as {@code Text.manyChars(Text.alpha)} or {@code Text.ws.skipMany()},
+ * scans the input directly via a {@link CharScanner},
+ * so for array-backed inputs no input or result is constructed for each symbol.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the element parser result type
+ * @param <R>           the parser result type
+ */
+class CollectParser<I, A, R> extends ParserImpl<I, R> {
+
+    /**
+     * Apply the repetition.
+     * @param p         the element parser
+     * @param pEmpty    true if the element parser accepts empty
+     * @param pFirst    the First Set of the element parser
+     * @param sep       the separator parser, or null if there is none
+     * @param loopFirst the symbols which continue the repetition after an element (see {@link CollectParser#loopFirst})
+     * @param nonEmpty  true if at least one element is required
+     * @param collector the collector
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <A>       the element parser result type
+     * @param <R>       the parser result type
+     * @return          the parse result
+     */
+    @SuppressWarnings("unchecked")
+    static <I, A, R> Result<I, R> apply(
+            Parser<I, A> p,
+            boolean pEmpty,
+            SymSet<I> pFirst,
+            Parser<I, ?> sep,
+            SymSet<I> loopFirst,
+            boolean nonEmpty,
+            Collector<A, Object, R> collector,
+            Input<I> in,
+            SymSet<I> follow) {
+        if (sep == null && isScannable(p, in)) {
+            return scan(p, pFirst, nonEmpty, collector, in);
+        }
+
+        final Object acc = collector.supplier().get();
+        final BiConsumer<Object, A> accumulator = collector.accumulator();
+
+        if (!nonEmpty && (in.isEof() || !in.matches(pFirst))) {
+            return Result.success(collector.finisher().apply(acc), in);
+        }
+
+        final SymSet<I> follow2 = Utils.followUnion(follow, loopFirst);
+
+        Result<I, A> r = applyElement(p, pEmpty, pFirst, in, follow2);
+        while (true) {
+            if (!r.isSuccess()) {
+                return ((Result.Failure<I, A>)r).cast();
+            }
+
+            final Result.Success<I, A> succ = (Result.Success<I, A>)r;
+            accumulator.accept(acc, succ.value());
+            in = succ.next();
+
+            if (in.isEof() || !in.matches(loopFirst)) {
+                return Result.success(collector.finisher().apply(acc), in);
+            }
+
+            if (sep != null) {
+                final Result<I, ?> rs = sep.apply(in, combine(pEmpty, pFirst, follow2));
+                if (!rs.isSuccess()) {
+                    return ((Result.Failure<I, ?>)rs).cast();
+                }
+                in = ((Result.Success<I, ?>)rs).next();
+            }
+
+            r = applyElement(p, pEmpty, pFirst, in, follow2);
+        }
+    }
+
+    /**
+     * Return the set of symbols which continue a repetition after an element,
+     * which is the First Set of the separator,
+     * together with the First Set of the element parser if the separator accepts empty.
+     * If there is no separator then it is the First Set of the element parser.
+     * @param pFirst    the First Set of the element parser
+     * @param sep       the separator parser, or null if there is none
+     * @param <I>       the input stream symbol type
+     * @return          the symbols which continue the repetition
+     */
+    static <I> SymSet<I> loopFirst(SymSet<I> pFirst, Parser<I, ?> sep) {
+        if (sep == null) {
+            return pFirst;
+        } else {
+            return combine(sep.acceptsEmpty().apply(), sep.firstSet().apply(), pFirst);
+        }
+    }
+
+    /**
+     * Return true if a repetition of the given parser over the given input can be applied via
+     * {@link CollectParser#scan}, i.e. if the parser is a single-symbol parser and the input is a {@code Chr} input.
+     * @param p         the element parser
+     * @param in        the input stream
+     * @return          true if the repetition can be scanned
+     */
+    static boolean isScannable(Parser<?, ?> p, Input<?> in) {
+        return p instanceof SymbolParser && in instanceof CharInput;
+    }
+
+    /**
+     * Apply a repetition of a single-symbol parser by scanning the input directly
+     * (see {@link CollectParser#isScannable}).
+     * @param p         the element parser
+     * @param pFirst    the First Set of the element parser
+     * @param nonEmpty  true if at least one element is required
+     * @param collector the collector
+     * @param in        the input stream
+     * @param <I>       the input stream symbol type
+     * @param <A>       the element parser result type
+     * @param <R>       the parser result type
+     * @return          the parse result
+     */
+    @SuppressWarnings("unchecked")
+    static <I, A, R> Result<I, R> scan(
+            Parser<I, A> p,
+            SymSet<I> pFirst,
+            boolean nonEmpty,
+            Collector<? super A, ?, R> collector,
+            Input<I> in) {
+        final SymbolParser<Chr, A> sp = (SymbolParser<Chr, A>)p;
+        final SymSet<Chr> first = (SymSet<Chr>)pFirst;
+        final Collector<A, Object, R> coll = (Collector<A, Object, R>)collector;
+        final Object acc = coll.supplier().get();
+        final BiConsumer<Object, A> accumulator = coll.accumulator();
+
+        final CharScanner sc = CharScanner.of((Input<Chr>)in);
+        while (!sc.isEof()) {
+            final char c = sc.peek();
+            if (!first.matchesChar(c)) {
+                break;
+            }
+            accumulator.accept(acc, sp.value(Chr.valueOf(c)));
+            sc.advance();
+        }
+
+        if (nonEmpty && sc.count() == 0) {
+            return sc.isEof() ? Result.failureEof(in, pFirst) : Result.failure(in, pFirst);
+        } else {
+            return Result.success(coll.finisher().apply(acc), (Input<I>)sc.input());
+        }
+    }
+
+    private static <I, A> Result<I, A> applyElement(
+            Parser<I, A> p,
+            boolean pEmpty,
+            SymSet<I> pFirst,
+            Input<I> in,
+            SymSet<I> follow) {
+        if (!pEmpty) {
+            if (in.isEof()) {
+                return Result.failureEof(in, pFirst);
+            } else if (!in.matches(pFirst)) {
+                return Result.failure(in, pFirst);
+            }
+        }
+        return p.apply(in, follow);
+    }
+
+    /**
+     * A collector which accumulates {@code int} values into an array, without boxing the accumulated values.
+     * @param f         the function which converts an element to an {@code int}
+     * @param <A>       the element type
+     * @return          the collector
+     */
+    static <A> Collector<A, ?, int[]> toIntArray(ToIntFunction<? super A> f) {
+        final class IntArrayBuilder {
+            int[] values = new int[16];
+            int size = 0;
+
+            void add(int i) {
+                if (size == values.length) {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+                values[size++] = i;
+            }
+
+            IntArrayBuilder addAll(IntArrayBuilder rhs) {
+                for (int i = 0; i < rhs.size; ++i) {
+                    add(rhs.values[i]);
+                }
+                return this;
+            }
+        }
+
+        return Collector.of(
+                IntArrayBuilder::new,
+                (b, a) -> b.add(f.applyAsInt(a)),
+                IntArrayBuilder::addAll,
+                b -> Arrays.copyOf(b.values, b.size));
+    }
+
+    /**
+     * A collector which appends {@code Chr} values to a {@link StringBuilder},
+     * and returns the resulting string.
+     */
+    static final Collector<Chr, StringBuilder, String> TO_STRING =
+            Collector.of(
+                    StringBuilder::new,
+                    (sb, c) -> sb.append(c.charValue()),
+                    StringBuilder::append,
+                    StringBuilder::toString);
+
+    /**
+     * A collector which accumulates the values into an {@link IList}.
+     * @param <A>       the element type
+     * @return          the collector
+     */
+    static <A> Collector<A, ?, IList<A>> toIList() {
+        final class ListBuilder {
+            // The elements in reverse order.
+            IList<A> list = IList.empty();
+
+            ListBuilder addAll(ListBuilder rhs) {
+                list = IList.concat(rhs.list, list);
+                return this;
+            }
+        }
+
+        return Collector.of(
+                ListBuilder::new,
+                (b, a) -> b.list = b.list.add(a),
+                ListBuilder::addAll,
+                b -> b.list.reverse());
+    }
+
+    /**
+     * A collector which discards the values.
+     * @param <A>       the element type
+     * @return          the collector
+     */
+    static <A> Collector<A, ?, Unit> discard() {
+        return Collector.of(
+                () -> Unit.UNIT,
+                (u, a) -> {},
+                (u1, u2) -> u1);
+    }
+
+    private final Parser<I, A> p;
+
+    private final Parser<I, ?> sep;
+
+    private final boolean nonEmpty;
+
+    private final Collector<A, Object, R> collector;
+
+    @SuppressWarnings("unchecked")
+    CollectParser(Parser<I, A> p, Parser<I, ?> sep, boolean nonEmpty, Collector<? super A, ?, R> collector) {
+        super(nonEmpty ? p.acceptsEmpty() : LTRUE, p.firstSet());
+        // A repetition of a parser that accepts empty would loop forever at parsing time,
+        // unless there is a separator which doesn't accept empty.
+        if (knownToAcceptEmpty(p) && (sep == null || knownToAcceptEmpty(sep))) {
+            throw new RuntimeException("Cannot construct a many parser from one that accepts empty");
+        }
+        this.p = p;
+        this.sep = sep;
+        this.nonEmpty = nonEmpty;
+        this.collector = (Collector<A, Object, R>)Objects.requireNonNull(collector);
+    }
+
+    /**
+     * Return true if the parser accepts empty.
+     * An uninitialised {@link Ref} will throw if we call {@code acceptsEmpty},
+     * so for that particular case we have to skip the check, and return false.
+     */
+    private static boolean knownToAcceptEmpty(Parser<?, ?> p) {
+        if (p instanceof Ref && !((Ref<?, ?>)p).initialised()) {
+            return false;
+        } else {
+            return p.acceptsEmpty().apply();
+        }
+    }
+
+    @Override
+    Parser<I, R> compile(Compiler c) {
+        return c.collect(this, p, sep, nonEmpty, collector);
+    }
+
+    @Override
+    public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+        final SymSet<I> pFirst = p.firstSet().apply();
+        return apply(
+                p,
+                p.acceptsEmpty().apply(),
+                pFirst,
+                sep,
+                loopFirst(pFirst, sep),
+                nonEmpty,
+                collector,
+                in,
+                follow);
+    }
+}
@@ -79,7 +79,12 @@ public static <I> Parser<I, I> value(I val) {
      * @return          a parser that succeeds if the next input symbol equals the given {@code value}
      */
     public static <I, A> Parser<I, A> value(I val, A res) {
-        return new ParserImpl<I, A>(LFALSE, () -> SymSet.value(val)) {
+        return new SymbolParser<I, A>(SymSet.value(val)) {
+            @Override
+            A value(I sym) {
+                return res;
+            }
+
             @Override
             public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
                 return Result.success(res, in.next());
@@ -95,10 +100,10 @@ public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
      * @return          a parser that succeeds if the next input symbol satisfies the given predicate.
      */
     public static <I> Parser<I, I> satisfy(String name, Functions.Predicate<I> pred) {
-        return new ParserImpl<I, I>(LFALSE, () -> SymSet.pred(name, pred)) {
+        return new SymbolParser<I, I>(SymSet.pred(name, pred)) {
             @Override
-            public Result<I, I> apply(Input<I> in, SymSet<I> follow) {
-                return Result.success(in.get(), in.next());
+            I value(I sym) {
+                return sym;
             }
         };
     }
@@ -0,0 +1,549 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.IList;
+import org.typemeta.funcj.functions.Functions.F;
+import org.typemeta.funcj.functions.Functions.F2;
+
+import java.util.*;
+import java.util.stream.Collector;
+
+import static org.typemeta.funcj.parser.Utils.*;
+
+/**
+ * Compiles a parser graph into an equivalent frozen form (see {@link Parser#compile()}).
+ * <p>
+ * Each combinator node is replaced by a node which holds its children directly,
+ * with all {@link Ref}s resolved,
+ * and which holds the {@code acceptsEmpty} flags and First Sets it requires as plain fields,
+ * so that applying the parser involves no lazy lookups.
+ * Leaf parsers, which only refer to their own properties, are retained as is.
+ */
+final class Compiler {
+
+    static <I, A> Parser<I, A> compile(Parser<I, A> p) {
+        return compile(p, null);
+    }
+
+    /**
+     * Compile a parser, where the {@link Parser#named(String)} parsers notify a listener.
+     * @param p         the parser
+     * @param listener  the listener, or null if the named parsers are to be compiled away
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the compiled parser
+     */
+    static <I, A> Parser<I, A> compile(Parser<I, A> p, ParseListener listener) {
+        if (p instanceof Root) {
+            if (listener == null) {
+                return p;
+            } else {
+                p = ((Root<I, A>)p).orig;
+            }
+        }
+
+        final Compiler c = new Compiler(listener);
+        final Parser<I, A> root = c.apply(p);
+        final Parser<I, A> rootAndEof = c.apply(p.andL(Combinators.eof()));
+        return new Root<I, A>(p, root, rootAndEof);
+    }
+
+    static <I, A> PreparedParser<I, A> prepare(Parser<I, A> p) {
+        // compile always returns a Root - either p itself, or a newly constructed one.
+        final Root<I, A> root = (Root<I, A>)compile(p);
+        return new PreparedParser<I, A>(root.p, root.pAndEof, root.acceptsEmpty, root.firstSet);
+    }
+
+    private final Map<Parser<?, ?>, Parser<?, ?>> compiled = new IdentityHashMap<Parser<?, ?>, Parser<?, ?>>();
+
+    private final ParseListener listener;
+
+    private Compiler(ParseListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Compile a parser, or return the compiled form if it has already been compiled.
+     * @param p         the parser
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the compiled parser
+     */
+    @SuppressWarnings("unchecked")
+    <I, A> Parser<I, A> apply(Parser<I, A> p) {
+        while (p instanceof Ref) {
+            p = ((Ref<I, A>)p).impl();
+        }
+
+        final Parser<I, A> cp = (Parser<I, A>)compiled.get(p);
+        if (cp != null) {
+            return cp;
+        } else if (p instanceof ParserImpl) {
+            final Parser<I, A> cp2 = ((ParserImpl<I, A>)p).compile(this);
+            compiled.put(p, cp2);
+            return cp2;
+        } else {
+            compiled.put(p, p);
+            return p;
+        }
+    }
+
+    // Nodes are registered before their children are compiled,
+    // so that cycles in the graph (formed via Refs) resolve to the node under construction.
+    private <I, A, N extends Node<I, A>> N register(Parser<I, A> p, N node) {
+        compiled.put(p, node);
+        return node;
+    }
+
+    <I, A, B> Parser<I, B> ap(Parser<I, B> p, Parser<I, F<A, B>> pf, Parser<I, A> pa) {
+        final ApNode<I, A, B> node = register(p, new ApNode<I, A, B>(p, pa));
+        node.pf = apply(pf);
+        node.pa = apply(pa);
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    <I, R> Parser<I, R> seq(Parser<I, R> p, Parser<I, ?>[] ps, F<Object[], R> f) {
+        final SeqNode<I, R> node = register(p, new SeqNode<I, R>(p, ps, f));
+        for (int i = 0; i < ps.length; ++i) {
+            node.ps[i] = apply((Parser<I, Object>)ps[i]);
+        }
+        return node;
+    }
+
+    <I, A, B> Parser<I, B> map(Parser<I, B> p, Parser<I, A> pa, F<A, B> f) {
+        final MapNode<I, A, B> node = register(p, new MapNode<I, A, B>(p, f));
+        node.pa = apply(pa);
+        return node;
+    }
+
+    <I, A> Parser<I, IList<A>> many(Parser<I, IList<A>> p, Parser<I, A> pa) {
+        final ManyNode<I, A> node = register(p, new ManyNode<I, A>(p, pa));
+        node.pa = apply(pa);
+        return node;
+    }
+
+    <I, A, B> Parser<I, IList<A>> manyTill(Parser<I, IList<A>> p, Parser<I, A> pa, Parser<I, B> end) {
+        final ManyTillNode<I, A, B> node = register(p, new ManyTillNode<I, A, B>(p, pa, end));
+        node.pa = apply(pa);
+        node.end = apply(end);
+        return node;
+    }
+
+    <I, A> Parser<I, A> choice(Parser<I, A> p, Parser<I, A>[] ps) {
+        final ChoiceNode<I, A> node = register(p, new ChoiceNode<I, A>(p, ps));
+        for (int i = 0; i < ps.length; ++i) {
+            node.ps[i] = apply(ps[i]);
+        }
+        return node;
+    }
+
+    <I, A> Parser<I, A> memo(Parser<I, A> p, Parser<I, A> pa, int capacity) {
+        final MemoNode<I, A> node = register(p, new MemoNode<I, A>(p, capacity));
+        node.pa = apply(pa);
+        return node;
+    }
+
+    <I, A> Parser<I, A> named(Parser<I, A> p, Parser<I, A> pa, String name) {
+        if (listener == null) {
+            // Without a listener the name has no effect, so the child is used in place of the named parser.
+            // Any cycle back to the named parser passes through the child, which is registered first.
+            return apply(pa);
+        } else {
+            final NamedNode<I, A> node = register(p, new NamedNode<I, A>(p, name, listener));
+            node.pa = apply(pa);
+            return node;
+        }
+    }
+
+    <I, A> Parser<I, A> orElse(Parser<I, A> p, Parser<I, A> lhs, Parser<I, A> rhs) {
+        final OrElseNode<I, A> node = register(p, new OrElseNode<I, A>(p));
+        node.lhs = apply(lhs);
+        node.rhs = apply(rhs);
+        return node;
+    }
+
+    <I, A, R> Parser<I, R> collect(
+            Parser<I, R> p,
+            Parser<I, A> pa,
+            Parser<I, ?> sep,
+            boolean nonEmpty,
+            Collector<A, Object, R> collector) {
+        final CollectNode<I, A, R> node = register(p, new CollectNode<I, A, R>(p, pa, sep, nonEmpty, collector));
+        node.pa = apply(pa);
+        node.sep = sep == null ? null : apply(sep);
+        return node;
+    }
+
+    <I, A, R> Parser<I, R> span(Parser<I, R> p, Parser<I, A> pa, F2<Input<I>, Input<I>, R> f) {
+        final SpanNode<I, A, R> node = register(p, new SpanNode<I, A, R>(p, f));
+        node.pa = apply(pa);
+        return node;
+    }
+
+    <I, A> Parser<I, A> pratt(Parser<I, A> p, Parser<I, A> operand, List<OperatorTable.Entry<I>> entries) {
+        final PrattNode<I, A> node = register(p, new PrattNode<I, A>(p, operand, entries));
+        node.operand = apply(operand);
+        for (int i = 0; i < node.ops.length; ++i) {
+            node.ops[i] = apply(entries.get(i).op);
+        }
+        return node;
+    }
+
+    /**
+     * Base class for compiled nodes,
+     * which holds the properties of the original parser as plain fields.
+     */
+    abstract static class Node<I, A> extends ParserImpl<I, A> {
+        final boolean acceptsEmpty;
+        final SymSet<I> firstSet;
+
+        Node(Parser<I, A> p) {
+            this(p.acceptsEmpty().apply(), p.firstSet().apply());
+        }
+
+        private Node(boolean acceptsEmpty, SymSet<I> firstSet) {
+            super(acceptsEmpty ? LTRUE : LFALSE, () -> firstSet);
+            this.acceptsEmpty = acceptsEmpty;
+            this.firstSet = firstSet;
+        }
+
+        @Override
+        Parser<I, A> compile(Compiler c) {
+            return this;
+        }
+    }
+
+    /**
+     * The root of a compiled graph,
+     * which retains a compiled form of the parser followed by {@code eof},
+     * for use by {@link Parser#parse(Input)}.
+     * <p>
+     * The child fields of the nodes are assigned after construction, to allow for cycles,
+     * however all nodes are reachable from the final fields of the root,
+     * which guarantees that other threads observe the fully assigned graph.
+     */
+    static final class Root<I, A> extends Node<I, A> {
+        final Parser<I, A> orig;
+        final Parser<I, A> p;
+        final Parser<I, A> pAndEof;
+
+        Root(Parser<I, A> orig, Parser<I, A> p, Parser<I, A> pAndEof) {
+            super(orig);
+            this.orig = orig;
+            this.p = p;
+            this.pAndEof = pAndEof;
+        }
+
+        @Override
+        public Result<I, A> parse(Input<I> in) {
+            final MemoTable.Scope scope = MemoTable.Scope.enter();
+            try {
+                if (acceptsEmpty) {
+                    return pAndEof.apply(in, SymSet.empty());
+                } else if (in.isEof()) {
+                    return Result.failureEof(in, firstSet);
+                } else if (in.matches(firstSet)) {
+                    return pAndEof.apply(in, SymSet.empty());
+                } else {
+                    return Result.failure(in, firstSet);
+                }
+            } finally {
+                scope.exit();
+            }
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            return p.apply(in, follow);
+        }
+    }
+
+    static final class ApNode<I, A, B> extends Node<I, B> {
+        final boolean paEmpty;
+        final SymSet<I> paFirst;
+        Parser<I, F<A, B>> pf;
+        Parser<I, A> pa;
+
+        ApNode(Parser<I, B> p, Parser<I, A> pa) {
+            super(p);
+            this.paEmpty = pa.acceptsEmpty().apply();
+            this.paFirst = pa.firstSet().apply();
+        }
+
+        @Override
+        public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
+            final SymSet<I> followF = combine(paEmpty, paFirst, follow);
+
+            final Result<I, F<A, B>> r = pf.apply(in, followF);
+
+            if (r.isSuccess()) {
+                final Result.Success<I, F<A, B>> succ = (Result.Success<I, F<A, B>>) r;
+                final Input<I> next = succ.next();
+                if (!paEmpty) {
+                    if (next.isEof()) {
+                        return Result.failureEof(next, paFirst);
+                    } else if (!next.matches(paFirst)) {
+                        return Result.failure(next, paFirst);
+                    }
+                }
+
+                return pa.apply(next, follow).map(succ.value());
+            } else {
+                return ((Result.Failure<I, F<A, B>>) r).cast();
+            }
+        }
+    }
+
+    static final class SeqNode<I, R> extends Node<I, R> {
+        final SeqParser.Spec<I> spec;
+        final F<Object[], R> f;
+        final Parser<I, ?>[] ps;
+
+        @SuppressWarnings("unchecked")
+        SeqNode(Parser<I, R> p, Parser<I, ?>[] ps, F<Object[], R> f) {
+            super(p);
+            this.spec = new SeqParser.Spec<I>(ps);
+            this.f = f;
+            this.ps = (Parser<I, ?>[])new Parser<?, ?>[ps.length];
+        }
+
+        @Override
+        public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+            return SeqParser.apply(spec, ps, f, in, follow);
+        }
+    }
+
+    static final class MapNode<I, A, B> extends Node<I, B> {
+        final F<A, B> f;
+        Parser<I, A> pa;
+
+        MapNode(Parser<I, B> p, F<A, B> f) {
+            super(p);
+            this.f = f;
+        }
+
+        @Override
+        public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
+            return pa.apply(in, follow).map(f);
+        }
+    }
+
+    static final class ManyNode<I, A> extends Node<I, IList<A>> {
+        final SymSet<I> paFirst;
+        Parser<I, A> pa;
+
+        ManyNode(Parser<I, IList<A>> p, Parser<I, A> pa) {
+            super(p);
+            this.paFirst = pa.firstSet().apply();
+        }
+
+        @Override
+        public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
+            if (CollectParser.isScannable(pa, in)) {
+                return CollectParser.scan(pa, paFirst, false, CollectParser.toIList(), in);
+            }
+
+            IList<A> acc = IList.of();
+            final SymSet<I> follow2 = Utils.followUnion(follow, paFirst);
+            while (!in.isEof() && in.matches(paFirst)) {
+                final Result<I, A> r = pa.apply(in, follow2);
+                if (r.isSuccess()) {
+                    final Result.Success<I, A> succ = (Result.Success<I, A>) r;
+                    acc = acc.add(succ.value());
+                    in = succ.next();
+                } else {
+                    return ((Result.Failure<I, A>)r).cast();
+                }
+            }
+            return Result.success(acc.reverse(), in);
+        }
+    }
+
+    static final class ManyTillNode<I, A, B> extends Node<I, IList<A>> {
+        final SymSet<I> paFirst;
+        final boolean endEmpty;
+        final SymSet<I> endFirst;
+        Parser<I, A> pa;
+        Parser<I, B> end;
+
+        ManyTillNode(Parser<I, IList<A>> p, Parser<I, A> pa, Parser<I, B> end) {
+            super(p);
+            this.paFirst = pa.firstSet().apply();
+            this.endEmpty = end.acceptsEmpty().apply();
+            this.endFirst = end.firstSet().apply();
+        }
+
+        @Override
+        public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
+            IList<A> acc = IList.of();
+            final SymSet<I> follow2 = combine(endEmpty, endFirst, follow);
+            while (true) {
+                if (!in.isEof()) {
+                    if (in.matches(endFirst)) {
+                        final Result<I, B> r = end.apply(in, follow);
+                        if (r.isSuccess()) {
+                            final Result.Success<I, B> succ = (Result.Success<I, B>) r;
+                            in = succ.next();
+                        } else {
+                            return ((Result.Failure<I, B>)r).cast();
+                        }
+                    } else if (in.matches(paFirst)) {
+                        final Result<I, A> r = pa.apply(in, follow2);
+                        if (r.isSuccess()) {
+                            final Result.Success<I, A> succ = (Result.Success<I, A>) r;
+                            acc = acc.add(succ.value());
+                            in = succ.next();
+                            continue;
+                        } else {
+                            return ((Result.Failure<I, A>)r).cast();
+                        }
+                    }
+                }
+                return Result.success(acc.reverse(), in);
+            }
+        }
+    }
+
+    static final class ChoiceNode<I, A> extends Node<I, A> {
+        final Dispatch<I> dispatch;
+        final int emptyAlt;
+        final Parser<I, A>[] ps;
+
+        ChoiceNode(Parser<I, A> p, Parser<I, A>[] ps) {
+            super(p);
+            final List<SymSet<I>> firstSets = new ArrayList<SymSet<I>>(ps.length);
+            int emptyAlt = -1;
+            for (int i = 0; i < ps.length; ++i) {
+                firstSets.add(ps[i].firstSet().apply());
+                if (emptyAlt == -1 && ps[i].acceptsEmpty().apply()) {
+                    emptyAlt = i;
+                }
+            }
+            this.dispatch = Dispatch.of(firstSets);
+            this.emptyAlt = emptyAlt;
+            this.ps = ps.clone();
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            if (in.isEof()) {
+                return emptyAlt == -1 ? Result.failureEof(in, firstSet) : ps[emptyAlt].apply(in, follow);
+            } else {
+                final int alt = dispatch.select(in);
+                if (alt != -1) {
+                    return ps[alt].apply(in, follow);
+                } else if (emptyAlt != -1 && in.matches(follow)) {
+                    return ps[emptyAlt].apply(in, follow);
+                } else {
+                    return Result.failure(in, firstSet);
+                }
+            }
+        }
+    }
+
+    static final class MemoNode<I, A> extends Node<I, A> {
+        final int capacity;
+        Parser<I, A> pa;
+
+        MemoNode(Parser<I, A> p, int capacity) {
+            super(p);
+            MemoParser.checkCapacity(capacity);
+            this.capacity = capacity;
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            return in.memo(this, capacity, pa, follow);
+        }
+    }
+
+    static final class NamedNode<I, A> extends Node<I, A> {
+        final String name;
+        final ParseListener listener;
+        Parser<I, A> pa;
+
+        NamedNode(Parser<I, A> p, String name, ParseListener listener) {
+            super(p);
+            this.name = name;
+            this.listener = listener;
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            return NamedParser.apply(listener, name, pa, in, follow);
+        }
+    }
+
+    static final class OrElseNode<I, A> extends Node<I, A> {
+        Parser<I, A> lhs;
+        Parser<I, A> rhs;
+
+        OrElseNode(Parser<I, A> p) {
+            super(p);
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            try (Input.Mark<I> mark = in.mark()) {
+                final Result<I, A> r = lhs.apply(in, follow);
+                return r.isSuccess() ? r : rhs.apply(mark.reset(), follow);
+            }
+        }
+    }
+
+    static final class CollectNode<I, A, R> extends Node<I, R> {
+        final boolean paEmpty;
+        final SymSet<I> paFirst;
+        final SymSet<I> loopFirst;
+        final boolean nonEmpty;
+        final Collector<A, Object, R> collector;
+        Parser<I, A> pa;
+        Parser<I, ?> sep;
+
+        CollectNode(Parser<I, R> p, Parser<I, A> pa, Parser<I, ?> sep, boolean nonEmpty, Collector<A, Object, R> collector) {
+            super(p);
+            this.paEmpty = pa.acceptsEmpty().apply();
+            this.paFirst = pa.firstSet().apply();
+            this.loopFirst = CollectParser.loopFirst(paFirst, sep);
+            this.nonEmpty = nonEmpty;
+            this.collector = collector;
+        }
+
+        @Override
+        public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+            return CollectParser.apply(pa, paEmpty, paFirst, sep, loopFirst, nonEmpty, collector, in, follow);
+        }
+    }
+
+    static final class SpanNode<I, A, R> extends Node<I, R> {
+        final F2<Input<I>, Input<I>, R> f;
+        Parser<I, A> pa;
+
+        SpanNode(Parser<I, R> p, F2<Input<I>, Input<I>, R> f) {
+            super(p);
+            this.f = f;
+        }
+
+        @Override
+        public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+            return SpanParser.apply(pa, f, in, follow);
+        }
+    }
+
+    static final class PrattNode<I, A> extends Node<I, A> {
+        final PrattParser.Spec<I> spec;
+        final Parser<I, ?>[] ops;
+        Parser<I, A> operand;
+
+        PrattNode(Parser<I, A> p, Parser<I, A> operand, List<OperatorTable.Entry<I>> entries) {
+            super(p);
+            this.spec = new PrattParser.Spec<I>(operand, entries);
+            this.ops = PrattParser.ops(entries);
+        }
+
+        @Override
+        public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+            return PrattParser.apply(spec, operand, ops, in, follow);
+        }
+    }
+}
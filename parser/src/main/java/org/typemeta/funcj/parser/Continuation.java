@@ -0,0 +1,588 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.IList;
+import org.typemeta.funcj.functions.Functions.F;
+import org.typemeta.funcj.functions.Functions.F2;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import static org.typemeta.funcj.parser.Utils.*;
+
+/**
+ * The state of a parse which can be suspended when it requires more input, and later resumed
+ * (see {@link PushParser}).
+ * <p>
+ * The parse is applied to the compiled form of the parser (see {@link Compiler}),
+ * where the structural nodes (sequences, choices, repetitions, and so on)
+ * are evaluated via an explicit stack of frames, rather than via the Java call stack.
+ * When the parse reads beyond the buffered input, the input throws {@link PushParser.Incomplete},
+ * which abandons the current step, while the stack of frames is retained.
+ * When more input arrives the parse resumes with the abandoned step,
+ * rather than re-parsing the value from its start.
+ * Each step reads the input before it modifies the stack, so an abandoned step can safely be repeated.
+ * <p>
+ * Leaf parsers (e.g. {@link Text#intr}), and the nodes which aren't evaluated via frames
+ * (operator tables, and parsers which aren't compiled into nodes),
+ * are re-applied from their start when the parse resumes.
+ * Consequently, only the token which straddles the end of the buffered input is re-read.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+final class Continuation<I, A> {
+
+    /**
+     * A node which is in progress, awaiting the result of a child parser.
+     */
+    abstract static class Frame<I> {
+        /**
+         * Resume the frame with the result of the child parser,
+         * by either applying a further child parser, or popping the frame and returning a result.
+         * @param k         the continuation
+         * @param r         the result of the child parser
+         */
+        abstract void resume(Continuation<I, ?> k, Result<I, Object> r);
+    }
+
+    private final Compiler.Root<I, A> root;
+
+    private final ArrayDeque<Frame<I>> stack = new ArrayDeque<Frame<I>>();
+
+    // The memo tables for the value being parsed.
+    private final Map<Object, MemoTable<I, Object>> memoTables = new IdentityHashMap<Object, MemoTable<I, Object>>();
+
+    private boolean active = false;
+
+    // The next step - either the parser to apply, or, if the parser is null, the result to return to the top frame.
+    private Parser<I, Object> parser;
+    private Input<I> in;
+    private SymSet<I> follow;
+    private Result<I, Object> result;
+
+    /**
+     * Construct a continuation for the given parser.
+     * The parser is compiled, unless it already has been.
+     * @param parser    the parser
+     */
+    Continuation(Parser<I, A> parser) {
+        // compile always returns a Root - either the parser itself, or a newly constructed one.
+        this.root = (Compiler.Root<I, A>)Compiler.compile(parser);
+    }
+
+    /**
+     * Return true if a parse has been started, and hasn't yet completed.
+     * @return          true if a parse is in progress
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Start parsing a value at the given input.
+     * @param in        the input
+     */
+    void start(Input<I> in) {
+        stack.clear();
+        memoTables.clear();
+        this.active = true;
+        this.parser = null;
+        this.in = in;
+        this.follow = null;
+        this.result = null;
+    }
+
+    /**
+     * Run the parse, until it either completes, or requires more input.
+     * @return          the parse result
+     * @throws PushParser.Incomplete if more input is required, in which case the parse can be resumed later
+     */
+    @SuppressWarnings("unchecked")
+    Result<I, A> resume() {
+        if (parser == null && result == null) {
+            // As with Parser.parse, the First Set of the root parser is checked before it is applied.
+            if (!root.acceptsEmpty) {
+                if (in.isEof()) {
+                    return complete(Result.failureEof(in, root.firstSet));
+                } else if (!in.matches(root.firstSet)) {
+                    return complete(Result.failure(in, root.firstSet));
+                }
+            }
+            call(root.p, in, SymSet.empty());
+        }
+
+        while (true) {
+            if (parser != null) {
+                enter(parser, in, follow);
+            } else if (stack.isEmpty()) {
+                return complete((Result<I, A>)(Result<I, ?>)result);
+            } else {
+                stack.peek().resume(this, result);
+            }
+        }
+    }
+
+    private Result<I, A> complete(Result<I, A> r) {
+        stack.clear();
+        memoTables.clear();
+        active = false;
+        parser = null;
+        in = null;
+        follow = null;
+        result = null;
+        return r;
+    }
+
+    /**
+     * Set the next step to be the application of a parser.
+     */
+    @SuppressWarnings("unchecked")
+    void call(Parser<I, ?> p, Input<I> in, SymSet<I> follow) {
+        this.parser = (Parser<I, Object>)p;
+        this.in = in;
+        this.follow = follow;
+        this.result = null;
+    }
+
+    /**
+     * Set the next step to be the return of a result to the top frame.
+     */
+    @SuppressWarnings("unchecked")
+    void ret(Result<I, ?> r) {
+        this.parser = null;
+        this.in = null;
+        this.follow = null;
+        this.result = (Result<I, Object>)r;
+    }
+
+    /**
+     * Pop the top frame, and set the next step to be the return of a result to the frame below it.
+     */
+    void pop(Result<I, ?> r) {
+        stack.pop();
+        ret(r);
+    }
+
+    void push(Frame<I> frame, Parser<I, ?> p, Input<I> in, SymSet<I> follow) {
+        stack.push(frame);
+        call(p, in, follow);
+    }
+
+    /**
+     * Apply a parser, either by pushing a frame for the node and applying its first child,
+     * or, for leaves, by applying the parser directly.
+     */
+    @SuppressWarnings("unchecked")
+    private void enter(Parser<I, Object> p, Input<I> in, SymSet<I> follow) {
+        if (p instanceof Compiler.SeqNode) {
+            SeqFrame.enter(this, (Compiler.SeqNode<I, Object>)p, in, follow);
+        } else if (p instanceof Compiler.ApNode) {
+            ApFrame.enter(this, (Compiler.ApNode<I, Object, Object>)p, in, follow);
+        } else if (p instanceof Compiler.MapNode) {
+            final Compiler.MapNode<I, Object, Object> node = (Compiler.MapNode<I, Object, Object>)p;
+            push(new MapFrame<I>(node.f), node.pa, in, follow);
+        } else if (p instanceof Compiler.ChoiceNode) {
+            choice((Compiler.ChoiceNode<I, Object>)p, in, follow);
+        } else if (p instanceof Compiler.OrElseNode) {
+            final Compiler.OrElseNode<I, Object> node = (Compiler.OrElseNode<I, Object>)p;
+            push(new OrElseFrame<I>(node.rhs, in, follow), node.lhs, in, follow);
+        } else if (p instanceof Compiler.ManyNode) {
+            ManyFrame.enter(this, (Compiler.ManyNode<I, Object>)(Parser<I, ?>)p, in, follow);
+        } else if (p instanceof Compiler.ManyTillNode) {
+            ManyTillFrame.enter(this, (Compiler.ManyTillNode<I, Object, Object>)(Parser<I, ?>)p, in, follow);
+        } else if (p instanceof Compiler.CollectNode) {
+            CollectFrame.enter(this, (Compiler.CollectNode<I, Object, Object>)p, in, follow);
+        } else if (p instanceof Compiler.SpanNode) {
+            final Compiler.SpanNode<I, Object, Object> node = (Compiler.SpanNode<I, Object, Object>)p;
+            push(new SpanFrame<I>(node.f, in), node.pa, in, follow);
+        } else if (p instanceof Compiler.MemoNode) {
+            memo((Compiler.MemoNode<I, Object>)p, in, follow);
+        } else if (p instanceof Compiler.Root) {
+            call(((Compiler.Root<I, Object>)p).p, in, follow);
+        } else {
+            ret(p.apply(in, follow));
+        }
+    }
+
+    private void choice(Compiler.ChoiceNode<I, Object> node, Input<I> in, SymSet<I> follow) {
+        if (in.isEof()) {
+            if (node.emptyAlt == -1) {
+                ret(Result.failureEof(in, node.firstSet));
+            } else {
+                call(node.ps[node.emptyAlt], in, follow);
+            }
+        } else {
+            final int alt = node.dispatch.select(in);
+            if (alt != -1) {
+                call(node.ps[alt], in, follow);
+            } else if (node.emptyAlt != -1 && in.matches(follow)) {
+                call(node.ps[node.emptyAlt], in, follow);
+            } else {
+                ret(Result.failure(in, node.firstSet));
+            }
+        }
+    }
+
+    private void memo(Compiler.MemoNode<I, Object> node, Input<I> in, SymSet<I> follow) {
+        final long key = in.index();
+        if (key == -1) {
+            call(node.pa, in, follow);
+        } else {
+            MemoTable<I, Object> table = memoTables.get(node);
+            if (table == null) {
+                table = new MemoTable<I, Object>(node.capacity);
+                memoTables.put(node, table);
+            }
+
+            final Result<I, Object> memo = table.get(key, in, follow);
+            if (memo != null) {
+                ret(memo);
+            } else {
+                push(new MemoFrame<I>(table, key, in, follow), node.pa, in, follow);
+            }
+        }
+    }
+
+    private static <I> Result<I, Object> cast(Result<I, ?> r) {
+        return ((Result.Failure<I, ?>)r).cast();
+    }
+
+    /**
+     * A sequence (see {@link SeqParser}), awaiting the result of the parser at index {@code i}.
+     */
+    static final class SeqFrame<I> extends Frame<I> {
+        static <I> void enter(Continuation<I, ?> k, Compiler.SeqNode<I, Object> node, Input<I> in, SymSet<I> follow) {
+            if (node.ps.length == 0) {
+                k.ret(Result.success(node.f.apply(new Object[0]), in));
+            } else {
+                final SeqFrame<I> frame = new SeqFrame<I>(node, follow);
+                k.push(frame, node.ps[0], in, frame.follow(0));
+            }
+        }
+
+        final Compiler.SeqNode<I, Object> node;
+        final SymSet<I> follow;
+        final Object[] results;
+        int i = 0;
+
+        SeqFrame(Compiler.SeqNode<I, Object> node, SymSet<I> follow) {
+            this.node = node;
+            this.follow = follow;
+            this.results = new Object[node.ps.length];
+        }
+
+        SymSet<I> follow(int i) {
+            return node.spec.followsEmpty[i] ? followUnion(node.spec.follows[i], follow) : node.spec.follows[i];
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (!r.isSuccess()) {
+                k.pop(cast(r));
+                return;
+            }
+
+            final Result.Success<I, Object> succ = (Result.Success<I, Object>)r;
+            final Input<I> next = succ.next();
+            final int j = i + 1;
+            if (j == results.length) {
+                results[i] = succ.value();
+                k.pop(Result.success(node.f.apply(results), next));
+            } else if (!node.spec.empty[j] && next.isEof()) {
+                k.pop(Result.failureEof(next, node.spec.firsts[j]));
+            } else if (!node.spec.empty[j] && !next.matches(node.spec.firsts[j])) {
+                k.pop(Result.failure(next, node.spec.firsts[j]));
+            } else {
+                results[i] = succ.value();
+                i = j;
+                k.call(node.ps[j], next, follow(j));
+            }
+        }
+    }
+
+    /**
+     * An applicative node, awaiting either the result of the function parser, or of the argument parser.
+     */
+    static final class ApFrame<I> extends Frame<I> {
+        static <I> void enter(Continuation<I, ?> k, Compiler.ApNode<I, Object, Object> node, Input<I> in, SymSet<I> follow) {
+            k.push(new ApFrame<I>(node, follow), node.pf, in, combine(node.paEmpty, node.paFirst, follow));
+        }
+
+        final Compiler.ApNode<I, Object, Object> node;
+        final SymSet<I> follow;
+        F<Object, Object> f;
+
+        ApFrame(Compiler.ApNode<I, Object, Object> node, SymSet<I> follow) {
+            this.node = node;
+            this.follow = follow;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (f != null) {
+                k.pop(r.map(f));
+            } else if (!r.isSuccess()) {
+                k.pop(cast(r));
+            } else {
+                final Result.Success<I, Object> succ = (Result.Success<I, Object>)r;
+                final Input<I> next = succ.next();
+                if (!node.paEmpty && next.isEof()) {
+                    k.pop(Result.failureEof(next, node.paFirst));
+                } else if (!node.paEmpty && !next.matches(node.paFirst)) {
+                    k.pop(Result.failure(next, node.paFirst));
+                } else {
+                    f = (F<Object, Object>)succ.value();
+                    k.call(node.pa, next, follow);
+                }
+            }
+        }
+    }
+
+    static final class MapFrame<I> extends Frame<I> {
+        final F<Object, Object> f;
+
+        MapFrame(F<Object, Object> f) {
+            this.f = f;
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            k.pop(r.map(f));
+        }
+    }
+
+    static final class OrElseFrame<I> extends Frame<I> {
+        final Parser<I, Object> rhs;
+        final Input<I> in;
+        final SymSet<I> follow;
+        boolean isRhs = false;
+
+        OrElseFrame(Parser<I, Object> rhs, Input<I> in, SymSet<I> follow) {
+            this.rhs = rhs;
+            this.in = in;
+            this.follow = follow;
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (r.isSuccess() || isRhs) {
+                k.pop(r);
+            } else {
+                isRhs = true;
+                k.call(rhs, in, follow);
+            }
+        }
+    }
+
+    static final class ManyFrame<I> extends Frame<I> {
+        static <I> void enter(Continuation<I, ?> k, Compiler.ManyNode<I, Object> node, Input<I> in, SymSet<I> follow) {
+            if (in.isEof() || !in.matches(node.paFirst)) {
+                k.ret(Result.success(IList.of(), in));
+            } else {
+                final SymSet<I> follow2 = followUnion(follow, node.paFirst);
+                k.push(new ManyFrame<I>(node, follow2), node.pa, in, follow2);
+            }
+        }
+
+        final Compiler.ManyNode<I, Object> node;
+        final SymSet<I> follow;
+        IList<Object> acc = IList.of();
+
+        ManyFrame(Compiler.ManyNode<I, Object> node, SymSet<I> follow) {
+            this.node = node;
+            this.follow = follow;
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (!r.isSuccess()) {
+                k.pop(cast(r));
+                return;
+            }
+
+            final Result.Success<I, Object> succ = (Result.Success<I, Object>)r;
+            final Input<I> next = succ.next();
+            final boolean more = !next.isEof() && next.matches(node.paFirst);
+            acc = acc.add(succ.value());
+            if (more) {
+                k.call(node.pa, next, follow);
+            } else {
+                k.pop(Result.success(acc.reverse(), next));
+            }
+        }
+    }
+
+    static final class ManyTillFrame<I> extends Frame<I> {
+        private static final int DONE = 0;
+        private static final int END = 1;
+        private static final int ELEMENT = 2;
+
+        static <I> void enter(Continuation<I, ?> k, Compiler.ManyTillNode<I, Object, Object> node, Input<I> in, SymSet<I> follow) {
+            final int next = next(node, in);
+            if (next == DONE) {
+                k.ret(Result.success(IList.of(), in));
+            } else {
+                final ManyTillFrame<I> frame = new ManyTillFrame<I>(node, follow);
+                k.stack.push(frame);
+                frame.apply(k, next, in);
+            }
+        }
+
+        private static <I> int next(Compiler.ManyTillNode<I, Object, Object> node, Input<I> in) {
+            if (in.isEof()) {
+                return DONE;
+            } else if (in.matches(node.endFirst)) {
+                return END;
+            } else if (in.matches(node.paFirst)) {
+                return ELEMENT;
+            } else {
+                return DONE;
+            }
+        }
+
+        final Compiler.ManyTillNode<I, Object, Object> node;
+        final SymSet<I> follow;
+        IList<Object> acc = IList.of();
+        boolean isEnd = false;
+
+        ManyTillFrame(Compiler.ManyTillNode<I, Object, Object> node, SymSet<I> follow) {
+            this.node = node;
+            this.follow = follow;
+        }
+
+        private void apply(Continuation<I, ?> k, int next, Input<I> in) {
+            switch (next) {
+                case END:
+                    isEnd = true;
+                    k.call(node.end, in, follow);
+                    break;
+                case ELEMENT:
+                    k.call(node.pa, in, combine(node.endEmpty, node.endFirst, follow));
+                    break;
+                default:
+                    k.pop(Result.success(acc.reverse(), in));
+            }
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (!r.isSuccess()) {
+                k.pop(cast(r));
+                return;
+            }
+
+            final Result.Success<I, Object> succ = (Result.Success<I, Object>)r;
+            if (isEnd) {
+                k.pop(Result.success(acc.reverse(), succ.next()));
+            } else {
+                final int next = next(node, succ.next());
+                acc = acc.add(succ.value());
+                apply(k, next, succ.next());
+            }
+        }
+    }
+
+    /**
+     * A repetition which accumulates its results with a collector (see {@link CollectParser}),
+     * awaiting the result of either the element parser, or the separator parser.
+     */
+    static final class CollectFrame<I> extends Frame<I> {
+        static <I> void enter(Continuation<I, ?> k, Compiler.CollectNode<I, Object, Object> node, Input<I> in, SymSet<I> follow) {
+            if (!node.nonEmpty && (in.isEof() || !in.matches(node.paFirst))) {
+                k.ret(Result.success(node.collector.finisher().apply(node.collector.supplier().get()), in));
+            } else if (!node.paEmpty && in.isEof()) {
+                k.ret(Result.failureEof(in, node.paFirst));
+            } else if (!node.paEmpty && !in.matches(node.paFirst)) {
+                k.ret(Result.failure(in, node.paFirst));
+            } else {
+                final CollectFrame<I> frame = new CollectFrame<I>(node, follow);
+                k.push(frame, node.pa, in, frame.follow);
+            }
+        }
+
+        final Compiler.CollectNode<I, Object, Object> node;
+        final SymSet<I> follow;
+        final Object acc;
+        final BiConsumer<Object, Object> accumulator;
+        boolean isSep = false;
+
+        CollectFrame(Compiler.CollectNode<I, Object, Object> node, SymSet<I> follow) {
+            this.node = node;
+            this.follow = followUnion(follow, node.loopFirst);
+            this.acc = node.collector.supplier().get();
+            this.accumulator = node.collector.accumulator();
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (!r.isSuccess()) {
+                k.pop(cast(r));
+                return;
+            }
+
+            final Result.Success<I, Object> succ = (Result.Success<I, Object>)r;
+            final Input<I> next = succ.next();
+            if (isSep) {
+                if (!node.paEmpty && next.isEof()) {
+                    k.pop(Result.failureEof(next, node.paFirst));
+                } else if (!node.paEmpty && !next.matches(node.paFirst)) {
+                    k.pop(Result.failure(next, node.paFirst));
+                } else {
+                    isSep = false;
+                    k.call(node.pa, next, follow);
+                }
+            } else {
+                final boolean more = !next.isEof() && next.matches(node.loopFirst);
+                accumulator.accept(acc, succ.value());
+                if (!more) {
+                    k.pop(Result.success(node.collector.finisher().apply(acc), next));
+                } else if (node.sep != null) {
+                    isSep = true;
+                    k.call(node.sep, next, combine(node.paEmpty, node.paFirst, follow));
+                } else {
+                    k.call(node.pa, next, follow);
+                }
+            }
+        }
+    }
+
+    static final class SpanFrame<I> extends Frame<I> {
+        final F2<Input<I>, Input<I>, Object> f;
+        final Input<I> start;
+
+        SpanFrame(F2<Input<I>, Input<I>, Object> f, Input<I> start) {
+            this.f = f;
+            this.start = start;
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            if (r.isSuccess()) {
+                final Input<I> next = ((Result.Success<I, Object>)r).next();
+                k.pop(Result.success(f.apply(start, next), next));
+            } else {
+                k.pop(cast(r));
+            }
+        }
+    }
+
+    static final class MemoFrame<I> extends Frame<I> {
+        final MemoTable<I, Object> table;
+        final long key;
+        final Input<I> in;
+        final SymSet<I> follow;
+
+        MemoFrame(MemoTable<I, Object> table, long key, Input<I> in, SymSet<I> follow) {
+            this.table = table;
+            this.key = key;
+            this.in = in;
+            this.follow = follow;
+        }
+
+        @Override
+        void resume(Continuation<I, ?> k, Result<I, Object> r) {
+            table.put(key, in, follow, r);
+            k.pop(r);
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.util.*;
+
+/**
+ * A dispatch table, which maps the next input symbol to the first of a list of alternatives
+ * whose First Set contains that symbol.
+ * <p>
+ * Symbols which are values in the First Sets,
+ * and {@code Chr} First Sets which can be tabulated (see {@link SymSet.Chars}),
+ * are resolved with a single table lookup.
+ * Alternatives with predicates which cannot be tabulated are tested in turn,
+ * but only those which precede the alternative found in the table.
+ * @param <I>           the input stream symbol type
+ */
+abstract class Dispatch<I> {
+
+    static final int NONE = Integer.MAX_VALUE;
+
+    /**
+     * Construct a dispatch table for a list of First Sets.
+     * @param firstSets the First Sets of the alternatives, in order of precedence
+     * @param <I>       the input stream symbol type
+     * @return          the dispatch table
+     */
+    @SuppressWarnings("unchecked")
+    static <I> Dispatch<I> of(List<SymSet<I>> firstSets) {
+        final Dispatch<Chr> chars = CharDispatch.build((List<SymSet<Chr>>)(List<?>)firstSets);
+        return chars != null ? (Dispatch<I>)chars : ValueDispatch.build(firstSets);
+    }
+
+    private final int[] residualAlts;
+    private final SymSet<I>[] residualSets;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Dispatch(List<Integer> residualAlts, List<SymSet<I>> residualSets) {
+        this.residualAlts = residualAlts.stream().mapToInt(Integer::intValue).toArray();
+        this.residualSets = residualSets.toArray(new SymSet[0]);
+    }
+
+    /**
+     * Look up the next input symbol in the table.
+     * @param in        the input, which must not be at eof
+     * @return          the first tabulated alternative which accepts the symbol, or {@link #NONE}
+     */
+    abstract int lookup(Input<I> in);
+
+    /**
+     * Select the first alternative whose First Set contains the next input symbol.
+     * @param in        the input, which must not be at eof
+     * @return          the index of the alternative, or -1 if there is none
+     */
+    final int select(Input<I> in) {
+        final int alt = lookup(in);
+        for (int i = 0; i < residualAlts.length && residualAlts[i] < alt; ++i) {
+            if (in.matches(residualSets[i])) {
+                return residualAlts[i];
+            }
+        }
+        return alt == NONE ? -1 : alt;
+    }
+
+    /**
+     * Dispatch on symbol values, via a hash table.
+     * Predicates are not tabulated.
+     */
+    static final class ValueDispatch<I> extends Dispatch<I> {
+
+        static <I> Dispatch<I> build(List<SymSet<I>> firstSets) {
+            final Map<I, Integer> table = new HashMap<I, Integer>();
+            final List<Integer> residualAlts = new ArrayList<Integer>();
+            final List<SymSet<I>> residualSets = new ArrayList<SymSet<I>>();
+
+            for (int i = 0; i < firstSets.size(); ++i) {
+                final SymSet<I> fs = firstSets.get(i);
+                switch (fs.type()) {
+                    case EMPTY:
+                        break;
+                    case VALUE:
+                        table.putIfAbsent(((SymSet.Value<I>)fs).value, i);
+                        break;
+                    case UNION: {
+                        final SymSet.Union<I> union = (SymSet.Union<I>)fs;
+                        for (I value : union.values) {
+                            table.putIfAbsent(value, i);
+                        }
+                        if (!union.preds.isEmpty()) {
+                            residualAlts.add(i);
+                            residualSets.add(fs);
+                        }
+                        break;
+                    }
+                    default:
+                        residualAlts.add(i);
+                        residualSets.add(fs);
+                }
+            }
+
+            return new ValueDispatch<I>(table, residualAlts, residualSets);
+        }
+
+        private final Map<I, Integer> table;
+
+        private ValueDispatch(Map<I, Integer> table, List<Integer> residualAlts, List<SymSet<I>> residualSets) {
+            super(residualAlts, residualSets);
+            this.table = table;
+        }
+
+        @Override
+        int lookup(Input<I> in) {
+            if (table.isEmpty()) {
+                return NONE;
+            } else {
+                final Integer alt = table.get(in.get());
+                return alt == null ? NONE : alt;
+            }
+        }
+    }
+
+    /**
+     * Dispatch on {@code Chr} symbols.
+     * The ASCII characters are looked up in a direct table,
+     * and the remaining characters in a sorted table of ranges.
+     */
+    static final class CharDispatch extends Dispatch<Chr> {
+
+        /**
+         * Construct a dispatch table for a list of {@code Chr} First Sets.
+         * @param firstSets the First Sets of the alternatives
+         * @return          the dispatch table, or null if the First Sets contain non-{@code Chr} values
+         */
+        static Dispatch<Chr> build(List<SymSet<Chr>> firstSets) {
+            final int n = firstSets.size();
+            final BitSet[] tables = new BitSet[n];
+            final List<Integer> residualAlts = new ArrayList<Integer>();
+            final List<SymSet<Chr>> residualSets = new ArrayList<SymSet<Chr>>();
+            boolean isChr = false;
+
+            for (int i = 0; i < n; ++i) {
+                final SymSet<Chr> fs = firstSets.get(i).compile();
+                final BitSet bits = new BitSet();
+                final List<SymSet.Pred<Chr>> preds = new ArrayList<SymSet.Pred<Chr>>();
+                boolean residual = false;
+                switch (fs.type()) {
+                    case EMPTY:
+                        break;
+                    case VALUE: {
+                        final Object value = ((SymSet.Value<?>)fs).value;
+                        if (!(value instanceof Chr)) {
+                            return null;
+                        }
+                        bits.set(((Chr)value).charValue());
+                        isChr = true;
+                        break;
+                    }
+                    case PRED:
+                        if (fs instanceof SymSet.CharPred) {
+                            ((SymSet.CharPred)fs).table().addTo(bits, preds);
+                            isChr = true;
+                        } else {
+                            residual = true;
+                        }
+                        break;
+                    case UNION:
+                        // A union which compile() leaves as is either holds non-Chr values,
+                        // or consists solely of generic predicates.
+                        if (!((SymSet.Union<Chr>)fs).values.isEmpty()) {
+                            return null;
+                        }
+                        residual = true;
+                        break;
+                    default:
+                        residual = true;
+                }
+
+                tables[i] = bits;
+                if (residual || !preds.isEmpty()) {
+                    residualAlts.add(i);
+                    residualSets.add(fs);
+                }
+            }
+
+            if (!isChr) {
+                return null;
+            }
+
+            final int[] ascii = new int[128];
+            Arrays.fill(ascii, NONE);
+            for (int i = n - 1; i >= 0; --i) {
+                final BitSet bits = tables[i];
+                for (int c = bits.nextSetBit(0); c >= 0 && c < 128; c = bits.nextSetBit(c + 1)) {
+                    ascii[c] = i;
+                }
+            }
+
+            // Split the non-ASCII characters into ranges on which the selected alternative is constant.
+            final TreeSet<Integer> bounds = new TreeSet<Integer>();
+            for (BitSet bits : tables) {
+                for (int lo = bits.nextSetBit(128); lo >= 0; lo = bits.nextSetBit(lo)) {
+                    final int hi = bits.nextClearBit(lo);
+                    bounds.add(lo);
+                    bounds.add(hi);
+                    lo = hi;
+                }
+            }
+
+            int m = 0;
+            final char[] starts = new char[bounds.size()];
+            final int[] alts = new int[bounds.size()];
+            for (int lo : bounds) {
+                if (lo > Character.MAX_VALUE) {
+                    break;
+                }
+                int alt = NONE;
+                for (int i = 0; i < n; ++i) {
+                    if (tables[i].get(lo)) {
+                        alt = i;
+                        break;
+                    }
+                }
+                if (m == 0 || alts[m - 1] != alt) {
+                    starts[m] = (char)lo;
+                    alts[m] = alt;
+                    ++m;
+                }
+            }
+
+            return new CharDispatch(
+                    ascii,
+                    Arrays.copyOf(starts, m),
+                    Arrays.copyOf(alts, m),
+                    residualAlts,
+                    residualSets);
+        }
+
+        private final int[] ascii;
+        private final char[] starts;
+        private final int[] alts;
+
+        private CharDispatch(
+                int[] ascii,
+                char[] starts,
+                int[] alts,
+                List<Integer> residualAlts,
+                List<SymSet<Chr>> residualSets) {
+            super(residualAlts, residualSets);
+            this.ascii = ascii;
+            this.starts = starts;
+            this.alts = alts;
+        }
+
+        @Override
+        int lookup(Input<Chr> in) {
+            final char c = in instanceof CharInput ? ((CharInput)in).getChar() : in.get().charValue();
+            if (c < 128) {
+                return ascii[c];
+            } else {
+                int lo = 0;
+                int hi = starts.length - 1;
+                int alt = NONE;
+                while (lo <= hi) {
+                    final int mid = (lo + hi) >>> 1;
+                    if (starts[mid] <= c) {
+                        alt = alts[mid];
+                        lo = mid + 1;
+                    } else {
+                        hi = mid - 1;
+                    }
+                }
+                return alt;
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.*;
+
+/**
+ * Base class for the parsers generated by {@link CodeGen}.
+ * <p>
+ * Generated classes are defined in their own class loader,
+ * so this class, and the members it provides to them, have to be public or protected.
+ * It is not intended to be used directly.
+ * @param <I>       the input stream symbol type
+ * @param <A>       the parser result type
+ */
+public abstract class GeneratedParser<I, A> implements Parser<I, A> {
+
+    /**
+     * Select the alternative of a choice for the next input symbol.
+     * @param dispatch  the dispatch table of the choice
+     * @param in        the input, which must not be at eof
+     * @param <I>       the input stream symbol type
+     * @return          the index of the alternative, or -1 if there is none
+     */
+    @SuppressWarnings("unchecked")
+    protected static <I> int select(Object dispatch, Input<I> in) {
+        return ((Dispatch<I>)dispatch).select(in);
+    }
+
+    /**
+     * Construct the union of two symbol sets, for use as a dynamic follow set.
+     * @param l         the left-hand set
+     * @param r         the right-hand set
+     * @param <I>       the input stream symbol type
+     * @return          the union, which is only constructed if it is required
+     */
+    protected static <I> SymSet<I> followUnion(SymSet<I> l, SymSet<I> r) {
+        return Utils.followUnion(l, r);
+    }
+
+    /**
+     * Apply a repetition of a single-symbol parser to a {@code Chr} input, by scanning the input directly.
+     * @param p         the single-symbol parser
+     * @param first     the First Set of the parser
+     * @param in        the input, which must be a {@link CharInput}
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the parse result
+     */
+    protected static <I, A> Result<I, IList<A>> scanMany(Parser<I, A> p, SymSet<I> first, Input<I> in) {
+        return CollectParser.scan(p, first, false, CollectParser.toIList(), in);
+    }
+
+    protected final boolean acceptsEmpty;
+
+    protected final SymSet<I> firstSet;
+
+    private final Lazy<Boolean> lazyAcceptsEmpty;
+
+    private final Lazy<SymSet<I>> lazyFirstSet;
+
+    protected GeneratedParser(boolean acceptsEmpty, SymSet<I> firstSet) {
+        this.acceptsEmpty = acceptsEmpty;
+        this.firstSet = firstSet;
+        this.lazyAcceptsEmpty = acceptsEmpty ? Utils.LTRUE : Utils.LFALSE;
+        this.lazyFirstSet = () -> firstSet;
+    }
+
+    /**
+     * Parse an input, as per {@link Parser#parse(Input)}.
+     * @param in        the input stream
+     * @return          the parser result
+     */
+    protected abstract Result<I, A> parseInput(Input<I> in);
+
+    @Override
+    public final Result<I, A> parse(Input<I> in) {
+        final MemoTable.Scope scope = MemoTable.Scope.enter();
+        try {
+            return parseInput(in);
+        } finally {
+            scope.exit();
+        }
+    }
+
+    @Override
+    public Lazy<Boolean> acceptsEmpty() {
+        return lazyAcceptsEmpty;
+    }
+
+    @Override
+    public Lazy<SymSet<I>> firstSet() {
+        return lazyFirstSet;
+    }
+
+    @Override
+    public String toString() {
+        return "parser{" +
+                "empty=" + acceptsEmpty +
+                ";first=" + firstSet +
+                '}';
+    }
+}
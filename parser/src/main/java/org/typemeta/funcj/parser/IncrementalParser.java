@@ -0,0 +1,265 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.util.*;
+
+/**
+ * A parser for a text document which is edited and re-parsed repeatedly,
+ * and which re-uses the results from previous parses for the parts of the document
+ * which are unaffected by the edits.
+ * <p>
+ * The points in the grammar at which results are re-used are the parsers constructed via {@link Parser#memo()}.
+ * While parsing, each successful result of a memo parser is recorded,
+ * along with the span of input it examined (including any lookahead).
+ * When the document is edited, the results whose spans overlap the edit are discarded,
+ * the results which follow the edit are shifted to their new positions,
+ * and the remaining results are re-used by the next parse.
+ * Consequently, if the repeated or nested constructs of a grammar (e.g. declarations or statements)
+ * are memo parsers, then the work of re-parsing after a small edit is largely proportional to the size of the edit.
+ * However, {@link #edit} itself copies the document text and re-indexes every recorded result,
+ * so the cost of each edit remains linear in the size of the document and the number of recorded results.
+ * <p>
+ * A recorded value is re-used as is, so a value which contains input positions
+ * (e.g. the {@link Span} returned by {@link Text#span(Parser)}) would be stale once it had been shifted.
+ * Consequently, results whose computation examined the position of an input
+ * (via {@link Input#position()} or {@link Input#index()}) are discarded, rather than shifted,
+ * when an edit precedes them.
+ * <p>
+ * Note that results are re-used regardless of the follow set they were computed with,
+ * which, for grammars where an alternative is selected by the follow set, can affect the error reported for a failed parse.
+ * <p>
+ * {@code IncrementalParser} is not thread-safe,
+ * however the underlying parser can be shared by many {@code IncrementalParser}s.
+ * @param <A>           the parser result type
+ */
+public final class IncrementalParser<A> {
+
+    /**
+     * Construct an incremental parser for a document.
+     * @param parser    the parser
+     * @param text      the initial document text
+     * @param <A>       the parser result type
+     * @return          the incremental parser
+     */
+    public static <A> IncrementalParser<A> of(Parser<Chr, A> parser, String text) {
+        return new IncrementalParser<A>(parser, text);
+    }
+
+    /**
+     * A recorded result of a memo parser.
+     */
+    private static final class Entry {
+        long start;
+        long end;
+        long next;
+        final Object value;
+        // True if the value may depend on input positions.
+        final boolean positional;
+
+        Entry(long start, long end, long next, Object value, boolean positional) {
+            this.start = start;
+            this.end = end;
+            this.next = next;
+            this.value = value;
+            this.positional = positional;
+        }
+    }
+
+    private final Parser<Chr, A> parser;
+
+    private char[] data;
+
+    // The recorded results, for each memo parser, keyed on start position.
+    private final Map<Object, Map<Long, Entry>> entries = new IdentityHashMap<Object, Map<Long, Entry>>();
+
+    // The furthest position examined by the current memo parser.
+    private long maxRead = -1;
+
+    // True if the current memo parser has examined the position of an input.
+    private boolean positional = false;
+
+    private IncrementalParser(Parser<Chr, A> parser, String text) {
+        this.parser = Objects.requireNonNull(parser);
+        this.data = text.toCharArray();
+    }
+
+    /**
+     * Return the current document text.
+     * @return          the document text
+     */
+    public String text() {
+        return new String(data);
+    }
+
+    /**
+     * Return the number of recorded results.
+     * @return          the number of recorded results
+     */
+    public int cached() {
+        int n = 0;
+        for (Map<Long, Entry> m : entries.values()) {
+            n += m.size();
+        }
+        return n;
+    }
+
+    /**
+     * Parse the current document text, re-using the results of previous parses where possible.
+     * The inputs referenced by the result are only valid until the next edit.
+     * @return          the parse result
+     */
+    public Result<Chr, A> parse() {
+        maxRead = -1;
+        positional = false;
+        return parser.parse(new DocInput(this, 0));
+    }
+
+    /**
+     * Apply an edit to the document text.
+     * @param offset    the offset of the edit
+     * @param removed   the number of characters removed at {@code offset}
+     * @param inserted  the text inserted at {@code offset}
+     * @throws          IndexOutOfBoundsException if the removed range isn't within the document
+     */
+    public void edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > data.length) {
+            throw new IndexOutOfBoundsException(
+                    "Edit range [" + offset + "," + (offset + removed) + ") is outside the document" +
+                            " (length=" + data.length + ")");
+        }
+
+        final int delta = inserted.length() - removed;
+        final char[] newData = new char[data.length + delta];
+        System.arraycopy(data, 0, newData, 0, offset);
+        inserted.getChars(0, inserted.length(), newData, offset);
+        System.arraycopy(data, offset + removed, newData, offset + inserted.length(), data.length - offset - removed);
+        data = newData;
+
+        final long editEnd = offset + removed;
+        for (Map.Entry<Object, Map<Long, Entry>> me : entries.entrySet()) {
+            final Map<Long, Entry> shifted = new HashMap<Long, Entry>();
+            for (Entry e : me.getValue().values()) {
+                if (e.end <= offset) {
+                    shifted.put(e.start, e);
+                } else if (e.start >= editEnd && (delta == 0 || !e.positional)) {
+                    e.start += delta;
+                    e.end += delta;
+                    e.next += delta;
+                    shifted.put(e.start, e);
+                }
+            }
+            me.setValue(shifted);
+        }
+    }
+
+    private void touch(long position) {
+        if (position > maxRead) {
+            maxRead = position;
+        }
+    }
+
+    /**
+     * Apply a memo parser, via the recorded results.
+     * @param owner     the identity of the memo parser
+     * @param p         the underlying parser
+     * @param in        the input
+     * @param follow    the dynamic follow set
+     * @param <B>       the parser result type
+     * @return          the parse result
+     */
+    @SuppressWarnings("unchecked")
+    <B> Result<Chr, B> apply(Object owner, Parser<Chr, B> p, DocInput in, SymSet<Chr> follow) {
+        final Map<Long, Entry> m = entries.computeIfAbsent(owner, k -> new HashMap<Long, Entry>());
+        final Entry e = m.get(in.position);
+        if (e != null) {
+            touch(e.end - 1);
+            positional |= e.positional;
+            return Result.success((B)e.value, new DocInput(this, e.next));
+        }
+
+        final long outer = maxRead;
+        final boolean outerPositional = positional;
+        maxRead = in.position - 1;
+        positional = false;
+        final Result<Chr, B> r = p.apply(in, follow);
+        final long end = maxRead + 1;
+        final boolean rPositional = positional;
+        maxRead = Math.max(outer, maxRead);
+        positional = outerPositional || rPositional;
+
+        if (r.isSuccess()) {
+            final Result.Success<Chr, B> succ = (Result.Success<Chr, B>)r;
+            final long next = ((DocInput)succ.next()).position;
+            m.put(in.position, new Entry(in.position, end, next, succ.value(), rPositional));
+        }
+        return r;
+    }
+
+    /**
+     * A cursor into the document text,
+     * which records the furthest position examined by the parser.
+     */
+    static final class DocInput implements CharInput {
+        final IncrementalParser<?> ip;
+        final long position;
+
+        DocInput(IncrementalParser<?> ip, long position) {
+            this.ip = ip;
+            this.position = position;
+        }
+
+        @Override
+        public boolean isEof() {
+            ip.touch(position);
+            return position >= ip.data.length;
+        }
+
+        @Override
+        public char getChar() {
+            ip.touch(position);
+            return ip.data[(int)position];
+        }
+
+        @Override
+        public CharInput next() {
+            return new DocInput(ip, position + 1);
+        }
+
+        @Override
+        public Object position() {
+            ip.positional = true;
+            return (int)position;
+        }
+
+        @Override
+        public long index() {
+            ip.positional = true;
+            return position;
+        }
+
+        @Override
+        public <B> Result<Chr, B> memo(Object owner, int capacity, Parser<Chr, B> p, SymSet<Chr> follow) {
+            return ip.apply(owner, p, this, follow);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final DocInput that = (DocInput) o;
+            return position == that.position &&
+                    ip == that.ip;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(ip, position);
+        }
+
+        @Override
+        public String toString() {
+            return "DocInput{" + position + "}";
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package org.typemeta.funcj.parser;
 
-import org.typemeta.funcj.data.Chr;
 import org.typemeta.funcj.util.Exceptions;
 
 import java.io.Reader;
-import java.util.Objects;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 
 /**
  * {@code Input} represents a position in a stream of input symbols,
  * that {@link Parser}s operate on.
+ * <p>
+ * {@code Input} values are immutable cursors -
+ * calling {@link Input#next()} returns a new {@code Input} and leaves the original unchanged.
+ * Consequently an {@code Input} can be retained and re-used,
+ * and the inputs constructed from in-memory data can be shared across threads.
+ * <p>
+ * The exception is streaming inputs (see {@link Input#of(Reader)}),
+ * which only retain data back to the position of the most recent read, or to the oldest live {@link Mark}.
+ * A parser which may re-read the input preceding the current position (e.g. to backtrack)
+ * must therefore hold a {@code Mark} on the earlier position while it does so.
  * @param <I>       the input stream symbol type
  */
 public interface Input<I> {
@@ -17,28 +27,90 @@
      * @param data      the input data
      * @return          the input stream
      */
-    static Input<Chr> of(char[] data) {
+    static CharInput of(char[] data) {
         return new StringInput(data);
     }
 
+    /**
+     * Construct an {@code Input} from a slice of a {@code char} array, without copying it.
+     * The positions of the input are indices into the whole array.
+     * The array must not be modified while the input, or any result which refers to it, is in use.
+     * @param data      the input data
+     * @param offset    the index of the start of the slice
+     * @param length    the length of the slice
+     * @return          the input stream
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     */
+    static CharInput of(char[] data, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > data.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "Slice [" + offset + ", " + offset + "+" + length + ") is outside the array of length " + data.length);
+        }
+        return new StringInput(data, offset, offset + length);
+    }
+
     /**
      * Construct an {@code Input} from a {@link java.lang.String}.
      * @param s         the input data
      * @return          the input stream
      */
-    static Input<Chr> of(String s) {
+    static CharInput of(String s) {
         return new StringInput(s.toCharArray());
     }
 
     /**
      * Construct an {@code Input} from a {@link java.io.Reader}.
+     * The reader is read in blocks, so there is no need to wrap it in a {@link java.io.BufferedReader}.
+     * <p>
+     * Data preceding the most recent read is discarded unless it is held by a {@link Mark},
+     * so an earlier input which isn't marked will throw if it is subsequently read.
      * @param rdr       the input data
      * @return          the input stream
      */
-    static Input<Chr> of(Reader rdr) {
+    static CharInput of(Reader rdr) {
         return new ReaderInput(rdr);
     }
 
+    /**
+     * Construct an {@code Input} from a {@link java.io.Reader},
+     * which reads the data in blocks of the given size.
+     * @param rdr       the input data
+     * @param bufferSize the initial size of the read buffer
+     * @return          the input stream
+     */
+    static CharInput of(Reader rdr, int bufferSize) {
+        return new ReaderInput(rdr, bufferSize);
+    }
+
+    /**
+     * Construct an {@code Input} from a file of UTF-8 encoded text.
+     * The file is memory-mapped and decoded lazily,
+     * so files larger than the heap can be parsed without copying them into memory.
+     * The input positions are byte offsets into the file.
+     * @param path      the path of the file
+     * @return          the input stream
+     */
+    static CharInput of(Path path) {
+        return Exceptions.wrap(() -> {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return of(channel);
+            }
+        });
+    }
+
+    /**
+     * Construct an {@code Input} from a {@link FileChannel} over a file of UTF-8 encoded text.
+     * The file is memory-mapped and decoded lazily,
+     * so files larger than the heap can be parsed without copying them into memory.
+     * The mapping remains valid after the channel has been closed.
+     * The input positions are byte offsets into the file.
+     * @param channel   the file channel
+     * @return          the input stream
+     */
+    static CharInput of(FileChannel channel) {
+        return MappedFileInput.of(channel, MappedFileInput.DEFAULT_SEGMENT_BITS);
+    }
+
     /**
      * Returns true if and only if this input is at the end of the input stream.
      * @return          true if this input is at the end of the input stream
@@ -59,158 +131,91 @@ static Input<Chr> of(Reader rdr) {
      */
     Input<I> next();
 
+    /**
+     * Returns true if the symbol indicated by this input is a member of the given symbol set.
+     * Will throw if {@code isEof} is true.
+     * <p>
+     * Specialised {@code Input} implementations override this to test the symbol
+     * without first converting it to an {@code I} value.
+     * @param symSet    the symbol set
+     * @return          true if the next symbol is a member of the symbol set
+     */
+    default boolean matches(SymSet<I> symSet) {
+        return symSet.matches(get());
+    }
+
     /**
      * Return a implementation-specific representation of the
      * current position (e.g. an Integer).
      * @return          the current position
      */
     Object position();
-}
-
-class StringInput implements Input<Chr> {
-
-    private final char[] data;
-    private int position;
-    private final StringInput other;
-
-    StringInput(char[] data) {
-        this.data = data;
-        this.position = 0;
-        this.other = new StringInput(this, data);
-    }
-
-    StringInput(StringInput other, char[] data) {
-        this.data = data;
-        this.position = 0;
-        this.other = other;
-    }
-
-    private StringInput setPosition(int position) {
-        this.position = position;
-        return this;
-    }
-
-    @Override
-    public String toString() {
-        final String dataStr = isEof() ? "EOF" : String.valueOf(data[position]);
-        return "StringInput{" + position + ",data=\"" + dataStr + "\"";
-    }
-
-    @Override
-    public boolean isEof() {
-        return position >= data.length;
-    }
-
-    @Override
-    public Chr get() {
-        return Chr.valueOf(data[position]);
-    }
-
-    @Override
-    public Input<Chr> next() {
-        return other.setPosition(position + 1);
-    }
-
-    @Override
-    public Object position() {
-        return position;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        StringInput that = (StringInput) o;
-        return position == that.position &&
-                data == that.data;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(data, position);
-    }
-}
-
-class ReaderInput implements Input<Chr> {
-
-    protected int position;
-    protected final Reader reader;
-    protected Chr current;
-    protected boolean isEof = false;
-
-    protected final ReaderInput other;
-
-    ReaderInput(Reader reader) {
-        this.position = 0;
-        this.reader = reader;
-        this.current = null;
-        this.other = new ReaderInput(this, reader);
-    }
 
-    ReaderInput(ReaderInput other, Reader reader) {
-        this.position = -1;
-        this.reader = reader;
-        this.current = null;
-        this.other = other;
-    }
-
-    protected ReaderInput setPosition(int position) {
-        this.position = position;
-        return this;
+    /**
+     * Return a numeric index which identifies the current position within the input stream.
+     * Distinct positions in the same stream have distinct indices.
+     * Returns -1 if the position has no numeric index.
+     * <p>
+     * The index is used to key memoised parse results (see {@link Parser#memo()}).
+     * @return          the index of the current position, or -1
+     */
+    default long index() {
+        final Object pos = position();
+        return pos instanceof Number ? ((Number)pos).longValue() : -1;
     }
 
-    @Override
-    public String toString() {
-        return "ReaderInput{current=\"" + current + "\",isEof=" + isEof + "}";
+    /**
+     * Apply a memoising parser (see {@link Parser#memo()}) at this position,
+     * using the memoised result if there is one, and otherwise memoising the result.
+     * <p>
+     * By default results are memoised, keyed on the {@link Input#index()},
+     * in a table which is owned by the memoising parser, and which only lives for the duration of the parse.
+     * Inputs without an index are passed straight to the underlying parser.
+     * Inputs may override this method to record the results elsewhere
+     * (e.g. the inputs of an {@link IncrementalParser}).
+     * @param owner     the identity of the memoising parser
+     * @param capacity  the maximum number of results to memoise
+     * @param p         the underlying parser
+     * @param follow    the dynamic follow set
+     * @param <A>       the parser result type
+     * @return          the parse result
+     */
+    default <A> Result<I, A> memo(Object owner, int capacity, Parser<I, A> p, SymSet<I> follow) {
+        return MemoTable.apply(owner, capacity, p, this, follow);
     }
 
-    @Override
-    public boolean isEof() {
-        if (!isEof && current == null) {
-            Exceptions.wrap(() -> {
-                final int ni = reader.read();
-                if (ni == -1) {
-                    current = null;
-                    isEof = true;
-                } else {
-                    current = Chr.valueOf(ni);
-                }
-            });
-        }
-        return isEof;
+    /**
+     * Mark the current position in the input stream,
+     * so that parsing can subsequently be resumed from this position via {@link Mark#reset()}.
+     * <p>
+     * Inputs constructed from in-memory data retain all of their data,
+     * in which case a mark is simply a reference to this input.
+     * Streaming inputs only retain data back to the oldest live mark,
+     * so marks should be closed once they are no longer required.
+     * @return          the mark
+     */
+    default Mark<I> mark() {
+        return () -> this;
     }
 
-    @Override
-    public Chr get() {
-        if (isEof()) {
-            throw new RuntimeException("End of input");
-        } else {
-            return current;
+    /**
+     * A marked position in an input stream.
+     * @param <I>       the input stream symbol type
+     */
+    @FunctionalInterface
+    interface Mark<I> extends AutoCloseable {
+        /**
+         * Return the input positioned at this mark.
+         * @return          the input positioned at this mark
+         */
+        Input<I> reset();
+
+        /**
+         * Release this mark.
+         * Once released, a streaming input may discard the data preceding any remaining marks.
+         */
+        @Override
+        default void close() {
         }
     }
-
-    @Override
-    public Input<Chr> next() {
-        current = null;
-        return other.setPosition(position + 1);
-    }
-
-    @Override
-    public Object position() {
-        return position;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ReaderInput that = (ReaderInput) o;
-        return position == that.position &&
-                reader == that.reader;
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(position, reader);
-    }
 }
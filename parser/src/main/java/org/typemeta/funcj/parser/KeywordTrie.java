@@ -0,0 +1,173 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.util.*;
+
+/**
+ * A trie of keywords, for matching a keyword from a table in a single pass over the input
+ * (see {@link Text#keywords(Map, boolean, boolean)}).
+ * <p>
+ * The trie is flattened into arrays once it has been built.
+ * The children of each node are held in a sorted array of edge labels, which is binary searched,
+ * except for the root node, which also has a direct lookup table for ASCII characters.
+ * @param <T>           the keyword value type
+ */
+final class KeywordTrie<T> {
+
+    // The sorted edge labels of each node.
+    private final char[][] labels;
+
+    // The child node for each edge label.
+    private final int[][] children;
+
+    // The value of each node, for nodes which terminate a keyword.
+    private final Object[] values;
+
+    private final boolean[] terminal;
+
+    // The child of the root node for each ASCII character, or -1.
+    private final int[] rootAscii;
+
+    private final boolean ignoreCase;
+
+    /**
+     * Construct a trie.
+     * @param table     the keywords and their values
+     * @param ignoreCase true if keywords are to be matched irrespective of case
+     * @throws IllegalArgumentException if the table is empty,
+     *                  contains an empty keyword,
+     *                  or contains keywords which are equal when case is ignored
+     */
+    KeywordTrie(Map<String, ? extends T> table, boolean ignoreCase) {
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("Keyword table is empty");
+        }
+
+        this.ignoreCase = ignoreCase;
+
+        final List<TreeMap<Character, Integer>> edges = new ArrayList<TreeMap<Character, Integer>>();
+        final List<Object> vals = new ArrayList<Object>();
+        final List<Boolean> terms = new ArrayList<Boolean>();
+        edges.add(new TreeMap<Character, Integer>());
+        vals.add(null);
+        terms.add(false);
+
+        for (Map.Entry<String, ? extends T> e : table.entrySet()) {
+            final String key = e.getKey();
+            if (key.isEmpty()) {
+                throw new IllegalArgumentException("Keywords must be non-empty");
+            }
+
+            int node = 0;
+            for (int i = 0; i < key.length(); ++i) {
+                final char c = fold(key.charAt(i));
+                Integer child = edges.get(node).get(c);
+                if (child == null) {
+                    child = edges.size();
+                    edges.get(node).put(c, child);
+                    edges.add(new TreeMap<Character, Integer>());
+                    vals.add(null);
+                    terms.add(false);
+                }
+                node = child;
+            }
+
+            if (terms.get(node)) {
+                throw new IllegalArgumentException("Duplicate keyword - " + key);
+            }
+            terms.set(node, true);
+            vals.set(node, e.getValue());
+        }
+
+        final int n = edges.size();
+        this.labels = new char[n][];
+        this.children = new int[n][];
+        this.values = vals.toArray();
+        this.terminal = new boolean[n];
+        for (int i = 0; i < n; ++i) {
+            final TreeMap<Character, Integer> es = edges.get(i);
+            labels[i] = new char[es.size()];
+            children[i] = new int[es.size()];
+            int j = 0;
+            for (Map.Entry<Character, Integer> e : es.entrySet()) {
+                labels[i][j] = e.getKey();
+                children[i][j] = e.getValue();
+                ++j;
+            }
+            terminal[i] = terms.get(i);
+        }
+
+        this.rootAscii = new int[0x80];
+        for (char c = 0; c < 0x80; ++c) {
+            rootAscii[c] = search(0, fold(c));
+        }
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? Character.toLowerCase(Character.toUpperCase(c)) : c;
+    }
+
+    private int search(int node, char c) {
+        final int i = Arrays.binarySearch(labels[node], c);
+        return i >= 0 ? children[node][i] : -1;
+    }
+
+    private int child(int node, char c) {
+        if (node == 0 && c < 0x80) {
+            return rootAscii[c];
+        } else {
+            return search(node, fold(c));
+        }
+    }
+
+    /**
+     * Return the set of characters which can start a keyword.
+     * @return          the symbol set
+     */
+    SymSet<Chr> firstSet() {
+        return SymSet.charPred("keyword", c -> child(0, c) != -1);
+    }
+
+    /**
+     * Match a keyword at the current position of the scanner.
+     * If a keyword is matched, the scanner is left positioned after it.
+     * @param sc        the scanner
+     * @param longest   true if the longest matching keyword is to be matched,
+     *                  otherwise the shortest is matched
+     * @return          the node of the matched keyword, or -1 if there is no match
+     */
+    int match(CharScanner sc, boolean longest) {
+        int node = 0;
+        int matched = -1;
+        while (!sc.isEof()) {
+            node = child(node, sc.peek());
+            if (node == -1) {
+                break;
+            }
+            sc.advance();
+            if (terminal[node]) {
+                matched = node;
+                if (!longest) {
+                    return matched;
+                }
+                sc.save();
+            }
+        }
+
+        if (matched != -1) {
+            sc.restore();
+        }
+        return matched;
+    }
+
+    /**
+     * Return the value of a keyword node.
+     * @param node      the node
+     * @return          the value
+     */
+    @SuppressWarnings("unchecked")
+    T value(int node) {
+        return (T)values[node];
+    }
+}
@@ -0,0 +1,120 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * The union of two symbol sets, which is only materialised if it is required.
+ * <p>
+ * Dynamic follow sets are constructed on every application of a parser,
+ * whereas they are only inspected by choices which have an alternative that accepts empty input,
+ * and then only by membership tests.
+ * A {@code LazyUnion} answers membership tests directly from its operands,
+ * and only constructs the equivalent {@link SymSet.Union} when it is used in any other way.
+ * <p>
+ * Two {@code LazyUnion}s are equal if their operands are equal,
+ * so that follow sets which are constructed separately, but from the same sets,
+ * can be matched (e.g. by {@link MemoTable}).
+ * @param <I>           the input stream symbol type
+ */
+final class LazyUnion<I> implements SymSet<I> {
+
+    /**
+     * Construct the union of two symbol sets, deferring the construction of the union where possible.
+     * @param lhs       the left-hand set
+     * @param rhs       the right-hand set
+     * @param <I>       the input stream symbol type
+     * @return          the union of the two sets
+     */
+    static <I> SymSet<I> of(SymSet<I> lhs, SymSet<I> rhs) {
+        if (lhs instanceof Empty || rhs instanceof All) {
+            return rhs;
+        } else if (rhs instanceof Empty || lhs instanceof All) {
+            return lhs;
+        } else {
+            return new LazyUnion<I>(lhs, rhs);
+        }
+    }
+
+    /**
+     * Return the materialised form of a symbol set.
+     * @param set       the symbol set
+     * @param <I>       the input stream symbol type
+     * @return          the set itself, or if it is a {@code LazyUnion}, the union it represents
+     */
+    static <I> SymSet<I> resolve(SymSet<I> set) {
+        return set instanceof LazyUnion ? ((LazyUnion<I>)set).get() : set;
+    }
+
+    private final SymSet<I> lhs;
+    private final SymSet<I> rhs;
+
+    // The materialised union - benignly racy, as unions are immutable.
+    private SymSet<I> union;
+
+    // The hash code, or zero if it hasn't been computed yet - also benignly racy.
+    private int hash;
+
+    private LazyUnion(SymSet<I> lhs, SymSet<I> rhs) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+    }
+
+    SymSet<I> get() {
+        SymSet<I> u = union;
+        if (u == null) {
+            union = u = resolve(lhs).union(resolve(rhs));
+        }
+        return u;
+    }
+
+    @Override
+    public Type type() {
+        return get().type();
+    }
+
+    @Override
+    public boolean matches(I value) {
+        return lhs.matches(value) || rhs.matches(value);
+    }
+
+    @Override
+    public boolean matchesChar(char c) {
+        return lhs.matchesChar(c) || rhs.matchesChar(c);
+    }
+
+    @Override
+    public SymSet<I> union(SymSet<I> rhs) {
+        return of(this, rhs);
+    }
+
+    @Override
+    public SymSet<I> compile() {
+        return get().compile();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final LazyUnion<?> that = (LazyUnion<?>) o;
+        return lhs.equals(that.lhs) &&
+                rhs.equals(that.rhs);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            hash = h = 31 * lhs.hashCode() + rhs.hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return get().toString();
+    }
+
+    @Override
+    public StringBuilder append(StringBuilder sb) {
+        return get().append(sb);
+    }
+}
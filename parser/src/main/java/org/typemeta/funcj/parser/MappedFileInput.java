@@ -0,0 +1,219 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.util.Exceptions;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Objects;
+
+/**
+ * A {@link CharInput} over a memory-mapped file of UTF-8 encoded text.
+ * <p>
+ * The file is mapped in segments of up to 1GiB, so files larger than the heap
+ * (and larger than the 2GiB limit of a single {@link MappedByteBuffer}) can be parsed.
+ * The text is decoded lazily, one character at a time, as the input is read.
+ * Code points outside the Basic Multilingual Plane are presented as a surrogate pair.
+ * Malformed byte sequences are decoded as the replacement character U+FFFD.
+ * <p>
+ * Positions are byte offsets into the file.
+ * As the mapped data is never modified, the cursors can be shared across threads.
+ */
+final class MappedFileInput implements CharInput {
+
+    static final int DEFAULT_SEGMENT_BITS = 30;
+
+    private static final char REPLACEMENT = '\uFFFD';
+
+    /**
+     * The mapped segments of the file.
+     */
+    static final class Source {
+        private final MappedByteBuffer[] segments;
+        private final long size;
+        private final int segmentBits;
+        private final long segmentMask;
+
+        Source(FileChannel channel, int segmentBits) {
+            this.size = Exceptions.wrap(channel::size);
+            this.segmentBits = segmentBits;
+            this.segmentMask = (1L << segmentBits) - 1;
+
+            final long segmentSize = 1L << segmentBits;
+            final int n = (int)((size + segmentSize - 1) >>> segmentBits);
+            this.segments = new MappedByteBuffer[n];
+            for (int i = 0; i < n; ++i) {
+                final long offset = (long)i << segmentBits;
+                final long len = Math.min(segmentSize, size - offset);
+                segments[i] = Exceptions.wrap(() -> channel.map(FileChannel.MapMode.READ_ONLY, offset, len));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        int byteAt(long offset) {
+            return segments[(int)(offset >>> segmentBits)].get((int)(offset & segmentMask));
+        }
+
+        /**
+         * Decode the code point starting at the given offset.
+         * @param offset    the byte offset
+         * @return          the code point in the low 21 bits, and the length of its encoding in the upper bits
+         */
+        int decode(long offset) {
+            final int b0 = byteAt(offset);
+            if (b0 >= 0) {
+                return (1 << 24) | b0;
+            } else if ((b0 & 0xE0) == 0xC0) {
+                final int b1 = continuation(offset + 1);
+                final int cp = ((b0 & 0x1F) << 6) | b1;
+                return (b1 < 0 || cp < 0x80) ? invalid() : (2 << 24) | cp;
+            } else if ((b0 & 0xF0) == 0xE0) {
+                final int b1 = continuation(offset + 1);
+                final int b2 = continuation(offset + 2);
+                final int cp = ((b0 & 0x0F) << 12) | (b1 << 6) | b2;
+                // Encoded surrogates are invalid UTF-8.
+                return (b1 < 0 || b2 < 0 || cp < 0x800 || Character.isSurrogate((char)cp))
+                        ? invalid()
+                        : (3 << 24) | cp;
+            } else if ((b0 & 0xF8) == 0xF0) {
+                final int b1 = continuation(offset + 1);
+                final int b2 = continuation(offset + 2);
+                final int b3 = continuation(offset + 3);
+                final int cp = ((b0 & 0x07) << 18) | (b1 << 12) | (b2 << 6) | b3;
+                return (b1 < 0 || b2 < 0 || b3 < 0 || cp < 0x10000 || cp > Character.MAX_CODE_POINT)
+                        ? invalid()
+                        : (4 << 24) | cp;
+            } else {
+                return invalid();
+            }
+        }
+
+        private int continuation(long offset) {
+            if (offset >= size) {
+                return -1;
+            } else {
+                final int b = byteAt(offset);
+                return (b & 0xC0) == 0x80 ? (b & 0x3F) : -1;
+            }
+        }
+
+        private static int invalid() {
+            return (1 << 24) | REPLACEMENT;
+        }
+    }
+
+    /**
+     * Construct an input which is positioned at the start of the text in the file.
+     * A leading UTF-8 byte order mark is skipped.
+     * @param channel   the file channel
+     * @param segmentBits the log2 of the segment size
+     * @return          the input
+     */
+    static MappedFileInput of(FileChannel channel, int segmentBits) {
+        final Source source = new Source(channel, segmentBits);
+        final boolean hasBom =
+                source.size() >= 3 &&
+                        (source.byteAt(0) & 0xFF) == 0xEF &&
+                        (source.byteAt(1) & 0xFF) == 0xBB &&
+                        (source.byteAt(2) & 0xFF) == 0xBF;
+        return new MappedFileInput(source, hasBom ? 3 : 0, source.size(), false);
+    }
+
+    private final Source source;
+    private final long offset;
+    private final long end;
+    private final boolean lowSurrogate;
+
+    /**
+     * Construct an input over a range of the file.
+     * @param source    the mapped file
+     * @param offset    the byte offset of the input
+     * @param end       the byte offset of the end of the range (exclusive)
+     * @param lowSurrogate true if the input is positioned at the low half of a surrogate pair
+     */
+    MappedFileInput(Source source, long offset, long end, boolean lowSurrogate) {
+        this.source = source;
+        this.offset = offset;
+        this.end = end;
+        this.lowSurrogate = lowSurrogate;
+    }
+
+    @Override
+    public String toString() {
+        final String dataStr = isEof() ? "EOF" : String.valueOf(getChar());
+        return "MappedFileInput{" + offset + ",data=\"" + dataStr + "\"";
+    }
+
+    @Override
+    public boolean isEof() {
+        return offset >= end;
+    }
+
+    @Override
+    public char getChar() {
+        final int b0 = source.byteAt(offset);
+        if (b0 >= 0) {
+            return (char)b0;
+        } else {
+            final int cp = source.decode(offset) & 0x1FFFFF;
+            if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                return (char)cp;
+            } else {
+                return lowSurrogate ? Character.lowSurrogate(cp) : Character.highSurrogate(cp);
+            }
+        }
+    }
+
+    @Override
+    public CharInput next() {
+        final int b0 = source.byteAt(offset);
+        if (b0 >= 0) {
+            return new MappedFileInput(source, offset + 1, end, false);
+        } else {
+            final int dec = source.decode(offset);
+            final int len = dec >>> 24;
+            if (len == 4 && !lowSurrogate) {
+                return new MappedFileInput(source, offset, end, true);
+            } else {
+                return new MappedFileInput(source, offset + len, end, false);
+            }
+        }
+    }
+
+    /**
+     * Returns the byte offset of this input into the file.
+     * @return          the byte offset
+     */
+    @Override
+    public Object position() {
+        return offset;
+    }
+
+    /**
+     * Returns an index derived from the byte offset,
+     * which also distinguishes the two halves of a surrogate pair.
+     * @return          the index
+     */
+    @Override
+    public long index() {
+        return (offset << 1) | (lowSurrogate ? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final MappedFileInput that = (MappedFileInput) o;
+        return offset == that.offset &&
+                end == that.end &&
+                lowSurrogate == that.lowSurrogate &&
+                source == that.source;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(source, offset, lowSurrogate);
+    }
+}
@@ -0,0 +1,43 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A parser which memoises the results of another parser,
+ * keyed on the input position (see {@link Parser#memo()}).
+ * <p>
+ * The results are recorded by the input, via {@link Input#memo(Object, int, Parser, SymSet)},
+ * which by default records them in a {@link MemoTable} for the duration of the parse.
+ * Each {@code MemoParser} is the owner of its own table,
+ * so the parser identity forms an implicit part of the key.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+class MemoParser<I, A> extends ParserImpl<I, A> {
+
+    static void checkCapacity(int capacity) {
+        // Validate the capacity eagerly, rather than on first use.
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memo table capacity must be positive - " + capacity);
+        }
+    }
+
+    private final Parser<I, A> p;
+
+    private final int capacity;
+
+    MemoParser(Parser<I, A> p, int capacity) {
+        super(p.acceptsEmpty(), p.firstSet());
+        checkCapacity(capacity);
+        this.p = p;
+        this.capacity = capacity;
+    }
+
+    @Override
+    Parser<I, A> compile(Compiler c) {
+        return c.memo(this, p, capacity);
+    }
+
+    @Override
+    public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+        return in.memo(this, capacity, p, follow);
+    }
+}
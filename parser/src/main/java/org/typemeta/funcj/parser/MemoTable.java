@@ -0,0 +1,229 @@
+package org.typemeta.funcj.parser;
+
+import java.util.*;
+
+/**
+ * A bounded table of memoised parse results, for use by {@link Parser#memo()}.
+ * <p>
+ * Results are keyed on the {@link Input#index()} of the input position.
+ * The table uses open addressing over primitive arrays,
+ * where each key hashes to a bucket of {@link #WAYS} consecutive slots.
+ * The table starts small, and when a bucket is full it doubles in size, up to its capacity.
+ * Once it has reached its capacity, an insertion into a full bucket evicts one of its entries in round-robin order,
+ * so the table never grows beyond its capacity.
+ * <p>
+ * Entries also record the input and follow set they were computed for,
+ * so that a lookup only succeeds for the same position in the same input stream,
+ * with an equal follow set.
+ * <p>
+ * The tables only live for the duration of a single parse (see {@link Scope}),
+ * so they don't retain the inputs and results of a parse once it has completed.
+ * <p>
+ * {@code MemoTable} is not thread-safe.
+ */
+final class MemoTable<I, A> {
+
+    static final int DEFAULT_CAPACITY = 1 << 12;
+
+    static final int WAYS = 4;
+
+    static final int INITIAL_SIZE = 1 << 6;
+
+    /**
+     * Apply a memoising parser, using the memoised result if there is one,
+     * and otherwise memoising the result in the table for the parser in the current {@link Scope}.
+     * Inputs which don't provide an {@link Input#index()} are passed straight to the underlying parser.
+     * @param owner     the identity of the memoising parser
+     * @param capacity  the capacity of the memo table
+     * @param p         the underlying parser
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the parse result
+     */
+    static <I, A> Result<I, A> apply(Object owner, int capacity, Parser<I, A> p, Input<I> in, SymSet<I> follow) {
+        final long key = in.index();
+        if (key == -1) {
+            return p.apply(in, follow);
+        }
+
+        final Scope scope = Scope.enter();
+        try {
+            final MemoTable<I, A> table = scope.table(owner, capacity);
+            final Result<I, A> memo = table.get(key, in, follow);
+            if (memo != null) {
+                return memo;
+            } else {
+                final Result<I, A> r = p.apply(in, follow);
+                table.put(key, in, follow, r);
+                return r;
+            }
+        } finally {
+            scope.exit();
+        }
+    }
+
+    /**
+     * The memo tables for the parse which is in progress on the current thread.
+     * <p>
+     * Each parse entry point (e.g. {@link Parser#parse(Input)}) enters the scope,
+     * as does each application of a memoising parser,
+     * so that a memoising parser applied outside of a parse still uses a table for the duration of the application.
+     * The tables are discarded when the outermost entry exits.
+     */
+    static final class Scope {
+        private static final ThreadLocal<Scope> CURRENT = ThreadLocal.withInitial(Scope::new);
+
+        /**
+         * Enter the scope for the current thread.
+         * @return          the scope, which must be exited via {@link #exit()}
+         */
+        static Scope enter() {
+            final Scope scope = CURRENT.get();
+            ++scope.depth;
+            return scope;
+        }
+
+        private int depth;
+
+        private Map<Object, MemoTable<?, ?>> tables;
+
+        private Scope() {
+        }
+
+        @SuppressWarnings("unchecked")
+        <I, A> MemoTable<I, A> table(Object owner, int capacity) {
+            if (tables == null) {
+                tables = new IdentityHashMap<Object, MemoTable<?, ?>>();
+            }
+            MemoTable<I, A> table = (MemoTable<I, A>)tables.get(owner);
+            if (table == null) {
+                table = new MemoTable<I, A>(capacity);
+                tables.put(owner, table);
+            }
+            return table;
+        }
+
+        /**
+         * Exit the scope, discarding the tables if this is the outermost entry.
+         */
+        void exit() {
+            if (--depth == 0) {
+                tables = null;
+            }
+        }
+    }
+
+    private final int maxSize;
+    private long[] keys;
+    private Object[] inputs;
+    private Object[] follows;
+    private Object[] results;
+    private byte[] victims;
+    private int bucketMask;
+
+    /**
+     * Construct a table.
+     * @param capacity  the maximum number of entries, which is rounded up to a power of two
+     */
+    MemoTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Memo table capacity must be positive - " + capacity);
+        }
+
+        this.maxSize = Math.max(WAYS, Integer.highestOneBit(capacity - 1) << 1);
+        allocate(Math.min(maxSize, INITIAL_SIZE));
+    }
+
+    private void allocate(int size) {
+        this.keys = new long[size];
+        this.inputs = new Object[size];
+        this.follows = new Object[size];
+        this.results = new Object[size];
+        this.victims = new byte[size / WAYS];
+        this.bucketMask = size / WAYS - 1;
+        Arrays.fill(keys, -1L);
+    }
+
+    int capacity() {
+        return maxSize;
+    }
+
+    private int bucket(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        return (int)h & bucketMask;
+    }
+
+    /**
+     * Look up the result for an input position.
+     * @param key       the index of the input position
+     * @param in        the input
+     * @param follow    the follow set
+     * @return          the memoised result, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    Result<I, A> get(long key, Input<I> in, SymSet<I> follow) {
+        final int start = bucket(key) * WAYS;
+        for (int i = start; i < start + WAYS; ++i) {
+            if (matches(i, key, in, follow)) {
+                return (Result<I, A>)results[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Record the result for an input position.
+     * @param key       the index of the input position
+     * @param in        the input
+     * @param follow    the follow set
+     * @param result    the result
+     */
+    @SuppressWarnings("unchecked")
+    void put(long key, Input<I> in, SymSet<I> follow, Result<I, A> result) {
+        while (true) {
+            final int b = bucket(key);
+            final int start = b * WAYS;
+            for (int i = start; i < start + WAYS; ++i) {
+                if (keys[i] == -1L || matches(i, key, in, follow)) {
+                    set(i, key, in, follow, result);
+                    return;
+                }
+            }
+
+            if (keys.length < maxSize) {
+                // Grow the table, and re-insert the existing entries.
+                final long[] oldKeys = keys;
+                final Object[] oldInputs = inputs;
+                final Object[] oldFollows = follows;
+                final Object[] oldResults = results;
+                allocate(keys.length * 2);
+                for (int i = 0; i < oldKeys.length; ++i) {
+                    if (oldKeys[i] != -1L) {
+                        put(oldKeys[i], (Input<I>)oldInputs[i], (SymSet<I>)oldFollows[i], (Result<I, A>)oldResults[i]);
+                    }
+                }
+            } else {
+                final int slot = start + victims[b];
+                victims[b] = (byte)((victims[b] + 1) % WAYS);
+                set(slot, key, in, follow, result);
+                return;
+            }
+        }
+    }
+
+    private boolean matches(int i, long key, Input<I> in, SymSet<I> follow) {
+        return keys[i] == key &&
+                (follows[i] == follow || follow.equals(follows[i])) &&
+                in.equals(inputs[i]);
+    }
+
+    private void set(int i, long key, Input<I> in, SymSet<I> follow, Result<I, A> result) {
+        keys[i] = key;
+        inputs[i] = in;
+        follows[i] = follow;
+        results[i] = result;
+    }
+}
@@ -0,0 +1,66 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A parser which labels another parser with a name (see {@link Parser#named(String)}).
+ * <p>
+ * The name has no effect on the parse.
+ * When the parser is compiled without a listener, the label is dropped from the compiled graph,
+ * and when it is compiled via {@link Parser#instrument(ParseListener)},
+ * it is replaced by a node which notifies the listener of each application.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+class NamedParser<I, A> extends ParserImpl<I, A> {
+
+    /**
+     * Apply a parser, notifying a listener before and after.
+     * @param listener  the listener
+     * @param name      the name of the parser
+     * @param p         the parser
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the parse result
+     */
+    static <I, A> Result<I, A> apply(
+            ParseListener listener,
+            String name,
+            Parser<I, A> p,
+            Input<I> in,
+            SymSet<I> follow) {
+        listener.enter(name, in);
+        Result<I, A> r = null;
+        try {
+            r = p.apply(in, follow);
+            return r;
+        } finally {
+            listener.exit(name, in, r);
+        }
+    }
+
+    private final Parser<I, A> p;
+
+    private final String name;
+
+    NamedParser(Parser<I, A> p, String name) {
+        super(p.acceptsEmpty(), p.firstSet());
+        this.p = p;
+        this.name = name;
+    }
+
+    @Override
+    Parser<I, A> compile(Compiler c) {
+        return c.named(this, p, name);
+    }
+
+    @Override
+    public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+        return p.apply(in, follow);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
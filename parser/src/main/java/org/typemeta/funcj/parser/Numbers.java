@@ -0,0 +1,305 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.math.BigDecimal;
+import java.util.function.LongFunction;
+
+/**
+ * Scanner-based implementations of the numeric parsers in {@link Text}.
+ * <p>
+ * Each parser reads the digits of a number in a single loop over the input (via a {@link CharScanner}),
+ * accumulating the value directly, rather than constructing a list of digits and then folding it.
+ */
+final class Numbers {
+
+    private Numbers() {
+    }
+
+    /**
+     * The largest mantissa which can be represented exactly as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * The number of significant decimal digits which are guaranteed to fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    /**
+     * The powers of ten which can be represented exactly as doubles.
+     */
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Exponents larger than this are not accumulated any further,
+     * as the value is then certain to overflow (or underflow) a double.
+     */
+    private static final int MAX_EXPONENT = 100000;
+
+    /**
+     * Return the value of a digit in the given radix, or -1 if the character isn't a digit.
+     * Non-ASCII decimal digits are accepted for radix 10 (as per {@link Character#isDigit(char)}).
+     * @param c         the character
+     * @param radix     the radix
+     * @return          the digit value, or -1
+     */
+    static int digit(char c, int radix) {
+        final int d;
+        if (c >= '0' && c <= '9') {
+            d = c - '0';
+        } else if (c >= 'a' && c <= 'z') {
+            d = c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'Z') {
+            d = c - 'A' + 10;
+        } else if (c >= 0x80 && radix == 10) {
+            return Character.digit(c, 10);
+        } else {
+            return -1;
+        }
+        return d < radix ? d : -1;
+    }
+
+    private static SymSet<Chr> digits(int radix) {
+        switch (radix) {
+            case 8:     return SymSet.charPred("octDigit", c -> digit(c, 8) >= 0);
+            case 10:    return SymSet.charPred("digit", c -> digit(c, 10) >= 0);
+            case 16:    return SymSet.charPred("hexDigit", c -> digit(c, 16) >= 0);
+            default:    throw new IllegalArgumentException("Unsupported radix - " + radix);
+        }
+    }
+
+    private static final SymSet<Chr> DECIMAL_DIGITS = digits(10);
+
+    private static SymSet<Chr> signedFirstSet(String name, int radix) {
+        return SymSet.charPred(name, c -> c == '+' || c == '-' || digit(c, radix) >= 0);
+    }
+
+    /**
+     * Construct a parser for an integral number.
+     * <p>
+     * Decimal numbers have no leading zeros, i.e. a leading {@code 0} is parsed as the number zero.
+     * Numbers whose magnitude exceeds {@code max} (or {@code max + 1} for negative numbers)
+     * result in a failure, positioned at the start of the number.
+     * @param name      the name of the number type (used for error messages)
+     * @param signed    true if the number may be preceded by a {@code +} or {@code -} sign
+     * @param radix     the radix - one of 8, 10 or 16
+     * @param max       the largest value
+     * @param box       the function which converts the accumulated value to the result type
+     * @param <A>       the parser result type
+     * @return          the parser
+     */
+    static <A> Parser<Chr, A> integral(String name, boolean signed, int radix, long max, LongFunction<A> box) {
+        final SymSet<Chr> digits = radix == 10 ? DECIMAL_DIGITS : digits(radix);
+        final SymSet<Chr> firstSet = signed ? signedFirstSet(name, radix) : digits;
+        final long min = -max - 1;
+
+        return new ParserImpl<Chr, A>(Utils.LFALSE, () -> firstSet) {
+            @Override
+            public Result<Chr, A> apply(Input<Chr> in, SymSet<Chr> follow) {
+                final CharScanner sc = CharScanner.of(in);
+
+                boolean neg = false;
+                if (signed && !sc.isEof()) {
+                    final char c = sc.peek();
+                    if (c == '-') {
+                        neg = true;
+                        sc.advance();
+                    } else if (c == '+') {
+                        sc.advance();
+                    }
+                }
+
+                if (sc.isEof()) {
+                    return Result.failureEof(sc.input(), digits);
+                }
+
+                final char c = sc.peek();
+                int d = digit(c, radix);
+                if (d < 0) {
+                    return Result.failure(sc.input(), digits);
+                }
+
+                sc.advance();
+
+                // Accumulate negatively, as the magnitude of the minimum value exceeds that of the maximum.
+                final long limit = neg ? min : -max;
+                final long multMin = limit / radix;
+                long acc = -d;
+
+                if (radix != 10 || c != '0') {
+                    while (!sc.isEof() && (d = digit(sc.peek(), radix)) >= 0) {
+                        if (acc < multMin) {
+                            return Utils.failure("Value out of range for " + name, in);
+                        }
+                        acc *= radix;
+                        if (acc < limit + d) {
+                            return Utils.failure("Value out of range for " + name, in);
+                        }
+                        acc -= d;
+                        sc.advance();
+                    }
+                }
+
+                return Result.success(box.apply(neg ? acc : -acc), sc.input());
+            }
+        };
+    }
+
+    /**
+     * Construct a parser for a decimal floating point number,
+     * which returns a correctly rounded {@code double}.
+     * <p>
+     * If the significant digits fit in a double,
+     * and the power of ten is small enough to be represented exactly,
+     * then the value is computed with a single (correctly rounded) multiplication or division.
+     * Otherwise the consumed text is converted with {@link Double#parseDouble(String)}.
+     * @return          the parser
+     */
+    static Parser<Chr, Double> dble() {
+        return decimal("double", false);
+    }
+
+    /**
+     * Construct a parser for a decimal number, which returns a {@link BigDecimal}.
+     * @return          the parser
+     */
+    static Parser<Chr, BigDecimal> bigDecimal() {
+        return decimal("BigDecimal", true);
+    }
+
+    private static <A> Parser<Chr, A> decimal(String name, boolean big) {
+        final SymSet<Chr> firstSet = signedFirstSet(name, 10);
+
+        return new ParserImpl<Chr, A>(Utils.LFALSE, () -> firstSet) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public Result<Chr, A> apply(Input<Chr> in, SymSet<Chr> follow) {
+                final CharScanner sc = CharScanner.of(in, true);
+
+                boolean neg = false;
+                if (!sc.isEof()) {
+                    final char c = sc.peek();
+                    if (c == '-') {
+                        neg = true;
+                        sc.advance();
+                    } else if (c == '+') {
+                        sc.advance();
+                    }
+                }
+
+                if (sc.isEof()) {
+                    return Result.failureEof(sc.input(), DECIMAL_DIGITS);
+                }
+
+                final char c = sc.peek();
+                int d = digit(c, 10);
+                if (d < 0) {
+                    return Result.failure(sc.input(), DECIMAL_DIGITS);
+                }
+
+                sc.advance();
+
+                // The value is m * 10^exp10, where m comprises the first MAX_LONG_DIGITS significant digits.
+                long m = d;
+                int sigDigits = d == 0 ? 0 : 1;
+                int exp10 = 0;
+
+                if (c != '0') {
+                    while (!sc.isEof() && (d = digit(sc.peek(), 10)) >= 0) {
+                        if (sigDigits < MAX_LONG_DIGITS) {
+                            m = m * 10 + d;
+                        } else {
+                            ++exp10;
+                        }
+                        if (sigDigits != 0 || d != 0) {
+                            ++sigDigits;
+                        }
+                        sc.advance();
+                    }
+                }
+
+                if (!sc.isEof() && sc.peek() == '.') {
+                    sc.advance();
+                    while (!sc.isEof() && (d = digit(sc.peek(), 10)) >= 0) {
+                        if (sigDigits < MAX_LONG_DIGITS) {
+                            m = m * 10 + d;
+                            --exp10;
+                        }
+                        if (sigDigits != 0 || d != 0) {
+                            ++sigDigits;
+                        }
+                        sc.advance();
+                    }
+                }
+
+                if (!sc.isEof() && (sc.peek() == 'e' || sc.peek() == 'E')) {
+                    sc.advance();
+
+                    boolean expNeg = false;
+                    if (!sc.isEof()) {
+                        if (sc.peek() == '-') {
+                            expNeg = true;
+                            sc.advance();
+                        } else if (sc.peek() == '+') {
+                            sc.advance();
+                        }
+                    }
+
+                    if (sc.isEof()) {
+                        return Result.failureEof(sc.input(), DECIMAL_DIGITS);
+                    } else if ((d = digit(sc.peek(), 10)) < 0) {
+                        return Result.failure(sc.input(), DECIMAL_DIGITS);
+                    }
+
+                    int exp = 0;
+                    do {
+                        if (exp < MAX_EXPONENT) {
+                            exp = exp * 10 + d;
+                        }
+                        sc.advance();
+                    } while (!sc.isEof() && (d = digit(sc.peek(), 10)) >= 0);
+
+                    exp10 += expNeg ? -exp : exp;
+                }
+
+                if (big) {
+                    try {
+                        return Result.success((A)new BigDecimal(sc.consumed()), sc.input());
+                    } catch (NumberFormatException ex) {
+                        return Utils.failure("Value out of range for " + name, in);
+                    }
+                }
+
+                final double r;
+                if (m == 0) {
+                    r = neg ? -0.0 : 0.0;
+                } else if (sigDigits <= MAX_LONG_DIGITS &&
+                        m <= MAX_EXACT_MANTISSA &&
+                        exp10 >= -22 && exp10 <= 22) {
+                    final double v = exp10 >= 0 ? m * POW10[exp10] : m / POW10[-exp10];
+                    r = neg ? -v : v;
+                } else {
+                    r = Double.parseDouble(asciiDigits(sc.consumed()));
+                }
+
+                return Result.success((A)Double.valueOf(r), sc.input());
+            }
+        };
+    }
+
+    /**
+     * Convert a numeric string to ASCII, replacing any non-ASCII digits with the equivalent ASCII digits.
+     */
+    private static String asciiDigits(char[] cs) {
+        for (int i = 0; i < cs.length; ++i) {
+            if (cs[i] >= 0x80) {
+                cs[i] = (char)('0' + Character.digit(cs[i], 10));
+            }
+        }
+        return new String(cs);
+    }
+}
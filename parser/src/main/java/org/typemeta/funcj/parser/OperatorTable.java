@@ -0,0 +1,169 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.functions.Functions.*;
+
+import java.util.*;
+
+/**
+ * A table of prefix, infix and postfix operators, each with a precedence and (for infix operators) an associativity,
+ * from which a parser for operator expressions can be constructed.
+ * <p>
+ * Operators with a higher precedence bind more tightly than those with a lower precedence.
+ * For example, with the following table, {@code -a+b*c!} is parsed as {@code (-a)+(b*(c!))}:
+ * <pre>{@code
+ * Parser<Chr, Integer> expr =
+ *     OperatorTable.<Chr, Integer>create()
+ *         .infixLeft(1, chr('+').map(c -> (x, y) -> x + y))
+ *         .infixLeft(2, chr('*').map(c -> (x, y) -> x * y))
+ *         .prefix(3, chr('-').map(c -> x -> -x))
+ *         .postfix(4, chr('!').map(c -> x -> factorial(x)))
+ *         .parser(intr);
+ * }</pre>
+ * <p>
+ * The resulting parser uses an explicit stack of pending operators, rather than recursion or nested
+ * {@link Parser#chainl1(Parser)} and {@link Parser#chainr1(Parser)} parsers,
+ * so operator chains of arbitrary length can be parsed,
+ * and no intermediate lists or closures are constructed.
+ * <p>
+ * Within each kind of operator (prefix, infix and postfix),
+ * the operators are tried in the order in which they were added to the table,
+ * and the first which succeeds is applied.
+ * Consequently, where one operator is a prefix of another (e.g. {@code <} and {@code <<}),
+ * the longer operator should be added first.
+ * <p>
+ * {@code OperatorTable} instances are immutable.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the expression type
+ */
+public final class OperatorTable<I, A> {
+
+    /**
+     * The associativity of an infix operator.
+     */
+    public enum Assoc {
+        /**
+         * Left-associative, i.e. {@code a-b-c} is parsed as {@code (a-b)-c}.
+         */
+        LEFT,
+
+        /**
+         * Right-associative, i.e. {@code a^b^c} is parsed as {@code a^(b^c)}.
+         */
+        RIGHT,
+
+        /**
+         * Non-associative, i.e. {@code a==b==c} is an error.
+         */
+        NONE
+    }
+
+    static final int PREFIX = 0;
+    static final int POSTFIX = 1;
+    static final int INFIX_LEFT = 2;
+    static final int INFIX_RIGHT = 3;
+    static final int INFIX_NONE = 4;
+
+    /**
+     * An operator in the table.
+     */
+    static final class Entry<I> {
+        final int kind;
+        final int precedence;
+        final Parser<I, ?> op;
+
+        Entry(int kind, int precedence, Parser<I, ?> op) {
+            this.kind = kind;
+            this.precedence = precedence;
+            this.op = op;
+        }
+    }
+
+    /**
+     * Construct an empty operator table.
+     * @param <I>       the input stream symbol type
+     * @param <A>       the expression type
+     * @return          the empty operator table
+     */
+    public static <I, A> OperatorTable<I, A> create() {
+        return new OperatorTable<I, A>(Collections.<Entry<I>>emptyList());
+    }
+
+    private final List<Entry<I>> entries;
+
+    private OperatorTable(List<Entry<I>> entries) {
+        this.entries = entries;
+    }
+
+    private OperatorTable<I, A> add(int kind, int precedence, Parser<I, ?> op) {
+        if (op.acceptsEmpty().apply()) {
+            throw new IllegalArgumentException("Operator parsers must not accept empty input");
+        }
+        final List<Entry<I>> entries2 = new ArrayList<Entry<I>>(entries);
+        entries2.add(new Entry<I>(kind, precedence, op));
+        return new OperatorTable<I, A>(Collections.unmodifiableList(entries2));
+    }
+
+    /**
+     * Return a copy of this table with an additional prefix operator.
+     * @param precedence the precedence of the operator
+     * @param op        the parser for the operator, which returns the function which applies it
+     * @return          the new table
+     */
+    public OperatorTable<I, A> prefix(int precedence, Parser<I, Op<A>> op) {
+        return add(PREFIX, precedence, op);
+    }
+
+    /**
+     * Return a copy of this table with an additional postfix operator.
+     * @param precedence the precedence of the operator
+     * @param op        the parser for the operator, which returns the function which applies it
+     * @return          the new table
+     */
+    public OperatorTable<I, A> postfix(int precedence, Parser<I, Op<A>> op) {
+        return add(POSTFIX, precedence, op);
+    }
+
+    /**
+     * Return a copy of this table with an additional infix operator.
+     * @param precedence the precedence of the operator
+     * @param assoc     the associativity of the operator
+     * @param op        the parser for the operator, which returns the function which applies it
+     * @return          the new table
+     */
+    public OperatorTable<I, A> infix(int precedence, Assoc assoc, Parser<I, Op2<A>> op) {
+        switch (assoc) {
+            case LEFT:  return add(INFIX_LEFT, precedence, op);
+            case RIGHT: return add(INFIX_RIGHT, precedence, op);
+            default:    return add(INFIX_NONE, precedence, op);
+        }
+    }
+
+    /**
+     * Return a copy of this table with an additional left-associative infix operator.
+     * @param precedence the precedence of the operator
+     * @param op        the parser for the operator, which returns the function which applies it
+     * @return          the new table
+     */
+    public OperatorTable<I, A> infixLeft(int precedence, Parser<I, Op2<A>> op) {
+        return infix(precedence, Assoc.LEFT, op);
+    }
+
+    /**
+     * Return a copy of this table with an additional right-associative infix operator.
+     * @param precedence the precedence of the operator
+     * @param op        the parser for the operator, which returns the function which applies it
+     * @return          the new table
+     */
+    public OperatorTable<I, A> infixRight(int precedence, Parser<I, Op2<A>> op) {
+        return infix(precedence, Assoc.RIGHT, op);
+    }
+
+    /**
+     * Construct a parser for expressions comprising operands combined with the operators in this table.
+     * @param operand   the parser for the operands
+     * @return          the expression parser
+     */
+    public Parser<I, A> parser(Parser<I, A> operand) {
+        return new PrattParser<I, A>(operand, entries);
+    }
+}
@@ -0,0 +1,188 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.util.Exceptions;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A driver which parses the records of a record-oriented input in parallel.
+ * <p>
+ * The input is partitioned into chunks,
+ * the boundaries of which are advanced to record boundaries by a {@link RecordSplitter}.
+ * The chunks are parsed concurrently on a {@link ForkJoinPool},
+ * and within each chunk each record is parsed (as per {@link Parser#parse(Input)}) by the record parser.
+ * The results are returned in input order.
+ * <p>
+ * The input positions of the record parser results are global, i.e. relative to the start of the whole input,
+ * so failures report the same position as they would for a sequential parse.
+ * <p>
+ * The record parser is compiled when the {@code ParallelParser} is constructed,
+ * so any {@link Ref}s it contains must have been initialised beforehand.
+ * @param <A>           the record type
+ */
+public final class ParallelParser<A> {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Construct a parallel parser.
+     * @param record    the parser for a single record
+     * @param splitter  the record splitter
+     * @param <A>       the record type
+     * @return          the parallel parser
+     */
+    public static <A> ParallelParser<A> of(Parser<Chr, A> record, RecordSplitter splitter) {
+        return new ParallelParser<A>(record.compile(), splitter, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    private final Parser<Chr, A> record;
+
+    private final RecordSplitter splitter;
+
+    private final ForkJoinPool pool;
+
+    private final int chunkSize;
+
+    private ParallelParser(Parser<Chr, A> record, RecordSplitter splitter, ForkJoinPool pool, int chunkSize) {
+        this.record = record;
+        this.splitter = Objects.requireNonNull(splitter);
+        this.pool = Objects.requireNonNull(pool);
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive - " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Return a copy of this parser which uses the given pool.
+     * @param pool      the pool
+     * @return          the new parser
+     */
+    public ParallelParser<A> withPool(ForkJoinPool pool) {
+        return new ParallelParser<A>(record, splitter, pool, chunkSize);
+    }
+
+    /**
+     * Return a copy of this parser which partitions the input into chunks of (approximately) the given size.
+     * @param chunkSize the chunk size, in input positions
+     * @return          the new parser
+     */
+    public ParallelParser<A> withChunkSize(int chunkSize) {
+        return new ParallelParser<A>(record, splitter, pool, chunkSize);
+    }
+
+    /**
+     * Parse the records in an array.
+     * @param data      the input data
+     * @return          the results for each record, in input order
+     */
+    public List<Result<Chr, A>> parse(char[] data) {
+        return parse(i -> data[(int)i], 0, data.length, (start, end) -> new StringInput(data, (int)start, (int)end));
+    }
+
+    /**
+     * Parse the records in an input.
+     * The input is first read in full (sequentially) into memory.
+     * The positions of the results are symbol counts from the given input.
+     * @param in        the input data
+     * @return          the results for each record, in input order
+     */
+    public List<Result<Chr, A>> parse(Input<Chr> in) {
+        final StringBuilder sb = new StringBuilder();
+        if (in instanceof CharInput) {
+            for (CharInput ci = (CharInput)in; !ci.isEof(); ci = ci.next()) {
+                sb.append(ci.getChar());
+            }
+        } else {
+            for (; !in.isEof(); in = in.next()) {
+                sb.append(in.get().charValue());
+            }
+        }
+
+        final char[] data = new char[sb.length()];
+        sb.getChars(0, data.length, data, 0);
+        return parse(data);
+    }
+
+    /**
+     * Parse the records in a file of UTF-8 encoded text.
+     * The file is memory-mapped, and each chunk is decoded by the thread that parses it.
+     * The positions of the results are byte offsets into the file.
+     * @param path      the path of the file
+     * @return          the results for each record, in input order
+     */
+    public List<Result<Chr, A>> parse(Path path) {
+        final MappedFileInput.Source source = Exceptions.wrap(() -> {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return new MappedFileInput.Source(channel, MappedFileInput.DEFAULT_SEGMENT_BITS);
+            }
+        });
+
+        final long size = source.size();
+        final boolean hasBom =
+                size >= 3 &&
+                        (source.byteAt(0) & 0xFF) == 0xEF &&
+                        (source.byteAt(1) & 0xFF) == 0xBB &&
+                        (source.byteAt(2) & 0xFF) == 0xBF;
+
+        return parse(
+                i -> source.byteAt(i) & 0xFF,
+                hasBom ? 3 : 0,
+                size,
+                (start, end) -> new MappedFileInput(source, start, end, false));
+    }
+
+    @FunctionalInterface
+    private interface Slicer {
+        CharInput slice(long start, long end);
+    }
+
+    private List<Result<Chr, A>> parse(RecordSplitter.Data data, long start, long end, Slicer slicer) {
+        // Partition the input into chunks, each starting on a record boundary.
+        final List<Long> bounds = new ArrayList<Long>();
+        bounds.add(start);
+        for (long nominal = start + chunkSize; nominal < end; nominal += chunkSize) {
+            final long prev = bounds.get(bounds.size() - 1);
+            if (nominal > prev) {
+                final long b = splitter.next(data, nominal - 1, end);
+                if (b > prev && b < end) {
+                    bounds.add(b);
+                }
+            }
+        }
+        bounds.add(end);
+
+        final List<ForkJoinTask<List<Result<Chr, A>>>> tasks =
+                new ArrayList<ForkJoinTask<List<Result<Chr, A>>>>(bounds.size() - 1);
+        for (int i = 0; i < bounds.size() - 1; ++i) {
+            final long chunkStart = bounds.get(i);
+            final long chunkEnd = bounds.get(i + 1);
+            tasks.add(pool.submit(() -> parseChunk(data, chunkStart, chunkEnd, slicer)));
+        }
+
+        final List<Result<Chr, A>> results = new ArrayList<Result<Chr, A>>();
+        for (ForkJoinTask<List<Result<Chr, A>>> task : tasks) {
+            results.addAll(task.join());
+        }
+        return results;
+    }
+
+    private List<Result<Chr, A>> parseChunk(RecordSplitter.Data data, long start, long end, Slicer slicer) {
+        final List<Result<Chr, A>> results = new ArrayList<Result<Chr, A>>();
+        long pos = start;
+        while (pos < end) {
+            final long next = splitter.next(data, pos, end);
+            if (next <= pos) {
+                throw new IllegalStateException("Record splitter failed to advance at position " + pos);
+            }
+            final long contentEnd = splitter.contentEnd(data, pos, next);
+            results.add(record.parse(slicer.slice(pos, contentEnd)));
+            pos = next;
+        }
+        return results;
+    }
+}
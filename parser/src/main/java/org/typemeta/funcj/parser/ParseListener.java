@@ -0,0 +1,28 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A listener which is notified of each application of a named parser
+ * (see {@link Parser#named(String)} and {@link Parser#instrument(ParseListener)}).
+ * <p>
+ * Calls to {@code enter} and {@code exit} are balanced and properly nested on each thread,
+ * so listeners can maintain a per-thread stack of the named parsers which are active.
+ * {@link ParseMetrics} is a listener which accumulates per-parser statistics,
+ * while other listeners might, for example, emit them as events to an external profiler.
+ * Listeners are called on the parsing thread, and must be thread-safe if the instrumented parser is shared.
+ */
+public interface ParseListener {
+    /**
+     * Called before a named parser is applied.
+     * @param name      the name of the parser
+     * @param in        the input to which the parser is applied
+     */
+    void enter(String name, Input<?> in);
+
+    /**
+     * Called after a named parser has been applied.
+     * @param name      the name of the parser
+     * @param in        the input to which the parser was applied
+     * @param result    the parse result, or null if the parser threw an exception
+     */
+    void exit(String name, Input<?> in, Result<?, ?> result);
+}
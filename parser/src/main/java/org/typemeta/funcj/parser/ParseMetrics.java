@@ -0,0 +1,188 @@
+package org.typemeta.funcj.parser;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ParseListener} which accumulates statistics for each named parser:
+ * the number of invocations, successes and failures,
+ * the number of symbols consumed by the successful invocations,
+ * and the total and self times.
+ * <p>
+ * The total time of a parser includes the time spent in the named parsers it invokes,
+ * whereas the self time excludes it.
+ * For recursive parsers the total time counts nested invocations more than once,
+ * so the self time is usually the more useful measure of where the time is being spent.
+ * <p>
+ * The number of symbols consumed is only recorded for inputs which provide an {@link Input#index()}.
+ * <pre>{@code
+ * ParseMetrics metrics = new ParseMetrics();
+ * Parser<Chr, Json> p = json.instrument(metrics);
+ * p.parse(Input.of(text));
+ * System.out.println(metrics.report());
+ * }</pre>
+ * {@code ParseMetrics} is thread-safe.
+ */
+public final class ParseMetrics implements ParseListener {
+
+    /**
+     * The statistics for a named parser.
+     */
+    public static final class Stats {
+        private final String name;
+        private final LongAdder successes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder consumed = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder selfNanos = new LongAdder();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public long invocations() {
+            return successes.sum() + failures.sum();
+        }
+
+        public long successes() {
+            return successes.sum();
+        }
+
+        public long failures() {
+            return failures.sum();
+        }
+
+        public long consumed() {
+            return consumed.sum();
+        }
+
+        public long totalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long selfNanos() {
+            return selfNanos.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "name=" + name +
+                    ", invocations=" + invocations() +
+                    ", successes=" + successes() +
+                    ", failures=" + failures() +
+                    ", consumed=" + consumed() +
+                    ", totalNanos=" + totalNanos() +
+                    ", selfNanos=" + selfNanos() +
+                    '}';
+        }
+    }
+
+    // The named parsers which are active on a thread.
+    private static final class Frames {
+        long[] starts = new long[16];
+        long[] childNanos = new long[16];
+        int sp = 0;
+    }
+
+    private final ConcurrentHashMap<String, Stats> stats = new ConcurrentHashMap<String, Stats>();
+
+    private final ThreadLocal<Frames> frames = ThreadLocal.withInitial(Frames::new);
+
+    @Override
+    public void enter(String name, Input<?> in) {
+        final Frames fs = frames.get();
+        if (fs.sp == fs.starts.length) {
+            fs.starts = Arrays.copyOf(fs.starts, fs.sp * 2);
+            fs.childNanos = Arrays.copyOf(fs.childNanos, fs.sp * 2);
+        }
+        fs.childNanos[fs.sp] = 0;
+        fs.starts[fs.sp++] = System.nanoTime();
+    }
+
+    @Override
+    public void exit(String name, Input<?> in, Result<?, ?> result) {
+        final long end = System.nanoTime();
+        final Frames fs = frames.get();
+        final int sp = --fs.sp;
+        final long elapsed = end - fs.starts[sp];
+        if (sp > 0) {
+            fs.childNanos[sp - 1] += elapsed;
+        }
+
+        final Stats st = stats.computeIfAbsent(name, Stats::new);
+        st.totalNanos.add(elapsed);
+        st.selfNanos.add(elapsed - fs.childNanos[sp]);
+        if (result != null && result.isSuccess()) {
+            st.successes.increment();
+            final long start = in.index();
+            final long next = ((Result.Success<?, ?>)result).next().index();
+            if (start != -1 && next != -1) {
+                st.consumed.add(next - start);
+            }
+        } else {
+            st.failures.increment();
+        }
+    }
+
+    /**
+     * Return the statistics for a named parser.
+     * @param name      the name of the parser
+     * @return          the statistics, or null if no parser with that name has been applied
+     */
+    public Stats stats(String name) {
+        return stats.get(name);
+    }
+
+    /**
+     * Return the statistics for all the named parsers which have been applied,
+     * in descending order of self time.
+     * @return          the list of statistics
+     */
+    public List<Stats> stats() {
+        final List<Stats> l = new ArrayList<Stats>(stats.values());
+        l.sort(Comparator.comparingLong(Stats::selfNanos).reversed());
+        return l;
+    }
+
+    /**
+     * Discard all the statistics accumulated so far.
+     * This should not be called while an instrumented parser is being applied.
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * Format the statistics as a table, in descending order of self time.
+     * @return          the report
+     */
+    public String report() {
+        final List<Stats> l = stats();
+        int width = 4;
+        for (Stats st : l) {
+            width = Math.max(width, st.name().length());
+        }
+
+        final String rowFmt = "%-" + width + "s %12s %12s %12s %12s %12s %12s%n";
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.format(rowFmt, "name", "calls", "successes", "failures", "consumed", "self ms", "total ms"));
+        for (Stats st : l) {
+            sb.append(String.format(
+                    rowFmt,
+                    st.name(),
+                    st.invocations(),
+                    st.successes(),
+                    st.failures(),
+                    st.consumed(),
+                    String.format("%.3f", st.selfNanos() / 1e6),
+                    String.format("%.3f", st.totalNanos() / 1e6)));
+        }
+        return sb.toString();
+    }
+}
@@ -6,6 +6,8 @@
 import org.typemeta.funcj.tuples.Tuple2;
 
 import java.util.*;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
 import java.util.stream.Stream;
 
 import static org.typemeta.funcj.parser.Parser.pure;
@@ -14,6 +16,10 @@
 /**
  * A parser is essentially a function from an input stream to a parse {@link Result}.
  * The {@code Parser} type along with the {@code pure} and {@code ap} functions constitute an applicative functor.
+ * <p>
+ * Parsers are immutable once constructed (and once any {@link Ref}s have been initialised),
+ * and their lazily computed properties are safely published,
+ * so a parser can be shared by multiple threads, which may apply it concurrently.
  * @param <I>       the input stream symbol type
  * @param <A>       the parser result type
  */
@@ -92,7 +98,7 @@ public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
                     if (!pa.acceptsEmpty().apply()) {
                         if (next.isEof()) {
                             return failureEof(pa, next);
-                        } else if (!pa.firstSet().apply().matches(next.get())) {
+                        } else if (!next.matches(pa.firstSet().apply())) {
                             return failure(pa, next);
                         }
                     }
@@ -103,6 +109,11 @@ public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
                     return ((Result.Failure<I, F<A, B>>) r).cast();
                 }
             }
+
+            @Override
+            Parser<I, B> compile(Compiler c) {
+                return c.ap(this, pf, pa);
+            }
         };
     }
 
@@ -134,27 +145,22 @@ Parser<I, B> ap(F<A, B> f, Parser<I, A> pa) {
      * @return          a {@code Parser} which wraps an {@link IList} of values
      */
     static <I, T, U> Parser<I, IList<U>> traverse(IList<T> lt, F<T, Parser<I, U>> f) {
-        return lt.foldRight(
-                (t, plu) -> ap(plu.map(lu -> lu::add), f.apply(t)),
-                pure(IList.empty())
-        );
+        return sequence(lt.map(f));
     }
 
     /**
      * Standard applicative sequencing.
      * <p>
      * Translate a {@link IList} of {@code Parser} into a {@code Parser} of an {@code IList},
-     * by composing each consecutive {@code Parser} using the {@link Parser#ap(Parser, Parser)} method.
+     * which applies each {@code Parser} in turn, in list order,
+     * and returns the list of their results.
      * @param lpt       the list of {@code Parser} values
      * @param <I>       the error type
      * @param <T>       the value type of the {@code Parser}s in the list
      * @return          a {@code Parser} which wraps an {@link IList} of values
      */
     static <I, T> Parser<I, IList<T>> sequence(IList<Parser<I, T>> lpt) {
-        return lpt.foldRight(
-                (pt, plt) -> ap(plt.map(lt -> lt::add), pt),
-                pure(IList.empty())
-        );
+        return SeqParser.list(lpt.toList());
     }
 
     /**
@@ -165,13 +171,9 @@ static <I, T> Parser<I, IList<T>> sequence(IList<Parser<I, T>> lpt) {
      * @return          a {@code Parser} which wraps an {@link Stream} of values
      */
     static <E, T> Parser<E, Stream<T>> sequence(Stream<Parser<E, T>> spt) {
-        final Iterator<Parser<E, T>> iter = spt.iterator();
-        Parser<E, IList<T>> plt = pure(IList.empty());
-        while (iter.hasNext()) {
-            final Parser<E, T> pt = iter.next();
-            plt = ap(plt.map(lt -> lt::add), pt);
-        }
-        return plt.map(IList::stream);
+        final List<Parser<E, T>> lpt = new ArrayList<Parser<E, T>>();
+        spt.forEachOrdered(lpt::add);
+        return SeqParser.list(lpt).map(IList::stream);
     }
 
     /**
@@ -180,16 +182,36 @@ static <E, T> Parser<E, Stream<T>> sequence(Stream<Parser<E, T>> spt) {
      * @return          the parser result
      */
     default Result<I, A> parse(Input<I> in) {
-        final Parser<I, A> parserAndEof = this.andL(Combinators.eof());
-        if (acceptsEmpty().apply()) {
-            return parserAndEof.apply(in, SymSet.empty());
-        } else if (in.isEof()) {
-            return failureEof(this, in);
-        } else if (firstSet().apply().matches(in.get())) {
-            return parserAndEof.apply(in, SymSet.empty());
-        } else {
-            return failure(this, in);
-        }
+        return Utils.parse(this, this.andL(Combinators.eof()), in);
+    }
+
+    /**
+     * Compile this parser into an equivalent parser which is optimised for repeated use.
+     * <p>
+     * Compiling resolves all {@link Ref}s in the parser graph,
+     * and evaluates the lazy {@code acceptsEmpty} flags and First Sets of every parser,
+     * so that applying the compiled parser involves no lazy lookups.
+     * Consequently all {@code Ref}s must have been initialised before the parser is compiled.
+     * The compiled parser should be retained and re-used,
+     * as compiling is considerably more expensive than parsing a small input.
+     * The compiled parser is fully evaluated, and so is also safe to share between threads.
+     * @return          the compiled parser
+     */
+    default Parser<I, A> compile() {
+        return Compiler.compile(this);
+    }
+
+    /**
+     * Prepare this parser for parsing many inputs.
+     * <p>
+     * The returned {@link PreparedParser} holds the compiled parser (see {@link Parser#compile()}),
+     * along with everything else which {@link Parser#parse(Input)} requires,
+     * so that it can be re-used to parse each input with no further setup.
+     * As with {@code compile}, all {@link Ref}s must have been initialised beforehand.
+     * @return          the prepared parser
+     */
+    default PreparedParser<I, A> prepare() {
+        return Compiler.prepare(this);
     }
 
     /**
@@ -247,6 +269,11 @@ default <B> Parser<I, B> map(F<A, B> f) {
             public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
                 return Parser.this.apply(in, follow).map(f);
             }
+
+            @Override
+            Parser<I, B> compile(Compiler c) {
+                return c.map(this, Parser.this, f);
+            }
         };
     }
 
@@ -259,39 +286,107 @@ public Result<I, B> apply(Input<I> in, SymSet<I> follow) {
      */
     @SuppressWarnings("unchecked")
     default <B extends A> Parser<I, A> or(Parser<I, B> rhs) {
+        return ChoiceParser.of(this, (Parser<I, A>)rhs);
+    }
+
+    /**
+     * Construct a backtracking parser which returns the result of this parser,
+     * or, if it fails, then the result of applying the {@code rhs} parser
+     * from the same input position.
+     * <p>
+     * Unlike {@link Parser#or(Parser)}, the alternatives need not be distinguishable
+     * by their First Sets, at the cost of potentially re-parsing input.
+     * Apply {@link Parser#memo()} to parsers which are re-applied at the same position
+     * to avoid exponential parse times.
+     * @param rhs       the second parser to attempt
+     * @param <B>       the rhs parser result type
+     * @return          a parser which returns the result of either this parser or the {@code rhs} parser.
+     */
+    @SuppressWarnings("unchecked")
+    default <B extends A> Parser<I, A> orElse(Parser<I, B> rhs) {
+        final Parser<I, A> rhsA = (Parser<I, A>)rhs;
         return new ParserImpl<I, A>(
-            Utils.or(Parser.this.acceptsEmpty(), rhs.acceptsEmpty()),
-            union(Parser.this.firstSet(), rhs.firstSet())
+                Utils.or(Parser.this.acceptsEmpty(), rhsA.acceptsEmpty()),
+                union(Parser.this.firstSet(), rhsA.firstSet())
         ) {
             @Override
             public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
-                if (in.isEof()) {
-                    if (Parser.this.acceptsEmpty().apply()) {
-                        return Parser.this.apply(in, follow);
-                    } else if (rhs.acceptsEmpty().apply()) {
-                        return (Result<I, A>)rhs.apply(in, follow);
-                    } else {
-                        return failureEof(this, in);
-                    }
-                } else {
-                    final I next = in.get();
-                    if (Parser.this.firstSet().apply().matches(next)) {
-                        return Parser.this.apply(in, follow);
-                    } else if (rhs.firstSet().apply().matches(next)) {
-                        return (Result<I, A>)rhs.apply(in, follow);
-                    } else if (follow.matches(next)) {
-                        if (Parser.this.acceptsEmpty().apply()) {
-                            return Parser.this.apply(in, follow);
-                        } else if (rhs.acceptsEmpty().apply()) {
-                            return (Result<I, A>)rhs.apply(in, follow);
-                        }
-                    }
-                    return failure(this, in);
+                try (Input.Mark<I> mark = in.mark()) {
+                    final Result<I, A> r = Parser.this.apply(in, follow);
+                    return r.isSuccess() ? r : rhsA.apply(mark.reset(), follow);
                 }
             }
+
+            @Override
+            Parser<I, A> compile(Compiler c) {
+                return c.orElse(this, Parser.this, rhsA);
+            }
         };
     }
 
+    /**
+     * Construct a parser which memoises the results of this parser,
+     * so that re-applying it at the same input position returns the previous result.
+     * <p>
+     * Memoisation is only worthwhile for parsers which are re-applied at the same position,
+     * typically as a result of the backtracking of {@link Parser#orElse(Parser)}.
+     * Results are held in a table of bounded size, with older entries evicted as the table fills.
+     * The table belongs to a single parse (e.g. a call to {@link Parser#parse(Input)}),
+     * and is discarded when the parse completes,
+     * so results are never shared between parses, or between threads.
+     * Inputs whose positions have no {@link Input#index()} are not memoised.
+     * <p>
+     * The exception is an {@link IncrementalParser}, which retains the results across parses,
+     * and shifts them when the document is edited,
+     * other than results which examined input positions (e.g. via {@link Text#span(Parser)}),
+     * which are recomputed.
+     * @return          a memoising parser
+     */
+    default Parser<I, A> memo() {
+        return memo(MemoTable.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Construct a parser which memoises the results of this parser,
+     * in a table of {@code capacity} entries per parse,
+     * where the capacity is rounded up to a power of two.
+     * @param capacity  the maximum number of memoised results
+     * @return          a memoising parser
+     * @see Parser#memo()
+     */
+    default Parser<I, A> memo(int capacity) {
+        return new MemoParser<I, A>(this, capacity);
+    }
+
+    /**
+     * Construct a parser which labels this parser with a name,
+     * so that its applications are reported to the listener of an instrumented parser
+     * (see {@link Parser#instrument(ParseListener)}).
+     * <p>
+     * The name has no effect on the parse,
+     * and is dropped when the parser is compiled via {@link Parser#compile()}.
+     * @param name      the name
+     * @return          the named parser
+     */
+    default Parser<I, A> named(String name) {
+        return new NamedParser<I, A>(this, name);
+    }
+
+    /**
+     * Compile this parser into an instrumented parser,
+     * in which every {@link Parser#named(String)} parser notifies the listener
+     * before and after it is applied.
+     * <p>
+     * The instrumented parser is otherwise equivalent to the parser returned by {@link Parser#compile()},
+     * which has no instrumentation overhead.
+     * If this parser has already been compiled, the instrumented parser is compiled from the original parser.
+     * @param listener  the listener, e.g. a {@link ParseMetrics}
+     * @return          the instrumented parser
+     */
+    default Parser<I, A> instrument(ParseListener listener) {
+        return Compiler.compile(this, Objects.requireNonNull(listener));
+    }
+
     /**
      * Combine this parser with another to form a builder which accumulates the parse results.
      * @param pb        the second parser
@@ -350,12 +445,15 @@ && acceptsEmpty().apply()) {
         return new ParserImpl<I, IList<A>>(LTRUE, this.firstSet()) {
             @Override
             public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
+                if (CollectParser.isScannable(Parser.this, in)) {
+                    return CollectParser.scan(Parser.this, Parser.this.firstSet().apply(), false, CollectParser.toIList(), in);
+                }
+
                 IList<A> acc = IList.of();
-                final SymSet<I> follow2 = follow.union(Parser.this.firstSet().apply());
+                final SymSet<I> follow2 = Utils.followUnion(follow, Parser.this.firstSet().apply());
                 while (true) {
                     if (!in.isEof()) {
-                        final I i = in.get();
-                        if (Parser.this.firstSet().apply().matches(i)) {
+                        if (in.matches(Parser.this.firstSet().apply())) {
                             final Result<I, A> r = Parser.this.apply(in, follow2);
                             if (r.isSuccess()) {
                                 final Result.Success<I, A> succ = (Result.Success<I, A>) r;
@@ -370,6 +468,11 @@ public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
                     return Result.success(acc.reverse(), in);
                 }
             }
+
+            @Override
+            Parser<I, IList<A>> compile(Compiler c) {
+                return c.many(this, Parser.this);
+            }
         };
     }
 
@@ -391,8 +494,7 @@ public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
                 final SymSet<I> follow2 = combine(end.acceptsEmpty().apply(), end.firstSet().apply(), follow);
                 while (true) {
                     if (!in.isEof()) {
-                        final I i = in.get();
-                        if (end.firstSet().apply().matches(i)) {
+                        if (in.matches(end.firstSet().apply())) {
                             final Result<I, B> r = end.apply(in, follow);
                             if (r.isSuccess()) {
                                 final Result.Success<I, B> succ = (Result.Success<I, B>) r;
@@ -400,7 +502,7 @@ public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
                             } else {
                                 return ((Result.Failure<I, A>)r).cast();
                             }
-                        } else if (Parser.this.firstSet().apply().matches(i)) {
+                        } else if (in.matches(Parser.this.firstSet().apply())) {
                             final Result<I, A> r = Parser.this.apply(in, follow2);
                             if (r.isSuccess()) {
                                 final Result.Success<I, A> succ = (Result.Success<I, A>) r;
@@ -415,9 +517,54 @@ public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
                     return Result.success(acc.reverse(), in);
                 }
             }
+
+            @Override
+            Parser<I, IList<A>> compile(Compiler c) {
+                return c.manyTill(this, Parser.this, end);
+            }
         };
     }
 
+    /**
+     * A parser which repeatedly applies this parser until it fails,
+     * and accumulates the results using a {@link Collector}.
+     * <p>
+     * Unlike {@link Parser#many()}, the results are accumulated directly into the collector's
+     * mutable result container, without constructing an intermediate list.
+     * If this parser fails on the first attempt then the parser succeeds,
+     * with the result of the collector for no elements.
+     * @param collector the collector
+     * @param <R>       the result type of the collector
+     * @return          a parser which applies this parser zero or more times until it fails
+     */
+    default <R> Parser<I, R> many(Collector<? super A, ?, R> collector) {
+        return new CollectParser<I, A, R>(this, null, false, collector);
+    }
+
+    /**
+     * A parser which applies this parser one or more times until it fails,
+     * and accumulates the results using a {@link Collector}.
+     * Note, if this parser fails on the first attempt then the parser fails.
+     * @param collector the collector
+     * @param <R>       the result type of the collector
+     * @return          a parser which applies this parser one or more times until it fails
+     * @see Parser#many(Collector)
+     */
+    default <R> Parser<I, R> many1(Collector<? super A, ?, R> collector) {
+        return new CollectParser<I, A, R>(this, null, true, collector);
+    }
+
+    /**
+     * A parser which applies this parser zero or more times until it fails,
+     * and returns the results, converted to {@code int}s, in an array.
+     * The array is accumulated directly, without boxing or constructing an intermediate list.
+     * @param f         the function which converts each result to an {@code int}
+     * @return          a parser which applies this parser zero or more times until it fails
+     */
+    default Parser<I, int[]> manyInt(ToIntFunction<? super A> f) {
+        return this.many(CollectParser.toIntArray(f));
+    }
+
     /**
      * A parser that attempts one or more parsers in turn and returns the result
      * of the first that succeeds, or else fails.
@@ -428,39 +575,9 @@ public Result<I, IList<A>> apply(Input<I> in, SymSet<I> follow) {
      */
     static <I, A>
     Parser<I, A> choice(IList.NonEmpty<Parser<I, A>> ps) {
-        // We use an iterative implementation for performance, and to avoid StackOverflowExceptions.
-        // The more concise recursive equivalent is ps.foldLeft1(Parser::or)
-        return new ParserImpl<I, A>(
-                ps.map(Parser::acceptsEmpty).foldLeft1(Utils::or),
-                ps.map(Parser::firstSet).foldLeft1(Utils::union)
-        ) {
-            @Override
-            public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
-                if (in.isEof()) {
-                    for (Parser<I, A> p : ps) {
-                        if (p.acceptsEmpty().apply()) {
-                            return p.apply(in, follow);
-                        }
-                    }
-                    return failureEof(this, in);
-                } else {
-                    final I next = in.get();
-                    for (Parser<I, A> p : ps) {
-                        if (p.firstSet().apply().matches(next)) {
-                            return p.apply(in, follow);
-                        }
-                    }
-                    if (follow.matches(next)) {
-                        for (Parser<I, A> p : ps) {
-                            if (p.acceptsEmpty().apply()) {
-                                return p.apply(in, follow);
-                            }
-                        }
-                    }
-                    return failure(this, in);
-                }
-            }
-        };
+        // The alternatives are selected via a dispatch table keyed on the next symbol,
+        // which is built from their First Sets the first time the parser is applied.
+        return new ChoiceParser<I, A>(ps.toList());
     }
 
     /**
@@ -499,8 +616,7 @@ default Parser<I, IList.NonEmpty<A>> many1() {
      * @return          a parser which applies this parser repeatedly until it fails
      */
     default Parser<I, Unit> skipMany() {
-        return this.many()
-                .map(u -> Unit.UNIT);
+        return this.many(CollectParser.discard());
     }
 
     /**
@@ -532,6 +648,36 @@ default <SEP> Parser<I, IList.NonEmpty<A>> sepBy1(Parser<I, SEP> sep) {
                 .map(a -> l -> l.add(a));
     }
 
+    /**
+     * A parser which applies this parser zero or more times until it fails,
+     * alternating with calls to the {@code sep} parser,
+     * and accumulates the results of this parser using a {@link Collector}.
+     * @param sep       the separator parser
+     * @param collector the collector
+     * @param <SEP>     the separator type
+     * @param <R>       the result type of the collector
+     * @return          a parser which applies this parser zero or more times alternated with {@code sep}
+     * @see Parser#many(Collector)
+     */
+    default <SEP, R> Parser<I, R> sepBy(Parser<I, SEP> sep, Collector<? super A, ?, R> collector) {
+        return new CollectParser<I, A, R>(this, sep, false, collector);
+    }
+
+    /**
+     * A parser which applies this parser one or more times until it fails,
+     * alternating with calls to the {@code sep} parser,
+     * and accumulates the results of this parser using a {@link Collector}.
+     * @param sep       the separator parser
+     * @param collector the collector
+     * @param <SEP>     the separator type
+     * @param <R>       the result type of the collector
+     * @return          a parser which applies this parser one or more times alternated with {@code sep}
+     * @see Parser#many(Collector)
+     */
+    default <SEP, R> Parser<I, R> sepBy1(Parser<I, SEP> sep, Collector<? super A, ?, R> collector) {
+        return new CollectParser<I, A, R>(this, sep, true, collector);
+    }
+
     /**
      * A parser that applies this parser, and, if it succeeds,
      * returns the result wrapped in an {@link Optional},
@@ -13,6 +13,9 @@
 
     private final Lazy<SymSet<I>> firstSet;
 
+    // This parser followed by eof, which is constructed by the first call to parse.
+    private volatile Parser<I, A> parserAndEof;
+
     ParserImpl(Lazy<Boolean> acceptsEmpty, Lazy<SymSet<I>> firstSet) {
         this.acceptsEmpty = acceptsEmpty;
         this.firstSet = firstSet;
@@ -26,6 +29,32 @@ public Lazy<SymSet<I>> firstSet() {
         return firstSet;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The parser which also checks for eof is constructed on the first call,
+     * and re-used by subsequent calls.
+     */
+    @Override
+    public Result<I, A> parse(Input<I> in) {
+        Parser<I, A> pAndEof = parserAndEof;
+        if (pAndEof == null) {
+            parserAndEof = pAndEof = this.andL(Combinators.eof());
+        }
+        return Utils.parse(this, pAndEof, in);
+    }
+
+    /**
+     * Construct the compiled form of this parser (see {@link Parser#compile()}).
+     * Combinators override this to compile their child parsers via {@code c},
+     * while leaf parsers can be used as they are.
+     * @param c         the compiler
+     * @return          the compiled parser
+     */
+    Parser<I, A> compile(Compiler c) {
+        return this;
+    }
+
     @Override
     public String toString() {
         return "parser{" +
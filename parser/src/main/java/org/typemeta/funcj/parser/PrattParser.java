@@ -0,0 +1,324 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Lazy;
+import org.typemeta.funcj.functions.Functions.*;
+
+import java.util.*;
+
+import static org.typemeta.funcj.parser.OperatorTable.*;
+
+/**
+ * A parser for operator expressions, constructed from an {@link OperatorTable}.
+ * <p>
+ * The parser alternates between an operand position,
+ * where it parses any prefix operators followed by an operand,
+ * and an operator position, where it parses any postfix operators followed by an optional infix operator.
+ * Operators which are awaiting their right-hand operand are held on an explicit stack,
+ * and are applied once an operator of lower precedence (or the end of the expression) is reached.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the expression type
+ */
+class PrattParser<I, A> extends ParserImpl<I, A> {
+
+    /**
+     * The properties of an operator table which the parser requires,
+     * computed once the First Sets of the operand and operator parsers are available.
+     */
+    static final class Spec<I> {
+        final int[] prefix;
+        final int[] postfix;
+        final int[] infix;
+        final int[] kinds;
+        final int[] precs;
+        final SymSet<I>[] firsts;
+        final boolean operandEmpty;
+        final SymSet<I> operandFirst;
+
+        // The First Set of an expression - the operand First Set and the prefix operator First Sets.
+        final SymSet<I> exprFirst;
+
+        // The First Sets of the postfix and infix operators.
+        final SymSet<I> opsFirst;
+
+        @SuppressWarnings("unchecked")
+        Spec(Parser<I, ?> operand, List<Entry<I>> entries) {
+            final int n = entries.size();
+            this.kinds = new int[n];
+            this.precs = new int[n];
+            this.firsts = (SymSet<I>[])new SymSet<?>[n];
+            this.operandEmpty = operand.acceptsEmpty().apply();
+            this.operandFirst = operand.firstSet().apply();
+
+            final List<Integer> prefix = new ArrayList<Integer>();
+            final List<Integer> postfix = new ArrayList<Integer>();
+            final List<Integer> infix = new ArrayList<Integer>();
+
+            SymSet<I> exprFirst = operandFirst;
+            SymSet<I> opsFirst = SymSet.empty();
+
+            for (int i = 0; i < n; ++i) {
+                final Entry<I> e = entries.get(i);
+                kinds[i] = e.kind;
+                precs[i] = e.precedence;
+                firsts[i] = e.op.firstSet().apply();
+                switch (e.kind) {
+                    case PREFIX:
+                        prefix.add(i);
+                        exprFirst = exprFirst.union(firsts[i]);
+                        break;
+                    case POSTFIX:
+                        postfix.add(i);
+                        opsFirst = opsFirst.union(firsts[i]);
+                        break;
+                    default:
+                        infix.add(i);
+                        opsFirst = opsFirst.union(firsts[i]);
+                        break;
+                }
+            }
+
+            this.prefix = toArray(prefix);
+            this.postfix = toArray(postfix);
+            this.infix = toArray(infix);
+            this.exprFirst = exprFirst;
+            this.opsFirst = opsFirst;
+        }
+
+        private static int[] toArray(List<Integer> l) {
+            final int[] a = new int[l.size()];
+            for (int i = 0; i < a.length; ++i) {
+                a[i] = l.get(i);
+            }
+            return a;
+        }
+    }
+
+    /**
+     * Apply the first operator from the given group which succeeds.
+     * @return          the result, or null if none of the operators can start at this input
+     */
+    private static <I> Result<I, ?> applyOp(
+            int[] group,
+            Spec<I> spec,
+            Parser<I, ?>[] ops,
+            Input<I> in,
+            SymSet<I> follow,
+            int[] matched) {
+        if (group.length == 1) {
+            final int e = group[0];
+            matched[0] = e;
+            return in.matches(spec.firsts[e]) ? ops[e].apply(in, follow) : null;
+        }
+
+        Result<I, ?> failure = null;
+        try (Input.Mark<I> mark = in.mark()) {
+            for (int e : group) {
+                final Input<I> in2 = mark.reset();
+                if (in2.matches(spec.firsts[e])) {
+                    final Result<I, ?> r = ops[e].apply(in2, follow);
+                    if (r.isSuccess()) {
+                        matched[0] = e;
+                        return r;
+                    } else if (failure == null) {
+                        failure = r;
+                    }
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * Apply the expression parser.
+     * @param spec      the operator table properties
+     * @param operand   the operand parser
+     * @param ops       the operator parsers, indexed as per the operator table
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <A>       the expression type
+     * @return          the parse result
+     */
+    @SuppressWarnings("unchecked")
+    static <I, A> Result<I, A> apply(
+            Spec<I> spec,
+            Parser<I, A> operand,
+            Parser<I, ?>[] ops,
+            Input<I> in,
+            SymSet<I> follow) {
+        final SymSet<I> operandFollow = Utils.followUnion(follow, spec.opsFirst);
+        final int[] matched = new int[1];
+
+        // The stack of operators awaiting their right-hand operands,
+        // holding the table index, the operator function and (for infix operators) the left-hand operand.
+        int[] stackOps = new int[8];
+        Object[] stackFns = new Object[8];
+        Object[] stackLhs = new Object[8];
+        int sp = 0;
+
+        A value;
+
+        operands:
+        while (true) {
+            // Operand position - zero or more prefix operators, followed by an operand.
+            while (!in.isEof() && spec.prefix.length > 0) {
+                final Result<I, ?> r = applyOp(spec.prefix, spec, ops, in, spec.exprFirst, matched);
+                if (r == null) {
+                    break;
+                } else if (!r.isSuccess()) {
+                    return ((Result.Failure<I, ?>)r).cast();
+                }
+
+                if (sp == stackOps.length) {
+                    stackOps = Arrays.copyOf(stackOps, sp * 2);
+                    stackFns = Arrays.copyOf(stackFns, sp * 2);
+                    stackLhs = Arrays.copyOf(stackLhs, sp * 2);
+                }
+                final Result.Success<I, ?> succ = (Result.Success<I, ?>)r;
+                stackOps[sp] = matched[0];
+                stackFns[sp] = succ.value();
+                ++sp;
+                in = succ.next();
+            }
+
+            if (!spec.operandEmpty) {
+                if (in.isEof()) {
+                    return Result.failureEof(in, spec.exprFirst);
+                } else if (!in.matches(spec.operandFirst)) {
+                    return Result.failure(in, spec.exprFirst);
+                }
+            }
+
+            final Result<I, A> ro = operand.apply(in, operandFollow);
+            if (!ro.isSuccess()) {
+                return ((Result.Failure<I, A>)ro).cast();
+            }
+            value = ((Result.Success<I, A>)ro).value();
+            in = ((Result.Success<I, A>)ro).next();
+
+            // Operator position - zero or more postfix operators, optionally followed by an infix operator.
+            while (true) {
+                if (in.isEof()) {
+                    break operands;
+                }
+
+                if (spec.postfix.length > 0) {
+                    final Result<I, ?> r = applyOp(spec.postfix, spec, ops, in, operandFollow, matched);
+                    if (r != null) {
+                        if (!r.isSuccess()) {
+                            return ((Result.Failure<I, ?>)r).cast();
+                        }
+
+                        final int prec = spec.precs[matched[0]];
+                        while (sp > 0 && spec.precs[stackOps[sp - 1]] > prec) {
+                            --sp;
+                            value = reduce(spec, stackOps[sp], stackFns[sp], stackLhs[sp], value);
+                            stackFns[sp] = stackLhs[sp] = null;
+                        }
+
+                        final Result.Success<I, ?> succ = (Result.Success<I, ?>)r;
+                        value = ((Op<A>)succ.value()).apply(value);
+                        in = succ.next();
+                        continue;
+                    }
+                }
+
+                if (spec.infix.length == 0) {
+                    break operands;
+                }
+
+                final Result<I, ?> r = applyOp(spec.infix, spec, ops, in, spec.exprFirst, matched);
+                if (r == null) {
+                    break operands;
+                } else if (!r.isSuccess()) {
+                    return ((Result.Failure<I, ?>)r).cast();
+                }
+
+                final int op = matched[0];
+                final int kind = spec.kinds[op];
+                final int prec = spec.precs[op];
+                while (sp > 0) {
+                    final int top = stackOps[sp - 1];
+                    final int topPrec = spec.precs[top];
+                    if (topPrec == prec && kind == INFIX_NONE && spec.kinds[top] == INFIX_NONE) {
+                        return Utils.failure("Non-associative operators cannot be chained", in);
+                    } else if (topPrec > prec || (topPrec == prec && kind != INFIX_RIGHT)) {
+                        --sp;
+                        value = reduce(spec, top, stackFns[sp], stackLhs[sp], value);
+                        stackFns[sp] = stackLhs[sp] = null;
+                    } else {
+                        break;
+                    }
+                }
+
+                if (sp == stackOps.length) {
+                    stackOps = Arrays.copyOf(stackOps, sp * 2);
+                    stackFns = Arrays.copyOf(stackFns, sp * 2);
+                    stackLhs = Arrays.copyOf(stackLhs, sp * 2);
+                }
+                final Result.Success<I, ?> succ = (Result.Success<I, ?>)r;
+                stackOps[sp] = op;
+                stackFns[sp] = succ.value();
+                stackLhs[sp] = value;
+                ++sp;
+                in = succ.next();
+                continue operands;
+            }
+        }
+
+        while (sp > 0) {
+            --sp;
+            value = reduce(spec, stackOps[sp], stackFns[sp], stackLhs[sp], value);
+        }
+
+        return Result.success(value, in);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <I, A> A reduce(Spec<I> spec, int op, Object fn, Object lhs, A rhs) {
+        if (spec.kinds[op] == PREFIX) {
+            return ((Op<A>)fn).apply(rhs);
+        } else {
+            return ((Op2<A>)fn).apply((A)lhs, rhs);
+        }
+    }
+
+    private final Parser<I, A> operand;
+
+    private final List<Entry<I>> entries;
+
+    private final Parser<I, ?>[] ops;
+
+    private final Lazy<Spec<I>> spec;
+
+    PrattParser(Parser<I, A> operand, List<Entry<I>> entries) {
+        this(operand, entries, Utils.lazy(() -> new Spec<I>(operand, entries)));
+    }
+
+    private PrattParser(Parser<I, A> operand, List<Entry<I>> entries, Lazy<Spec<I>> spec) {
+        super(operand.acceptsEmpty(), Utils.lazy(() -> spec.apply().exprFirst));
+        this.operand = operand;
+        this.entries = entries;
+        this.spec = spec;
+        this.ops = ops(entries);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <I> Parser<I, ?>[] ops(List<Entry<I>> entries) {
+        final Parser<I, ?>[] ops = (Parser<I, ?>[])new Parser<?, ?>[entries.size()];
+        for (int i = 0; i < ops.length; ++i) {
+            ops[i] = entries.get(i).op;
+        }
+        return ops;
+    }
+
+    @Override
+    Parser<I, A> compile(Compiler c) {
+        return c.pratt(this, operand, entries);
+    }
+
+    @Override
+    public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+        return apply(spec.apply(), operand, ops, in, follow);
+    }
+}
@@ -0,0 +1,66 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A handle for parsing many inputs with the same grammar (see {@link Parser#prepare()}).
+ * <p>
+ * All of the per-grammar work which {@link Parser#parse(Input)} would otherwise do for each input -
+ * compiling the grammar, constructing the parser which also checks for the end of the input,
+ * and evaluating the {@code acceptsEmpty} flag and First Set of the grammar -
+ * is done once, when the {@code PreparedParser} is constructed,
+ * so parsing an input costs no more than applying the compiled grammar to it.
+ * <p>
+ * {@code PreparedParser} instances are immutable and can be shared between threads.
+ * Inputs however are immutable values, which are retained by the results which refer to them,
+ * so are not pooled.
+ * For character data held in a larger buffer, {@link Input#of(char[], int, int)}
+ * constructs an input over a slice of the buffer without copying it.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+public final class PreparedParser<I, A> {
+
+    private final Parser<I, A> parser;
+
+    private final Parser<I, A> parserAndEof;
+
+    private final boolean acceptsEmpty;
+
+    private final SymSet<I> firstSet;
+
+    PreparedParser(Parser<I, A> parser, Parser<I, A> parserAndEof, boolean acceptsEmpty, SymSet<I> firstSet) {
+        this.parser = parser;
+        this.parserAndEof = parserAndEof;
+        this.acceptsEmpty = acceptsEmpty;
+        this.firstSet = firstSet;
+    }
+
+    /**
+     * Return the compiled parser.
+     * @return          the compiled parser
+     */
+    public Parser<I, A> parser() {
+        return parser;
+    }
+
+    /**
+     * Parse an input, as per {@link Parser#parse(Input)}, failing if the end of the input isn't reached.
+     * @param in        the input stream
+     * @return          the parser result
+     */
+    public Result<I, A> parse(Input<I> in) {
+        final MemoTable.Scope scope = MemoTable.Scope.enter();
+        try {
+            if (acceptsEmpty) {
+                return parserAndEof.apply(in, SymSet.empty());
+            } else if (in.isEof()) {
+                return Result.failureEof(in, firstSet);
+            } else if (in.matches(firstSet)) {
+                return parserAndEof.apply(in, SymSet.empty());
+            } else {
+                return Result.failure(in, firstSet);
+            }
+        } finally {
+            scope.exit();
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.nio.*;
+import java.util.*;
+
+/**
+ * A resumable parser, which is fed its input in chunks as the data becomes available,
+ * rather than pulling the input from an {@link Input}.
+ * <p>
+ * This allows, for instance, a non-blocking event loop to drive many concurrent parses
+ * without dedicating a thread to each input stream.
+ * Each call to {@code feed} returns either a parse result,
+ * or an empty {@code Optional} to indicate that more input is required,
+ * in which case the {@code PushParser} retains the input received so far,
+ * along with the state of the suspended parse (see {@link Continuation}).
+ * <p>
+ * A parse only completes when the parser has no further need to inspect the input,
+ * including any lookahead beyond the end of the value it parses.
+ * Once a parse completes, the consumed input is discarded,
+ * and the {@code PushParser} is ready to parse the next value from the remaining input,
+ * so that a stream of consecutive values can be parsed by repeatedly feeding chunks of data,
+ * and calling {@link PushParser#poll()} to extract any further values already buffered.
+ * If a parse fails then all buffered input is discarded.
+ * Call {@link PushParser#end()} to indicate the end of the input stream.
+ * <p>
+ * When more input arrives the parse resumes where it was suspended,
+ * and only the token which straddled the end of the previous chunk is re-read,
+ * so the cost of parsing a value doesn't depend on how it is split into chunks.
+ * <p>
+ * {@code PushParser} is not thread-safe,
+ * however the underlying parser can be shared by many {@code PushParser}s.
+ * The parser is compiled when the {@code PushParser} is constructed,
+ * so when constructing many {@code PushParser}s for the same parser,
+ * pass the result of {@link Parser#compile()} to compile it once.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+public abstract class PushParser<I, A> {
+
+    /**
+     * Construct a {@code PushParser} which is fed chunks of {@code char} data.
+     * @param parser    the parser
+     * @param <A>       the parser result type
+     * @return          the push parser
+     */
+    public static <A> Chars<A> ofChars(Parser<Chr, A> parser) {
+        return new Chars<A>(parser);
+    }
+
+    /**
+     * Construct a {@code PushParser} which is fed chunks of {@code byte} data.
+     * @param parser    the parser
+     * @param <A>       the parser result type
+     * @return          the push parser
+     */
+    public static <A> Bytes<A> ofBytes(Parser<Byte, A> parser) {
+        return new Bytes<A>(parser);
+    }
+
+    static final int INITIAL_CAPACITY = 1 << 10;
+
+    /**
+     * Thrown by the inputs of a {@code PushParser} when the parser reads beyond the buffered data,
+     * to unwind the parse until more data arrives.
+     */
+    static final class Incomplete extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        static final Incomplete INSTANCE = new Incomplete();
+
+        private Incomplete() {
+            super("More input is required", null, false, false);
+        }
+    }
+
+    private final Continuation<I, A> cont;
+
+    /**
+     * The stream position of the first buffered symbol.
+     */
+    long start = 0;
+
+    /**
+     * The index into the data array of the first buffered symbol.
+     * Consumed data before this index is only reclaimed when more space is required.
+     */
+    int offset = 0;
+
+    /**
+     * The number of buffered symbols.
+     */
+    int length = 0;
+
+    boolean closed = false;
+
+    PushParser(Parser<I, A> parser) {
+        this.cont = new Continuation<I, A>(Objects.requireNonNull(parser));
+    }
+
+    /**
+     * Construct an input positioned at the given stream position.
+     * @param position  the stream position
+     * @return          the input
+     */
+    abstract Input<I> input(long position);
+
+    /**
+     * Discard the first {@code n} buffered symbols.
+     * The data isn't moved, so draining many values from a single chunk takes time proportional to its length.
+     * @param n         the number of symbols to discard
+     */
+    void discard(int n) {
+        length -= n;
+        start += n;
+        offset = length == 0 ? 0 : offset + n;
+    }
+
+    void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("PushParser has been ended");
+        }
+    }
+
+    /**
+     * Return the number of buffered symbols, which have been received but not yet consumed by a parse.
+     * @return          the number of buffered symbols
+     */
+    public int buffered() {
+        return length;
+    }
+
+    /**
+     * Attempt to parse a value from the buffered input.
+     * @return          the parse result, or empty if more input is required
+     */
+    public Optional<Result<I, A>> poll() {
+        if (!cont.isActive()) {
+            cont.start(input(start));
+        }
+
+        final Result<I, A> r;
+        try {
+            r = cont.resume();
+        } catch (Incomplete ex) {
+            return Optional.empty();
+        }
+
+        if (r.isSuccess()) {
+            final long next = ((Result.Success<I, A>)r).next().index();
+            discard((int)(next - start));
+        } else {
+            discard(length);
+        }
+        return Optional.of(r);
+    }
+
+    /**
+     * Indicate the end of the input stream, and parse any remaining buffered input.
+     * Subsequent calls to {@code feed} will throw.
+     * @return          the parse result, or empty if there is no remaining input
+     */
+    public Optional<Result<I, A>> end() {
+        closed = true;
+        return length == 0 ? Optional.empty() : poll();
+    }
+
+    /**
+     * A {@link PushParser} which is fed chunks of {@code char} data.
+     * @param <A>       the parser result type
+     */
+    public static final class Chars<A> extends PushParser<Chr, A> {
+
+        private char[] data = new char[INITIAL_CAPACITY];
+
+        Chars(Parser<Chr, A> parser) {
+            super(parser);
+        }
+
+        /**
+         * Append a chunk of data to the input, and attempt to parse a value.
+         * @param chunk the data
+         * @param off   the offset of the data within {@code chunk}
+         * @param len   the length of the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Chr, A>> feed(char[] chunk, int off, int len) {
+            checkOpen();
+            reserve(len);
+            System.arraycopy(chunk, off, data, offset + length, len);
+            length += len;
+            return poll();
+        }
+
+        /**
+         * Append a chunk of data to the input, and attempt to parse a value.
+         * @param chunk the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Chr, A>> feed(char[] chunk) {
+            return feed(chunk, 0, chunk.length);
+        }
+
+        /**
+         * Append the remaining data in a {@link CharBuffer} to the input, and attempt to parse a value.
+         * The buffer's position is advanced to its limit.
+         * @param chunk the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Chr, A>> feed(CharBuffer chunk) {
+            checkOpen();
+            final int len = chunk.remaining();
+            reserve(len);
+            chunk.get(data, offset + length, len);
+            length += len;
+            return poll();
+        }
+
+        private void reserve(int len) {
+            if (offset + length + len > data.length) {
+                // Move the buffered data to the start of the array - in place if the consumed data before it
+                // is at least as long, otherwise into a larger array - so the cost of moving is amortised.
+                final char[] dest =
+                        offset >= length && length + len <= data.length
+                                ? data
+                                : new char[Math.max(data.length * 2, length + len)];
+                System.arraycopy(data, offset, dest, 0, length);
+                data = dest;
+                offset = 0;
+            }
+        }
+
+        @Override
+        CharInput input(long position) {
+            return new ChunkInput(this, position);
+        }
+
+        /**
+         * A cursor into the buffered data of a {@link Chars} parser.
+         */
+        static final class ChunkInput implements CharInput {
+            private final Chars<?> pp;
+            private final long position;
+
+            ChunkInput(Chars<?> pp, long position) {
+                this.pp = pp;
+                this.position = position;
+            }
+
+            private int offset() {
+                final long offset = position - pp.start;
+                if (offset < 0) {
+                    throw new IllegalStateException(
+                            "Input position " + position + " is no longer buffered (start=" + pp.start + ")");
+                }
+                return (int)offset;
+            }
+
+            @Override
+            public boolean isEof() {
+                if (offset() < pp.length) {
+                    return false;
+                } else if (pp.closed) {
+                    return true;
+                } else {
+                    throw Incomplete.INSTANCE;
+                }
+            }
+
+            @Override
+            public char getChar() {
+                if (isEof()) {
+                    throw new RuntimeException("End of input");
+                }
+                return pp.data[pp.offset + offset()];
+            }
+
+            @Override
+            public CharInput next() {
+                return new ChunkInput(pp, position + 1);
+            }
+
+            @Override
+            public Object position() {
+                return position;
+            }
+
+            @Override
+            public long index() {
+                return position;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (o == null || getClass() != o.getClass()) return false;
+                final ChunkInput that = (ChunkInput) o;
+                return position == that.position &&
+                        pp == that.pp;
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(pp, position);
+            }
+
+            @Override
+            public String toString() {
+                return "ChunkInput{" + position + "}";
+            }
+        }
+    }
+
+    /**
+     * A {@link PushParser} which is fed chunks of {@code byte} data.
+     * @param <A>       the parser result type
+     */
+    public static final class Bytes<A> extends PushParser<Byte, A> {
+
+        private byte[] data = new byte[INITIAL_CAPACITY];
+
+        Bytes(Parser<Byte, A> parser) {
+            super(parser);
+        }
+
+        /**
+         * Append a chunk of data to the input, and attempt to parse a value.
+         * @param chunk the data
+         * @param off   the offset of the data within {@code chunk}
+         * @param len   the length of the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Byte, A>> feed(byte[] chunk, int off, int len) {
+            checkOpen();
+            reserve(len);
+            System.arraycopy(chunk, off, data, offset + length, len);
+            length += len;
+            return poll();
+        }
+
+        /**
+         * Append a chunk of data to the input, and attempt to parse a value.
+         * @param chunk the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Byte, A>> feed(byte[] chunk) {
+            return feed(chunk, 0, chunk.length);
+        }
+
+        /**
+         * Append the remaining data in a {@link ByteBuffer} to the input, and attempt to parse a value.
+         * Both heap and direct buffers are supported.
+         * The buffer's position is advanced to its limit.
+         * @param chunk the data
+         * @return      the parse result, or empty if more input is required
+         */
+        public Optional<Result<Byte, A>> feed(ByteBuffer chunk) {
+            checkOpen();
+            final int len = chunk.remaining();
+            reserve(len);
+            chunk.get(data, offset + length, len);
+            length += len;
+            return poll();
+        }
+
+        private void reserve(int len) {
+            if (offset + length + len > data.length) {
+                // Move the buffered data to the start of the array - in place if the consumed data before it
+                // is at least as long, otherwise into a larger array - so the cost of moving is amortised.
+                final byte[] dest =
+                        offset >= length && length + len <= data.length
+                                ? data
+                                : new byte[Math.max(data.length * 2, length + len)];
+                System.arraycopy(data, offset, dest, 0, length);
+                data = dest;
+                offset = 0;
+            }
+        }
+
+        @Override
+        ByteInput input(long position) {
+            return new ChunkInput(this, position);
+        }
+
+        /**
+         * A cursor into the buffered data of a {@link Bytes} parser.
+         */
+        static final class ChunkInput implements ByteInput {
+            private final Bytes<?> pp;
+            private final long position;
+
+            ChunkInput(Bytes<?> pp, long position) {
+                this.pp = pp;
+                this.position = position;
+            }
+
+            private int offset() {
+                final long offset = position - pp.start;
+                if (offset < 0) {
+                    throw new IllegalStateException(
+                            "Input position " + position + " is no longer buffered (start=" + pp.start + ")");
+                }
+                return (int)offset;
+            }
+
+            @Override
+            public boolean isEof() {
+                if (offset() < pp.length) {
+                    return false;
+                } else if (pp.closed) {
+                    return true;
+                } else {
+                    throw Incomplete.INSTANCE;
+                }
+            }
+
+            @Override
+            public byte getByte() {
+                if (isEof()) {
+                    throw new RuntimeException("End of input");
+                }
+                return pp.data[pp.offset + offset()];
+            }
+
+            @Override
+            public ByteInput next() {
+                return new ChunkInput(pp, position + 1);
+            }
+
+            @Override
+            public Object position() {
+                return position;
+            }
+
+            @Override
+            public long index() {
+                return position;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (o == null || getClass() != o.getClass()) return false;
+                final ChunkInput that = (ChunkInput) o;
+                return position == that.position &&
+                        pp == that.pp;
+            }
+
+            @Override
+            public int hashCode() {
+                return Objects.hash(pp, position);
+            }
+
+            @Override
+            public String toString() {
+                return "ChunkInput{" + position + "}";
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.util.Exceptions;
+
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * An {@link Input} which reads from a {@link Reader}.
+ * <p>
+ * The reader is read in blocks into a {@link ReaderInput.Buffer},
+ * which is shared by all of the {@code ReaderInput} cursors for the reader.
+ * The buffer is a sliding {@link Window} which only retains data back to the oldest live {@link Input.Mark}
+ * (or, in the absence of any marks, the position of the most recent read),
+ * so memory use is bounded regardless of the size of the stream.
+ * A cursor for a position prior to the start of the window will throw {@link IllegalStateException}
+ * if it is subsequently read,
+ * so parsers which re-read earlier input, such as {@link Parser#orElse(Parser)}, hold a mark while they run.
+ * <p>
+ * As the underlying {@code Reader} is stateful, {@code ReaderInput} is not thread-safe.
+ */
+class ReaderInput implements CharInput {
+
+    static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The window of characters read from the {@code Reader}.
+     */
+    static final class Buffer extends Window<char[]> {
+        private final Reader reader;
+
+        Buffer(Reader reader, int size) {
+            super(size);
+            this.reader = Objects.requireNonNull(reader);
+        }
+
+        @Override
+        char[] allocate(int size) {
+            return new char[size];
+        }
+
+        @Override
+        int read(char[] buf, int off, int len) {
+            return Exceptions.wrap(() -> reader.read(buf, off, len));
+        }
+
+        char charAt(long position) {
+            // Determine the offset first, as reading may refill (and reallocate) the window.
+            final int offset = offset(position);
+            return data[offset];
+        }
+    }
+
+    private final Buffer buffer;
+    private final long position;
+
+    ReaderInput(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    ReaderInput(Reader reader, int bufferSize) {
+        this(new Buffer(reader, bufferSize), 0);
+    }
+
+    ReaderInput(Buffer buffer, long position) {
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    @Override
+    public String toString() {
+        final String currStr =
+                position < buffer.start ? "?" :
+                        isEof() ? "EOF" : String.valueOf(getChar());
+        return "ReaderInput{" + position + ",current=\"" + currStr + "\"}";
+    }
+
+    @Override
+    public boolean isEof() {
+        return buffer.isEof(position);
+    }
+
+    @Override
+    public char getChar() {
+        return buffer.charAt(position);
+    }
+
+    @Override
+    public CharInput next() {
+        return new ReaderInput(buffer, position + 1);
+    }
+
+    @Override
+    public Object position() {
+        return position;
+    }
+
+    @Override
+    public long index() {
+        return position;
+    }
+
+    @Override
+    public Mark<Chr> mark() {
+        buffer.addMark(position);
+        return new Mark<Chr>() {
+            private boolean closed = false;
+
+            @Override
+            public Input<Chr> reset() {
+                if (closed) {
+                    throw new IllegalStateException("Mark has been closed");
+                } else {
+                    return ReaderInput.this;
+                }
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    buffer.removeMark(position);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReaderInput that = (ReaderInput) o;
+        return position == that.position &&
+                buffer == that.buffer;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(position, buffer);
+    }
+}
@@ -0,0 +1,103 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * Locates the boundaries between the records of a record-oriented input,
+ * for use by {@link ParallelParser}.
+ * <p>
+ * A splitter must be cheap relative to parsing,
+ * and it must be able to locate the next record boundary from an arbitrary position,
+ * including one in the middle of a record,
+ * as the input is partitioned into chunks at arbitrary positions,
+ * which are then advanced to the next record boundary.
+ * Formats in which records are separated by a terminator symbol (such as lines) satisfy this.
+ */
+public interface RecordSplitter {
+
+    /**
+     * The symbols of the input, accessed by position.
+     */
+    @FunctionalInterface
+    interface Data {
+        /**
+         * Return the symbol at the given position.
+         * For memory-mapped files of UTF-8 text, the positions are byte offsets,
+         * and the symbols are the (unsigned) bytes of the file,
+         * which can be compared directly with ASCII terminator characters.
+         * @param position  the position
+         * @return          the symbol
+         */
+        int at(long position);
+    }
+
+    /**
+     * A splitter for records which are terminated by a given ASCII character.
+     * The terminator is not included in the input to the record parser.
+     * @param terminator the record terminator
+     * @return          the splitter
+     */
+    static RecordSplitter terminator(char terminator) {
+        if (terminator >= 0x80) {
+            throw new IllegalArgumentException("Record terminator must be an ASCII character");
+        }
+
+        return new RecordSplitter() {
+            @Override
+            public long next(Data data, long from, long end) {
+                for (long i = from; i < end; ++i) {
+                    if (data.at(i) == terminator) {
+                        return i + 1;
+                    }
+                }
+                return end;
+            }
+
+            @Override
+            public long contentEnd(Data data, long start, long end) {
+                return end > start && data.at(end - 1) == terminator ? end - 1 : end;
+            }
+        };
+    }
+
+    /**
+     * A splitter for lines, which are terminated by {@code "\n"} or {@code "\r\n"}.
+     * The line terminator is not included in the input to the record parser.
+     * @return          the splitter
+     */
+    static RecordSplitter lines() {
+        final RecordSplitter nl = terminator('\n');
+        return new RecordSplitter() {
+            @Override
+            public long next(Data data, long from, long end) {
+                return nl.next(data, from, end);
+            }
+
+            @Override
+            public long contentEnd(Data data, long start, long end) {
+                final long end2 = nl.contentEnd(data, start, end);
+                return end2 < end && end2 > start && data.at(end2 - 1) == '\r' ? end2 - 1 : end2;
+            }
+        };
+    }
+
+    /**
+     * Locate the start of the record following the first record boundary at or after {@code from}.
+     * @param data      the input data
+     * @param from      the position to search from
+     * @param end       the end of the input
+     * @return          the position of the start of the next record, or {@code end} if there is none
+     */
+    long next(Data data, long from, long end);
+
+    /**
+     * Return the end of the content of the record in the range {@code [start, end)},
+     * i.e. excluding any terminator, which is the input to the record parser.
+     * The default implementation includes the whole range.
+     * @param data      the input data
+     * @param start     the start of the record
+     * @param end       the start of the following record
+     * @return          the end of the record content
+     */
+    default long contentEnd(Data data, long start, long end) {
+        return end;
+    }
+}
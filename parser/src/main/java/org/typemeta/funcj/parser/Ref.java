@@ -12,6 +12,9 @@
  * It is subsequently initialised (via the {@link Ref#set(Parser)} method) with a {@code Parser}
  * {@code Ref} is typically used to allow parsers for grammars with circular
  * dependencies to be constructed.
+ * <p>
+ * The referenced parser is held in a volatile field,
+ * so a parser which is initialised by one thread can be safely used by other threads.
  * @param <I>       input stream symbol type
  * @param <A>       parser result type
  */
@@ -45,7 +48,11 @@ static <I, A> Parser<I, A> instance() {
         }
     }
 
-    private Parser<I, A> impl;
+    private volatile Parser<I, A> impl;
+
+    private final Lazy<Boolean> acceptsEmpty = () -> impl.acceptsEmpty().apply();
+
+    private final Lazy<SymSet<I>> firstSet = () -> impl.firstSet().apply();
 
     Ref(Parser<I, A> impl) {
         this.impl = Objects.requireNonNull(impl);
@@ -68,7 +75,7 @@ public boolean initialised() {
      * @param impl      the parser
      * @return          this parser
      */
-    public Parser<I, A> set(Parser<I, A> impl) {
+    public synchronized Parser<I, A> set(Parser<I, A> impl) {
         if (this.impl != Uninitialised.INSTANCE) {
             throw new IllegalStateException("Ref is already initialised");
         } else {
@@ -77,14 +84,32 @@ public Parser<I, A> set(Parser<I, A> impl) {
         }
     }
 
+    /**
+     * Return the referenced parser.
+     * @return          the referenced parser
+     * @throws          RuntimeException if this reference is uninitialised
+     */
+    Parser<I, A> impl() {
+        if (!initialised()) {
+            throw Uninitialised.error();
+        } else {
+            return impl;
+        }
+    }
+
     @Override
     public Lazy<Boolean> acceptsEmpty() {
-        return () -> impl.acceptsEmpty().apply();
+        return acceptsEmpty;
     }
 
     @Override
     public Lazy<SymSet<I>> firstSet() {
-        return () -> impl.firstSet().apply();
+        return firstSet;
+    }
+
+    @Override
+    public Result<I, A> parse(Input<I> in) {
+        return impl().parse(in);
     }
 
     @Override
@@ -0,0 +1,708 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.Chr;
+
+import java.util.*;
+
+/**
+ * A regular expression which has been compiled to a deterministic finite automaton
+ * (see {@link Text#regex(String)}).
+ * <p>
+ * The pattern is parsed into a syntax tree, which is translated to an NFA,
+ * which in turn is converted to a DFA via the subset construction.
+ * The characters are partitioned into classes which are indistinguishable by the pattern,
+ * so the DFA transition table has one column per class, rather than one per character.
+ * <p>
+ * The supported syntax is:
+ * <ul>
+ *     <li>literal characters, and the escapes {@code \t \n \r \f \0 \\uXXXX},
+ *     as well as any escaped punctuation character;</li>
+ *     <li>{@code .}, which matches any character other than {@code \n} and {@code \r};</li>
+ *     <li>the predefined classes {@code \d \D \w \W \s \S} (which are ASCII-only, as per {@link java.util.regex.Pattern});</li>
+ *     <li>character classes, such as {@code [a-z_]} and {@code [^0-9]};</li>
+ *     <li>groups, {@code (...)} and {@code (?:...)}, neither of which capture;</li>
+ *     <li>alternation, {@code |};</li>
+ *     <li>the greedy quantifiers {@code * + ? {n} {n,} {n,m}}.</li>
+ * </ul>
+ * Anchors, back-references, lookaround and non-greedy quantifiers are not supported.
+ */
+final class Regex {
+
+    /**
+     * The maximum number of NFA states, which bounds the expansion of counted repetitions.
+     */
+    private static final int MAX_NFA_STATES = 1 << 16;
+
+    /**
+     * The maximum number of DFA states, which guards against the exponential blow-up of the subset construction.
+     */
+    private static final int MAX_DFA_STATES = 1 << 12;
+
+    private static final int MAX_CHAR = Character.MAX_VALUE;
+
+    /**
+     * Compile a regular expression.
+     * @param pattern   the regular expression
+     * @return          the compiled regular expression
+     * @throws IllegalArgumentException if the pattern is invalid or unsupported
+     */
+    static Regex compile(String pattern) {
+        final Node ast = new PatternParser(pattern).parse();
+        final Nfa nfa = new Nfa();
+        final int[] frag = nfa.build(ast);
+        return new Regex(pattern, nfa, frag[0], frag[1]);
+    }
+
+    final String pattern;
+
+    // The first character of each character class, in ascending order.
+    private final char[] classStarts;
+
+    // The character class of each ASCII character.
+    private final int[] asciiClasses;
+
+    private final int classCount;
+
+    // The transition table, indexed by state * classCount + class, where -1 indicates no transition.
+    private final int[] transitions;
+
+    private final boolean[] accepting;
+
+    private Regex(String pattern, Nfa nfa, int nfaStart, int nfaAccept) {
+        this.pattern = pattern;
+
+        final TreeSet<Integer> bounds = new TreeSet<Integer>();
+        bounds.add(0);
+        for (Edge e : nfa.edges()) {
+            for (int i = 0; i < e.ranges.length; i += 2) {
+                bounds.add(e.ranges[i]);
+                if (e.ranges[i + 1] < MAX_CHAR) {
+                    bounds.add(e.ranges[i + 1] + 1);
+                }
+            }
+        }
+
+        this.classCount = bounds.size();
+        this.classStarts = new char[classCount];
+        int ci = 0;
+        for (int b : bounds) {
+            classStarts[ci++] = (char)b;
+        }
+
+        this.asciiClasses = new int[0x80];
+        for (char c = 0; c < 0x80; ++c) {
+            asciiClasses[c] = searchClass(c);
+        }
+
+        // Subset construction.
+        final Map<BitSet, Integer> states = new HashMap<BitSet, Integer>();
+        final List<BitSet> pending = new ArrayList<BitSet>();
+        final BitSet start = nfa.closure(single(nfaStart));
+        states.put(start, 0);
+        pending.add(start);
+
+        int[] trans = new int[classCount * 16];
+        final List<Boolean> accepts = new ArrayList<Boolean>();
+
+        for (int si = 0; si < pending.size(); ++si) {
+            final BitSet set = pending.get(si);
+            accepts.add(set.get(nfaAccept));
+            if ((si + 1) * classCount > trans.length) {
+                trans = Arrays.copyOf(trans, trans.length * 2);
+            }
+
+            for (int cls = 0; cls < classCount; ++cls) {
+                final BitSet next = nfa.closure(nfa.move(set, classStarts[cls]));
+                final int target;
+                if (next.isEmpty()) {
+                    target = -1;
+                } else {
+                    final Integer existing = states.get(next);
+                    if (existing != null) {
+                        target = existing;
+                    } else {
+                        target = pending.size();
+                        if (target >= MAX_DFA_STATES) {
+                            throw new IllegalArgumentException("Pattern is too complex - " + pattern);
+                        }
+                        states.put(next, target);
+                        pending.add(next);
+                    }
+                }
+                trans[si * classCount + cls] = target;
+            }
+        }
+
+        this.transitions = Arrays.copyOf(trans, pending.size() * classCount);
+        this.accepting = new boolean[pending.size()];
+        for (int i = 0; i < accepting.length; ++i) {
+            accepting[i] = accepts.get(i);
+        }
+    }
+
+    private static BitSet single(int i) {
+        final BitSet bs = new BitSet();
+        bs.set(i);
+        return bs;
+    }
+
+    private int searchClass(char c) {
+        int lo = 0;
+        int hi = classCount - 1;
+        while (lo < hi) {
+            final int mid = (lo + hi + 1) >>> 1;
+            if (classStarts[mid] <= c) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Return the state which follows the given state on the given character.
+     * @param state     the current state
+     * @param c         the character
+     * @return          the next state, or -1 if there is no transition
+     */
+    int next(int state, char c) {
+        final int cls = c < 0x80 ? asciiClasses[c] : searchClass(c);
+        return transitions[state * classCount + cls];
+    }
+
+    /**
+     * Return true if the given state is an accepting state.
+     * @param state     the state
+     * @return          true if the state is accepting
+     */
+    boolean isAccepting(int state) {
+        return accepting[state];
+    }
+
+    /**
+     * Return the set of characters for which the given state has a transition.
+     * @param state     the state
+     * @return          the symbol set
+     */
+    SymSet<Chr> expected(int state) {
+        return SymSet.charPred("/" + pattern + "/", c -> next(state, c) != -1);
+    }
+
+    /**
+     * Match the longest prefix of the input accepted by the automaton.
+     * If there is a match then the scanner is left positioned at the end of the match.
+     * Otherwise the scanner is left at the point at which the automaton failed,
+     * and the state it failed in is returned, as {@code -(state + 1)}.
+     * <p>
+     * A recording scanner (see {@link CharScanner#of(Input, boolean)})
+     * accumulates the matched symbols as the automaton advances,
+     * so on success {@link CharScanner#text()} returns the match without re-reading the input.
+     * @param sc        the scanner
+     * @return          zero if there is a match, otherwise the negated failed state
+     */
+    int match(CharScanner sc) {
+        int state = 0;
+        if (accepting[0]) {
+            sc.save();
+        }
+
+        while (!sc.isEof()) {
+            final int next = next(state, sc.peek());
+            if (next == -1) {
+                break;
+            }
+            state = next;
+            sc.advance();
+            if (accepting[state]) {
+                sc.save();
+            }
+        }
+
+        if (sc.isSaved()) {
+            sc.restore();
+            return 0;
+        } else {
+            return -(state + 1);
+        }
+    }
+
+    /**
+     * A node in the syntax tree of a regular expression.
+     */
+    private static abstract class Node {
+    }
+
+    private static final class CharSetNode extends Node {
+        final int[] ranges;
+
+        CharSetNode(int[] ranges) {
+            this.ranges = ranges;
+        }
+    }
+
+    private static final class SeqNode extends Node {
+        final List<Node> nodes;
+
+        SeqNode(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    private static final class AltNode extends Node {
+        final List<Node> nodes;
+
+        AltNode(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+    }
+
+    private static final class RepeatNode extends Node {
+        final Node node;
+        final int min;
+        final int max;
+
+        RepeatNode(Node node, int min, int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * Character sets, represented as sorted arrays of disjoint, inclusive {@code [lo, hi]} ranges.
+     */
+    private static final class Ranges {
+        static final int[] DIGIT = {'0', '9'};
+        static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+        static final int[] SPACE = {'\t', '\r', ' ', ' '};
+        static final int[] DOT = complement(new int[]{'\n', '\n', '\r', '\r'});
+
+        static int[] of(char c) {
+            return new int[]{c, c};
+        }
+
+        static int[] union(List<int[]> sets) {
+            final List<int[]> rs = new ArrayList<int[]>();
+            for (int[] set : sets) {
+                for (int i = 0; i < set.length; i += 2) {
+                    rs.add(new int[]{set[i], set[i + 1]});
+                }
+            }
+            rs.sort(Comparator.comparingInt(r -> r[0]));
+
+            final List<Integer> out = new ArrayList<Integer>();
+            for (int[] r : rs) {
+                final int n = out.size();
+                if (n > 0 && r[0] <= out.get(n - 1) + 1) {
+                    out.set(n - 1, Math.max(out.get(n - 1), r[1]));
+                } else {
+                    out.add(r[0]);
+                    out.add(r[1]);
+                }
+            }
+
+            final int[] result = new int[out.size()];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = out.get(i);
+            }
+            return result;
+        }
+
+        static int[] complement(int[] set) {
+            final List<Integer> out = new ArrayList<Integer>();
+            int next = 0;
+            for (int i = 0; i < set.length; i += 2) {
+                if (set[i] > next) {
+                    out.add(next);
+                    out.add(set[i] - 1);
+                }
+                next = set[i + 1] + 1;
+            }
+            if (next <= MAX_CHAR) {
+                out.add(next);
+                out.add(MAX_CHAR);
+            }
+
+            final int[] result = new int[out.size()];
+            for (int i = 0; i < result.length; ++i) {
+                result[i] = out.get(i);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A recursive-descent parser for the supported regular expression syntax.
+     */
+    private static final class PatternParser {
+        final String pattern;
+        int pos = 0;
+
+        PatternParser(String pattern) {
+            this.pattern = pattern;
+        }
+
+        IllegalArgumentException error(String msg) {
+            return new IllegalArgumentException(msg + " at index " + pos + " in pattern - " + pattern);
+        }
+
+        boolean atEnd() {
+            return pos >= pattern.length();
+        }
+
+        char peek() {
+            return pattern.charAt(pos);
+        }
+
+        Node parse() {
+            final Node node = alt();
+            if (!atEnd()) {
+                throw error("Unmatched ')'");
+            }
+            return node;
+        }
+
+        Node alt() {
+            final List<Node> nodes = new ArrayList<Node>();
+            nodes.add(seq());
+            while (!atEnd() && peek() == '|') {
+                ++pos;
+                nodes.add(seq());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new AltNode(nodes);
+        }
+
+        Node seq() {
+            final List<Node> nodes = new ArrayList<Node>();
+            while (!atEnd() && peek() != '|' && peek() != ')') {
+                nodes.add(repeat());
+            }
+            return nodes.size() == 1 ? nodes.get(0) : new SeqNode(nodes);
+        }
+
+        Node repeat() {
+            Node node = atom();
+            while (!atEnd()) {
+                final char c = peek();
+                if (c == '*') {
+                    ++pos;
+                    node = new RepeatNode(node, 0, -1);
+                } else if (c == '+') {
+                    ++pos;
+                    node = new RepeatNode(node, 1, -1);
+                } else if (c == '?') {
+                    ++pos;
+                    node = new RepeatNode(node, 0, 1);
+                } else if (c == '{') {
+                    ++pos;
+                    final int min = number();
+                    int max = min;
+                    if (!atEnd() && peek() == ',') {
+                        ++pos;
+                        max = !atEnd() && peek() == '}' ? -1 : number();
+                    }
+                    expect('}');
+                    if (max != -1 && max < min) {
+                        throw error("Invalid repetition range");
+                    }
+                    node = new RepeatNode(node, min, max);
+                } else {
+                    break;
+                }
+
+                if (!atEnd() && (peek() == '?' || peek() == '+')) {
+                    throw error("Non-greedy and possessive quantifiers are not supported");
+                }
+            }
+            return node;
+        }
+
+        int number() {
+            final int start = pos;
+            while (!atEnd() && peek() >= '0' && peek() <= '9') {
+                ++pos;
+            }
+            if (pos == start || pos - start > 6) {
+                throw error("Invalid repetition count");
+            }
+            return Integer.parseInt(pattern.substring(start, pos));
+        }
+
+        void expect(char c) {
+            if (atEnd() || peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            ++pos;
+        }
+
+        Node atom() {
+            final char c = peek();
+            switch (c) {
+                case '(': {
+                    ++pos;
+                    if (pattern.startsWith("?:", pos)) {
+                        pos += 2;
+                    } else if (!atEnd() && peek() == '?') {
+                        throw error("Unsupported group construct");
+                    }
+                    final Node node = alt();
+                    expect(')');
+                    return node;
+                }
+                case '[':
+                    ++pos;
+                    return new CharSetNode(charClass());
+                case '.':
+                    ++pos;
+                    return new CharSetNode(Ranges.DOT);
+                case '\\':
+                    ++pos;
+                    return new CharSetNode(escape());
+                case '*': case '+': case '?': case '{':
+                    throw error("Dangling quantifier '" + c + "'");
+                case '^': case '$':
+                    throw error("Anchors are not supported");
+                default:
+                    ++pos;
+                    return new CharSetNode(Ranges.of(c));
+            }
+        }
+
+        int[] charClass() {
+            boolean negate = false;
+            if (!atEnd() && peek() == '^') {
+                negate = true;
+                ++pos;
+            }
+
+            final List<int[]> sets = new ArrayList<int[]>();
+            boolean first = true;
+            while (true) {
+                if (atEnd()) {
+                    throw error("Unclosed character class");
+                }
+
+                char c = peek();
+                if (c == ']' && !first) {
+                    ++pos;
+                    break;
+                }
+                first = false;
+
+                final int[] lo;
+                if (c == '\\') {
+                    ++pos;
+                    lo = escape();
+                } else if (c == '[') {
+                    throw error("Nested character classes are not supported");
+                } else {
+                    ++pos;
+                    lo = Ranges.of(c);
+                }
+
+                if (pos + 1 < pattern.length() && peek() == '-' && pattern.charAt(pos + 1) != ']') {
+                    ++pos;
+                    final int[] hi;
+                    if (peek() == '\\') {
+                        ++pos;
+                        hi = escape();
+                    } else {
+                        hi = Ranges.of(peek());
+                        ++pos;
+                    }
+                    if (lo.length != 2 || lo[0] != lo[1] || hi.length != 2 || hi[0] != hi[1] || hi[0] < lo[0]) {
+                        throw error("Invalid character range");
+                    }
+                    sets.add(new int[]{lo[0], hi[0]});
+                } else {
+                    sets.add(lo);
+                }
+            }
+
+            final int[] set = Ranges.union(sets);
+            return negate ? Ranges.complement(set) : set;
+        }
+
+        int[] escape() {
+            if (atEnd()) {
+                throw error("Incomplete escape sequence");
+            }
+
+            final char c = pattern.charAt(pos++);
+            switch (c) {
+                case 'd': return Ranges.DIGIT;
+                case 'D': return Ranges.complement(Ranges.DIGIT);
+                case 'w': return Ranges.WORD;
+                case 'W': return Ranges.complement(Ranges.WORD);
+                case 's': return Ranges.SPACE;
+                case 'S': return Ranges.complement(Ranges.SPACE);
+                case 't': return Ranges.of('\t');
+                case 'n': return Ranges.of('\n');
+                case 'r': return Ranges.of('\r');
+                case 'f': return Ranges.of('\f');
+                case '0': return Ranges.of('\0');
+                case 'u': {
+                    if (pos + 4 > pattern.length()) {
+                        throw error("Incomplete unicode escape");
+                    }
+                    try {
+                        final char u = (char)Integer.parseInt(pattern.substring(pos, pos + 4), 16);
+                        pos += 4;
+                        return Ranges.of(u);
+                    } catch (NumberFormatException ex) {
+                        throw error("Invalid unicode escape");
+                    }
+                }
+                default:
+                    if (Character.isLetterOrDigit(c)) {
+                        throw error("Unsupported escape sequence '\\" + c + "'");
+                    }
+                    return Ranges.of(c);
+            }
+        }
+    }
+
+    /**
+     * A transition of the NFA on a set of characters.
+     */
+    private static final class Edge {
+        final int[] ranges;
+        final int target;
+
+        Edge(int[] ranges, int target) {
+            this.ranges = ranges;
+            this.target = target;
+        }
+
+        boolean matches(char c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c < ranges[i]) {
+                    return false;
+                } else if (c <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A Thompson NFA, built from a syntax tree.
+     */
+    private static final class Nfa {
+        final List<List<Edge>> edges = new ArrayList<List<Edge>>();
+        final List<List<Integer>> epsilons = new ArrayList<List<Integer>>();
+
+        int state() {
+            if (edges.size() >= MAX_NFA_STATES) {
+                throw new IllegalArgumentException("Pattern is too large");
+            }
+            edges.add(new ArrayList<Edge>());
+            epsilons.add(new ArrayList<Integer>());
+            return edges.size() - 1;
+        }
+
+        List<Edge> edges() {
+            final List<Edge> all = new ArrayList<Edge>();
+            for (List<Edge> es : edges) {
+                all.addAll(es);
+            }
+            return all;
+        }
+
+        void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        /**
+         * Build the NFA fragment for a node.
+         * @return          the start and end states of the fragment
+         */
+        int[] build(Node node) {
+            if (node instanceof CharSetNode) {
+                final int s = state();
+                final int e = state();
+                edges.get(s).add(new Edge(((CharSetNode)node).ranges, e));
+                return new int[]{s, e};
+            } else if (node instanceof SeqNode) {
+                final int s = state();
+                int e = s;
+                for (Node n : ((SeqNode)node).nodes) {
+                    final int[] f = build(n);
+                    epsilon(e, f[0]);
+                    e = f[1];
+                }
+                return new int[]{s, e};
+            } else if (node instanceof AltNode) {
+                final int s = state();
+                final int e = state();
+                for (Node n : ((AltNode)node).nodes) {
+                    final int[] f = build(n);
+                    epsilon(s, f[0]);
+                    epsilon(f[1], e);
+                }
+                return new int[]{s, e};
+            } else {
+                final RepeatNode rep = (RepeatNode)node;
+                final int s = state();
+                int e = s;
+                for (int i = 0; i < rep.min; ++i) {
+                    final int[] f = build(rep.node);
+                    epsilon(e, f[0]);
+                    e = f[1];
+                }
+
+                if (rep.max == -1) {
+                    final int[] f = build(rep.node);
+                    final int end = state();
+                    epsilon(e, f[0]);
+                    epsilon(e, end);
+                    epsilon(f[1], f[0]);
+                    epsilon(f[1], end);
+                    e = end;
+                } else {
+                    final int end = state();
+                    for (int i = rep.min; i < rep.max; ++i) {
+                        final int[] f = build(rep.node);
+                        epsilon(e, f[0]);
+                        epsilon(e, end);
+                        e = f[1];
+                    }
+                    epsilon(e, end);
+                    e = end;
+                }
+                return new int[]{s, e};
+            }
+        }
+
+        BitSet closure(BitSet states) {
+            final BitSet result = (BitSet)states.clone();
+            final Deque<Integer> stack = new ArrayDeque<Integer>();
+            for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+                stack.push(i);
+            }
+            while (!stack.isEmpty()) {
+                for (int t : epsilons.get(stack.pop())) {
+                    if (!result.get(t)) {
+                        result.set(t);
+                        stack.push(t);
+                    }
+                }
+            }
+            return result;
+        }
+
+        BitSet move(BitSet states, char c) {
+            final BitSet result = new BitSet();
+            for (int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+                for (Edge e : edges.get(i)) {
+                    if (e.matches(c)) {
+                        result.set(e.target);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.typemeta.funcj.parser;
 
+import org.typemeta.funcj.data.Lazy;
 import org.typemeta.funcj.functions.Functions.F;
 import org.typemeta.funcj.functions.SideEffect;
 
@@ -203,22 +204,40 @@ public <B> B match(F<Success<I, A>, B> success, F<Failure<I, A>, B> failure) {
      * @param <A> parser result type
      */
     final class FailureOnExpected<I, A> extends Failure<I, A> {
-        private final SymSet<I> expected;
+        // Either the expected set, or the lazy value which supplies it.
+        private Object expected;
 
         public FailureOnExpected(Input<I> input, SymSet<I> expected) {
             super(input);
             this.expected = expected;
         }
 
+        /**
+         * Construct a failure whose expected set is only evaluated if it is inspected,
+         * so that failing parsers need not compute their First Set.
+         */
+        FailureOnExpected(Input<I> input, Lazy<SymSet<I>> expected) {
+            super(input);
+            this.expected = expected;
+        }
+
+        @SuppressWarnings("unchecked")
         public SymSet<I> expected() {
-            return expected;
+            final Object exp = expected;
+            if (exp instanceof Lazy) {
+                final SymSet<I> set = LazyUnion.resolve(((Lazy<SymSet<I>>)exp).apply());
+                expected = set;
+                return set;
+            } else {
+                return (SymSet<I>)exp;
+            }
         }
 
         @Override
         public String toString() {
             return "FailureOnExpected{" +
                     super.toString() +
-                    ", expected=" + expected +
+                    ", expected=" + expected() +
                     '}';
         }
 
@@ -228,13 +247,13 @@ public boolean equals(Object o) {
             if (o == null || getClass() != o.getClass()) return false;
             if (!super.equals(o)) return false;
             FailureOnExpected<?, ?> that = (FailureOnExpected<?, ?>) o;
-            if (!Objects.equals(expected, that.expected)) return false;
+            if (!Objects.equals(expected(), that.expected())) return false;
             return super.equals(o);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(super.hashCode(), expected);
+            return Objects.hash(super.hashCode(), expected());
         }
 
         @SuppressWarnings("unchecked")
@@ -250,7 +269,7 @@ public boolean isSuccess() {
         @Override
         public A getOrThrow() {
             throw new RuntimeException(
-                    "Failure at position " + input.position() + ", expected=" + expected
+                    "Failure at position " + input.position() + ", expected=" + expected()
             );
         }
 
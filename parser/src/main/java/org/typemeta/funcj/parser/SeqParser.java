@@ -0,0 +1,165 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.data.*;
+import org.typemeta.funcj.functions.Functions.F;
+
+import java.util.List;
+
+/**
+ * A parser which applies a sequence of parsers,
+ * and, if they all succeed, applies a function to their results.
+ * <p>
+ * This is equivalent to a chain of {@link Parser#ap(Parser, Parser)} parsers,
+ * but the results are collected into an array, to which the function is applied once,
+ * instead of constructing a partially applied function after each parser,
+ * and the follow sets of the parsers are computed once, rather than on each application.
+ * Sequences are constructed by {@link ApplyBuilder} and {@link Parser#sequence(IList)}.
+ * @param <I>           the input stream symbol type
+ * @param <R>           the parser result type
+ */
+class SeqParser<I, R> extends ParserImpl<I, R> {
+
+    /**
+     * The properties of the parsers in a sequence,
+     * computed once their First Sets are available.
+     */
+    static final class Spec<I> {
+        final boolean[] empty;
+        final SymSet<I>[] firsts;
+
+        // For each parser, the static part of its follow set,
+        // i.e. the union of the First Sets of the following parsers, up to the first which doesn't accept empty.
+        final SymSet<I>[] follows;
+
+        // For each parser, true if all the following parsers accept empty,
+        // in which case the dynamic follow set is also part of its follow set.
+        final boolean[] followsEmpty;
+
+        @SuppressWarnings("unchecked")
+        Spec(Parser<I, ?>[] ps) {
+            final int n = ps.length;
+            this.empty = new boolean[n];
+            this.firsts = (SymSet<I>[])new SymSet<?>[n];
+            this.follows = (SymSet<I>[])new SymSet<?>[n];
+            this.followsEmpty = new boolean[n];
+
+            SymSet<I> follow = SymSet.empty();
+            boolean followEmpty = true;
+            for (int i = n - 1; i >= 0; --i) {
+                empty[i] = ps[i].acceptsEmpty().apply();
+                firsts[i] = ps[i].firstSet().apply();
+                follows[i] = follow.compile();
+                followsEmpty[i] = followEmpty;
+                follow = empty[i] ? firsts[i].union(follow) : firsts[i];
+                followEmpty &= empty[i];
+            }
+        }
+    }
+
+    /**
+     * Construct a parser which applies each parser in a list in turn,
+     * and returns a list of their results.
+     * @param ps        the parsers
+     * @param <I>       the input stream symbol type
+     * @param <T>       the value type of the parsers
+     * @return          a parser which returns an {@link IList} of values
+     */
+    @SuppressWarnings("unchecked")
+    static <I, T> Parser<I, IList<T>> list(List<Parser<I, T>> ps) {
+        return new SeqParser<I, IList<T>>(
+                (Parser<I, ?>[])ps.toArray(new Parser<?, ?>[0]),
+                rs -> IList.ofArray((T[])rs)
+        );
+    }
+
+    static <I> Lazy<Boolean> acceptsEmpty(Parser<I, ?>[] ps) {
+        return Utils.lazy(() -> {
+            for (Parser<I, ?> p : ps) {
+                if (!p.acceptsEmpty().apply()) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    static <I> Lazy<SymSet<I>> firstSet(Parser<I, ?>[] ps) {
+        return Utils.lazy(() -> {
+            SymSet<I> first = SymSet.empty();
+            for (Parser<I, ?> p : ps) {
+                first = first.union(p.firstSet().apply());
+                if (!p.acceptsEmpty().apply()) {
+                    break;
+                }
+            }
+            return first.compile();
+        });
+    }
+
+    /**
+     * Apply the sequence of parsers.
+     * @param spec      the sequence properties
+     * @param ps        the parsers
+     * @param f         the function to apply to the array of results
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <R>       the parser result type
+     * @return          the parse result
+     */
+    @SuppressWarnings("unchecked")
+    static <I, R> Result<I, R> apply(
+            Spec<I> spec,
+            Parser<I, ?>[] ps,
+            F<Object[], R> f,
+            Input<I> in,
+            SymSet<I> follow) {
+        final Object[] results = new Object[ps.length];
+        for (int i = 0; i < ps.length; ++i) {
+            // As with ap, the First Set of the first parser is checked by the parent parser.
+            if (i > 0 && !spec.empty[i]) {
+                if (in.isEof()) {
+                    return Result.failureEof(in, spec.firsts[i]);
+                } else if (!in.matches(spec.firsts[i])) {
+                    return Result.failure(in, spec.firsts[i]);
+                }
+            }
+
+            final SymSet<I> followI =
+                    spec.followsEmpty[i] ? Utils.followUnion(spec.follows[i], follow) : spec.follows[i];
+            final Result<I, ?> r = ps[i].apply(in, followI);
+            if (!r.isSuccess()) {
+                return ((Result.Failure<I, ?>)r).cast();
+            }
+
+            final Result.Success<I, ?> succ = (Result.Success<I, ?>)r;
+            results[i] = succ.value();
+            in = succ.next();
+        }
+
+        return Result.success(f.apply(results), in);
+    }
+
+    private final Parser<I, ?>[] ps;
+
+    private final F<Object[], R> f;
+
+    private final Lazy<Spec<I>> spec;
+
+    SeqParser(Parser<I, ?>[] ps, F<Object[], R> f) {
+        super(acceptsEmpty(ps), firstSet(ps));
+        this.ps = ps;
+        this.f = f;
+        this.spec = Utils.lazy(() -> new Spec<I>(ps));
+    }
+
+    @Override
+    Parser<I, R> compile(Compiler c) {
+        return c.seq(this, ps, f);
+    }
+
+    @Override
+    public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+        return apply(spec.apply(), ps, f, in, follow);
+    }
+}
@@ -0,0 +1,76 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * The extent of the input consumed by a parser (see {@link Text#span(Parser)}).
+ * <p>
+ * The start and end are the positions (see {@link Input#position()}) of the input
+ * before and after the parser was applied,
+ * which for the standard inputs are offsets into the input stream.
+ * A position which isn't numeric is represented as -1.
+ */
+public final class Span {
+
+    static Span of(Input<?> start, Input<?> end) {
+        return new Span(offset(start), offset(end));
+    }
+
+    private static long offset(Input<?> in) {
+        final Object pos = in.position();
+        return pos instanceof Number ? ((Number)pos).longValue() : -1;
+    }
+
+    private final long start;
+    private final long end;
+
+    /**
+     * Construct a span.
+     * @param start     the start offset (inclusive)
+     * @param end       the end offset (exclusive)
+     */
+    public Span(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Return the offset of the start of the span.
+     * @return          the start offset (inclusive)
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * Return the offset of the end of the span.
+     * @return          the end offset (exclusive)
+     */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * Return the length of the span.
+     * @return          the length of the span
+     */
+    public long length() {
+        return end - start;
+    }
+
+    @Override
+    public String toString() {
+        return "Span{" + start + "," + end + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final Span span = (Span) o;
+        return start == span.start && end == span.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+}
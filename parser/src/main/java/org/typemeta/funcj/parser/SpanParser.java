@@ -0,0 +1,65 @@
+package org.typemeta.funcj.parser;
+
+import org.typemeta.funcj.functions.Functions.F2;
+
+/**
+ * A parser which applies a parser,
+ * and then returns a value computed from the inputs before and after it was applied,
+ * rather than the value the parser returned
+ * (see {@link Text#recognize(Parser)} and {@link Text#span(Parser)}).
+ * <p>
+ * As the result may be computed by re-reading the input from the start input,
+ * a mark is held on it until the result has been computed.
+ * @param <I>           the input stream symbol type
+ * @param <A>           the wrapped parser result type
+ * @param <R>           the parser result type
+ */
+class SpanParser<I, A, R> extends ParserImpl<I, R> {
+
+    /**
+     * Apply the parser.
+     * @param p         the wrapped parser
+     * @param f         the function which computes the result from the start and end inputs
+     * @param in        the input stream
+     * @param follow    the dynamic follow set
+     * @param <I>       the input stream symbol type
+     * @param <A>       the wrapped parser result type
+     * @param <R>       the parser result type
+     * @return          the parse result
+     */
+    static <I, A, R> Result<I, R> apply(
+            Parser<I, A> p,
+            F2<Input<I>, Input<I>, R> f,
+            Input<I> in,
+            SymSet<I> follow) {
+        try (Input.Mark<I> mark = in.mark()) {
+            final Result<I, A> r = p.apply(in, follow);
+            if (r.isSuccess()) {
+                final Input<I> next = ((Result.Success<I, A>)r).next();
+                return Result.success(f.apply(mark.reset(), next), next);
+            } else {
+                return ((Result.Failure<I, A>)r).cast();
+            }
+        }
+    }
+
+    private final Parser<I, A> p;
+
+    private final F2<Input<I>, Input<I>, R> f;
+
+    SpanParser(Parser<I, A> p, F2<Input<I>, Input<I>, R> f) {
+        super(p.acceptsEmpty(), p.firstSet());
+        this.p = p;
+        this.f = f;
+    }
+
+    @Override
+    Parser<I, R> compile(Compiler c) {
+        return c.span(this, p, f);
+    }
+
+    @Override
+    public Result<I, R> apply(Input<I> in, SymSet<I> follow) {
+        return apply(p, f, in, follow);
+    }
+}
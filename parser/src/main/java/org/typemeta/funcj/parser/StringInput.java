@@ -0,0 +1,85 @@
+package org.typemeta.funcj.parser;
+
+import java.util.Objects;
+
+class StringInput implements CharInput {
+
+    private final char[] data;
+    private final int position;
+    private final int end;
+
+    StringInput(char[] data) {
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Construct an input over a slice of an array.
+     * Positions are indices into the whole array.
+     * @param data      the input data
+     * @param position  the index of the start of the slice
+     * @param end       the index of the end of the slice (exclusive)
+     */
+    StringInput(char[] data, int position, int end) {
+        this.data = data;
+        this.position = position;
+        this.end = end;
+    }
+
+    char[] data() {
+        return data;
+    }
+
+    int offset() {
+        return position;
+    }
+
+    int end() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        final String dataStr = isEof() ? "EOF" : String.valueOf(data[position]);
+        return "StringInput{" + position + ",data=\"" + dataStr + "\"";
+    }
+
+    @Override
+    public boolean isEof() {
+        return position >= end;
+    }
+
+    @Override
+    public char getChar() {
+        return data[position];
+    }
+
+    @Override
+    public CharInput next() {
+        return new StringInput(data, position + 1, end);
+    }
+
+    @Override
+    public Object position() {
+        return position;
+    }
+
+    @Override
+    public long index() {
+        return position;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StringInput that = (StringInput) o;
+        return position == that.position &&
+                end == that.end &&
+                data == that.data;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(data, position);
+    }
+}
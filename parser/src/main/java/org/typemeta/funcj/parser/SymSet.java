@@ -1,6 +1,6 @@
 package org.typemeta.funcj.parser;
 
-import org.typemeta.funcj.data.Unit;
+import org.typemeta.funcj.data.*;
 import org.typemeta.funcj.functions.Functions;
 
 import java.util.*;
@@ -45,6 +45,10 @@ static <I> SymSet<I> pred(String name, Functions.Predicate<I> pred) {
         return new Pred<I>(name, pred);
     }
 
+    static SymSet<Chr> charPred(String name, CharPredicate pred) {
+        return new CharPred(name, pred);
+    }
+
     class Empty<I> implements SymSet<I> {
         static final Empty<Unit> INSTANCE = new Empty<>();
 
@@ -58,6 +62,11 @@ public boolean matches(I value) {
             return false;
         }
 
+        @Override
+        public boolean matchesChar(char c) {
+            return false;
+        }
+
         @Override
         public SymSet<I> union(SymSet<I> rhs) {
             return rhs;
@@ -87,6 +96,11 @@ public boolean matches(I value) {
             return true;
         }
 
+        @Override
+        public boolean matchesChar(char c) {
+            return true;
+        }
+
         @Override
         public SymSet<I> union(SymSet<I> rhs) {
             return this;
@@ -121,8 +135,14 @@ public boolean matches(I value) {
             return this.value.equals(value);
         }
 
+        @Override
+        public boolean matchesChar(char c) {
+            return value instanceof Chr && ((Chr)value).charValue() == c;
+        }
+
         @Override
         public SymSet<I> union(SymSet<I> rhs) {
+            rhs = LazyUnion.resolve(rhs);
             switch(rhs.type()) {
                 case EMPTY:
                     return this;
@@ -139,6 +159,19 @@ public SymSet<I> union(SymSet<I> rhs) {
             }
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Value<?> that = (Value<?>) o;
+            return value.equals(that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return value.hashCode();
+        }
+
         @Override
         public String toString() {
             return value.toString();
@@ -173,6 +206,7 @@ public boolean matches(I value) {
 
         @Override
         public SymSet<I> union(SymSet<I> rhs) {
+            rhs = LazyUnion.resolve(rhs);
             switch(rhs.type()) {
                 case EMPTY:
                     return this;
@@ -200,6 +234,162 @@ public StringBuilder append(StringBuilder sb) {
         }
     }
 
+    /**
+     * A predicate symbol set for {@code Chr} symbols,
+     * where the predicate is expressed directly in terms of {@code char}.
+     */
+    class CharPred extends Pred<Chr> {
+
+        public final CharPredicate charPred;
+
+        private volatile Chars table;
+
+        public CharPred(String name, CharPredicate charPred) {
+            super(name, c -> charPred.test(c.charValue()));
+            this.charPred = charPred;
+        }
+
+        @Override
+        public boolean matchesChar(char c) {
+            return charPred.test(c);
+        }
+
+        /**
+         * Return the tabulated form of this set,
+         * which is computed by testing the predicate against every {@code char} value.
+         * @return          the tabulated form of this set
+         */
+        public Chars table() {
+            Chars tbl = table;
+            if (tbl == null) {
+                final BitSet bits = new BitSet(Chars.SIZE);
+                for (int c = 0; c < Chars.SIZE; ++c) {
+                    if (charPred.test((char)c)) {
+                        bits.set(c);
+                    }
+                }
+                table = tbl = Chars.of(this, bits, Collections.emptyList());
+            }
+            return tbl;
+        }
+    }
+
+    /**
+     * A compiled symbol set for {@code Chr} symbols.
+     * <p>
+     * Membership of the ASCII characters is held in a bitset,
+     * and membership of the remaining characters as a sorted table of ranges,
+     * so testing a {@code char} requires a few array lookups.
+     * Any predicates which could not be tabulated are tested after the tables.
+     */
+    final class Chars extends CharPred {
+
+        static final int SIZE = Character.MAX_VALUE + 1;
+
+        static Chars of(SymSet<Chr> source, BitSet bits, List<Pred<Chr>> residual) {
+            final long[] ascii = new long[2];
+            for (int c = bits.nextSetBit(0); c >= 0 && c < 128; c = bits.nextSetBit(c + 1)) {
+                ascii[c >>> 6] |= 1L << c;
+            }
+
+            int n = 0;
+            char[] ranges = new char[16];
+            for (int lo = bits.nextSetBit(128); lo >= 0; lo = bits.nextSetBit(lo)) {
+                final int hi = bits.nextClearBit(lo);
+                if (n == ranges.length) {
+                    ranges = Arrays.copyOf(ranges, n * 2);
+                }
+                ranges[n++] = (char)lo;
+                ranges[n++] = (char)(hi - 1);
+                lo = hi;
+            }
+
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            final Pred<Chr>[] preds = residual.toArray(new Pred[0]);
+
+            return new Chars(source, ascii, Arrays.copyOf(ranges, n), preds);
+        }
+
+        private static boolean contains(long[] ascii, char[] ranges, Pred<Chr>[] residual, char c) {
+            if (c < 128) {
+                if ((ascii[c >>> 6] & (1L << c)) != 0) {
+                    return true;
+                }
+            } else {
+                int lo = 0;
+                int hi = (ranges.length >>> 1) - 1;
+                while (lo <= hi) {
+                    final int mid = (lo + hi) >>> 1;
+                    if (c < ranges[mid << 1]) {
+                        hi = mid - 1;
+                    } else if (c > ranges[(mid << 1) + 1]) {
+                        lo = mid + 1;
+                    } else {
+                        return true;
+                    }
+                }
+            }
+
+            for (Pred<Chr> pred : residual) {
+                if (pred.matchesChar(c)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private final SymSet<Chr> source;
+        private final long[] ascii;
+        private final char[] ranges;
+        private final Pred<Chr>[] residual;
+
+        private Chars(SymSet<Chr> source, long[] ascii, char[] ranges, Pred<Chr>[] residual) {
+            super(source.toString(), c -> contains(ascii, ranges, residual, c));
+            this.source = source;
+            this.ascii = ascii;
+            this.ranges = ranges;
+            this.residual = residual;
+        }
+
+        @Override
+        public boolean matchesChar(char c) {
+            return contains(ascii, ranges, residual, c);
+        }
+
+        @Override
+        public Chars table() {
+            return this;
+        }
+
+        @Override
+        public SymSet<Chr> compile() {
+            return this;
+        }
+
+        void addTo(BitSet bits, List<Pred<Chr>> preds) {
+            for (int c = 0; c < 128; ++c) {
+                if ((ascii[c >>> 6] & (1L << c)) != 0) {
+                    bits.set(c);
+                }
+            }
+            for (int i = 0; i < ranges.length; i += 2) {
+                bits.set(ranges[i], ranges[i + 1] + 1);
+            }
+            preds.addAll(Arrays.asList(residual));
+        }
+
+        @Override
+        public String toString() {
+            return source.toString();
+        }
+
+        @Override
+        public StringBuilder append(StringBuilder sb) {
+            return source.append(sb);
+        }
+    }
+
     class Union<I> implements SymSet<I> {
 
         public final Set<I> values;
@@ -263,8 +453,65 @@ public boolean matches(I value) {
             }
         }
 
+        @Override
+        public boolean matchesChar(char c) {
+            if (!values.isEmpty() && values.contains(Chr.valueOf(c))) {
+                return true;
+            } else {
+                for (Pred<I> pred : preds) {
+                    if (pred.matchesChar(c)) {
+                        return true;
+                    }
+                }
+
+                return false;
+            }
+        }
+
+        /**
+         * Compile this set, if it is a set of {@code Chr} symbols,
+         * into a {@link Chars} set.
+         * The values and the {@link CharPred} predicates are tabulated,
+         * while any other predicates are retained as they may not be pure.
+         * @return          the compiled set, or this set if it is not a {@code Chr} set
+         */
+        @Override
+        @SuppressWarnings("unchecked")
+        public SymSet<I> compile() {
+            boolean isChr = false;
+            for (I value : values) {
+                if (!(value instanceof Chr)) {
+                    return this;
+                }
+                isChr = true;
+            }
+            for (Pred<I> pred : preds) {
+                isChr |= pred instanceof CharPred;
+            }
+
+            if (!isChr) {
+                return this;
+            }
+
+            final BitSet bits = new BitSet(Chars.SIZE);
+            final List<Pred<Chr>> residual = new ArrayList<Pred<Chr>>();
+            for (I value : values) {
+                bits.set(((Chr)value).charValue());
+            }
+            for (Pred<I> pred : preds) {
+                if (pred instanceof CharPred) {
+                    ((CharPred)pred).table().addTo(bits, residual);
+                } else {
+                    residual.add((Pred<Chr>)pred);
+                }
+            }
+
+            return (SymSet<I>)Chars.of((SymSet<Chr>)this, bits, residual);
+        }
+
         @Override
         public SymSet<I> union(SymSet<I> rhs) {
+            rhs = LazyUnion.resolve(rhs);
             switch(rhs.type()) {
                 case EMPTY:
                     return this;
@@ -281,6 +528,20 @@ public SymSet<I> union(SymSet<I> rhs) {
             }
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Union<?> that = (Union<?>) o;
+            return values.equals(that.values) &&
+                    preds.equals(that.preds);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * values.hashCode() + preds.hashCode();
+        }
+
         @Override
         public String toString() {
             return append(new StringBuilder()).toString();
@@ -313,8 +574,30 @@ public StringBuilder append(StringBuilder sb) {
 
     boolean matches(I value);
 
+    /**
+     * Specialisation of {@link SymSet#matches(Object)} for {@code Chr} symbol sets,
+     * which tests a primitive {@code char} without boxing it.
+     * @param c         the symbol
+     * @return          true if the symbol is a member of this set
+     */
+    @SuppressWarnings("unchecked")
+    default boolean matchesChar(char c) {
+        return matches((I)Chr.valueOf(c));
+    }
+
     SymSet<I> union(SymSet<I> rhs);
 
+    /**
+     * Return an equivalent symbol set which is optimised for membership tests.
+     * <p>
+     * Unions of {@code Chr} symbols are compiled into lookup tables (see {@link Chars}),
+     * other symbol sets are returned unchanged.
+     * @return          an equivalent symbol set
+     */
+    default SymSet<I> compile() {
+        return this;
+    }
+
     StringBuilder append(StringBuilder sb);
 }
 
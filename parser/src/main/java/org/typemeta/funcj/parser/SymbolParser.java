@@ -0,0 +1,33 @@
+package org.typemeta.funcj.parser;
+
+/**
+ * A parser which consumes a single input symbol, which is a member of its First Set,
+ * and returns a value computed from that symbol
+ * (e.g. {@link Combinators#value(Object)} and {@link Text#satisfyChar(String, CharPredicate)}).
+ * <p>
+ * As with any parser which doesn't accept empty, the parent parser checks the next symbol
+ * against the First Set before applying the parser.
+ * Knowing that the parser consumes exactly that symbol allows a repetition of it
+ * to scan the input directly, rather than applying the parser to each symbol
+ * (see {@link CollectParser}).
+ * @param <I>           the input stream symbol type
+ * @param <A>           the parser result type
+ */
+abstract class SymbolParser<I, A> extends ParserImpl<I, A> {
+
+    SymbolParser(SymSet<I> firstSet) {
+        super(Utils.LFALSE, () -> firstSet);
+    }
+
+    /**
+     * Return the value of the parser for the given symbol.
+     * @param sym       the symbol, which is a member of the First Set
+     * @return          the parser result
+     */
+    abstract A value(I sym);
+
+    @Override
+    public Result<I, A> apply(Input<I> in, SymSet<I> follow) {
+        return Result.success(value(in.get()), in.next());
+    }
+}
@@ -1,6 +1,9 @@
 package org.typemeta.funcj.parser;
 
-import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.data.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
 
 import static org.typemeta.funcj.parser.Combinators.*;
 
@@ -28,32 +31,200 @@ public static Parser<Chr, Chr> chr(char c) {
         return value(Chr.valueOf(c));
     }
 
+    /**
+     * Specialisation of {@link Combinators#satisfy(String, org.typemeta.funcj.functions.Functions.Predicate)}
+     * for {@code Chr}.
+     * A parser that succeeds if the next input symbol satisfies the given {@code char} predicate.
+     * When applied to a {@link CharInput} the predicate is tested without boxing the symbol.
+     * @param name      a name for the parser (used for error messages)
+     * @param pred      the predicate to be applied to the next input
+     * @return          a parser that succeeds if the next input symbol satisfies the given predicate.
+     */
+    public static Parser<Chr, Chr> satisfyChar(String name, CharPredicate pred) {
+        return new SymbolParser<Chr, Chr>(SymSet.charPred(name, pred)) {
+            @Override
+            Chr value(Chr sym) {
+                return sym;
+            }
+        };
+    }
+
     /**
      * A parser that succeeds if the next input symbol is an alphabetic letter.
      */
-    public static final Parser<Chr, Chr> alpha = satisfy("letter", Chr::isAlphabetic);
+    public static final Parser<Chr, Chr> alpha = satisfyChar("letter", Character::isAlphabetic);
 
     /**
      * A parser that succeeds if the next input symbol is a numeric digit.
      */
-    public static final Parser<Chr, Chr> digit = satisfy("digit", Chr::isDigit);
+    public static final Parser<Chr, Chr> digit = satisfyChar("digit", Character::isDigit);
 
     /**
      * A parser that succeeds if the next input symbol is a numeric digit.
      */
-    public static final Parser<Chr, Chr> nonZeroDigit = satisfy(
+    public static final Parser<Chr, Chr> nonZeroDigit = satisfyChar(
             "nonZeroDigit",
-            c -> c.charValue() != '0' && Chr.isDigit(c));
+            c -> c != '0' && Character.isDigit(c));
 
     /**
      * A parser that succeeds if the next input symbol is a letter or a digit.
      */
-    public static final Parser<Chr, Chr> alphaNum = satisfy("letterOrDigit", Chr::isLetterOrDigit);
+    public static final Parser<Chr, Chr> alphaNum = satisfyChar("letterOrDigit", Character::isLetterOrDigit);
 
     /**
      * A parser that succeeds if the next input symbol is whitespace.
      */
-    public static final Parser<Chr, Chr> ws = satisfy("ws", Chr::isWhitespace);
+    public static final Parser<Chr, Chr> ws = satisfyChar("ws", Character::isWhitespace);
+
+    /**
+     * A parser which applies the parser {@code p} zero or more times until it fails,
+     * and returns the parsed characters as a string.
+     * The characters are appended directly to a {@link StringBuilder},
+     * without constructing an intermediate list.
+     * @param p         the character parser
+     * @return          a parser which returns the string of parsed characters
+     */
+    public static Parser<Chr, String> manyChars(Parser<Chr, Chr> p) {
+        return p.many(CollectParser.TO_STRING);
+    }
+
+    /**
+     * A parser which applies the parser {@code p} one or more times until it fails,
+     * and returns the parsed characters as a string.
+     * @param p         the character parser
+     * @return          a parser which returns the string of parsed characters
+     * @see Text#manyChars(Parser)
+     */
+    public static Parser<Chr, String> many1Chars(Parser<Chr, Chr> p) {
+        return p.many1(CollectParser.TO_STRING);
+    }
+
+    /**
+     * A parser which consumes input symbols while they satisfy the given predicate,
+     * and returns the consumed text.
+     * For inputs constructed from strings and arrays the input is scanned directly,
+     * and the result is a view of the input data, which is only copied if it is converted to a string.
+     * The result is only equal to another {@code CharSequence} result with the same characters,
+     * and never to a {@code String},
+     * so use {@link String#contentEquals(CharSequence)} or {@code toString()} to compare it with a string.
+     * @param pred      the predicate
+     * @return          a parser which returns the text which satisfies the predicate
+     */
+    public static Parser<Chr, CharSequence> takeWhile(CharPredicate pred) {
+        final SymSet<Chr> firstSet = SymSet.charPred("takeWhile", pred);
+        return new ParserImpl<Chr, CharSequence>(Utils.LTRUE, () -> firstSet) {
+            @Override
+            public Result<Chr, CharSequence> apply(Input<Chr> in, SymSet<Chr> follow) {
+                final CharScanner sc = CharScanner.of(in, true);
+                sc.skip(pred);
+                return Result.success(sc.text(), sc.input());
+            }
+        };
+    }
+
+    /**
+     * A parser which consumes one or more input symbols while they satisfy the given predicate,
+     * and returns the consumed text.
+     * @param name      a name for the parser (used for error messages)
+     * @param pred      the predicate
+     * @return          a parser which returns the text which satisfies the predicate
+     * @see Text#takeWhile(CharPredicate)
+     */
+    public static Parser<Chr, CharSequence> takeWhile1(String name, CharPredicate pred) {
+        final SymSet<Chr> firstSet = SymSet.charPred(name, pred);
+        return new ParserImpl<Chr, CharSequence>(Utils.LFALSE, () -> firstSet) {
+            @Override
+            public Result<Chr, CharSequence> apply(Input<Chr> in, SymSet<Chr> follow) {
+                final CharScanner sc = CharScanner.of(in, true);
+                sc.skip(pred);
+                if (sc.count() == 0) {
+                    return sc.isEof() ? Utils.failureEof(this, in) : Utils.failure(this, in);
+                }
+                return Result.success(sc.text(), sc.input());
+            }
+        };
+    }
+
+    /**
+     * A parser which skips input symbols while they satisfy the given predicate.
+     * @param pred      the predicate
+     * @return          a parser which skips the symbols which satisfy the predicate
+     */
+    public static Parser<Chr, Unit> skipWhile(CharPredicate pred) {
+        final SymSet<Chr> firstSet = SymSet.charPred("skipWhile", pred);
+        return new ParserImpl<Chr, Unit>(Utils.LTRUE, () -> firstSet) {
+            @Override
+            public Result<Chr, Unit> apply(Input<Chr> in, SymSet<Chr> follow) {
+                final CharScanner sc = CharScanner.of(in);
+                sc.skip(pred);
+                return Result.success(Unit.UNIT, sc.input());
+            }
+        };
+    }
+
+    /**
+     * A parser which matches the longest prefix of the input which matches the given regular expression,
+     * and returns the matched text.
+     * <p>
+     * The regular expression is compiled to a DFA when the parser is constructed,
+     * so matching involves a single pass over the input, with no backtracking.
+     * Consequently the match is always the longest possible one
+     * (whereas {@link java.util.regex.Pattern} returns the first match found amongst alternatives).
+     * As with {@link Text#takeWhile(CharPredicate)}, the matched text is never equal to a {@code String}.
+     * The First Set of the parser is the set of characters which can start a match.
+     * <p>
+     * A subset of the {@link java.util.regex.Pattern} syntax is supported:
+     * character classes (including {@code .}, {@code \d}, {@code \w} and {@code \s}),
+     * non-capturing groups, alternation, and the greedy quantifiers
+     * {@code *}, {@code +}, {@code ?} and {@code {n,m}}.
+     * @param pattern   the regular expression
+     * @return          a parser which returns the matched text
+     * @throws IllegalArgumentException if the pattern is invalid or uses unsupported features
+     */
+    public static Parser<Chr, CharSequence> regex(String pattern) {
+        final Regex re = Regex.compile(pattern);
+        final SymSet<Chr> firstSet = re.expected(0);
+        return new ParserImpl<Chr, CharSequence>(re.isAccepting(0) ? Utils.LTRUE : Utils.LFALSE, () -> firstSet) {
+            @Override
+            public Result<Chr, CharSequence> apply(Input<Chr> in, SymSet<Chr> follow) {
+                try (CharScanner sc = CharScanner.of(in, true)) {
+                    final int r = re.match(sc);
+                    if (r == 0) {
+                        return Result.success(sc.text(), sc.input());
+                    } else if (sc.isEof()) {
+                        return Result.failureEof(sc.input(), re.expected(-r - 1));
+                    } else {
+                        return Result.failure(sc.input(), re.expected(-r - 1));
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * A parser which applies the parser {@code p}, discards its result,
+     * and instead returns the text that it consumed.
+     * For inputs constructed from strings and arrays the result is a view of the input data,
+     * which is only copied if it is converted to a string.
+     * As with {@link Text#takeWhile(CharPredicate)}, the text is never equal to a {@code String}.
+     * @param p         the parser
+     * @param <A>       the result type of {@code p}
+     * @return          a parser which returns the text consumed by {@code p}
+     */
+    public static <A> Parser<Chr, CharSequence> recognize(Parser<Chr, A> p) {
+        return new SpanParser<Chr, A, CharSequence>(p, CharScanner::text);
+    }
+
+    /**
+     * A parser which applies the parser {@code p}, discards its result,
+     * and instead returns the extent of the input that it consumed.
+     * @param p         the parser
+     * @param <A>       the result type of {@code p}
+     * @return          a parser which returns the span consumed by {@code p}
+     */
+    public static <A> Parser<Chr, Span> span(Parser<Chr, A> p) {
+        return new SpanParser<Chr, A, Span>(p, Span::of);
+    }
 
     public static int digitToInt(Chr c) {
         return Chr.getNumericValue(c);
@@ -66,74 +237,75 @@ public static int digitToInt(Chr c) {
                     Parser.pure(true)
             );
 
-    private static final Parser<Chr, Integer> uintrZero =
-            chr('0').map(zs -> 0);
-
-    private static final Parser<Chr, Integer> uintrNotZero =
-            nonZeroDigit.and(digit.many())
-                    .map(d -> ds -> ds.add(d))
-                    .map(ds -> ds.map(Text::digitToInt))
-                    .map(is -> is.foldLeft1((acc, x) -> acc * 10 + x));
-
     /**
      * A parser for an unsigned integer.
+     * A leading {@code 0} is parsed as the number zero.
+     * Values larger than {@link Integer#MAX_VALUE} result in a failure.
      */
-    public static final Parser<Chr, Integer> uintr = uintrZero.or(uintrNotZero);
+    public static final Parser<Chr, Integer> uintr =
+            Numbers.integral("unsigned int", false, 10, Integer.MAX_VALUE, l -> (int)l);
 
     /**
      * A parser for a signed integer.
+     * Values outside the range of an {@code int} result in a failure.
      */
     public static final Parser<Chr, Integer> intr =
-            sign.and(uintr)
-                    .map((sign, i) -> sign ? i : -i);
-
-    private static final Parser<Chr, Long> ulngZero =
-            chr('0').map(zs -> 0l);
-
-    private static final Parser<Chr, Long> ulngNotZero =
-            nonZeroDigit.and(digit.many())
-                    .map(d -> ds -> ds.add(d))
-                    .map(ds -> ds.map(Text::digitToInt))
-                    .map(ds -> ds.foldLeft((acc, x) -> acc * 10l + x, 0l));
+            Numbers.integral("int", true, 10, Integer.MAX_VALUE, l -> (int)l);
 
     /**
      * A parser for an unsigned long.
+     * A leading {@code 0} is parsed as the number zero.
+     * Values larger than {@link Long#MAX_VALUE} result in a failure.
      */
-    public static final Parser<Chr, Long> ulng = ulngZero.or(ulngNotZero);
+    public static final Parser<Chr, Long> ulng =
+            Numbers.integral("unsigned long", false, 10, Long.MAX_VALUE, l -> l);
 
     /**
-     * A parser for an unsigned long.
+     * A parser for a signed long.
+     * Values outside the range of a {@code long} result in a failure.
      */
     public static final Parser<Chr, Long> lng =
-            sign.and(ulng)
-                    .map((sign, i) -> sign ? i : -i);
+            Numbers.integral("long", true, 10, Long.MAX_VALUE, l -> l);
 
-    private static final Parser<Chr, Double> floating =
-            digit.many()
-                    .map(ds -> ds.map(Text::digitToInt))
-                    .map(l -> l.foldRight((d, acc) -> d + acc / 10.0, 0.0) / 10.0);
+    /**
+     * A parser for an unsigned hexadecimal integer (without any prefix).
+     * Values larger than {@link Integer#MAX_VALUE} result in a failure.
+     */
+    public static final Parser<Chr, Integer> hexIntr =
+            Numbers.integral("hex int", false, 16, Integer.MAX_VALUE, l -> (int)l);
 
-    private static final Parser<Chr, Integer> expnt =
-            (chr('e').or(chr('E')))
-                    .andR(intr);
+    /**
+     * A parser for an unsigned hexadecimal long (without any prefix).
+     * Values larger than {@link Long#MAX_VALUE} result in a failure.
+     */
+    public static final Parser<Chr, Long> hexLng =
+            Numbers.integral("hex long", false, 16, Long.MAX_VALUE, l -> l);
 
     /**
-     * A parser for a floating point number.
+     * A parser for an unsigned octal integer (without any prefix).
+     * Values larger than {@link Integer#MAX_VALUE} result in a failure.
      */
-    public static final Parser<Chr, Double> dble =
-            sign.and(ulng)
-                    .and((chr('.').andR(floating)).optional())
-                    .and(expnt.optional())
-                    .map((sn, i, f, exp) -> {
-                        double r = i.doubleValue();
-                        if (f.isPresent()) {
-                            r += f.get();
-                        }
-                        if (exp.isPresent()) {
-                            r = r * Math.pow(10.0, exp.get());
-                        }
-                        return sn ? r : -r;
-                    });
+    public static final Parser<Chr, Integer> octIntr =
+            Numbers.integral("octal int", false, 8, Integer.MAX_VALUE, l -> (int)l);
+
+    /**
+     * A parser for an unsigned octal long (without any prefix).
+     * Values larger than {@link Long#MAX_VALUE} result in a failure.
+     */
+    public static final Parser<Chr, Long> octLng =
+            Numbers.integral("octal long", false, 8, Long.MAX_VALUE, l -> l);
+
+    /**
+     * A parser for a floating point number, of the form {@code [+-]digits[.digits][(e|E)[+-]digits]}.
+     * The result is the correctly rounded {@code double} value (as per {@link Double#parseDouble(String)}).
+     */
+    public static final Parser<Chr, Double> dble = Numbers.dble();
+
+    /**
+     * A parser for a decimal number, of the same form as {@link Text#dble},
+     * which returns the exact value as a {@link BigDecimal}.
+     */
+    public static final Parser<Chr, BigDecimal> bigDecimal = Numbers.bigDecimal();
 
     /**
      * A parser that succeeds if it can extract the given string from the input.
@@ -145,26 +317,78 @@ public static Parser<Chr, String> string(String s) {
             case 0: return Combinators.fail();
             case 1: return chr(s.charAt(0)).map(Object::toString);
             default: {
+                final SymSet<Chr> firstSet = SymSet.value(Chr.valueOf(s.charAt(0)));
                 return new ParserImpl<Chr, String>(
                         () -> false,
-                        () -> SymSet.value(Chr.valueOf(s.charAt(0)))
+                        () -> firstSet
                 ) {
                     @Override
                     public Result<Chr, String> apply(Input<Chr> in, SymSet<Chr> follow) {
+                        final CharScanner sc = CharScanner.of(in);
                         for (int i = 0; i < s.length(); ++i) {
-                            if (in.isEof()) {
-                                return Utils.failureEof(this, in);
-                            } else if (!in.get().equals(s.charAt(i))) {
-                                return Utils.failure(this, in);
+                            if (sc.isEof()) {
+                                return Utils.failureEof(this, sc.input());
+                            } else if (sc.peek() != s.charAt(i)) {
+                                return Utils.failure(this, sc.input());
                             } else {
-                                in = in.next();
+                                sc.advance();
                             }
                         }
 
-                        return Result.success(s, in);
+                        return Result.success(s, sc.input());
                     }
                 };
             }
         }
     }
+
+    /**
+     * A parser which matches the longest keyword in the given table,
+     * and returns the corresponding value.
+     * @param table     the keywords and their values
+     * @param <T>       the keyword value type
+     * @return          a parser for the keywords in the table
+     * @see Text#keywords(Map, boolean, boolean)
+     */
+    public static <T> Parser<Chr, T> keywords(Map<String, ? extends T> table) {
+        return keywords(table, true, false);
+    }
+
+    /**
+     * A parser which matches a keyword in the given table,
+     * and returns the corresponding value.
+     * <p>
+     * The keywords are compiled into a trie, so a keyword is matched in a single pass over the input,
+     * regardless of the number of keywords in the table.
+     * Unlike a {@code choice} of {@link Text#string(String)} parsers,
+     * the keywords may share common prefixes.
+     * The First Set of the parser is the set of the first characters of the keywords.
+     * @param table     the keywords and their values
+     * @param longest   true if the longest matching keyword is to be matched (e.g. {@code "<="} rather than {@code "<"}),
+     *                  otherwise the shortest matching keyword is matched
+     * @param ignoreCase true if the keywords are to be matched irrespective of case
+     * @param <T>       the keyword value type
+     * @return          a parser for the keywords in the table
+     * @throws IllegalArgumentException if the table is empty, contains an empty keyword,
+     *                  or (if case is ignored) contains keywords which differ only in case
+     */
+    public static <T> Parser<Chr, T> keywords(Map<String, ? extends T> table, boolean longest, boolean ignoreCase) {
+        final KeywordTrie<T> trie = new KeywordTrie<T>(table, ignoreCase);
+        final SymSet<Chr> firstSet = trie.firstSet();
+        return new ParserImpl<Chr, T>(Utils.LFALSE, () -> firstSet) {
+            @Override
+            public Result<Chr, T> apply(Input<Chr> in, SymSet<Chr> follow) {
+                try (CharScanner sc = CharScanner.of(in)) {
+                    final int node = trie.match(sc, longest);
+                    if (node != -1) {
+                        return Result.success(trie.value(node), sc.input());
+                    } else if (in.isEof()) {
+                        return Utils.failureEof(this, in);
+                    } else {
+                        return Utils.failure(this, in);
+                    }
+                }
+            }
+        };
+    }
 }
@@ -4,6 +4,7 @@
 import org.typemeta.funcj.functions.*;
 import org.typemeta.funcj.tuples.Tuple2;
 
+import java.util.Objects;
 import java.util.Optional;
 
 abstract class Utils {
@@ -11,16 +12,26 @@ abstract class Utils {
     static final Lazy<Boolean> LTRUE = () -> true;
     static final Lazy<Boolean> LFALSE = () -> false;
 
+    /**
+     * Construct a lazy value which can be safely shared between threads (see {@link SafeLazy}).
+     * @param get       supplier of the value, which must not return null
+     * @param <T>       the value type
+     * @return          the lazy value
+     */
+    static <T> Lazy<T> lazy(Functions.F0<T> get) {
+        return new SafeLazy<T>(get);
+    }
+
     static Lazy<Boolean> and(Lazy<Boolean> l, Lazy<Boolean> r) {
-        return Lazy.of(() -> l.apply() && r.apply());
+        return lazy(() -> l.apply() && r.apply());
     }
 
     static Lazy<Boolean> or(Lazy<Boolean> l, Lazy<Boolean> r) {
-        return Lazy.of(() -> l.apply() || r.apply());
+        return lazy(() -> l.apply() || r.apply());
     }
 
     static <I> Lazy<SymSet<I>> union(Lazy<SymSet<I>> l, Lazy<SymSet<I>> r) {
-        return Lazy.of(() -> l.apply().union(r.apply()));
+        return lazy(() -> l.apply().union(r.apply()).compile());
     }
 
     static <I> Lazy<SymSet<I>> combine(
@@ -28,7 +39,19 @@ static <I> Lazy<SymSet<I>> combine(
             Lazy<SymSet<I>> fs1,
             Lazy<SymSet<I>> fs2
     ) {
-        return Lazy.of(() -> (acceptsEmpty.apply() ? union(fs1, fs2) : fs1).apply());
+        return lazy(() -> (acceptsEmpty.apply() ? union(fs1, fs2) : fs1).apply());
+    }
+
+    /**
+     * Construct the union of two symbol sets, for use as a dynamic follow set.
+     * The union itself is only constructed if it is required (see {@link LazyUnion}).
+     * @param l         the left-hand set
+     * @param r         the right-hand set
+     * @param <I>       the input stream symbol type
+     * @return          the union
+     */
+    static <I> SymSet<I> followUnion(SymSet<I> l, SymSet<I> r) {
+        return LazyUnion.of(l, r);
     }
 
     static <I> SymSet<I> combine(
@@ -36,11 +59,37 @@ static <I> SymSet<I> combine(
             SymSet<I> fs1,
             SymSet<I> fs2
     ) {
-        return acceptsEmpty ? fs1.union(fs2) : fs1;
+        return acceptsEmpty ? followUnion(fs1, fs2) : fs1;
+    }
+
+    /**
+     * Apply a parser to an input, failing if eof isn't reached (see {@link Parser#parse(Input)}).
+     * @param parser    the parser
+     * @param parserAndEof the parser followed by {@link Combinators#eof()}
+     * @param in        the input stream
+     * @param <I>       the input stream symbol type
+     * @param <A>       the parser result type
+     * @return          the parser result
+     */
+    static <I, A> Result<I, A> parse(Parser<I, A> parser, Parser<I, A> parserAndEof, Input<I> in) {
+        final MemoTable.Scope scope = MemoTable.Scope.enter();
+        try {
+            if (parser.acceptsEmpty().apply()) {
+                return parserAndEof.apply(in, SymSet.empty());
+            } else if (in.isEof()) {
+                return failureEof(parser, in);
+            } else if (in.matches(parser.firstSet().apply())) {
+                return parserAndEof.apply(in, SymSet.empty());
+            } else {
+                return failure(parser, in);
+            }
+        } finally {
+            scope.exit();
+        }
     }
 
     static <I, A> Result<I, A> failure(Parser<I, ?> parser, Input<I> in) {
-        return Result.failure(in, parser.firstSet().apply());
+        return new Result.FailureOnExpected<I, A>(in, parser.firstSet());
     }
 
     static <I, A> Result<I, A> failure(String msg, Input<I> in) {
@@ -48,7 +97,7 @@ static <I, A> Result<I, A> failure(String msg, Input<I> in) {
     }
 
     static <I, A> Result<I, A> failureEof(Parser<I, ?> parser, Input<I> in) {
-        return Result.failureEof(in, parser.firstSet().apply());
+        return new Result.FailureOnExpected<I, A>(in, parser.firstSet());
     }
 
     static <A> A reduce(A a, IList<Tuple2<Functions.Op2<A>, A>> lopA) {
@@ -65,4 +114,38 @@ static <T> Optional<T> ifClass(Class<T> clazz, Object value) {
             return Optional.empty();
         }
     }
+
+    /**
+     * A lock-free {@link Lazy}, for the properties of parsers which are shared between threads.
+     * <p>
+     * The value is published via a volatile field, so every thread observes a fully constructed value,
+     * without any locking when reading the value once it has been computed.
+     * Threads which race to compute the value may each invoke the supplier,
+     * which is harmless as the parser properties are deterministic.
+     * @param <T>       the value type
+     */
+    static final class SafeLazy<T> implements Lazy<T> {
+        private final Functions.F0<T> get;
+
+        private volatile T value;
+
+        SafeLazy(Functions.F0<T> get) {
+            this.get = Objects.requireNonNull(get);
+        }
+
+        @Override
+        public T apply() {
+            T v = value;
+            if (v == null) {
+                v = get.apply();
+                value = v;
+            }
+            return v;
+        }
+
+        @Override
+        public String toString() {
+            return "Lazy<" + apply() + '>';
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package org.typemeta.funcj.parser;
+
+import java.util.TreeMap;
+
+/**
+ * A sliding window over a stream, which is read in blocks into an array,
+ * and which is shared by all of the cursors for the stream
+ * (see {@link ReaderInput} and {@link ChannelInput}).
+ * <p>
+ * {@code data[0]} holds the symbol at stream position {@code start},
+ * and the window extends up to (but excluding) stream position {@code end}.
+ * When the array fills up, the data before the oldest live {@link Input.Mark}
+ * (or, in the absence of any marks, before the position being read) is discarded,
+ * so memory use is bounded regardless of the size of the stream.
+ * The array only grows while a mark pins older data.
+ * @param <T>           the array type
+ */
+abstract class Window<T> {
+
+    private final TreeMap<Long, Integer> marks = new TreeMap<>();
+    private int capacity;
+    T data;
+    long start = 0;
+    private long end = 0;
+    private boolean isEof = false;
+
+    Window(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive - " + size);
+        }
+        this.capacity = size;
+    }
+
+    /**
+     * Allocate an array.
+     * @param size      the array length
+     * @return          the array
+     */
+    abstract T allocate(int size);
+
+    /**
+     * Read a block from the stream into the array.
+     * @param buf       the array
+     * @param off       the offset into the array
+     * @param len       the maximum number of symbols to read
+     * @return          the number of symbols read, or -1 at the end of the stream
+     */
+    abstract int read(T buf, int off, int len);
+
+    int capacity() {
+        return capacity;
+    }
+
+    boolean isEof(long position) {
+        if (position < end) {
+            return false;
+        } else {
+            fill(position);
+            return position >= end;
+        }
+    }
+
+    /**
+     * Return the index into {@code data} of the symbol at the given stream position.
+     * @param position  the stream position
+     * @return          the array index
+     */
+    int offset(long position) {
+        if (position < start) {
+            throw new IllegalStateException(
+                    "Input position " + position + " is no longer buffered (start=" + start + ")");
+        } else if (isEof(position)) {
+            throw new RuntimeException("End of input");
+        } else {
+            return (int)(position - start);
+        }
+    }
+
+    void addMark(long position) {
+        if (position < start) {
+            throw new IllegalStateException(
+                    "Input position " + position + " is no longer buffered (start=" + start + ")");
+        }
+        marks.merge(position, 1, Integer::sum);
+    }
+
+    void removeMark(long position) {
+        marks.computeIfPresent(position, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    private void fill(long position) {
+        if (data == null) {
+            data = allocate(capacity);
+        }
+        while (!isEof && position >= end) {
+            if (end - start == capacity) {
+                compact(position);
+            }
+            final int off = (int)(end - start);
+            final int n = read(data, off, capacity - off);
+            if (n == -1) {
+                isEof = true;
+            } else {
+                end += n;
+            }
+        }
+    }
+
+    private void compact(long position) {
+        final long oldest = marks.isEmpty() ? position : Math.min(marks.firstKey(), position);
+        final long keepFrom = Math.min(oldest, end);
+        final int discard = (int)(keepFrom - start);
+        final int live = (int)(end - keepFrom);
+        if (discard > 0) {
+            System.arraycopy(data, discard, data, 0, live);
+            start = keepFrom;
+        }
+        if (live == capacity) {
+            final T grown = allocate(capacity * 2);
+            System.arraycopy(data, 0, grown, 0, live);
+            data = grown;
+            capacity *= 2;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.IList;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.function.Function;
+
+import static org.junit.Assert.*;
+
+public class BytesTest {
+    private static final byte[] data = {
+            (byte)0x12, (byte)0x34, (byte)0x56, (byte)0x78,
+            (byte)0x9A, (byte)0xBC, (byte)0xDE, (byte)0xF0
+    };
+
+    private static final IList<Function<byte[], ByteInput>> inputs = IList.of(
+            ByteInput::of,
+            bs -> ByteInput.of(ByteBuffer.wrap(bs)),
+            bs -> {
+                final ByteBuffer bb = ByteBuffer.allocateDirect(bs.length);
+                bb.put(bs).flip();
+                return ByteInput.of(bb);
+            },
+            bs -> ByteInput.of(Channels.newChannel(new ByteArrayInputStream(bs)), 3)
+    );
+
+    private static <T> void assertSuccess(Parser<Byte, T> parser, byte[] bs, T expected) {
+        inputs.forEach(f -> assertEquals(expected, parser.parse(f.apply(bs)).getOrThrow()));
+    }
+
+    private static <T> void assertFailure(Parser<Byte, T> parser, byte[] bs) {
+        inputs.forEach(f -> assertFalse(parser.parse(f.apply(bs)).isSuccess()));
+    }
+
+    private static byte[] bytes(int... is) {
+        final byte[] bs = new byte[is.length];
+        for (int i = 0; i < is.length; ++i) {
+            bs[i] = (byte)is[i];
+        }
+        return bs;
+    }
+
+    @Test
+    public void testByteInput() {
+        inputs.forEach(f -> {
+            ByteInput in = f.apply(data);
+            for (byte b : data) {
+                assertFalse(in.isEof());
+                assertEquals(b, in.getByte());
+                assertEquals(Byte.valueOf(b), in.get());
+                in = in.next();
+            }
+            assertTrue(in.isEof());
+        });
+    }
+
+    @Test
+    public void testByteBufferSlice() {
+        final ByteBuffer bb = ByteBuffer.wrap(data);
+        bb.position(2).limit(6);
+        final ByteInput in = ByteInput.of(bb);
+        assertEquals(2, in.position());
+        assertEquals(0x56, in.getByte());
+        assertEquals(Integer.valueOf(0x56789ABC), Bytes.int32BE.parse(in).getOrThrow());
+        assertEquals(2, bb.position());
+    }
+
+    @Test
+    public void testChannelMark() throws Exception {
+        final ByteInput in = ByteInput.of(Channels.newChannel(new ByteArrayInputStream(new byte[1 << 16])), 16);
+        ByteInput in2 = in;
+        try (Input.Mark<Byte> mark = in.mark()) {
+            for (int i = 0; i < 1000; ++i) {
+                in2.getByte();
+                in2 = in2.next();
+            }
+            assertEquals(in, mark.reset());
+            assertEquals(0, in.getByte());
+        }
+    }
+
+    @Test
+    public void testFixedWidth() {
+        assertSuccess(Bytes.uint8, bytes(0xFE), 0xFE);
+        assertSuccess(Bytes.int16BE, bytes(0x12, 0x34), (short)0x1234);
+        assertSuccess(Bytes.int16LE, bytes(0x12, 0x34), (short)0x3412);
+        assertSuccess(Bytes.int16BE, bytes(0xFF, 0xFE), (short)-2);
+        assertSuccess(Bytes.int32BE, bytes(0x12, 0x34, 0x56, 0x78), 0x12345678);
+        assertSuccess(Bytes.int32LE, bytes(0x12, 0x34, 0x56, 0x78), 0x78563412);
+        assertSuccess(Bytes.int64BE, data, 0x123456789ABCDEF0L);
+        assertSuccess(Bytes.int64LE, data, 0xF0DEBC9A78563412L);
+        assertFailure(Bytes.int32BE, bytes(0x12, 0x34, 0x56));
+    }
+
+    @Test
+    public void testVarint() {
+        assertSuccess(Bytes.varint, bytes(0x00), 0);
+        assertSuccess(Bytes.varint, bytes(0x7F), 127);
+        assertSuccess(Bytes.varint, bytes(0xAC, 0x02), 300);
+        assertSuccess(Bytes.varint, bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), -1);
+        assertSuccess(Bytes.varlong, bytes(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01), -1L);
+        assertFailure(Bytes.varint, bytes(0xFF, 0xFF, 0xFF, 0xFF, 0x1F));
+        assertFailure(Bytes.varint, bytes(0xAC));
+    }
+
+    @Test
+    public void testLiteralResultIsACopy() {
+        final Parser<Byte, byte[]> p = Bytes.literal(bytes(0xCA, 0xFE));
+        p.parse(ByteInput.of(bytes(0xCA, 0xFE))).getOrThrow()[0] = 0;
+        assertArrayEquals(bytes(0xCA, 0xFE), p.parse(ByteInput.of(bytes(0xCA, 0xFE))).getOrThrow());
+    }
+
+    @Test
+    public void testLiteralAndCombination() {
+        final Parser<Byte, Integer> p =
+                Bytes.literal(bytes(0xCA, 0xFE))
+                        .andR(Bytes.uint8)
+                        .and(Bytes.int16BE)
+                        .map((n, s) -> n + s);
+        assertSuccess(p, bytes(0xCA, 0xFE, 0x01, 0x00, 0x02), 3);
+        assertFailure(p, bytes(0xCA, 0xFF, 0x01, 0x00, 0x02));
+    }
+
+    @Test
+    public void testSatisfyByte() {
+        final Parser<Byte, Byte> p = Bytes.satisfyByte("negative", b -> b < 0).or(Bytes.byt(0x01));
+        assertSuccess(p, bytes(0x80), (byte)0x80);
+        assertSuccess(p, bytes(0x01), (byte)0x01);
+        assertFailure(p, bytes(0x02));
+    }
+}
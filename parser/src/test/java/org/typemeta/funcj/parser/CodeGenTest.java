@@ -0,0 +1,104 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.*;
+import org.typemeta.funcj.data.*;
+import org.typemeta.funcj.parser.expr.*;
+
+import static org.junit.Assert.*;
+
+public class CodeGenTest {
+
+    @Before
+    public void checkAvailable() {
+        Assume.assumeTrue(CodeGen.isAvailable());
+    }
+
+    private static <A> void assertEquivalent(Parser<Chr, A> parser, Parser<Chr, A> generated, String s) {
+        final Result<Chr, A> expected = parser.parse(Input.of(s));
+        final Result<Chr, A> actual = generated.parse(Input.of(s));
+        assertEquals(s, expected.isSuccess(), actual.isSuccess());
+        if (expected.isSuccess()) {
+            assertEquals(s, expected.getOrThrow(), actual.getOrThrow());
+        } else {
+            assertEquals(s, expected.toString(), actual.toString());
+        }
+    }
+
+    @Test
+    public void testGeneratedClass() {
+        final Parser<Chr, Integer> generated = CodeGen.generate(Text.intr);
+        assertTrue(generated instanceof GeneratedParser);
+        assertEquals(Integer.valueOf(-123), generated.parse(Input.of("-123")).getOrThrow());
+    }
+
+    @Test
+    public void testRecursive() {
+        final Ref<Chr, Integer> ref = Parser.ref();
+        final Parser<Chr, Integer> parser =
+                Text.chr('(').andR(ref).andL(Text.chr(')')).or(Text.intr);
+        ref.set(parser);
+
+        final Parser<Chr, Integer> generated = CodeGen.generate(parser);
+        assertEquivalent(parser, generated, "((42))");
+        assertEquivalent(parser, generated, "((42)");
+        assertEquivalent(parser, generated, "");
+    }
+
+    @Test
+    public void testLoops() {
+        final Parser<Chr, String> parser =
+                Text.alpha.manyTill(Text.chr(';')).map(Chr::listToString)
+                        .andL(Text.ws.skipMany());
+
+        final Parser<Chr, String> generated = CodeGen.generate(parser);
+        assertEquivalent(parser, generated, "abc;  ");
+        assertEquivalent(parser, generated, "abc");
+        assertEquivalent(parser, generated, "ab1;");
+
+        final Parser<Chr, IList<Chr>> digits = Text.digit.many().andL(Text.chr(';'));
+        final Parser<Chr, IList<Chr>> generatedDigits = CodeGen.generate(digits);
+        assertEquivalent(digits, generatedDigits, "123;");
+        assertEquivalent(digits, generatedDigits, ";");
+        assertEquivalent(digits, generatedDigits, "12x;");
+    }
+
+    @Test
+    public void testChoice() {
+        final Parser<Chr, String> parser =
+                Parser.choice(
+                        Text.string("if"),
+                        Text.string("while"),
+                        Text.alpha.many1().map(Chr::listToString),
+                        Parser.pure("")
+                ).andL(Text.chr(';'));
+
+        final Parser<Chr, String> generated = CodeGen.generate(parser);
+        assertEquivalent(parser, generated, "while;");
+        assertEquivalent(parser, generated, "xyz;");
+        assertEquivalent(parser, generated, ";");
+        assertEquivalent(parser, generated, "1;");
+    }
+
+    @Test
+    public void testSequence() {
+        final Parser<Chr, String> parser =
+                Text.alpha.and(Text.digit.optional()).and(Text.ws.skipMany()).and(Text.alpha)
+                        .map((a, d, u, b) -> "" + a + d.map(String::valueOf).orElse("_") + b);
+
+        final Parser<Chr, String> generated = CodeGen.generate(parser);
+        assertEquivalent(parser, generated, "a1 b");
+        assertEquivalent(parser, generated, "a  b");
+        assertEquivalent(parser, generated, "ab");
+        assertEquivalent(parser, generated, "a1 2");
+        assertEquivalent(parser, generated, "a1");
+    }
+
+    @Test
+    public void testExprGrammar() {
+        final Parser<Chr, Model.Expr> generated = CodeGen.generate(Grammar.parser);
+        assertEquals(
+                "((123.456+(4.0*(5.0+x)))-1.0)",
+                generated.parse(Input.of("123.456+4*(5+x)-1")).getOrThrow().toString());
+        assertFalse(generated.parse(Input.of("3*4+(5+)-1")).isSuccess());
+    }
+}
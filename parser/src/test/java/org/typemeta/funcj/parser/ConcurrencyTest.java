@@ -0,0 +1,81 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.functions.Functions.Op2;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class ConcurrencyTest {
+
+    private static final int THREADS = 64;
+
+    private static final int ROUNDS = 20;
+
+    // Construct a new grammar each time, so that its lazy properties are unevaluated.
+    private static Parser<Chr, Integer> grammar() {
+        final Ref<Chr, Integer> expr = Parser.ref();
+        final Parser<Chr, Op2<Integer>> add = chr('+').map(c -> Op2.of((x, y) -> x + y));
+        final Parser<Chr, Op2<Integer>> mult = chr('*').map(c -> Op2.of((x, y) -> x * y));
+        final Parser<Chr, Integer> term = intr.or(chr('(').andR(expr).andL(chr(')')));
+        return expr.set(term.chainl1(mult).chainl1(add));
+    }
+
+    private static String input(int i) {
+        return "(" + i + "+1)*2+" + i;
+    }
+
+    private static int expected(int i) {
+        return (i + 1) * 2 + i;
+    }
+
+    private static void parseConcurrently(Parser<Chr, Integer> parser) throws Exception {
+        final ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            final CyclicBarrier barrier = new CyclicBarrier(THREADS);
+            final List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int t = 0; t < THREADS; ++t) {
+                final int id = t;
+                futures.add(pool.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < 50; ++i) {
+                        final int n = id * 100 + i;
+                        assertEquals(Integer.valueOf(expected(n)), parser.parse(Input.of(input(n))).getOrThrow());
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> f : futures) {
+                f.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedParser() throws Exception {
+        for (int r = 0; r < ROUNDS; ++r) {
+            parseConcurrently(grammar());
+        }
+    }
+
+    @Test
+    public void testSharedCompiledParser() throws Exception {
+        for (int r = 0; r < ROUNDS; ++r) {
+            parseConcurrently(grammar().compile());
+        }
+    }
+
+    @Test
+    public void testSharedMemoParser() throws Exception {
+        for (int r = 0; r < ROUNDS; ++r) {
+            parseConcurrently(grammar().memo());
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.*;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class IncrementalParserTest {
+
+    // decls = decl*, decl = <alpha> '=' <int> ';'
+    private static Parser<Chr, List<String>> decls(int[] count) {
+        final Parser<Chr, String> decl =
+                alpha.andL(chr('='))
+                        .and(intr)
+                        .andL(chr(';'))
+                        .map(k -> v -> {
+                            ++count[0];
+                            return k + "=" + v;
+                        });
+        return decl.memo().many().map(IList::toList);
+    }
+
+    private static String document(int n) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            sb.append((char)('a' + i % 26)).append('=').append(i).append(';');
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testEditReusesResults() {
+        final int[] count = {0};
+        final IncrementalParser<List<String>> ip = IncrementalParser.of(decls(count), "a=1;b=22;c=333;");
+        assertEquals("[a=1, b=22, c=333]", ip.parse().getOrThrow().toString());
+        assertEquals(3, count[0]);
+        assertEquals(3, ip.cached());
+
+        // Replace "22" with "4444".
+        ip.edit(6, 2, "4444");
+        assertEquals("a=1;b=4444;c=333;", ip.text());
+        assertEquals(2, ip.cached());
+        assertEquals("[a=1, b=4444, c=333]", ip.parse().getOrThrow().toString());
+        assertEquals(4, count[0]);
+
+        // Re-parsing without an edit re-uses all of the results.
+        assertEquals("[a=1, b=4444, c=333]", ip.parse().getOrThrow().toString());
+        assertEquals(4, count[0]);
+    }
+
+    @Test
+    public void testInsertAndDelete() {
+        final int[] count = {0};
+        final IncrementalParser<List<String>> ip = IncrementalParser.of(decls(count), "a=1;c=3;");
+        ip.parse();
+
+        ip.edit(4, 0, "b=2;");
+        assertEquals("[a=1, b=2, c=3]", ip.parse().getOrThrow().toString());
+        assertEquals(3, count[0]);
+
+        ip.edit(0, 4, "");
+        assertEquals("[b=2, c=3]", ip.parse().getOrThrow().toString());
+        assertEquals(3, count[0]);
+    }
+
+    @Test
+    public void testEditWorkIsLocal() {
+        final int n = 1000;
+        final int[] count = {0};
+        final IncrementalParser<List<String>> ip = IncrementalParser.of(decls(count), document(n));
+        ip.parse();
+        assertEquals(n, count[0]);
+
+        final int offset = ip.text().indexOf("=500;") + 1;
+        ip.edit(offset, 3, "7");
+        assertEquals((char)('a' + 500 % 26) + "=7", ip.parse().getOrThrow().get(500));
+        assertEquals(n + 1, count[0]);
+    }
+
+    @Test
+    public void testFailureAfterEdit() {
+        final int[] count = {0};
+        final IncrementalParser<List<String>> ip = IncrementalParser.of(decls(count), "a=1;b=2;c=3;");
+        assertTrue(ip.parse().isSuccess());
+
+        ip.edit(6, 1, "x");
+        final Result<Chr, List<String>> r = ip.parse();
+        assertFalse(r.isSuccess());
+        r.handle(
+                succ -> fail(),
+                fail -> assertEquals(6, fail.input().position())
+        );
+
+        ip.edit(6, 1, "2");
+        assertEquals("[a=1, b=2, c=3]", ip.parse().getOrThrow().toString());
+    }
+
+    @Test
+    public void testSpansAfterEditAreRecomputed() {
+        final Parser<Chr, Span> decl = span(alpha.andL(chr('=')).and(intr).andL(chr(';')).map(k -> v -> k));
+        final IncrementalParser<List<Span>> ip =
+                IncrementalParser.of(decl.memo().many().map(IList::toList), "a=1;b=2;");
+        assertEquals(Arrays.asList(new Span(0, 4), new Span(4, 8)), ip.parse().getOrThrow());
+
+        // The spans which follow the insertion contain positions, so aren't shifted.
+        ip.edit(0, 0, "x=99;");
+        assertEquals(0, ip.cached());
+        assertEquals(
+                Arrays.asList(new Span(0, 5), new Span(5, 9), new Span(9, 13)),
+                ip.parse().getOrThrow());
+
+        // A span which precedes the edit is still re-used.
+        ip.edit(9, 4, "c=3;");
+        assertEquals(2, ip.cached());
+        assertEquals(
+                Arrays.asList(new Span(0, 5), new Span(5, 9), new Span(9, 13)),
+                ip.parse().getOrThrow());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testEditOutOfRange() {
+        IncrementalParser.of(decls(new int[1]), "a=1;").edit(3, 2, "");
+    }
+}
@@ -3,7 +3,11 @@
 import org.junit.Test;
 import org.typemeta.funcj.data.Chr;
 
-import java.io.CharArrayReader;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
 
 import static org.junit.Assert.*;
 
@@ -20,6 +24,295 @@ public void testReaderInput() {
         testInput(Input.of(new CharArrayReader(charData)));
     }
 
+    @Test
+    public void testStringCharInput() {
+        testCharInput(Input.of(charData));
+    }
+
+    @Test
+    public void testReaderCharInput() {
+        testCharInput(Input.of(new CharArrayReader(charData)));
+    }
+
+    @Test
+    public void testStringInputIsImmutable() {
+        testImmutable(Input.of(charData));
+    }
+
+    @Test
+    public void testReaderInputIsImmutable() {
+        testImmutable(Input.of(new CharArrayReader(charData)));
+    }
+
+    @Test
+    public void testSliceInput() {
+        final char[] data = "xxabcyy".toCharArray();
+        final Input<Chr> in = Input.of(data, 2, 3);
+        assertEquals(2L, in.index());
+        assertEquals("abc", Text.takeWhile(c -> true).parse(in).getOrThrow().toString());
+        assertTrue(Input.of(data, 7, 0).isEof());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testSliceOutsideArrayThrows() {
+        Input.of(new char[4], 2, 3);
+    }
+
+    private void testImmutable(CharInput input) {
+        final CharInput next = input.next();
+        final CharInput nextNext = next.next();
+
+        // Advancing an input again must not affect the inputs already obtained.
+        input.next().next().next();
+
+        assertEquals("", charData[0], input.getChar());
+        assertEquals("", charData[1], next.getChar());
+        assertEquals("", charData[2], nextNext.getChar());
+        assertEquals("", next, input.next());
+
+        final Result<Chr, Chr> res = Combinators.<Chr>any().apply(input);
+        final Input<Chr> resNext = ((Result.Success<Chr, Chr>)res).next();
+        Combinators.<Chr>any().apply(input);
+        Combinators.<Chr>any().apply(resNext);
+        assertEquals("", charData[1], resNext.get().charValue());
+    }
+
+    @Test
+    public void testReaderInputMarkReset() {
+        final String s = "The quick brown fox jumps over the lazy dog";
+        final CharInput input = Input.of(new StringReader(s), 4);
+
+        CharInput curr = input;
+        for (int i = 0; i < 10; ++i) {
+            curr = curr.next();
+        }
+
+        final Input.Mark<Chr> mark = curr.mark();
+
+        for (int i = 10; i < s.length(); ++i) {
+            assertEquals("", s.charAt(i), curr.getChar());
+            curr = curr.next();
+        }
+        assertTrue("", curr.isEof());
+
+        Input<Chr> reset = mark.reset();
+        for (int i = 10; i < s.length(); ++i) {
+            assertEquals("", s.charAt(i), reset.get().charValue());
+            reset = reset.next();
+        }
+        assertTrue("", reset.isEof());
+
+        mark.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReaderInputDiscardsUnmarkedData() {
+        final char[] data = new char[64];
+        Arrays.fill(data, 'x');
+        final CharInput input = Input.of(new CharArrayReader(data), 4);
+        input.getChar();
+
+        CharInput curr = input;
+        while (!curr.isEof()) {
+            curr = curr.next();
+        }
+
+        input.getChar();
+    }
+
+    /**
+     * A reader which generates a repeating sequence of chars,
+     * and which returns at most {@code maxRead} chars per read.
+     */
+    private static class GenReader extends Reader {
+        private final long size;
+        private final int maxRead;
+        private long pos = 0;
+
+        GenReader(long size, int maxRead) {
+            this.size = size;
+            this.maxRead = maxRead;
+        }
+
+        static char charAt(long pos) {
+            return (char)('a' + pos % 26);
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos == size) {
+                return -1;
+            } else {
+                final int n = (int)Math.min(Math.min(len, maxRead), size - pos);
+                for (int i = 0; i < n; ++i) {
+                    cbuf[off + i] = charAt(pos++);
+                }
+                return n;
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testReaderInputShortReads() {
+        final int n = 10000;
+        CharInput curr = Input.of(new GenReader(n, 3), 16);
+        for (int i = 0; i < n; ++i) {
+            assertFalse("", curr.isEof());
+            assertEquals("", GenReader.charAt(i), curr.getChar());
+            curr = curr.next();
+        }
+        assertTrue("", curr.isEof());
+    }
+
+    @Test
+    public void testReaderInputWindowIsBounded() {
+        final long n = 1L << 22;
+        CharInput curr = Input.of(new GenReader(n, Integer.MAX_VALUE), 1024);
+        CharInput behind = curr;
+        for (long i = 0; i < n; ++i) {
+            assertEquals("", GenReader.charAt(i), curr.getChar());
+            curr = curr.next();
+            if (i >= 2048) {
+                behind = behind.next();
+            }
+        }
+        assertTrue("", curr.isEof());
+
+        // The window hasn't grown to retain an input which is twice its size behind the end.
+        try {
+            behind.getChar();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+        }
+    }
+
+    @Test
+    public void testReaderInputWindowRetainsMarks() {
+        CharInput curr = Input.of(new GenReader(10000, 100), 64);
+        for (int i = 0; i < 100; ++i) {
+            curr = curr.next();
+        }
+
+        final Input.Mark<Chr> mark = curr.mark();
+        for (int i = 100; i < 5000; ++i) {
+            curr = curr.next();
+        }
+        curr.getChar();
+
+        Input<Chr> reset = mark.reset();
+        for (int i = 100; i < 5000; ++i) {
+            assertEquals("", GenReader.charAt(i), reset.get().charValue());
+            reset = reset.next();
+        }
+        mark.close();
+    }
+
+    @Test
+    public void testBacktrackingAcrossReaderWindow() {
+        // Each alternative reads well past the 8 char window before failing or succeeding,
+        // so orElse must hold a mark for the rhs to re-read the input.
+        final String s = "abcdefghijklmnopqrstuvwxyz";
+        final Parser<Chr, String> parser =
+                Text.manyChars(Text.alpha).andL(Text.chr('1'))
+                        .orElse(Text.manyChars(Text.alpha).andL(Text.chr('2')));
+        for (Parser<Chr, String> p : Arrays.asList(parser, parser.compile())) {
+            assertEquals(s, p.parse(Input.of(new StringReader(s + "2"), 8)).getOrThrow());
+            assertEquals(s, p.parse(Input.of(new StringReader(s + "1"), 8)).getOrThrow());
+            assertFalse(p.parse(Input.of(new StringReader(s + "3"), 8)).isSuccess());
+        }
+    }
+
+    private static final String UTF8_TEXT = "ASCII, \u00e9\u00e8 2-byte, \u20ac\u4e2d 3-byte, \ud83d\ude00 4-byte, end";
+
+    private static Path writeTempFile(byte[] data) throws IOException {
+        final Path path = Files.createTempFile("InputTest", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, data);
+        return path;
+    }
+
+    private static void testMappedInput(CharInput input, String expected) {
+        CharInput curr = input;
+        for (int i = 0; i < expected.length(); ++i) {
+            assertFalse("", curr.isEof());
+            assertEquals("char " + i, expected.charAt(i), curr.getChar());
+            curr = curr.next();
+        }
+        assertTrue("", curr.isEof());
+    }
+
+    @Test
+    public void testMappedFileInput() throws IOException {
+        final byte[] bytes = UTF8_TEXT.getBytes(StandardCharsets.UTF_8);
+        final Path path = writeTempFile(bytes);
+
+        testMappedInput(Input.of(path), UTF8_TEXT);
+
+        // Use tiny segments so that the multi-byte sequences straddle segment boundaries.
+        for (int bits = 1; bits < 6; ++bits) {
+            try (FileChannel fc = FileChannel.open(path)) {
+                testMappedInput(MappedFileInput.of(fc, bits), UTF8_TEXT);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedFileInputPositionIsByteOffset() throws IOException {
+        final Path path = writeTempFile("a\u00e9b".getBytes(StandardCharsets.UTF_8));
+        final CharInput input = Input.of(path);
+        assertEquals("", 0L, input.position());
+        assertEquals("", 1L, input.next().position());
+        assertEquals("", 3L, input.next().next().position());
+    }
+
+    @Test
+    public void testMappedFileInputSkipsBomAndReplacesMalformed() throws IOException {
+        final byte[] bytes = {(byte)0xEF, (byte)0xBB, (byte)0xBF, 'a', (byte)0xC3, 'b', (byte)0xE2, (byte)0x82};
+        testMappedInput(Input.of(writeTempFile(bytes)), "a\uFFFDb\uFFFD\uFFFD");
+    }
+
+    @Test
+    public void testMappedFileInputReplacesEncodedSurrogates() throws IOException {
+        // U+D7FF is valid, whereas the encoding of U+D800 is rejected byte by byte.
+        final byte[] bytes = {'x', (byte)0xED, (byte)0x9F, (byte)0xBF, (byte)0xED, (byte)0xA0, (byte)0x80, 'y'};
+        testMappedInput(Input.of(writeTempFile(bytes)), "x\uD7FF\uFFFD\uFFFD\uFFFDy");
+    }
+
+    @Test
+    public void testMappedFileInputParse() throws IOException {
+        final Path path = writeTempFile("-1234".getBytes(StandardCharsets.UTF_8));
+        assertEquals("", Integer.valueOf(-1234), Text.intr.parse(Input.of(path)).getOrThrow());
+    }
+
+    @Test
+    public void testStringInputMarkReset() {
+        final CharInput input = Input.of(charData).next();
+        try (Input.Mark<Chr> mark = input.mark()) {
+            assertEquals("", input, mark.reset());
+        }
+    }
+
+    private void testCharInput(CharInput input) {
+        CharInput curr = input;
+
+        for (char c : charData) {
+            assertFalse("", curr.isEof());
+            assertEquals("", c, curr.getChar());
+            assertEquals("", c, curr.get().charValue());
+            assertTrue("", curr.matches(SymSet.charPred("", x -> x == c)));
+            assertTrue("", curr.matches(SymSet.value(Chr.valueOf(c))));
+            assertFalse("", curr.matches(SymSet.value(Chr.valueOf('x'))));
+
+            curr = curr.next();
+        }
+
+        assertTrue("", curr.isEof());
+    }
+
     private void testInput(Input<Chr> input) {
         Input<Chr> curr = input;
 
@@ -0,0 +1,85 @@
+package org.typemeta.funcj.parser;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+import org.typemeta.funcj.data.Chr;
+
+import static org.typemeta.funcj.parser.Text.*;
+
+/**
+ * Compares the scanner-based numeric parsers in {@link Text}
+ * with the equivalent parsers built from combinators over lists of digits.
+ */
+@State(Scope.Benchmark)
+public class JmhNumericTest {
+
+    private static final Parser<Chr, Long> combUlng =
+            chr('0').map(z -> 0L)
+                    .or(nonZeroDigit.and(digit.many())
+                            .map(d -> ds -> ds.add(d))
+                            .map(ds -> ds.map(Text::digitToInt))
+                            .map(ds -> ds.foldLeft((acc, x) -> acc * 10L + x, 0L)));
+
+    private static final Parser<Chr, Long> combLng =
+            sign.and(combUlng).map((sn, l) -> sn ? l : -l);
+
+    private static final Parser<Chr, Double> combDble =
+            sign.and(combUlng)
+                    .and(chr('.').andR(
+                            digit.many()
+                                    .map(ds -> ds.map(Text::digitToInt))
+                                    .map(l -> l.foldRight((d, acc) -> d + acc / 10.0, 0.0) / 10.0)
+                    ).optional())
+                    .and(chr('e').or(chr('E')).andR(combLng).optional())
+                    .map((sn, i, f, exp) -> {
+                        double r = i.doubleValue();
+                        if (f.isPresent()) {
+                            r += f.get();
+                        }
+                        if (exp.isPresent()) {
+                            r = r * Math.pow(10.0, exp.get());
+                        }
+                        return sn ? r : -r;
+                    });
+
+    private static final String LNG = "-1234567890123456789";
+
+    private static final String DBLE = "-12345.678901234e-12";
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Long combinatorLng() {
+        return combLng.parse(Input.of(LNG)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Long scannerLng() {
+        return lng.parse(Input.of(LNG)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Double combinatorDble() {
+        return combDble.parse(Input.of(DBLE)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Double scannerDble() {
+        return dble.parse(Input.of(DBLE)).getOrThrow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        final Options opt = new OptionsBuilder()
+                .include(JmhNumericTest.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,121 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.functions.Functions.*;
+
+import static org.junit.Assert.*;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class OperatorTableTest {
+
+    private static Parser<Chr, Op2<Long>> binOp(char c, Op2<Long> f) {
+        return chr(c).map(x -> f);
+    }
+
+    private static Parser<Chr, Op<Long>> unOp(char c, Op<Long> f) {
+        return chr(c).map(x -> f);
+    }
+
+    private static long pow(long x, long y) {
+        long r = 1;
+        for (long i = 0; i < y; ++i) {
+            r *= x;
+        }
+        return r;
+    }
+
+    private static long factorial(long x) {
+        return x <= 1 ? 1 : x * factorial(x - 1);
+    }
+
+    private static final Ref<Chr, Long> expr = Parser.ref();
+
+    private static final OperatorTable<Chr, Long> table =
+            OperatorTable.<Chr, Long>create()
+                    .infixLeft(1, binOp('+', (x, y) -> x + y))
+                    .infixLeft(1, binOp('-', (x, y) -> x - y))
+                    .infixLeft(2, binOp('*', (x, y) -> x * y))
+                    .infixLeft(2, binOp('/', (x, y) -> x / y))
+                    .prefix(3, unOp('-', x -> -x))
+                    .infixRight(4, binOp('^', OperatorTableTest::pow))
+                    .postfix(5, unOp('!', OperatorTableTest::factorial));
+
+    static {
+        expr.set(table.parser(ulng.or(chr('(').andR(expr).andL(chr(')')))));
+    }
+
+    private static void assertEvaluate(String s, long expected) {
+        assertEquals(s, expected, expr.parse(Input.of(s)).getOrThrow().longValue());
+        assertEquals(s, expected, expr.compile().parse(Input.of(s)).getOrThrow().longValue());
+    }
+
+    @Test
+    public void testPrecedence() {
+        assertEvaluate("1+2*3", 7);
+        assertEvaluate("(1+2)*3", 9);
+        assertEvaluate("2*3+4*5", 26);
+        assertEvaluate("-2^2", -4);
+        assertEvaluate("-3!", -6);
+        assertEvaluate("2^3!", 64);
+        assertEvaluate("--5", 5);
+    }
+
+    @Test
+    public void testAssociativity() {
+        assertEvaluate("10-4-3", 3);
+        assertEvaluate("100/10/5", 2);
+        assertEvaluate("2^3^2", 512);
+    }
+
+    @Test
+    public void testFailure() {
+        assertFalse(expr.parse(Input.of("1+")).isSuccess());
+        assertFalse(expr.parse(Input.of("*1")).isSuccess());
+        assertFalse(expr.parse(Input.of("(1+2")).isSuccess());
+    }
+
+    @Test
+    public void testLongChains() {
+        final int n = 100000;
+        final StringBuilder sum = new StringBuilder("0");
+        final StringBuilder pow = new StringBuilder("1");
+        final StringBuilder neg = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            sum.append("+1");
+            pow.append("^1");
+            neg.append('-');
+        }
+        neg.append('7');
+
+        assertEvaluate(sum.toString(), n);
+        assertEvaluate(pow.toString(), 1);
+        assertEvaluate(neg.toString(), 7);
+    }
+
+    @Test
+    public void testNonAssociative() {
+        final Parser<Chr, Long> cmp =
+                OperatorTable.<Chr, Long>create()
+                        .infix(1, OperatorTable.Assoc.NONE, binOp('=', (x, y) -> x.equals(y) ? 1L : 0L))
+                        .infixLeft(2, binOp('+', (x, y) -> x + y))
+                        .parser(ulng);
+
+        assertEquals(1L, cmp.parse(Input.of("1+2=3")).getOrThrow().longValue());
+        assertFalse(cmp.parse(Input.of("1=1=1")).isSuccess());
+    }
+
+    @Test
+    public void testOverlappingOperators() {
+        final Parser<Chr, Op2<Long>> shl = string("<<").map(s -> (x, y) -> x << y);
+        final Parser<Chr, Op2<Long>> lt = chr('<').map(c -> (x, y) -> x < y ? 1L : 0L);
+        final Parser<Chr, Long> p =
+                OperatorTable.<Chr, Long>create()
+                        .infixLeft(2, shl)
+                        .infixLeft(1, lt)
+                        .parser(ulng);
+
+        assertEquals(1L, p.parse(Input.of("1<1<<1")).getOrThrow().longValue());
+        assertEquals(8L, p.parse(Input.of("1<<3")).getOrThrow().longValue());
+    }
+}
@@ -0,0 +1,105 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.Chr;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class ParallelParserTest {
+
+    // record = <alpha>+ ',' <int>
+    private static final Parser<Chr, String> record =
+            alpha.many1().map(Chr::listToString)
+                    .andL(chr(','))
+                    .and(intr)
+                    .map(k -> v -> k + "=" + v);
+
+    private static String lines(int n, String eol) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            sb.append("key").append((char)('a' + i % 26)).append(',').append(i).append(eol);
+        }
+        return sb.toString();
+    }
+
+    private static void assertRecords(int n, List<Result<Chr, String>> results) {
+        assertEquals(n, results.size());
+        for (int i = 0; i < n; ++i) {
+            assertEquals("key" + (char)('a' + i % 26) + "=" + i, results.get(i).getOrThrow());
+        }
+    }
+
+    @Test
+    public void testParseArray() {
+        final int n = 10000;
+        final ParallelParser<String> pp = ParallelParser.of(record, RecordSplitter.lines()).withChunkSize(1000);
+        assertRecords(n, pp.parse(lines(n, "\n").toCharArray()));
+        assertRecords(n, pp.parse(lines(n, "\r\n").toCharArray()));
+    }
+
+    @Test
+    public void testNoTrailingTerminator() {
+        final ParallelParser<String> pp = ParallelParser.of(record, RecordSplitter.terminator(';'));
+        final List<Result<Chr, String>> results = pp.parse("a,1;b,2;c,3".toCharArray());
+        assertEquals(3, results.size());
+        assertEquals("c=3", results.get(2).getOrThrow());
+        assertTrue(pp.parse(new char[0]).isEmpty());
+    }
+
+    @Test
+    public void testFailureReportsGlobalPosition() {
+        final String s = lines(500, "\n") + "bad,x\n" + lines(10, "\n");
+        final List<Result<Chr, String>> results =
+                ParallelParser.of(record, RecordSplitter.lines())
+                        .withChunkSize(64)
+                        .withPool(new ForkJoinPool(4))
+                        .parse(s.toCharArray());
+
+        assertEquals(511, results.size());
+        final Result<Chr, String> bad = results.get(500);
+        assertFalse(bad.isSuccess());
+        bad.handle(
+                succ -> fail(),
+                fail -> assertEquals(s.indexOf("bad,x") + 4, fail.input().position())
+        );
+        assertTrue(results.get(510).isSuccess());
+    }
+
+    @Test
+    public void testParseInput() {
+        final int n = 1000;
+        final ParallelParser<String> pp = ParallelParser.of(record, RecordSplitter.lines()).withChunkSize(100);
+        assertRecords(n, pp.parse(Input.of(new StringReader(lines(n, "\n")))));
+    }
+
+    @Test
+    public void testParseMappedFile() throws IOException {
+        final Path path = Files.createTempFile("ParallelParserTest", ".txt");
+        try {
+            final String s = "\uFEFF\u00E9,1\n" + lines(1000, "\n") + "\u00FC,x\n";
+            Files.write(path, s.getBytes(StandardCharsets.UTF_8));
+
+            final List<Result<Chr, String>> results =
+                    ParallelParser.of(record, RecordSplitter.lines()).withChunkSize(500).parse(path);
+
+            assertEquals(1002, results.size());
+            assertEquals("\u00E9=1", results.get(0).getOrThrow());
+            assertEquals("keyb=1", results.get(2).getOrThrow());
+
+            final long badOffset = s.getBytes(StandardCharsets.UTF_8).length - "x\n".length();
+            results.get(1001).handle(
+                    succ -> fail(),
+                    fail -> assertEquals(badOffset, fail.input().position())
+            );
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
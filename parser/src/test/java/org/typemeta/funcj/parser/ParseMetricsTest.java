@@ -0,0 +1,74 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.*;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class ParseMetricsTest {
+
+    private static final Ref<Chr, Integer> list = Parser.ref();
+
+    private static final Parser<Chr, Integer> item = intr.named("item");
+
+    static {
+        // A bracketed, comma-separated list of integers and nested lists, evaluating to the number of integers.
+        list.set(
+                chr('[')
+                        .andR(item.map(i -> 1).or(list).sepBy(chr(',')))
+                        .andL(chr(']'))
+                        .map(l -> l.foldLeft((x, y) -> x + y, 0))
+                        .named("list")
+        );
+    }
+
+    @Test
+    public void testMetrics() {
+        final ParseMetrics metrics = new ParseMetrics();
+        final Parser<Chr, Integer> p = list.instrument(metrics);
+
+        assertEquals(4, p.parse(Input.of("[1,[22,[333]],4]")).getOrThrow().intValue());
+
+        final ParseMetrics.Stats items = metrics.stats("item");
+        assertEquals(4, items.invocations());
+        assertEquals(4, items.successes());
+        assertEquals(0, items.failures());
+        assertEquals(7, items.consumed());
+
+        final ParseMetrics.Stats lists = metrics.stats("list");
+        assertEquals(3, lists.invocations());
+        assertEquals(16 + 10 + 5, lists.consumed());
+        assertTrue(lists.totalNanos() >= lists.selfNanos());
+
+        final List<ParseMetrics.Stats> stats = metrics.stats();
+        assertEquals(2, stats.size());
+        assertTrue(stats.get(0).selfNanos() >= stats.get(1).selfNanos());
+        assertTrue(metrics.report().contains("item"));
+
+        assertFalse(p.parse(Input.of("[1,x]")).isSuccess());
+        assertEquals(5, items.invocations());
+        assertEquals(1, lists.failures());
+
+        metrics.reset();
+        assertNull(metrics.stats("item"));
+    }
+
+    @Test
+    public void testNamedHasNoEffect() {
+        assertEquals(3, list.parse(Input.of("[1,[2],3]")).getOrThrow().intValue());
+        assertEquals(3, list.compile().parse(Input.of("[1,[2],3]")).getOrThrow().intValue());
+        assertFalse(list.compile() instanceof NamedParser);
+    }
+
+    @Test
+    public void testInstrumentCompiledParser() {
+        final ParseMetrics metrics = new ParseMetrics();
+        final Parser<Chr, Integer> p = list.compile().instrument(metrics);
+
+        assertEquals(2, p.parse(Input.of("[1,2]")).getOrThrow().intValue());
+        assertEquals(2, metrics.stats("item").successes());
+    }
+}
@@ -8,8 +8,12 @@
 import org.typemeta.funcj.functions.Functions.*;
 import org.typemeta.funcj.tuples.Tuple2;
 
+import java.util.stream.Collectors;
+
 import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.typemeta.funcj.parser.Combinators.*;
 import static org.typemeta.funcj.parser.Parser.ap;
 import static org.typemeta.funcj.parser.Text.intr;
@@ -215,6 +219,338 @@ public void testInitialisedRefManyDoesThrow() {
         Parser<Chr, IList<Chr>> rs = ref.many();
     }
 
+    private static final Parser<Chr, String> keyword =
+            Parser.choice(
+                    Text.string("if"),
+                    Text.string("while"),
+                    Text.string("return"),
+                    Text.alpha.many1().map(l -> "id:" + Chr.listToString(l))
+            );
+
+    @Test
+    public void testChoiceDispatch() {
+        assertEquals("while", keyword.parse(Input.of("while")).getOrThrow());
+        assertEquals("id:xyz", keyword.parse(Input.of("xyz")).getOrThrow());
+        assertEquals("id:\u00e9t\u00e9", keyword.parse(Input.of("\u00e9t\u00e9")).getOrThrow());
+        assertFalse(keyword.parse(Input.of("1")).isSuccess());
+    }
+
+    @Test
+    public void testChoiceDispatchRespectsOrder() {
+        final Parser<Chr, String> parser =
+                Parser.choice(
+                        satisfy("lower", (Chr c) -> c.charValue() < 'm').map(c -> "pred"),
+                        Text.chr('a').map(c -> "a"),
+                        Text.chr('z').map(c -> "z"),
+                        Parser.pure("empty")
+                );
+
+        assertEquals("pred", parser.parse(Input.of("a")).getOrThrow());
+        assertEquals("z", parser.parse(Input.of("z")).getOrThrow());
+        assertEquals("empty", parser.parse(Input.of("")).getOrThrow());
+    }
+
+    @Test
+    public void testOrChainDispatch() {
+        final Parser<Chr, Chr> parser =
+                Text.chr('a').or(Text.digit).or(Text.chr('1')).or(Text.ws);
+
+        assertEquals(Chr.valueOf('a'), parser.parse(Input.of("a")).getOrThrow());
+        assertEquals(Chr.valueOf('1'), parser.parse(Input.of("1")).getOrThrow());
+        assertEquals(Chr.valueOf(' '), parser.parse(Input.of(" ")).getOrThrow());
+        assertFalse(parser.parse(Input.of("b")).isSuccess());
+    }
+
+    @Test
+    public void testChoiceDispatchOnFollowSet() {
+        final Parser<Chr, Chr> parser =
+                Parser.choice(Text.chr('x'), Parser.pure(Chr.valueOf('-')))
+                        .andL(Text.chr('y').optional())
+                        .andL(Text.chr('z'));
+
+        for (Parser<Chr, Chr> p : IList.of(parser, parser.compile())) {
+            assertEquals(Chr.valueOf('x'), p.parse(Input.of("xyz")).getOrThrow());
+            assertEquals(Chr.valueOf('-'), p.parse(Input.of("yz")).getOrThrow());
+            assertEquals(Chr.valueOf('-'), p.parse(Input.of("z")).getOrThrow());
+            assertFalse(p.parse(Input.of("q")).isSuccess());
+        }
+    }
+
+    @Test
+    public void testPrepare() {
+        final Parser<Chr, Integer> parser = Text.intr.andL(Text.chr(';'));
+        final PreparedParser<Chr, Integer> prepared = parser.prepare();
+
+        assertEquals(Integer.valueOf(42), prepared.parse(Input.of("42;")).getOrThrow());
+        assertEquals(Integer.valueOf(-7), prepared.parse(Input.of("-7;")).getOrThrow());
+        assertFalse(prepared.parse(Input.of("42;x")).isSuccess());
+        assertFalse(prepared.parse(Input.of("x")).isSuccess());
+        assertFalse(prepared.parse(Input.of("")).isSuccess());
+        assertEquals(Integer.valueOf(3), prepared.parser().apply(Input.of("3;x")).getOrThrow());
+
+        final PreparedParser<Chr, IList<Chr>> empty = Text.alpha.many().prepare();
+        assertEquals(0, empty.parse(Input.of("")).getOrThrow().size());
+        assertFalse(empty.parse(Input.of("ab1")).isSuccess());
+    }
+
+    @Test
+    public void testFailureReportsExpected() {
+        final Parser<Chr, Chr> parser = Text.chr('a').andR(Text.chr('b').or(Text.chr('c')));
+
+        final Result<Chr, Chr> r = parser.parse(Input.of("ad"));
+        assertFalse(r.isSuccess());
+
+        final SymSet<Chr> expected = ((Result.FailureOnExpected<Chr, Chr>)r).expected();
+        assertTrue(expected.matchesChar('b'));
+        assertTrue(expected.matchesChar('c'));
+        assertFalse(expected.matchesChar('d'));
+    }
+
+    @Test
+    public void testCompile() {
+        final Ref<Chr, Integer> ref = Parser.ref();
+        final Parser<Chr, Integer> parser =
+                Text.chr('(').andR(ref).andL(Text.chr(')')).or(intr);
+        ref.set(parser);
+
+        final Parser<Chr, Integer> compiled = parser.compile();
+        assertEquals(Integer.valueOf(42), compiled.parse(Input.of("((42))")).getOrThrow());
+        assertFalse(compiled.parse(Input.of("((42)")).isSuccess());
+        assertEquals(parser.firstSet().apply().toString(), compiled.firstSet().apply().toString());
+    }
+
+    @Test(expected=Exception.class)
+    public void testCompileUninitialisedRefThrows() {
+        final Ref<Chr, Chr> ref = Parser.ref();
+        Text.chr('x').andR(ref).compile();
+    }
+
+    @Test
+    public void testOrElseBacktracks() {
+        final Parser<Chr, String> parser =
+                Text.string("ab").andL(Text.chr('c'))
+                        .orElse(Text.string("ab").andL(Text.chr('d')).map(s -> s + "d"));
+
+        assertEquals("ab", parser.parse(Input.of("abc")).getOrThrow());
+        assertEquals("abd", parser.parse(Input.of("abd")).getOrThrow());
+        assertFalse(parser.parse(Input.of("abe")).isSuccess());
+        assertEquals("abd", parser.compile().parse(Input.of("abd")).getOrThrow());
+    }
+
+    private static Parser<Chr, Integer> nested(int[] count, boolean memo) {
+        final Ref<Chr, Integer> ref = Parser.ref();
+        final Parser<Chr, Integer> s = memo ? ref.memo() : ref;
+        final Parser<Chr, Integer> inner = Text.chr('(').andR(s).andL(Text.chr(')'));
+        final Parser<Chr, Integer> leaf = Text.chr('x').map(c -> ++count[0]);
+        return ref.set(
+                inner.andL(Text.chr('a'))
+                        .orElse(inner.andL(Text.chr('b')).map(n -> n + 1))
+                        .orElse(leaf));
+    }
+
+    private static String nestedInput(int depth) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; ++i) {
+            sb.append('(');
+        }
+        sb.append('x');
+        for (int i = 0; i < depth; ++i) {
+            sb.append(")b");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void testMemoAvoidsReparsing() {
+        final int depth = 12;
+        final String s = nestedInput(depth);
+
+        final int[] count = {0};
+        assertEquals(Integer.valueOf((1 << depth) + depth), nested(count, false).parse(Input.of(s)).getOrThrow());
+        assertEquals(1 << depth, count[0]);
+
+        final int[] memoCount = {0};
+        assertEquals(Integer.valueOf(1 + depth), nested(memoCount, true).parse(Input.of(s)).getOrThrow());
+        assertEquals(1, memoCount[0]);
+
+        final int[] compiledCount = {0};
+        assertEquals(Integer.valueOf(1 + depth), nested(compiledCount, true).compile().parse(Input.of(s)).getOrThrow());
+        assertEquals(1, compiledCount[0]);
+    }
+
+    @Test
+    public void testMemoMatchesEqualFollowSets() {
+        // The memo parser is applied with a dynamic follow set,
+        // which is constructed afresh for each of the alternatives.
+        final int[] count = {0};
+        final Parser<Chr, Chr> a = Text.chr('a').map(c -> {++count[0]; return c;}).memo();
+        final Parser<Chr, Chr> inner = a.andL(Text.chr('-').optional()).map(c -> c);
+        final Parser<Chr, Chr> parser =
+                inner.andL(Text.chr('x')).andL(Text.chr('z'))
+                        .orElse(inner.andL(Text.chr('x')).andL(Text.chr('y')));
+
+        assertEquals(Chr.valueOf('a'), parser.parse(Input.of("a-xy")).getOrThrow());
+        assertEquals(1, count[0]);
+
+        count[0] = 0;
+        assertEquals(Chr.valueOf('a'), parser.compile().parse(Input.of("axy")).getOrThrow());
+        assertEquals(1, count[0]);
+    }
+
+    @Test
+    public void testMemoTablesAreScopedToParse() {
+        final int[] count = {0};
+        final Parser<Chr, Integer> parser = nested(count, true);
+        final Input<Chr> in = Input.of(nestedInput(4));
+        parser.parse(in).getOrThrow();
+        parser.parse(in).getOrThrow();
+        assertEquals(2, count[0]);
+    }
+
+    @Test
+    public void testMemoTableGrows() {
+        final MemoTable<Chr, Chr> table = new MemoTable<Chr, Chr>(4096);
+        final SymSet<Chr> follow = SymSet.empty();
+        final Input<Chr> start = Input.of(nestedInput(200));
+        for (Input<Chr> in = start; !in.isEof(); in = in.next()) {
+            table.put(in.index(), in, follow, Result.success(in.get(), in.next()));
+        }
+        for (Input<Chr> in = start; !in.isEof(); in = in.next()) {
+            assertEquals(in.get(), table.get(in.index(), in, follow).getOrThrow());
+        }
+        assertEquals(4096, table.capacity());
+    }
+
+    @Test
+    public void testMemoTableIsBounded() {
+        final MemoTable<Chr, Chr> table = new MemoTable<Chr, Chr>(16);
+        final SymSet<Chr> follow = SymSet.empty();
+        Input<Chr> in = Input.of(nestedInput(100));
+        for (; !in.isEof(); in = in.next()) {
+            table.put(in.index(), in, follow, Result.success(in.get(), in.next()));
+            assertEquals(in.get(), table.get(in.index(), in, follow).getOrThrow());
+        }
+        assertEquals(16, table.capacity());
+        assertEquals(null, table.get(0, Input.of(nestedInput(100)), follow));
+    }
+
+    @Test
+    public void testManyCollector() {
+        final Parser<Chr, java.util.List<Integer>> parser =
+                Text.digit.map(Text::digitToInt).many(Collectors.toList());
+        assertEquals(java.util.Arrays.asList(1, 2, 3), parser.parse(Input.of("123")).getOrThrow());
+        assertEquals(java.util.Collections.emptyList(), parser.parse(Input.of("")).getOrThrow());
+        assertEquals(java.util.Arrays.asList(4, 5), parser.compile().parse(Input.of("45")).getOrThrow());
+
+        final Parser<Chr, Long> count = Text.digit.many1(Collectors.counting());
+        assertEquals(Long.valueOf(3), count.parse(Input.of("123")).getOrThrow());
+        assertFalse(count.parse(Input.of("")).isSuccess());
+    }
+
+    @Test
+    public void testSepByCollector() {
+        final Parser<Chr, String> parser =
+                intr.map(String::valueOf).sepBy(Text.chr(','), Collectors.joining("+"));
+        assertEquals("1+-2+3", parser.parse(Input.of("1,-2,3")).getOrThrow());
+        assertEquals("", parser.parse(Input.of("")).getOrThrow());
+        assertFalse(parser.parse(Input.of("1,")).isSuccess());
+        assertEquals("1+2", parser.compile().parse(Input.of("1,2")).getOrThrow());
+
+        final Parser<Chr, String> parser1 =
+                intr.map(String::valueOf).sepBy1(Text.chr(','), Collectors.joining("+"));
+        assertEquals("7", parser1.parse(Input.of("7")).getOrThrow());
+        assertFalse(parser1.parse(Input.of("")).isSuccess());
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testMany1CollectorOfEmptyFails() {
+        Text.digit.optional().many1(Collectors.toList());
+    }
+
+    @Test(expected=RuntimeException.class)
+    public void testSepBy1CollectorOfEmptyFails() {
+        Text.digit.optional().sepBy1(Text.ws.optional(), Collectors.toList());
+    }
+
+    @Test
+    public void testSepByCollectorOfEmptyWithSeparator() {
+        final Parser<Chr, Long> parser = Text.digit.optional().sepBy(Text.chr(','), Collectors.counting());
+        assertEquals(Long.valueOf(3), parser.parse(Input.of("1,,2")).getOrThrow());
+
+        final Ref<Chr, Chr> ref = Parser.ref();
+        final Parser<Chr, Long> count = ref.many1(Collectors.counting());
+        ref.set(Text.digit);
+        assertEquals(Long.valueOf(2), count.parse(Input.of("12")).getOrThrow());
+    }
+
+    @Test
+    public void testSepByCollectorWithEmptySeparator() {
+        // The separator is optional, so an element may directly follow an element.
+        final Parser<Chr, Long> parser = Text.alpha.sepBy1(Text.chr(',').optional(), Collectors.counting());
+        assertEquals(Long.valueOf(3), parser.parse(Input.of("a,bc")).getOrThrow());
+        assertEquals(Long.valueOf(3), parser.compile().parse(Input.of("a,bc")).getOrThrow());
+    }
+
+    @Test
+    public void testSepByCollectorSeparatorFollowSet() {
+        // The element accepts empty, so the separator may be followed by whatever follows the repetition.
+        final Parser<Chr, Long> parser =
+                Text.digit.optional()
+                        .sepBy(Text.chr(',').andL(Text.chr(' ').optional()), Collectors.counting())
+                        .andL(Text.chr(';'));
+        assertEquals(Long.valueOf(2), parser.parse(Input.of("1,;")).getOrThrow());
+        assertEquals(Long.valueOf(2), parser.compile().parse(Input.of("1, ;")).getOrThrow());
+    }
+
+    @Test
+    public void testManyInt() {
+        final Parser<Chr, int[]> parser = Text.digit.manyInt(Text::digitToInt);
+        org.junit.Assert.assertArrayEquals(
+                new int[]{3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5, 8, 9, 7, 9, 3, 2, 3, 8},
+                parser.parse(Input.of("3141592653589793238")).getOrThrow());
+    }
+
+    @Test
+    public void testSkipMany() {
+        final Parser<Chr, Chr> parser = Text.ws.skipMany().andR(Text.chr('x'));
+        assertEquals(Chr.valueOf('x'), parser.parse(Input.of("   x")).getOrThrow());
+        assertEquals(Chr.valueOf('x'), parser.parse(Input.of("x")).getOrThrow());
+    }
+
+    @Test
+    public void testApplyBuilderSequence() {
+        final Parser<Chr, String> parser =
+                Text.alpha.and(Text.digit).and(Text.alpha).and(Text.digit)
+                        .and(Text.alpha).and(Text.digit).and(Text.alpha).and(Text.digit.optional())
+                        .map((a, b, c, d, e, f, g, h) -> "" + a + b + c + d + e + f + g + h.map(String::valueOf).orElse("_"));
+
+        for (Parser<Chr, String> p : IList.of(parser, parser.compile())) {
+            assertEquals("a1b2c3d4", p.parse(Input.of("a1b2c3d4")).getOrThrow());
+            assertEquals("a1b2c3d_", p.parse(Input.of("a1b2c3d")).getOrThrow());
+
+            final Result<Chr, String> r = p.parse(Input.of("a1b2cxd4"));
+            assertFalse(r.isSuccess());
+            assertEquals(5, ((Result.Failure<Chr, String>)r).input().index());
+        }
+    }
+
+    @Test
+    public void testSequence() {
+        final IList<Parser<Chr, Chr>> lp = IList.of(Text.chr('a'), Text.chr('b').optional().map(o -> Chr.valueOf('_')), Text.chr('c'));
+        final Parser<Chr, String> parser = Parser.sequence(lp).map(Chr::listToString);
+        final Parser<Chr, String> parser2 = Parser.sequence(lp.stream()).map(s -> s.map(Chr::toString).collect(Collectors.joining()));
+
+        for (Parser<Chr, String> p : IList.of(parser, parser.compile(), parser2)) {
+            assertEquals("a_c", p.parse(Input.of("abc")).getOrThrow());
+            assertEquals("a_c", p.parse(Input.of("ac")).getOrThrow());
+            assertFalse(p.parse(Input.of("acb")).isSuccess());
+        }
+
+        final Parser<Chr, IList<Integer>> digits = Parser.traverse(IList.of(1, 2, 3), n -> Text.digit.map(Text::digitToInt).map(d -> d * n));
+        assertEquals(IList.of(4, 10, 18), digits.parse(Input.of("456")).getOrThrow());
+        assertEquals(IList.empty(), Parser.sequence(IList.<Parser<Chr, Chr>>empty()).parse(Input.of("")).getOrThrow());
+    }
+
     private static void assertEvaluate(Parser<Chr, Integer> parser, String s, int expected) {
         assertEquals(s, expected, parser.parse(Input.of(s)).getOrThrow().intValue());
     }
@@ -0,0 +1,186 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.*;
+
+import java.nio.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.typemeta.funcj.parser.Text.*;
+
+public class PushParserTest {
+
+    // A list of integers terminated by a semicolon, e.g. "[1,2,3];"
+    private static final Parser<Chr, List<Integer>> list =
+            chr('[')
+                    .andR(intr.sepBy(chr(',')))
+                    .andL(chr(']'))
+                    .andL(chr(';'))
+                    .map(IList::toList);
+
+    @Test
+    public void testValueSpanningChunks() {
+        final PushParser.Chars<List<Integer>> pp = PushParser.ofChars(list);
+        assertFalse(pp.feed("[12".toCharArray()).isPresent());
+        assertFalse(pp.feed("3,4".toCharArray()).isPresent());
+        assertFalse(pp.feed(CharBuffer.wrap("56]")).isPresent());
+        assertEquals(Arrays.asList(123, 456), pp.feed(";".toCharArray()).get().getOrThrow());
+        assertEquals(0, pp.buffered());
+        assertFalse(pp.end().isPresent());
+    }
+
+    @Test
+    public void testLookaheadWaitsForInput() {
+        final PushParser.Chars<Integer> pp = PushParser.ofChars(intr);
+        assertFalse(pp.feed("12".toCharArray()).isPresent());
+        assertEquals(Integer.valueOf(123), pp.feed("3 ".toCharArray()).get().getOrThrow());
+        assertEquals(1, pp.buffered());
+    }
+
+    @Test
+    public void testEndCompletesValue() {
+        final PushParser.Chars<Integer> pp = PushParser.ofChars(intr);
+        assertFalse(pp.feed("42".toCharArray()).isPresent());
+        assertEquals(Integer.valueOf(42), pp.end().get().getOrThrow());
+    }
+
+    @Test
+    public void testConsecutiveValues() {
+        final String s = "[1];[2,3];[];[4,5,6];[7";
+        final List<List<Integer>> results = new ArrayList<List<Integer>>();
+        final PushParser.Chars<List<Integer>> pp = PushParser.ofChars(list);
+        for (int i = 0; i < s.length(); i += 3) {
+            final char[] chunk = s.substring(i, Math.min(i + 3, s.length())).toCharArray();
+            Optional<Result<Chr, List<Integer>>> r = pp.feed(chunk);
+            while (r.isPresent()) {
+                results.add(r.get().getOrThrow());
+                r = pp.poll();
+            }
+        }
+
+        assertEquals(
+                Arrays.asList(
+                        Arrays.asList(1),
+                        Arrays.asList(2, 3),
+                        Arrays.asList(),
+                        Arrays.asList(4, 5, 6)),
+                results);
+        assertFalse(pp.end().get().isSuccess());
+    }
+
+    @Test
+    public void testDrainManyValuesFromOneChunk() {
+        final Parser<Chr, Integer> record = intr.andL(chr(';'));
+        final PushParser.Chars<Integer> pp = PushParser.ofChars(record);
+
+        final int n = 10000;
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; ++i) {
+            sb.append(i).append(';');
+        }
+        // A trailing partial value, which is completed by a subsequent chunk.
+        sb.append("12");
+
+        final List<Integer> results = new ArrayList<Integer>();
+        Optional<Result<Chr, Integer>> r = pp.feed(sb.toString().toCharArray());
+        while (r.isPresent()) {
+            results.add(r.get().getOrThrow());
+            r = pp.poll();
+        }
+        assertEquals(n, results.size());
+        for (int i = 0; i < n; ++i) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+        }
+        assertEquals(2, pp.buffered());
+
+        assertEquals(Integer.valueOf(123), pp.feed("3;".toCharArray()).get().getOrThrow());
+        assertEquals(0, pp.buffered());
+
+        // Small chunks, which reclaim the consumed space at the start of the buffer.
+        final String s = sb.toString();
+        results.clear();
+        for (int i = 0; i < s.length(); i += 5) {
+            r = pp.feed(s.substring(i, Math.min(i + 5, s.length())).toCharArray());
+            while (r.isPresent()) {
+                results.add(r.get().getOrThrow());
+                r = pp.poll();
+            }
+        }
+        assertEquals(n, results.size());
+        assertEquals(Integer.valueOf(n - 1), results.get(n - 1));
+    }
+
+    @Test
+    public void testFailureDiscardsInput() {
+        final PushParser.Chars<List<Integer>> pp = PushParser.ofChars(list);
+        assertFalse(pp.feed("[1,x".toCharArray()).get().isSuccess());
+        assertEquals(0, pp.buffered());
+        assertEquals(Arrays.asList(2), pp.feed("[2];".toCharArray()).get().getOrThrow());
+    }
+
+    @Test
+    public void testFirstChunkRejected() {
+        assertFalse(PushParser.ofChars(digit).feed("x".toCharArray()).get().isSuccess());
+        assertFalse(PushParser.ofChars(intr).feed("x".toCharArray()).get().isSuccess());
+        assertFalse(PushParser.ofChars(list).feed("x".toCharArray()).get().isSuccess());
+    }
+
+    @Test
+    public void testParseResumesAcrossChunks() {
+        final int[] count = {0};
+        final Parser<Chr, Integer> elem = digit.map(c -> {
+            ++count[0];
+            return Character.getNumericValue(c.charValue());
+        });
+        final Parser<Chr, List<Integer>> p =
+                chr('[').andR(elem.sepBy(chr(','))).andL(chr(']')).map(IList::toList);
+
+        final int n = 500;
+        final StringBuilder sb = new StringBuilder("[");
+        final List<Integer> expected = new ArrayList<Integer>();
+        for (int i = 0; i < n; ++i) {
+            sb.append(i == 0 ? "" : ",").append(i % 10);
+            expected.add(i % 10);
+        }
+        final String s = sb.append("]").toString();
+
+        final PushParser.Chars<List<Integer>> pp = PushParser.ofChars(p);
+        for (int i = 0; i < s.length() - 1; ++i) {
+            assertFalse(pp.feed(new char[]{s.charAt(i)}).isPresent());
+        }
+        assertEquals(expected, pp.feed(new char[]{']'}).get().getOrThrow());
+
+        // Each element is parsed once, rather than once per chunk.
+        assertEquals(n, count[0]);
+    }
+
+    @Test
+    public void testSepByWithEmptySeparator() {
+        final Parser<Chr, Long> p =
+                alpha.sepBy1(chr(',').optional(), java.util.stream.Collectors.counting()).andL(chr(';'));
+        final PushParser.Chars<Long> pp = PushParser.ofChars(p);
+        assertFalse(pp.feed("a,b".toCharArray()).isPresent());
+        assertEquals(Long.valueOf(3), pp.feed("c;".toCharArray()).get().getOrThrow());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFeedAfterEndThrows() {
+        final PushParser.Chars<Integer> pp = PushParser.ofChars(intr);
+        pp.end();
+        pp.feed("1".toCharArray());
+    }
+
+    @Test
+    public void testBytes() {
+        final Parser<Byte, byte[]> message = Bytes.uint8.andR(Bytes.bytes(3));
+        final PushParser.Bytes<byte[]> pp = PushParser.ofBytes(message);
+        assertFalse(pp.feed(new byte[]{0, 1}).isPresent());
+        assertFalse(pp.feed(ByteBuffer.wrap(new byte[]{2})).isPresent());
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(2);
+        direct.put(new byte[]{3, 9}).flip();
+        assertArrayEquals(new byte[]{1, 2, 3}, pp.feed(direct).get().getOrThrow());
+        assertEquals(1, pp.buffered());
+    }
+}
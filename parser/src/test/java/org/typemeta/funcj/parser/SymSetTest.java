@@ -0,0 +1,60 @@
+package org.typemeta.funcj.parser;
+
+import org.junit.Test;
+import org.typemeta.funcj.data.Chr;
+
+import static org.junit.Assert.*;
+
+public class SymSetTest {
+    private static void assertEquivalent(SymSet<Chr> expected, SymSet<Chr> actual) {
+        for (int i = 0; i <= Character.MAX_VALUE; ++i) {
+            final char c = (char)i;
+            assertEquals("matchesChar(" + i + ")", expected.matchesChar(c), actual.matchesChar(c));
+            assertEquals("matches(" + i + ")", expected.matches(Chr.valueOf(c)), actual.matches(Chr.valueOf(c)));
+        }
+    }
+
+    @Test
+    public void testCompileValues() {
+        final SymSet<Chr> set = SymSet.value(Chr.valueOf('a'))
+                .union(SymSet.value(Chr.valueOf('z')))
+                .union(SymSet.value(Chr.valueOf('\u20AC')));
+        final SymSet<Chr> compiled = set.compile();
+        assertTrue(compiled instanceof SymSet.Chars);
+        assertEquivalent(set, compiled);
+    }
+
+    @Test
+    public void testCompilePreds() {
+        final SymSet<Chr> set = SymSet.charPred("letter", Character::isLetter)
+                .union(SymSet.charPred("digit", Character::isDigit))
+                .union(SymSet.value(Chr.valueOf('_')));
+        final SymSet<Chr> compiled = set.compile();
+        assertTrue(compiled instanceof SymSet.Chars);
+        assertEquivalent(set, compiled);
+        assertEquals(set.toString(), compiled.toString());
+    }
+
+    @Test
+    public void testCompileRetainsGenericPreds() {
+        final SymSet<Chr> set = SymSet.<Chr>pred("upper", c -> Character.isUpperCase(c.charValue()))
+                .union(SymSet.value(Chr.valueOf('0')));
+        final SymSet<Chr> compiled = set.compile();
+        assertEquivalent(set, compiled);
+    }
+
+    @Test
+    public void testCompileNested() {
+        final SymSet<Chr> inner = SymSet.charPred("ws", Character::isWhitespace)
+                .union(SymSet.value(Chr.valueOf('#')))
+                .compile();
+        final SymSet<Chr> set = inner.union(SymSet.charPred("digit", Character::isDigit));
+        assertEquivalent(set, set.compile());
+    }
+
+    @Test
+    public void testCompileNonChr() {
+        final SymSet<Integer> set = SymSet.value(1).union(SymSet.value(2));
+        assertSame(set, set.compile());
+    }
+}
@@ -3,10 +3,13 @@
 import com.pholser.junit.quickcheck.Property;
 import com.pholser.junit.quickcheck.runner.JUnitQuickcheck;
 import org.junit.Assert;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.typemeta.funcj.data.Chr;
 
 import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.*;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.assumeFalse;
@@ -31,6 +34,282 @@ private static <T> Result<Chr, T> parse(Parser<Chr, T> parser, Input<Chr> in) {
         return parser.apply(in);
     }
 
+    @Test
+    public void testManyChars() {
+        parseSuccess(Text.manyChars(Text.alpha), "abc1", "abc");
+        parseSuccess(Text.manyChars(Text.alpha), "1", "");
+        parseSuccess(Text.many1Chars(Text.alpha), "abc", "abc");
+        parseFailure(Text.many1Chars(Text.alpha), "1");
+        parseSuccess(Text.manyChars(Text.chr('a')).andL(Text.chr('b')), "aab", "aa");
+        parseSuccess(Text.manyChars(Text.alpha).compile(), "abc1", "abc");
+        parseSuccess(Text.many1Chars(Text.alpha).andL(Text.digit.skipMany()).andL(Text.chr(';')), "ab12;", "ab");
+    }
+
+    private static <T> void parseText(Parser<Chr, ? extends CharSequence> parser, String s, String exp) {
+        Assert.assertEquals(exp, parseSuccess(parser, Input.of(s)).toString());
+        Assert.assertEquals(exp, parseSuccess(parser, Input.of(new StringReader(s))).toString());
+    }
+
+    @Test
+    public void testTakeWhile() {
+        parseText(Text.takeWhile(Character::isLetterOrDigit), "abc123 x", "abc123");
+        parseText(Text.takeWhile(Character::isLetterOrDigit), " x", "");
+        parseText(Text.takeWhile1("letter", Character::isLetter), "abc", "abc");
+        parseFailure(Text.takeWhile1("letter", Character::isLetter), "1");
+
+        final CharSequence cs = Text.takeWhile(Character::isLetter).apply(Input.of("hello world")).getOrThrow();
+        assertEquals(5, cs.length());
+        assertEquals('e', cs.charAt(1));
+        assertEquals("ell", cs.subSequence(1, 4).toString());
+    }
+
+    @Test
+    public void testTextResultEquality() {
+        // The results compare equal to each other, regardless of the type of input, but never to a String.
+        final Parser<Chr, CharSequence> re = Text.regex("[a-z]+");
+        final CharSequence fromString = parseSuccess(re, Input.of("abc"));
+        final CharSequence fromReader = parseSuccess(re, Input.of(new StringReader("abc")));
+        assertEquals(fromString, fromReader);
+        assertEquals(fromString.hashCode(), fromReader.hashCode());
+        assertNotEquals("abc", fromString);
+        assertNotEquals("abc", fromReader);
+        assertTrue("abc".contentEquals(fromReader));
+
+        final Parser<Chr, CharSequence> rec = Text.recognize(Text.alpha.many());
+        assertEquals(parseSuccess(rec, Input.of("abc")), parseSuccess(rec, smallReader("abc")));
+        assertEquals("abc", parseSuccess(rec, smallReader("abc")).toString());
+    }
+
+    @Test
+    public void testSkipWhile() {
+        final Parser<Chr, CharSequence> p =
+                Text.skipWhile(Character::isWhitespace)
+                        .andR(Text.takeWhile1("letter", Character::isLetter));
+        parseText(p, "  \t abc", "abc");
+        parseText(p, "abc", "abc");
+        parseText(p.compile(), "  abc", "abc");
+    }
+
+    @Test
+    public void testRecognize() {
+        final Parser<Chr, CharSequence> ident =
+                Text.recognize(Text.alpha.and(Text.alphaNum.many()).map(a -> as -> as));
+        parseText(ident, "x12+y", "x12");
+        parseText(ident.compile(), "x12+y", "x12");
+        parseText(Text.recognize(Text.dble), "-1.5e3;", "-1.5e3");
+        assertFalse(ident.parse(Input.of("1x")).isSuccess());
+
+        // The recognised text is longer than the 8 char reader buffer.
+        final String s = "abcdefghijklmnopqrstuvwxyz";
+        assertEquals(s, parseSuccess(ident, smallReader(s + "+")).toString());
+        assertEquals(s, parseSuccess(ident.compile(), smallReader(s + "+")).toString());
+        assertEquals(s, parseSuccess(Text.recognize(Text.alpha.many()), smallReader(s)).toString());
+    }
+
+    @Test
+    public void testRegex() {
+        final Parser<Chr, CharSequence> num = Text.regex("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+        parseText(num, "-12.5e3,", "-12.5e3");
+        parseText(num, "0123", "0");
+        parseText(num, "12.x", "12");
+        parseFailure(num, "-x");
+
+        final Parser<Chr, CharSequence> date = Text.regex("\\d{4}-\\d{2}-\\d{2}");
+        parseText(date, "2020-01-31T", "2020-01-31");
+        parseFailure(date, "2020-1-31");
+
+        // Longest match, rather than the first alternative.
+        parseText(Text.regex("a|ab|abc?"), "abcd", "abc");
+        parseText(Text.regex("[^\"\\\\]*"), "ab\\c\"", "ab");
+        parseText(Text.regex("(?:\\w+\\.)*\\w+"), "java.util.List<", "java.util.List");
+        parseText(Text.regex("x*"), "y", "");
+        parseText(Text.regex("[\u00e0-\u00ff]+"), "\u00e9\u00e8a", "\u00e9\u00e8");
+
+        // The match is longer than the 8 char reader buffer,
+        // and the automaton reads past the end of the match before backtracking to it.
+        final Parser<Chr, CharSequence> path = Text.regex("[a-z]+(?:\\.[a-z]+)*");
+        assertEquals("abcdefghijkl.mnopq", parseSuccess(path, smallReader("abcdefghijkl.mnopq.1")).toString());
+        assertEquals(
+                "java.util.concurrent",
+                parseSuccess(num.andR(Text.chr(' ')).andR(path), smallReader("-12345.678e9 java.util.concurrent")).toString());
+    }
+
+    @Test
+    public void testRegexFirstSet() {
+        final Parser<Chr, String> p =
+                Combinators.choice(
+                        Text.regex("[a-z]\\w*").map(cs -> "ident:" + cs),
+                        Text.regex("\\d+").map(cs -> "num:" + cs),
+                        Text.regex("\"[^\"]*\"").map(cs -> "str:" + cs)
+                );
+        parseSuccess(p, "abc1", "ident:abc1");
+        parseSuccess(p, "123", "num:123");
+        parseSuccess(p, "\"x y\"", "str:\"x y\"");
+        parseSuccess(p.compile(), "123", "num:123");
+        assertFalse(p.parse(Input.of("_x")).isSuccess());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRegexUnsupported() {
+        Text.regex("^a+$");
+    }
+
+    @Test
+    public void testKeywords() {
+        final Map<String, Integer> ops = new HashMap<String, Integer>();
+        ops.put("<", 1);
+        ops.put("<=", 2);
+        ops.put("<<", 3);
+        ops.put("<<=", 4);
+        ops.put("=", 5);
+
+        parseSuccess(Text.keywords(ops), "<<=1", 4);
+        parseSuccess(Text.keywords(ops), "<<1", 3);
+        parseSuccess(Text.keywords(ops), "<1", 1);
+        parseSuccess(Text.keywords(ops, false, false), "<<=1", 1);
+        parseFailure(Text.keywords(ops), "!");
+        parseFailure(Text.keywords(ops), "");
+    }
+
+    @Test
+    public void testKeywordsIgnoreCase() {
+        final Map<String, String> kws = new HashMap<String, String>();
+        kws.put("select", "SELECT");
+        kws.put("from", "FROM");
+        kws.put("fromage", "CHEESE");
+
+        final Parser<Chr, String> p = Text.keywords(kws, true, true);
+        parseSuccess(p, "SeLeCt", "SELECT");
+        parseSuccess(p, "FROM x", "FROM");
+        parseSuccess(p, "Fromage", "CHEESE");
+        parseFailure(Text.keywords(kws), "SELECT");
+
+        final Parser<Chr, String> q =
+                Combinators.choice(
+                        Text.keywords(kws, true, true),
+                        Text.takeWhile1("ident", Character::isLetter).map(CharSequence::toString)
+                );
+        parseSuccess(q.compile(), "from", "FROM");
+        parseSuccess(q.compile(), "where", "where");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKeywordsDuplicateIgnoringCase() {
+        final Map<String, Integer> kws = new HashMap<String, Integer>();
+        kws.put("from", 1);
+        kws.put("FROM", 2);
+        Text.keywords(kws, true, true);
+    }
+
+    @Test
+    public void testSpan() {
+        final Parser<Chr, Span> p = Text.chr('(').andR(Text.span(Text.intr)).andL(Text.chr(')'));
+        parseSuccess(p, "(1234)", new Span(1, 5));
+        parseSuccess(p.compile(), "(-1)", new Span(1, 3));
+    }
+
+    @Test
+    public void testIntegerLimits() {
+        parseSuccess(Text.intr, "2147483647", Integer.MAX_VALUE);
+        parseSuccess(Text.intr, "-2147483648", Integer.MIN_VALUE);
+        parseSuccess(Text.intr, "+12x", 12);
+        parseSuccess(Text.uintr, "0123", 0);
+        parseSuccess(Text.lng, "-9223372036854775808", Long.MIN_VALUE);
+        parseSuccess(Text.ulng, "9223372036854775807", Long.MAX_VALUE);
+
+        parseFailure(Text.intr, "2147483648");
+        parseFailure(Text.intr, "-2147483649");
+        parseFailure(Text.uintr, "-1");
+        parseFailure(Text.lng, "9223372036854775808");
+        parseFailure(Text.lng, "-");
+    }
+
+    @Test
+    public void testHexAndOctal() {
+        parseSuccess(Text.hexIntr, "7fffFFFF", Integer.MAX_VALUE);
+        parseSuccess(Text.hexIntr, "00ffg", 0xff);
+        parseSuccess(Text.hexLng, "DeadBeefCafe", 0xDEADBEEFCAFEL);
+        parseSuccess(Text.octIntr, "0777", 0777);
+        parseSuccess(Text.octLng, "7778", 0777L);
+
+        parseFailure(Text.hexIntr, "80000000");
+        parseFailure(Text.hexIntr, "g");
+        parseFailure(Text.octIntr, "8");
+    }
+
+    @Test
+    public void testDbleIsCorrectlyRounded() {
+        final String[] cases = {
+                "0.1", "-0.0", "1.", "3.14159", "1e22", "1e23", "123456789012345678901234567890",
+                "0.30000000000000004", "9007199254740993", "2.2250738585072011e-308",
+                "4.9e-324", "1.7976931348623157E308", "1e400", "1e-400", "0.000000000000000000000000001234",
+                "179769313486231580793728971405303415079934132710037826936173778980444968292764750946649017977587207096"
+        };
+
+        for (String s : cases) {
+            parseSuccess(Text.dble, s, Double.parseDouble(s));
+        }
+
+        parseSuccess(Text.dble, "-1.5e+2,", -150.0);
+        parseFailure(Text.dble, "1e");
+        parseFailure(Text.dble, "1e+x");
+        parseFailure(Text.dble, ".5");
+    }
+
+    @Test
+    public void testBigDecimal() {
+        parseSuccess(Text.bigDecimal, "123456789012345678901234567890.5", new BigDecimal("123456789012345678901234567890.5"));
+        parseSuccess(Text.bigDecimal, "-1.50E-3 ", new BigDecimal("-1.50E-3"));
+        parseFailure(Text.bigDecimal, "1e99999999999");
+    }
+
+    private static Input<Chr> smallReader(String s) {
+        return Input.of(new StringReader(s), 8);
+    }
+
+    @Test
+    public void testScannerOnlyRecordsWhenRequested() {
+        final CharScanner skipping = CharScanner.of(smallReader("      x"));
+        skipping.skip(c -> c == ' ');
+        assertEquals(6, skipping.count());
+        try {
+            skipping.text();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // Expected - the skipped text wasn't recorded.
+        }
+
+        final CharScanner recording = CharScanner.of(smallReader("abcdefghijkl+"), true);
+        recording.skip(Character::isLetter);
+        assertEquals("abcdefghijkl", recording.text().toString());
+
+        assertEquals(Chr.valueOf('x'), parseSuccess(Text.ws.skipMany().andR(Text.chr('x')), smallReader("          x")));
+        assertEquals("abc", parseSuccess(Text.string("abc"), smallReader("abc")));
+    }
+
+    @Test
+    public void testScannersAcrossReaderWindow() {
+        // The literals are longer than the 8 char reader buffer,
+        // so the scanners can't re-read the consumed text from the input.
+        assertEquals(
+                new BigDecimal("1234567890.123456"),
+                parseSuccess(Text.bigDecimal, smallReader("1234567890.123456")));
+        assertEquals(
+                Double.valueOf(12345678901234567890.5),
+                parseSuccess(Text.dble.andL(Text.chr(';')), smallReader("12345678901234567890.5;")));
+        assertEquals(
+                "abcdefghijklmnop",
+                parseSuccess(Text.takeWhile(Character::isLetter), smallReader("abcdefghijklmnop1")).toString());
+
+        // The longest match backtracks to a keyword which precedes the window.
+        final Map<String, Integer> kws = new HashMap<String, Integer>();
+        kws.put("abcdefghij", 1);
+        kws.put("abcdefghijklmnopqrstuvwxyz", 2);
+        assertEquals(
+                Integer.valueOf(1),
+                parseSuccess(Text.keywords(kws).andL(Text.string("klmnopqrstuv!")), smallReader("abcdefghijklmnopqrstuv!")));
+    }
+
     @Property
     public void testAlpha(char c) {
         final Result<Chr, Chr> res = Text.alpha.parse(Input.of("" + c));
@@ -55,6 +334,21 @@ public void testWs(char c) {
         assertEquals("ws parser applied to " + c, Character.isWhitespace(c), res.isSuccess());
     }
 
+    @Property
+    public void testSatisfyChar(char c) {
+        final Parser<Chr, Chr> p = Text.satisfyChar("upper", Character::isUpperCase);
+        final Result<Chr, Chr> res = p.parse(Input.of("" + c));
+        assertEquals("satisfyChar parser applied to " + c, Character.isUpperCase(c), res.isSuccess());
+    }
+
+    @Property
+    public void testSatisfyCharUnion(char c) {
+        final Parser<Chr, Chr> p = Text.alpha.or(Text.digit).or(Text.chr('_'));
+        final boolean exp = Character.isAlphabetic(c) || Character.isDigit(c) || c == '_';
+        assertEquals("union applied to " + c, exp, p.parse(Input.of("" + c)).isSuccess());
+        assertEquals("union applied to " + c, exp, p.parse(Input.of(new StringReader("" + c))).isSuccess());
+    }
+
     @Property
     public void testIntr(int i) {
         {
@@ -1,6 +1,8 @@
 package org.typemeta.funcj.parser.expr;
 
 import org.junit.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
 
 public class GrammarTest {
 
@@ -9,15 +11,23 @@ public class GrammarTest {
         Grammar.parser.firstSet();
     }
 
+    private static final Parser<Chr, Model.Expr> compiled = Grammar.parser.compile();
+
     private static void assertSuccess(String s, String expected) {
         final String result = Grammar.parse(s).getOrThrow().toString();
         Assert.assertEquals(expected, result);
         //System.out.println(result);
         Assert.assertEquals(expected, Grammar.parse(result).getOrThrow().toString());
+        Assert.assertEquals(expected, compiled.parse(Input.of(s)).getOrThrow().toString());
     }
 
     private static void assertFailure(String s, Object position) {
-        Grammar.parse(s).handle(
+        assertFailure(Grammar.parse(s), position);
+        assertFailure(compiled.parse(Input.of(s)), position);
+    }
+
+    private static void assertFailure(Result<Chr, Model.Expr> result, Object position) {
+        result.handle(
             ok -> {
                 throw new RuntimeException("Expected parse to fail");
             },
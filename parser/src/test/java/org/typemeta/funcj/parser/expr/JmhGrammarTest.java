@@ -0,0 +1,57 @@
+package org.typemeta.funcj.parser.expr;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+import org.typemeta.funcj.data.Chr;
+import org.typemeta.funcj.parser.*;
+
+/**
+ * Compares the interpreted, compiled and generated forms of the expression grammar.
+ */
+@State(Scope.Benchmark)
+public class JmhGrammarTest {
+
+    private static final String EXPR = "123.456+4*(5+x)-1*(y/(2+z)-(-3.5*w))+((((a))))/b";
+
+    private Parser<Chr, Model.Expr> interpreted;
+    private Parser<Chr, Model.Expr> compiled;
+    private Parser<Chr, Model.Expr> generated;
+
+    @Setup
+    public void setup() {
+        interpreted = Grammar.parser;
+        compiled = Grammar.parser.compile();
+        generated = CodeGen.generate(Grammar.parser);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Model.Expr interpreted() {
+        return interpreted.parse(Input.of(EXPR)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Model.Expr compiled() {
+        return compiled.parse(Input.of(EXPR)).getOrThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Model.Expr generated() {
+        return generated.parse(Input.of(EXPR)).getOrThrow();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        final Options opt = new OptionsBuilder()
+                .include(JmhGrammarTest.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build();
+
+        new Runner(opt).run();
+    }
+}